@@ -0,0 +1,55 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks looking up shared coordinates, for coordinates already cached and for new ones.
+ */
+@State(Scope.Thread)
+public class CartesianCoordinateBenchmark {
+
+	/**
+	 *
+	 */
+	protected static final int NO_CACHED_COORDINATES = 1024;
+
+	/**
+	 *
+	 */
+	protected int next = 0;
+
+	/**
+	 *
+	 */
+	@Setup
+	public void setUp() {
+		for (int i = 0; i < NO_CACHED_COORDINATES; i++) {
+			CartesianCoordinate.get(i, i * 0.5, -i);
+		}
+	}
+
+	/**
+	 *
+	 */
+	@Benchmark
+	public CartesianCoordinate getCached() {
+		int i = next++ & (NO_CACHED_COORDINATES - 1);
+		return CartesianCoordinate.get(i, i * 0.5, -i);
+	}
+
+	/**
+	 * Creates a new coordinate most of the time; note that the shared cache grows with every call.
+	 */
+	@Benchmark
+	public CartesianCoordinate getNew() {
+		int i = next++;
+		return CartesianCoordinate.get(i, i * 0.25, 1.0 / (i + 1));
+	}
+
+}
@@ -0,0 +1,40 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks converting photo ids to their string form, as done for every photo link and file name.
+ */
+@State(Scope.Thread)
+public class PhotoIdBenchmark {
+
+	/**
+	 *
+	 */
+	protected int id = 0;
+	protected String idAsString = PhotoId.getFromInt(4711);
+
+	/**
+	 *
+	 */
+	@Benchmark
+	public String getFromInt() {
+		id = (id < 100000) ? id + 1 : 1;
+		return PhotoId.getFromInt(id);
+	}
+
+	/**
+	 *
+	 */
+	@Benchmark
+	public int getFromString() {
+		return PhotoId.getFromString(idAsString);
+	}
+
+}
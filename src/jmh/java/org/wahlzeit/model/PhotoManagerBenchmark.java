@@ -0,0 +1,102 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import java.util.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks answering photo filter queries from the tag index.
+ * The index is filled in memory with generated photos: tags are skewed so that a few are common and most are rare.
+ */
+@State(Scope.Benchmark)
+public class PhotoManagerBenchmark {
+
+	/**
+	 *
+	 */
+	@Param({"100000"})
+	public int noPhotos;
+
+	/**
+	 *
+	 */
+	protected static final int NO_OWNERS = 1000;
+	protected static final int NO_TAGS = 500;
+
+	/**
+	 *
+	 */
+	protected PhotoManager photoManager;
+
+	/**
+	 *
+	 */
+	protected PhotoFilter commonTagFilter;
+	protected PhotoFilter ownerAndTagFilter;
+	protected PhotoFilter rareTagsFilter;
+
+	/**
+	 *
+	 */
+	@Setup
+	public void setUp() {
+		photoManager = new PhotoManager();
+
+		Random random = new Random(4711);
+		for (int i = 1; i <= noPhotos; i++) {
+			Set<String> tags = new HashSet<String>();
+			tags.add("un:owner" + random.nextInt(NO_OWNERS));
+			for (int j = 0; j < 5; j++) {
+				int tag = (int) (NO_TAGS * Math.pow(random.nextDouble(), 3)); // skewed towards low numbers
+				tags.add("tg:tag" + tag);
+			}
+			photoManager.tagIndex.setPhotoTags(i, tags);
+		}
+		photoManager.isTagIndexLoaded = true;
+
+		commonTagFilter = createFilter("", "tag0");
+		ownerAndTagFilter = createFilter("owner42", "tag1");
+		rareTagsFilter = createFilter("", "tag0, tag300");
+	}
+
+	/**
+	 *
+	 */
+	protected PhotoFilter createFilter(String userName, String tags) {
+		PhotoFilter result = new PhotoFilter();
+		result.setUserName(userName);
+		result.setTags(new Tags(tags));
+		return result;
+	}
+
+	/**
+	 *
+	 */
+	@Benchmark
+	public List<PhotoId> getFilteredPhotoIdsForCommonTag() {
+		return photoManager.getFilteredPhotoIds(commonTagFilter);
+	}
+
+	/**
+	 *
+	 */
+	@Benchmark
+	public List<PhotoId> getFilteredPhotoIdsForOwnerAndTag() {
+		return photoManager.getFilteredPhotoIds(ownerAndTagFilter);
+	}
+
+	/**
+	 *
+	 */
+	@Benchmark
+	public List<PhotoId> getFilteredPhotoIdsForRareTags() {
+		return photoManager.getFilteredPhotoIds(rareTagsFilter);
+	}
+
+}
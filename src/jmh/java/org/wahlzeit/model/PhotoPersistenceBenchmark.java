@@ -0,0 +1,124 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import java.net.*;
+import java.sql.*;
+import java.util.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.wahlzeit.services.*;
+
+/**
+ * Benchmarks saving photos row by row and in batches against an embedded in-memory database.
+ * The database runs H2 in PostgreSQL mode and is created from the regular CreateTables.sql script,
+ * which is looked up under the root directory given by the wahlzeit.rootDir system property.
+ */
+@State(Scope.Thread)
+public class PhotoPersistenceBenchmark {
+
+	/**
+	 *
+	 */
+	public static final String DB_CONNECTION = "jdbc:h2:mem:wahlzeit;MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+
+	/**
+	 *
+	 */
+	@Param({"1000"})
+	public int noPhotos;
+
+	/**
+	 *
+	 */
+	@Param({"100"})
+	public String batchSize;
+
+	/**
+	 *
+	 */
+	protected PhotoManager photoManager;
+	protected List<Photo> photos = new ArrayList<Photo>();
+
+	/**
+	 *
+	 */
+	@Setup
+	public void setUp() throws Exception {
+		SysConfig config = new SysConfig(System.getProperty("wahlzeit.rootDir", "src/main/webapp"), "localhost");
+		config.setValue(SysConfig.DB_CONNECTION, DB_CONNECTION);
+		config.setValue(SysConfig.DB_USER, "sa");
+		config.setValue(SysConfig.DB_PASSWORD, "");
+		config.setValue(SysConfig.DB_BATCH_SIZE, batchSize);
+		SysConfig.dropInstance();
+		SysConfig.setInstance(config);
+
+		SessionManager.setThreadLocalSession(new SysSession("benchmark"));
+		Connection conn = SessionManager.getDatabaseConnection().getRdbmsConnection();
+		String createTables = SysConfig.getScriptsDir().getAbsoluteDefaultConfigFileName("CreateTables.sql");
+		try (Statement stmt = conn.createStatement()) {
+			stmt.execute(FileUtil.safelyReadFileAsString(createTables));
+		}
+
+		PhotoFactory.initialize();
+		PhotoId.setCurrentIdFromInt(noPhotos);
+		photoManager = new PhotoManager();
+		try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO photos(id) VALUES(?)")) {
+			for (int i = 1; i <= noPhotos; i++) {
+				stmt.setInt(1, i);
+				stmt.addBatch();
+
+				Photo photo = PhotoFactory.getInstance().createPhoto(PhotoId.getIdFromInt(i));
+				photo.setOwnerId(1);
+				photo.setOwnerName("admin");
+				photo.setOwnerHomePage(new URL("http://localhost:8080/"));
+				photo.setTags(new Tags("flower, rose, garden"));
+				photoManager.doAddPhoto(photo);
+				photos.add(photo);
+			}
+			stmt.executeBatch();
+		}
+	}
+
+	/**
+	 *
+	 */
+	@TearDown
+	public void tearDown() throws SQLException {
+		Connection conn = SessionManager.getDatabaseConnection().getRdbmsConnection();
+		try (Statement stmt = conn.createStatement()) {
+			stmt.execute("DROP ALL OBJECTS");
+		}
+
+		SessionManager.getThreadLocalSession().returnDatabaseConnection();
+		SessionManager.dropThreadLocalSession();
+		SysConfig.dropInstance();
+	}
+
+	/**
+	 *
+	 */
+	@Benchmark
+	public void savePhotosRowByRow() {
+		for (Photo photo : photos) {
+			photo.incWriteCount();
+			photoManager.savePhoto(photo);
+		}
+	}
+
+	/**
+	 *
+	 */
+	@Benchmark
+	public void savePhotosInBatches() {
+		for (Photo photo : photos) {
+			photo.incWriteCount();
+		}
+		photoManager.savePhotos();
+	}
+
+}
@@ -0,0 +1,33 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import java.util.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks parsing tag strings as entered in upload and filter forms.
+ */
+@State(Scope.Thread)
+public class TagsBenchmark {
+
+	/**
+	 *
+	 */
+	@Param({"flower", "Flower, Rose , garden,summer, red, Nürnberg,  ,still life"})
+	public String tags;
+
+	/**
+	 *
+	 */
+	@Benchmark
+	public Set<String> asTagSetFromString() {
+		return Tags.asTagSetFromString(tags);
+	}
+
+}
@@ -0,0 +1,218 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.webparts;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks writing a page, a WebPart with nested WebParts, as it is done for every request.
+ * The map-based benchmarks render the same page the way WebPart did before templates were compiled, for comparison.
+ */
+@State(Scope.Thread)
+public class WebPartBenchmark {
+
+	/**
+	 * A WebPart as it was before templates were compiled: values in a map, looked up for every slot.
+	 */
+	public static class MapWebPart implements Writable {
+
+		/**
+		 *
+		 */
+		protected WebPartTemplate template;
+		protected Map<String, Object> parts = new HashMap<String, Object>();
+
+		/**
+		 *
+		 */
+		public MapWebPart(WebPartTemplate myTemplate) {
+			template = myTemplate;
+		}
+
+		/**
+		 *
+		 */
+		public void addString(String key, String value) {
+			parts.put(key, value);
+		}
+
+		/**
+		 *
+		 */
+		public void addWritable(String key, Writable value) {
+			parts.put(key, value);
+		}
+
+		/**
+		 *
+		 */
+		public void writeOn(Writer out) throws IOException {
+			String tmpl = template.asString();
+			String[] keys = template.getKeys();
+			int[] slots = template.getSlots();
+
+			int start = 0;
+			for (int i = 0; i < keys.length; i++) {
+				int index = slots[i];
+				out.write(tmpl, start, index - start);
+				Object object = parts.get(keys[i]);
+				if (object instanceof Writable) {
+					((Writable) object).writeOn(out);
+				} else if (object != null) {
+					out.write(object.toString());
+				}
+				start = index;
+			}
+			out.write(tmpl, start, tmpl.length() - start);
+		}
+
+	}
+
+	/**
+	 *
+	 */
+	@Param({"10", "100"})
+	public int noSlots;
+
+	/**
+	 *
+	 */
+	protected WebPartTemplate pageTemplate;
+	protected WebPartTemplate partTemplate;
+	protected WebPart page;
+	protected MapWebPart mapPage;
+	protected StringWriter writer;
+	protected ByteArrayOutputStream bytes;
+
+	/**
+	 *
+	 */
+	@Setup
+	public void setUp() {
+		pageTemplate = createTemplate("page", 3);
+		partTemplate = createTemplate("part", noSlots);
+		page = createPage();
+		mapPage = createMapPage();
+		writer = new StringWriter(64 * 1024);
+		bytes = new ByteArrayOutputStream(64 * 1024);
+	}
+
+	/**
+	 *
+	 */
+	protected WebPart createPage() {
+		WebPart part = new WebPart(partTemplate);
+		for (int i = 0; i < noSlots; i++) {
+			part.addString("key" + i, "value");
+		}
+
+		WebPart result = new WebPart(pageTemplate);
+		result.addString("key0", "Wahlzeit");
+		result.addWritable("key1", part);
+		result.addString("key2", "Copyright (c) 2006-2009 by Dirk Riehle");
+		return result;
+	}
+
+	/**
+	 *
+	 */
+	protected MapWebPart createMapPage() {
+		MapWebPart part = new MapWebPart(partTemplate);
+		for (int i = 0; i < noSlots; i++) {
+			part.addString("key" + i, "value");
+		}
+
+		MapWebPart result = new MapWebPart(pageTemplate);
+		result.addString("key0", "Wahlzeit");
+		result.addWritable("key1", part);
+		result.addString("key2", "Copyright (c) 2006-2009 by Dirk Riehle");
+		return result;
+	}
+
+	/**
+	 *
+	 */
+	protected WebPartTemplate createTemplate(String name, int noKeys) {
+		StringBuffer source = new StringBuffer(noKeys * 64);
+		for (int i = 0; i < noKeys; i++) {
+			source.append("<div class=\"slot\"><span>{$key").append(i).append("}</span></div>\n");
+		}
+
+		WebPartTemplate result = new WebPartTemplate(name);
+		result.initialize(source.toString());
+		return result;
+	}
+
+	/**
+	 *
+	 */
+	@Benchmark
+	public StringWriter writeOn() throws IOException {
+		writer.getBuffer().setLength(0);
+		page.writeOn(writer);
+		return writer;
+	}
+
+	/**
+	 *
+	 */
+	@Benchmark
+	public StringWriter createAndWriteOn() throws IOException {
+		writer.getBuffer().setLength(0);
+		createPage().writeOn(writer);
+		return writer;
+	}
+
+	/**
+	 *
+	 */
+	@Benchmark
+	public StringWriter mapWriteOn() throws IOException {
+		writer.getBuffer().setLength(0);
+		mapPage.writeOn(writer);
+		return writer;
+	}
+
+	/**
+	 *
+	 */
+	@Benchmark
+	public StringWriter mapCreateAndWriteOn() throws IOException {
+		writer.getBuffer().setLength(0);
+		createMapPage().writeOn(writer);
+		return writer;
+	}
+
+	/**
+	 * Writes the page as bytes the way responses are written, with pre-encoded template chunks.
+	 */
+	@Benchmark
+	public ByteArrayOutputStream writeOnUtf8Writer() throws IOException {
+		bytes.reset();
+		Utf8Writer out = new Utf8Writer(bytes);
+		page.writeOn(out);
+		out.flush();
+		return bytes;
+	}
+
+	/**
+	 * Writes the page as bytes through an encoding Writer, as a servlet response writer does.
+	 */
+	@Benchmark
+	public ByteArrayOutputStream writeOnEncodingWriter() throws IOException {
+		bytes.reset();
+		Writer out = new BufferedWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8), Utf8Writer.DEFAULT_BUFFER_SIZE);
+		page.writeOn(out);
+		out.flush();
+		return bytes;
+	}
+
+}
@@ -40,7 +40,12 @@ public abstract class Agent implements Runnable {
 	/**
 	 * 
 	 */
-	protected boolean isToStop = false;
+	protected volatile boolean isToStop = false;
+	
+	/**
+	 * Set by wakeUp() to end the current sleep early
+	 */
+	protected boolean isWokenUp = false;
 	
 	/**
 	 * Full period after which task gets repeated
@@ -83,7 +88,7 @@ public abstract class Agent implements Runnable {
 		while(!isToStop) {
 			try {
 				SysLog.logSysInfo("going to sleep for: " + (period / 1000) + " seconds");
-				Thread.sleep(period);
+				sleep();
 			} catch (Exception ex) {
 				// do nothing
 			}
@@ -92,6 +97,28 @@ public abstract class Agent implements Runnable {
 		}
 	}
 	
+	/**
+	 * Waits for the period to pass or for wakeUp() to be called, whichever comes first.
+	 */
+	protected synchronized void sleep() throws InterruptedException {
+		long wakeUpTime = System.currentTimeMillis() + period;
+		long timeout = period;
+		while (!isWokenUp && !isToStop && (timeout > 0)) {
+			wait(timeout);
+			timeout = wakeUpTime - System.currentTimeMillis();
+		}
+		
+		isWokenUp = false;
+	}
+	
+	/**
+	 * Makes the agent run its task now rather than at the end of its period.
+	 */
+	public synchronized void wakeUp() {
+		isWokenUp = true;
+		notifyAll();
+	}
+	
 	/**
 	 * @methodproperty hook
 	 */
@@ -112,6 +139,7 @@ public abstract class Agent implements Runnable {
 	 */
 	public void stop() {
 		isToStop = true;
+		wakeUp();
 	}
 	
 }
@@ -39,6 +39,7 @@ public class AgentManager {
 	 */
 	protected static void initInstance() {
 		getInstance().addAgent(new NotifyAboutPraiseAgent());
+		getInstance().addAgent(new WriteBehindAgent());
 	}
 	
 	/**
@@ -0,0 +1,156 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.agents;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.wahlzeit.model.*;
+import org.wahlzeit.services.*;
+
+/**
+ * The WriteBehindAgent saves changed photo cases, photos, and users in batches, off the request path.
+ * Request handlers announce changed objects with announce(); the agent saves only those, at least every
+ * WRITE_BEHIND_PERIOD millis, which bounds how long a change stays unsaved. Once WRITE_BEHIND_DIRTY_THRESHOLD
+ * distinct objects are pending, the agent is woken up early. Repeated changes to the same object
+ * between two flushes coalesce into one write.
+ */
+public class WriteBehindAgent extends Agent {
+
+	/**
+	 *
+	 */
+	public static final String NAME = "WriteBehind";
+
+	/**
+	 * Objects announced as changed since the last flush
+	 */
+	protected Set<Persistent> pendingObjects = ConcurrentHashMap.newKeySet();
+
+	/**
+	 *
+	 */
+	protected int dirtyThreshold;
+
+	/**
+	 * Set from waking up the agent early until its next flush, so that it is woken up once only
+	 */
+	protected AtomicBoolean isWakeUpPending = new AtomicBoolean();
+
+	/**
+	 *
+	 */
+	protected Histogram flushTimes = new Histogram();
+	protected AtomicLong announcedWrites = new AtomicLong();
+	protected AtomicLong coalescedWrites = new AtomicLong();
+	protected AtomicLong earlyFlushes = new AtomicLong();
+
+	/**
+	 * Announces a changed object to the write-behind agent, if there is one.
+	 */
+	public static void announce(Persistent obj) {
+		AgentThread thread = AgentManager.getInstance().getThread(NAME);
+		if (thread != null) {
+			((WriteBehindAgent) thread.getAgent()).addForFlush(obj);
+		}
+	}
+
+	/**
+	 *
+	 */
+	public WriteBehindAgent() {
+		initialize(NAME, SysConfig.getWriteBehindPeriodAsLong());
+		dirtyThreshold = SysConfig.getWriteBehindDirtyThresholdAsInt();
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void addForFlush(Persistent obj) {
+		announcedWrites.incrementAndGet();
+		if (!pendingObjects.add(obj)) {
+			coalescedWrites.incrementAndGet();
+		} else if ((pendingObjects.size() >= dirtyThreshold) && isWakeUpPending.compareAndSet(false, true)) {
+			earlyFlushes.incrementAndGet();
+			wakeUp();
+		}
+	}
+
+	/**
+	 *
+	 */
+	protected void doRun() {
+		flush();
+	}
+
+	/**
+	 * Saves the objects announced since the last flush; of these, only dirty ones get written.
+	 * An object announced again while the flush runs stays pending for the next one.
+	 */
+	protected void flush() {
+		isWakeUpPending.set(false);
+		List<Persistent> flushing = new ArrayList<Persistent>(pendingObjects);
+		pendingObjects.removeAll(flushing);
+		if (flushing.isEmpty()) {
+			return;
+		}
+
+		List<PhotoCase> photoCases = new ArrayList<PhotoCase>();
+		List<Photo> photos = new ArrayList<Photo>();
+		List<User> users = new ArrayList<User>();
+		for (Persistent obj : flushing) {
+			if (obj instanceof PhotoCase) {
+				photoCases.add((PhotoCase) obj);
+			} else if (obj instanceof Photo) {
+				photos.add((Photo) obj);
+			} else if (obj instanceof User) {
+				users.add((User) obj);
+			} else {
+				SysLog.logSysError("cannot write behind object: " + obj.getIdAsString());
+			}
+		}
+
+		long startTime = System.nanoTime();
+		try {
+			PhotoCaseManager.getInstance().savePhotoCases(photoCases);
+			PhotoManager.getInstance().savePhotos(photos);
+			UserManager.getInstance().saveUsers(users);
+		} finally {
+			SessionManager.getThreadLocalSession().returnDatabaseConnection();
+			flushTimes.recordSince(startTime);
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getNoPendingObjects() {
+		return pendingObjects.size();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public Histogram getFlushTimes() {
+		return flushTimes;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getStatisticsAsString() {
+		StringBuffer result = new StringBuffer(256);
+		result.append("pending=").append(getNoPendingObjects());
+		result.append(", announced=").append(announcedWrites.get());
+		result.append(", coalesced=").append(coalescedWrites.get());
+		result.append(", early flushes=").append(earlyFlushes.get());
+		result.append(", flush times: ").append(flushTimes.asNanosSummaryString());
+		return result.toString();
+	}
+
+}
@@ -30,6 +30,11 @@ import org.wahlzeit.webparts.*;
  */
 public abstract class AbstractWebPageHandler extends AbstractWebPartHandler implements WebPageHandler {
 	
+	/**
+	 * Distinguishes entity tags across restarts, as object versions start over after loading
+	 */
+	protected static final long ENTITY_TAG_EPOCH = System.currentTimeMillis();
+	
 	/**
 	 * 
 	 */
@@ -37,6 +42,22 @@ public abstract class AbstractWebPageHandler extends AbstractWebPartHandler impl
 		return makeWebPage(us);
 	}
 	
+	/**
+	 * Pages are not cached by default.
+	 * 
+	 * @methodproperty hook
+	 */
+	public String getEntityTag(UserSession us, String link) {
+		return null;
+	}
+	
+	/**
+	 * @methodproperty hook
+	 */
+	public void handleNotModified(UserSession us) {
+		// do nothing
+	}
+	
 	/**
 	 * 
 	 */
@@ -59,12 +80,18 @@ public abstract class AbstractWebPageHandler extends AbstractWebPartHandler impl
 	/**
 	 * 
 	 */
-	protected void makeWebPageFrame(UserSession us, WebPart page) {
+	protected void makeWebPageFrame(final UserSession us, WebPart page) {
 		page.addString("title", us.cfg().getPageTitle());
 		
 		makeWebPageHeading(us, page);
 		
-		page.addString("footer", us.cfg().getPageFooter(us.getPhotoSize()));
+		final PhotoSize photoSize = us.getPhotoSize();
+		String footerKey = FragmentCache.asKey("footer", us.cfg().getLanguageCode(), photoSize.asInt());
+		page.addWritable("footer", FragmentCache.getInstance().getFragment(footerKey, new FragmentCache.Maker() {
+			public Writable makeWritable() {
+				return Fragment.fromString(us.cfg().getPageFooter(photoSize));
+			}
+		}));
 		page.addString("mission", us.cfg().getPageMission());
 	}
 	
@@ -88,7 +115,7 @@ public abstract class AbstractWebPageHandler extends AbstractWebPartHandler impl
 	/**
 	 * 
 	 */
-	protected void makeWebPageMenu(UserSession us, WebPart page) {
+	protected void makeWebPageMenu(final UserSession us, WebPart page) {
 		Client client = us.getClient();
 		String menu = "";
 		
@@ -99,7 +126,13 @@ public abstract class AbstractWebPageHandler extends AbstractWebPartHandler impl
 		} else if (client.hasUserRights()) {
 			menu = us.cfg().getUserMenu();
 		} else {
-			menu = us.cfg().getGuestMenu();
+			String menuKey = FragmentCache.asKey("guestMenu", us.cfg().getLanguageCode());
+			page.addWritable("menu", FragmentCache.getInstance().getFragment(menuKey, new FragmentCache.Maker() {
+				public Writable makeWritable() {
+					return Fragment.fromString(us.cfg().getGuestMenu());
+				}
+			}));
+			return;
 		}
 		
 		page.addString("menu", menu.toString());
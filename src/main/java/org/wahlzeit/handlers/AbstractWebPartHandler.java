@@ -66,6 +66,20 @@ public abstract class AbstractWebPartHandler implements WebPartHandler {
 		WebPartTemplate tmpl = wpts.getTemplate(us.cfg().getLanguageCode(), name);
 		return new WebPart(tmpl);
 	}
+	
+	/**
+	 * Returns the rendered fragment of a template that has no values filled in, cached per language.
+	 * 
+	 * @methodtype factory
+	 */
+	protected final Writable createCachedWebPart(final UserSession us, final String name) {
+		String key = FragmentCache.asKey(name, us.cfg().getLanguageCode());
+		return FragmentCache.getInstance().getFragment(key, new FragmentCache.Maker() {
+			public Writable makeWritable() {
+				return createWebPart(us, name);
+			}
+		});
+	}
 		
 	/**
 	 * 
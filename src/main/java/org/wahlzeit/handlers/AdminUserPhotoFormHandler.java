@@ -23,6 +23,7 @@ package org.wahlzeit.handlers;
 import java.util.*;
 
 import org.wahlzeit.model.*;
+import org.wahlzeit.services.*;
 import org.wahlzeit.webparts.*;
 
 /**
@@ -69,9 +70,9 @@ public class AdminUserPhotoFormHandler extends AbstractWebFormHandler {
 		PhotoManager pm = PhotoManager.getInstance();
 		pm.savePhoto(photo);
 		
-		StringBuffer sb = UserLog.createActionEntry("AdminUserPhoto");
+		LogEntry sb = UserLog.createActionEntry("AdminUserPhoto");
 		UserLog.addUpdatedObject(sb, "Photo", photo.getId().asString());
-		UserLog.log(sb);
+		UserLog.logAction(sb, photo.getId());
 		
 		us.setMessage(us.cfg().getPhotoUpdateSucceeded());
 
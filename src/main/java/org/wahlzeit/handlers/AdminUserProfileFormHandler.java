@@ -101,9 +101,9 @@ public class AdminUserProfileFormHandler extends AbstractWebFormHandler {
 		user = um.getUserByName(userId);
 		us.setSavedArg("userId", userId);
 
-		StringBuffer sb = UserLog.createActionEntry("AdminUserProfile");
+		LogEntry sb = UserLog.createActionEntry("AdminUserProfile");
 		UserLog.addUpdatedObject(sb, "User", user.getName());
-		UserLog.log(sb);
+		UserLog.logAction(sb);
 		
 		us.setMessage(us.cfg().getProfileUpdateSucceeded());
 
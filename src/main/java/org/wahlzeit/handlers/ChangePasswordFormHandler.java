@@ -22,6 +22,7 @@ package org.wahlzeit.handlers;
 
 import java.util.*;
 
+import org.wahlzeit.agents.WriteBehindAgent;
 import org.wahlzeit.model.AccessRights;
 import org.wahlzeit.model.User;
 import org.wahlzeit.model.UserLog;
@@ -77,6 +78,7 @@ public class ChangePasswordFormHandler extends AbstractWebFormHandler {
 
 		User user = (User) us.getClient();
 		user.setPassword(password);
+		WriteBehindAgent.announce(user);
 		
 		UserLog.logPerformedAction("ChangePassword");
 		
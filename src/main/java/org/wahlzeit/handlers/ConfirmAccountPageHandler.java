@@ -22,6 +22,7 @@ package org.wahlzeit.handlers;
 
 import java.util.*;
 
+import org.wahlzeit.agents.*;
 import org.wahlzeit.model.*;
 import org.wahlzeit.utils.*;
 import org.wahlzeit.webparts.*;
@@ -66,6 +67,7 @@ public class ConfirmAccountPageHandler extends AbstractWebPageHandler {
 			User user = (User) client;
 			if (user.getConfirmationCode() == confirmationCode) {
 				user.setConfirmed();
+				WriteBehindAgent.announce(user);
 			} else {
 				UserManager.getInstance().emailConfirmationRequest(us, user);
 			}
@@ -22,6 +22,7 @@ package org.wahlzeit.handlers;
 
 import java.util.Map;
 
+import org.wahlzeit.agents.WriteBehindAgent;
 import org.wahlzeit.model.AccessRights;
 import org.wahlzeit.model.Photo;
 import org.wahlzeit.model.PhotoCase;
@@ -29,6 +30,7 @@ import org.wahlzeit.model.PhotoCaseManager;
 import org.wahlzeit.model.PhotoStatus;
 import org.wahlzeit.model.UserLog;
 import org.wahlzeit.model.UserSession;
+import org.wahlzeit.services.LogEntry;
 import org.wahlzeit.utils.HtmlUtil;
 import org.wahlzeit.utils.StringUtil;
 import org.wahlzeit.webparts.WebPart;
@@ -93,17 +95,18 @@ public class EditPhotoCaseFormHandler extends AbstractWebFormHandler {
 		}
 
 		photo.setStatus(status);
+		WriteBehindAgent.announce(photo);
 
-		StringBuffer sb = UserLog.createActionEntry("EditPhotoCase");
+		LogEntry sb = UserLog.createActionEntry("EditPhotoCase");
 		UserLog.addUpdatedObject(sb, "Photo", photo.getId().asString());
-		UserLog.log(sb);
+		UserLog.logAction(sb, photo.getId());
 
 		photoCase.setDecided();
 		pcm.removePhotoCase(photoCase);
 		
 		sb = UserLog.createActionEntry("EditPhotoCase");
 		UserLog.addUpdatedObject(sb, "PhotoCase", String.valueOf(photoCase.getId()));
-		UserLog.log(sb);
+		UserLog.log(sb); // same action, recorded above
 
 		return PartUtil.SHOW_PHOTO_CASES_PAGE_NAME;
 	}
@@ -23,6 +23,7 @@ package org.wahlzeit.handlers;
 import java.util.*;
 
 import org.wahlzeit.model.*;
+import org.wahlzeit.services.*;
 import org.wahlzeit.utils.*;
 import org.wahlzeit.webparts.*;
 
@@ -93,9 +94,9 @@ public class EditUserPhotoFormHandler extends AbstractWebFormHandler {
 
 		pm.savePhoto(photo);
 		
-		StringBuffer sb = UserLog.createActionEntry("EditUserPhoto");
+		LogEntry sb = UserLog.createActionEntry("EditUserPhoto");
 		UserLog.addUpdatedObject(sb, "Photo", photo.getId().asString());
-		UserLog.log(sb);
+		UserLog.logAction(sb, photo.getId());
 		
 		us.setTwoLineMessage(us.cfg().getPhotoUpdateSucceeded(), us.cfg().getContinueWithShowUserHome());
 
@@ -22,6 +22,7 @@ package org.wahlzeit.handlers;
 
 import java.util.*;
 
+import org.wahlzeit.agents.*;
 import org.wahlzeit.model.*;
 import org.wahlzeit.services.*;
 import org.wahlzeit.utils.*;
@@ -98,9 +99,11 @@ public class EditUserProfileFormHandler extends AbstractWebFormHandler {
 			user.setLanguage(langValue);
 		}
 		
-		StringBuffer sb = UserLog.createActionEntry("EditUserProfile");
+		WriteBehindAgent.announce(user);
+		
+		LogEntry sb = UserLog.createActionEntry("EditUserProfile");
 		UserLog.addUpdatedObject(sb, "User", user.getName());
-		UserLog.log(sb);
+		UserLog.logAction(sb);
 		
 		us.setTwoLineMessage(us.cfg().getProfileUpdateSucceeded(), us.cfg().getContinueWithShowUserHome());
 
@@ -109,9 +109,9 @@ public class FlagPhotoFormHandler extends AbstractWebFormHandler {
 		
 		us.setEmailAddress(from);
 
-		StringBuffer sb = UserLog.createActionEntry("FlagPhoto");
+		LogEntry sb = UserLog.createActionEntry("FlagPhoto");
 		UserLog.addUpdatedObject(sb, "Photo", photo.getId().asString());
-		UserLog.log(sb);
+		UserLog.logAction(sb, photo.getId());
 		
 		us.setTwoLineMessage(us.cfg().getModeratorWasInformed(), us.cfg().getContinueWithShowPhoto());
 		
@@ -8,6 +8,7 @@ package org.wahlzeit.handlers;
 
 import java.util.*;
 
+import org.wahlzeit.agents.WriteBehindAgent;
 import org.wahlzeit.model.AccessRights;
 import org.wahlzeit.model.User;
 import org.wahlzeit.model.UserLog;
@@ -77,6 +78,7 @@ public class LoginFormHandler extends AbstractWebFormHandler {
 			if (us.hasConfirmationCode()) {
 				if (user.getConfirmationCode() == us.getConfirmationCode()) {
 					user.setConfirmed();
+					WriteBehindAgent.announce(user);
 					us.setTwoLineMessage(us.cfg().getConfirmAccountSucceeded(), us.cfg().getContinueWithShowUserHome());
 				} else {
 					UserManager.getInstance().emailConfirmationRequest(us, user);
@@ -25,6 +25,7 @@ import java.util.*;
 import org.wahlzeit.agents.Agent;
 import org.wahlzeit.agents.AgentManager;
 import org.wahlzeit.agents.NotifyAboutPraiseAgent;
+import org.wahlzeit.agents.WriteBehindAgent;
 import org.wahlzeit.model.AccessRights;
 import org.wahlzeit.model.Photo;
 import org.wahlzeit.model.PhotoManager;
@@ -82,6 +83,7 @@ public class PraisePhotoFormHandler extends AbstractWebFormHandler {
 				photo.addToPraise(value);
 				us.addPraisedPhoto(photo);
 				wasPraised = true;
+				WriteBehindAgent.announce(photo);
 				if (photo.getOwnerNotifyAboutPraise()) {
 					Agent agent = AgentManager.getInstance().getAgent(NotifyAboutPraiseAgent.NAME);
 					NotifyAboutPraiseAgent notify = (NotifyAboutPraiseAgent) agent; 
@@ -92,7 +94,7 @@ public class PraisePhotoFormHandler extends AbstractWebFormHandler {
 		
 		us.setPriorPhoto(photo);
 
-		UserLog.logPerformedAction(wasPraised ? "PraisePhoto" : "SkipPhoto");
+		UserLog.logPerformedAction(wasPraised ? "PraisePhoto" : "SkipPhoto", photo.getId());
 		
 		return PartUtil.SHOW_PHOTO_PAGE_NAME;
 	}
@@ -69,10 +69,10 @@ public class SetOptionsFormHandler extends AbstractWebFormHandler {
 		PhotoSize photoValue = PhotoSize.getFromString(photoSize);
 		us.setPhotoSize(photoValue);
 		
-		StringBuffer sb = UserLog.createActionEntry("SetOptions");
+		LogEntry sb = UserLog.createActionEntry("SetOptions");
 		UserLog.addField(sb, "language", language);
 		UserLog.addField(sb, "photoSize", photoSize);
-		UserLog.log(sb);
+		UserLog.logAction(sb);
 		
 		String msg1 = us.cfg().getOptionsWereSet();
 		String msg2 = us.cfg().getNoteMaximumPhotoSize();
@@ -20,7 +20,7 @@
 
 package org.wahlzeit.handlers;
 
-import java.util.Map;
+import java.util.*;
 
 import org.wahlzeit.main.*;
 import org.wahlzeit.model.*;
@@ -33,6 +33,12 @@ import org.wahlzeit.webparts.*;
  */
 public class ShowAdminPageHandler extends AbstractWebPageHandler implements WebFormHandler {
 	
+	/**
+	 * 
+	 */
+	public static final int MAX_STATEMENTS = 25;
+	public static final int MAX_STATEMENT_SOURCES = 3;
+	
 	/**
 	 * 
 	 */
@@ -58,6 +64,61 @@ public class ShowAdminPageHandler extends AbstractWebPageHandler implements WebF
 			page.addStringFromArgs(args, "photoId");
 			page.addWritable("object", makeAdminUserPhoto(us));
 		}
+		
+		page.addString("statements", makeStatementTable());
+	}
+	
+	/**
+	 * Lists the statements that took the most time, with the requests that executed them most often.
+	 * A request executing a statement many times per request hints at an N+1 pattern.
+	 */
+	protected String makeStatementTable() {
+		List<StatementStatistics.Entry> entries = StatementStatistics.getInstance().getEntriesByTotalTime(MAX_STATEMENTS);
+		if (entries.isEmpty()) {
+			return HtmlUtil.asP("-");
+		}
+		
+		StringBuffer result = new StringBuffer(4096);
+		result.append("<table class=\"form\" width=\"960\" style=\"font-size: smaller;\">");
+		result.append("<tr><th align=\"left\">Query</th><th>Count</th><th>Total</th><th>Mean</th><th>p90</th><th>Max</th><th>Rows</th><th align=\"left\">Executed by (per request)</th></tr>");
+		for (StatementStatistics.Entry entry : entries) {
+			Histogram times = entry.getTimes();
+			result.append("<tr><td align=\"left\">").append(HtmlUtil.maskForWeb(entry.getQuery())).append("</td>");
+			result.append("<td align=\"right\">").append(entry.getCount()).append("</td>");
+			result.append("<td align=\"right\">").append(Histogram.asMillisString(times.getSum())).append("</td>");
+			result.append("<td align=\"right\">").append(Histogram.asMillisString(times.getMean())).append("</td>");
+			result.append("<td align=\"right\">").append(Histogram.asMillisString(times.getValueAtPercentile(90.0))).append("</td>");
+			result.append("<td align=\"right\">").append(Histogram.asMillisString(times.getMax())).append("</td>");
+			result.append("<td align=\"right\">").append(entry.getNoRows()).append("</td>");
+			result.append("<td align=\"left\">").append(makeStatementSources(entry)).append("</td></tr>");
+		}
+		result.append("</table>");
+		
+		return result.toString();
+	}
+	
+	/**
+	 * 
+	 */
+	protected String makeStatementSources(StatementStatistics.Entry entry) {
+		StringBuffer result = new StringBuffer(128);
+		int i = 0;
+		for (Map.Entry<String, Long> source : entry.getSourceCounts().entrySet()) {
+			if (i++ == MAX_STATEMENT_SOURCES) {
+				result.append(", ...");
+				break;
+			} else if (i > 1) {
+				result.append(", ");
+			}
+			
+			result.append(HtmlUtil.maskForWeb(source.getKey())).append(": ").append(source.getValue());
+			long noRequests = RequestStatistics.getInstance().getNoRequests(source.getKey());
+			if (noRequests > 0) {
+				result.append(String.format(" (%.1f)", source.getValue() / (double) noRequests));
+			}
+		}
+		
+		return result.toString();
 	}
 	
 	/**
@@ -105,6 +166,8 @@ public class ShowAdminPageHandler extends AbstractWebPageHandler implements WebF
 			result = performAdminUserProfileRequest(us, args);
 		} else if (us.isFormType(args, "adminPhoto")) {
 			result = performAdminUserPhotoRequest(us, args);
+		} else if (us.isFormType(args, "resetStatements")) {
+			result = performResetStatementsRequest(us);
 		} else if (us.isFormType(args, "saveAll")) {
 			result = performSaveAllRequest(us);
 		} else if (us.isFormType(args, "shutdown")) {
@@ -140,6 +203,16 @@ public class ShowAdminPageHandler extends AbstractWebPageHandler implements WebF
 		return PartUtil.SHOW_ADMIN_PAGE_NAME;
 	}
 
+	/**
+	 * Resets request statistics as well, so that executions per request remain comparable.
+	 */
+	protected String performResetStatementsRequest(UserSession us) {
+		SysLog.logSysInfo("resetting statement and request statistics");
+		StatementStatistics.getInstance().clear();
+		RequestStatistics.getInstance().clear();
+		return PartUtil.SHOW_ADMIN_PAGE_NAME;
+	}
+
 	/**
 	 * 
 	 */
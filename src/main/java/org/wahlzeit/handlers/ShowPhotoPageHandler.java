@@ -67,6 +67,36 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
 		return link;
 	}
 	
+	/**
+	 * Tags a visible photo page with everything that goes into it: the photo and its version, the client's rights,
+	 * language, photo size, and filter, and the template generation. Pages showing a prior photo are not tagged.
+	 */
+	public String getEntityTag(UserSession us, String link) {
+		Photo photo = us.getPhoto();
+		if ((photo == null) || !photo.isVisible() || (us.getPriorPhoto() != null) || !link.equals(photo.getId().asString())) {
+			return null;
+		}
+		
+		String filter = HttpUtil.asDigestString(us.getPhotoFilter().getFilterConditions().toString());
+		return HttpUtil.asEntityTag(
+			photo.getId().asString(),
+			photo.getVersion(),
+			us.getClient().getRights().asInt(),
+			us.cfg().getLanguageCode(),
+			us.getPhotoSize().asInt(),
+			filter,
+			WebPartTemplateService.getInstance().getGeneration(),
+			Long.toHexString(ENTITY_TAG_EPOCH)
+		);
+	}
+	
+	/**
+	 * The client still shows the photo, so it counts as displayed, as in makeWebPageBody().
+	 */
+	public void handleNotModified(UserSession us) {
+		us.addDisplayedPhoto(us.getPhoto());
+	}
+	
 	/**
 	 * 
 	 */
@@ -111,14 +141,14 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
 		if (photo != null) {
 			parts.append(makePriorPhotoInfo(us));
 		} else {
-			parts.append(createWebPart(us, PartUtil.BLURP_INFO_FILE));
+			parts.append(createCachedWebPart(us, PartUtil.BLURP_INFO_FILE));
 		}
 
 		WebFormHandler handler = getFormHandler(PartUtil.FILTER_PHOTOS_FORM_NAME);
 		Writable filterPhotos = handler.makeWebPart(us);
 		parts.append(filterPhotos);
 
-		parts.append(createWebPart(us, PartUtil.LINKS_INFO_FILE));
+		parts.append(createCachedWebPart(us, PartUtil.LINKS_INFO_FILE));
 		
 		page.addWritable("sidebar", parts);
 	}
@@ -154,12 +184,16 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
 	/**
 	 * 
 	 */
-	protected void makePhotoCaption(UserSession us, WebPart page) {
-		Photo photo = us.getPhoto();
-		// String photoId = photo.getId().asString();
-			
-		WebPart caption = createWebPart(us, PartUtil.CAPTION_INFO_FILE);
-		caption.addString(Photo.CAPTION, getPhotoCaption(us, photo));
+	protected void makePhotoCaption(final UserSession us, WebPart page) {
+		final Photo photo = us.getPhoto();
+		String key = FragmentCache.asKey(PartUtil.CAPTION_INFO_FILE, us.cfg().getLanguageCode(), photo.getId().asString(), photo.getVersion());
+		Writable caption = FragmentCache.getInstance().getFragment(key, new FragmentCache.Maker() {
+			public Writable makeWritable() {
+				WebPart result = createWebPart(us, PartUtil.CAPTION_INFO_FILE);
+				result.addString(Photo.CAPTION, getPhotoCaption(us, photo));
+				return result;
+			}
+		});
 		page.addWritable(Photo.CAPTION, caption);
 	}
 
@@ -89,7 +89,7 @@ public class ShowUserPhotoFormHandler extends AbstractWebFormHandler {
 		} else if (us.isFormType(args, "select")) {
 			user.setUserPhoto(photo);
 			userManager.saveUser(user);
-			UserLog.logPerformedAction("SelectUserPhoto");
+			UserLog.logPerformedAction("SelectUserPhoto", photo.getId());
 		} else if (us.isFormType(args, "delete")) {
 			photo.setStatus(photo.getStatus().asDeleted(true));
 			PhotoManager.getInstance().savePhoto(photo);
@@ -97,7 +97,7 @@ public class ShowUserPhotoFormHandler extends AbstractWebFormHandler {
 				user.setUserPhoto(null);
 			}
 			userManager.saveUser(user);
-			UserLog.logPerformedAction("DeleteUserPhoto");
+			UserLog.logPerformedAction("DeleteUserPhoto", photo.getId());
 		}
 		
 		return result;
@@ -23,6 +23,7 @@ package org.wahlzeit.handlers;
 import java.util.*;
 
 import org.wahlzeit.model.*;
+import org.wahlzeit.services.*;
 import org.wahlzeit.utils.*;
 import org.wahlzeit.webparts.*;
 
@@ -115,9 +116,9 @@ public class SignupFormHandler extends AbstractWebFormHandler {
 		
 		userManager.saveUser(user);
 		
-		StringBuffer sb = UserLog.createActionEntry("Signup");
+		LogEntry sb = UserLog.createActionEntry("Signup");
 		UserLog.addCreatedObject(sb, "User", userName);
-		UserLog.log(sb);
+		UserLog.logAction(sb);
 		
 		us.setTwoLineMessage(us.cfg().getConfirmationEmailWasSent(), us.cfg().getContinueWithShowUserHome());
 
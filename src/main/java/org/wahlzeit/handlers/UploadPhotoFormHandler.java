@@ -48,6 +48,35 @@ public class UploadPhotoFormHandler extends AbstractWebFormHandler {
 		part.addStringFromArgs(args, UserSession.MESSAGE);
 
 		part.maskAndAddStringFromArgs(args, Photo.TAGS);
+		
+		part.addString("uploads", makeRecentUploads(us));
+	}
+	
+	/**
+	 * Lists the user's latest uploads with the status of their processing.
+	 */
+	protected String makeRecentUploads(UserSession us) {
+		Client client = us.getClient();
+		if (!(client instanceof User)) {
+			return "";
+		}
+
+		List<UploadJob> jobs = UploadJobManager.getInstance().getRecentJobs(((User) client).getName());
+		if (jobs.isEmpty()) {
+			return "";
+		}
+		
+		StringBuffer result = new StringBuffer(256);
+		result.append(us.cfg().getRecentUploads());
+		for (int i = 0; i < jobs.size(); i++) {
+			UploadJob job = jobs.get(i);
+			String id = job.getPhotoId().asString();
+			result.append((i == 0) ? " " : ", ");
+			result.append((job.getStatus() == UploadJobStatus.DONE) ? HtmlUtil.asHref(id + ".html", id) : id);
+			result.append(" (").append(us.cfg().asValueString(job.getStatus())).append(")");
+		}
+		
+		return HtmlUtil.asP(result.toString());
 	}
 	
 	/**
@@ -60,6 +89,16 @@ public class UploadPhotoFormHandler extends AbstractWebFormHandler {
 			us.setMessage(us.cfg().getInputIsInvalid());
 			return PartUtil.UPLOAD_PHOTO_PAGE_NAME;
 		}
+
+		if (args.get(UploadSpooler.FILE_TOO_LARGE) != null) {
+			us.setMessage(us.cfg().getPhotoUploadTooLarge());
+			return PartUtil.UPLOAD_PHOTO_PAGE_NAME;
+		}
+
+		if (args.get(UploadSpooler.FILE_NAME) == null) {
+			us.setMessage(us.cfg().getPhotoUploadFailed());
+			return PartUtil.UPLOAD_PHOTO_PAGE_NAME;
+		}
 		
 		// dummy data that should come from ui
 		double location_x = 1;
@@ -72,12 +111,13 @@ public class UploadPhotoFormHandler extends AbstractWebFormHandler {
 
 		try {
 			BuildingPhotoManager pm = BuildingPhotoManager.getInstance();
-			String sourceFileName = us.getAsString(args, "fileName");
-			File file = new File(sourceFileName);
-			BuildingPhoto photo = pm.createPhoto(file);
+			String sourceFileName = us.getAsString(args, UploadSpooler.FILE_NAME);
+			String sourceFileHash = us.getAsString(args, UploadSpooler.FILE_HASH);
+			PhotoId id = PhotoId.getNextId();
+			String targetFileName = SysConfig.getBackupDir().asString() + File.separator + id.asString();
+			createBackup(sourceFileName, sourceFileHash, id.asString());
 
-			String targetFileName = SysConfig.getBackupDir().asString() + photo.getId().asString();
-			createBackup(sourceFileName, targetFileName);
+			BuildingPhoto photo = pm.createProcessingPhoto(id);
 		
 			User user = (User) us.getClient();
 			user.addPhoto(photo); 
@@ -93,17 +133,23 @@ public class UploadPhotoFormHandler extends AbstractWebFormHandler {
 				photo.setBuilding(building);
 			} catch (IllegalArgumentException e) {
 				SysLog.logThrowable(e);
+				discardUpload(pm, photo, targetFileName);
 				us.setMessage(us.cfg().getPhotoUploadFailed() + " (" + e.getMessage() + ")");
 				return PartUtil.UPLOAD_PHOTO_PAGE_NAME;
 			}
 
 			pm.savePhoto(photo);
+			if (!UploadJobManager.getInstance().addJob(new UploadJob(photo, targetFileName))) {
+				discardUpload(pm, photo, targetFileName);
+				us.setMessage(us.cfg().getPhotoUploadFailed());
+				return PartUtil.UPLOAD_PHOTO_PAGE_NAME;
+			}
 
-			StringBuffer sb = UserLog.createActionEntry("UploadPhoto");
+			LogEntry sb = UserLog.createActionEntry("UploadPhoto");
 			UserLog.addCreatedObject(sb, "Photo", photo.getId().asString());
-			UserLog.log(sb);
+			UserLog.logAction(sb, photo.getId());
 			
-			us.setTwoLineMessage(us.cfg().getPhotoUploadSucceeded(), us.cfg().getKeepGoing());
+			us.setTwoLineMessage(us.cfg().getPhotoUploadProcessing(), us.cfg().getKeepGoing());
 		} catch (Exception ex) {
 			SysLog.logThrowable(ex);
 			us.setMessage(us.cfg().getPhotoUploadFailed());
@@ -113,18 +159,20 @@ public class UploadPhotoFormHandler extends AbstractWebFormHandler {
 	}
 	
 	/**
-	 * 
+	 * Deletes the photo of an upload that cannot be processed, and its original in the backup directory.
+	 * The content file the original links to may be shared with other uploads and stays.
 	 */
-	protected void createBackup(String sourceName, String targetName) {
-		try {
-			File sourceFile = new File(sourceName);
-			InputStream inputStream = new FileInputStream(sourceFile);
-			File targetFile = new File(targetName);
-			OutputStream outputStream = new FileOutputStream(targetFile);
-			// @FIXME IO.copy(inputStream, outputStream);
-		} catch (Exception ex) {
-			SysLog.logSysInfo("could not create backup file of photo");
-			SysLog.logThrowable(ex);			
-		}
+	protected void discardUpload(PhotoManager pm, Photo photo, String backupFileName) {
+		photo.setStatus(PhotoStatus.DELETED);
+		pm.savePhoto(photo);
+		new File(backupFileName).delete();
+	}
+
+	/**
+	 * Moves the uploaded file to the backup directory, where it stays as the original the image files are made from.
+	 * Uploads of the same content share one file there.
+	 */
+	protected void createBackup(String sourceName, String sourceHash, String targetName) throws IOException {
+		UploadSpooler.getInstance().storeFile(new File(sourceName), sourceHash, SysConfig.getBackupDir().asString(), targetName);
 	}
 }
@@ -34,5 +34,16 @@ public interface WebPageHandler extends WebPartHandler {
 	 */
 	public WebPart makeWebPart(UserSession us);
 	
+	/**
+	 * Returns a strong entity tag for the page as makeWebPart() would make it, or null if the page is not to be cached.
+	 * Called after handleGet() accepted link without redirect.
+	 */
+	public String getEntityTag(UserSession us, String link);
+	
+	/**
+	 * Called instead of makeWebPart() if the client's copy of the page is current, see getEntityTag().
+	 */
+	public void handleNotModified(UserSession us);
+	
 	
 }
@@ -48,6 +48,7 @@ public abstract class AbstractMain {
 	 */
 	protected void startUp(String rootDir) throws Exception {
 		SysConfig.setInstance(new SysConfig(rootDir, DB_HOST));
+		LogWriter.setInstance(new LogWriter(SysConfig.getLogBufferSizeAsInt(), SysConfig.getLogSamplingAsString()));
 		
 		boolean dbAvailable = DatabaseConnection.waitForDatabaseIsReady(30, 1000);
 		if (!dbAvailable) {
@@ -62,7 +63,13 @@ public abstract class AbstractMain {
 	 * 
 	 */
 	protected void shutDown() throws Exception {
+		if (mainSession != null) {
+			mainSession.returnDatabaseConnection();
+		}
+		
+		DatabaseConnection.dropPool();
 		SysConfig.dropInstance();
+		LogWriter.dropInstance();
 	}
 	
 }
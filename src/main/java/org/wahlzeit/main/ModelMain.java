@@ -42,21 +42,48 @@ public abstract class ModelMain extends AbstractMain {
 		if (!hasGlobals()) {
 			tearDownDatabase();
 			setUpDatabase();
+		} else if (!hasTable("upload_jobs")) { // database predates upload jobs
+			runScript("CreateUploadJobs.sql");
 		}
 		
  		loadGlobals();
 
 		PhotoFactory.initialize();
+		
+		if (SysConfig.isWarmUpCaches()) {
+			warmUpCaches();
+		}
+	}
+	
+	/**
+	 * Loads all photos and users in bulk; users get their photos from the owner index built while loading photos.
+	 */
+	protected void warmUpCaches() {
+		long startTime = System.nanoTime();
+		
+		PhotoManager photoManager = PhotoManager.getInstance();
+		photoManager.loadPhotosInBulk();
+		UserManager.getInstance().loadUsersInBulk();
+		photoManager.dropOwnerIndex();
+		
+		SysLog.logSysInfo("warmed up caches in " + Histogram.asMillisString(System.nanoTime() - startTime));
 	}
 	
 	/**
 	 * 
 	 */
 	protected boolean hasGlobals() throws SQLException {
+		return hasTable("globals");
+	}
+	
+	/**
+	 * 
+	 */
+	protected boolean hasTable(String tableName) throws SQLException {
 		DatabaseConnection dbc = mainSession.ensureDatabaseConnection();
 		Connection conn = dbc.getRdbmsConnection();
 		DatabaseMetaData dbm = conn.getMetaData();
-		ResultSet tables = dbm.getTables(null, null, "globals", null);
+		ResultSet tables = dbm.getTables(null, null, tableName, null);
 		return tables.next();
 	}
 	
@@ -74,6 +101,7 @@ public abstract class ModelMain extends AbstractMain {
 	 */
 	public void setUpDatabase() throws SQLException {
 		runScript("CreateTables.sql");
+		runScript("CreateUploadJobs.sql");
 	}
 	
 	/**
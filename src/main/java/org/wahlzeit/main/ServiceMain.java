@@ -20,6 +20,8 @@
 
 package org.wahlzeit.main;
 
+import java.io.*;
+
 import org.wahlzeit.agents.AgentManager;
 import org.wahlzeit.handlers.*;
 import org.wahlzeit.model.*;
@@ -88,6 +90,12 @@ public class ServiceMain extends ModelMain {
 		configureWebPartHandlers();
 		configureLanguageModels();
 
+		if (SysConfig.isLazyPhotoSizes()) {
+			PhotoSizeCache.getInstance().loadCachedFiles();
+		}
+		UploadSpooler.getInstance().discardLeftoverFiles();
+		UploadJobManager.getInstance().resumePendingJobs();
+
 		AgentManager am = AgentManager.getInstance();
 		am.startAllThreads();
 	}
@@ -96,8 +104,15 @@ public class ServiceMain extends ModelMain {
 	 * 
 	 */
 	public void shutDown() throws Exception {
+		RequestExecutor.dropInstance();
+		
 		AgentManager am = AgentManager.getInstance();
 		am.stopAllThreads();
+		
+		WebPartTemplateService.getInstance().stopWatching();
+		UploadJobManager.getInstance().shutDown();
+		PhotoResizer.getInstance().shutDown();
+		ActionLog.dropInstance();
 				
 		super.shutDown();
 	}
@@ -107,7 +122,17 @@ public class ServiceMain extends ModelMain {
 	 */
 	public void configureWebPartTemplateService() {
 		ConfigDir templatesDir = SysConfig.getTemplatesDir();
-		WebPartTemplateService.getInstance().setTemplatesDir(templatesDir);
+		WebPartTemplateService wpts = WebPartTemplateService.getInstance();
+		wpts.setTemplatesDir(templatesDir);
+
+		try {
+			wpts.loadAllTemplates();
+			if (SysConfig.isWatchTemplates()) {
+				wpts.startWatching();
+			}
+		} catch (IOException ioex) {
+			SysLog.logThrowable(ioex);
+		}
 	}
 	
 	/**
@@ -543,6 +543,27 @@ public abstract class AbstractModelConfig extends AbstractConfig implements Mode
 		return doGetValue("PhotoUploadSucceeded"); 
 	}
 
+	/**
+	 * 
+	 */
+	public String getPhotoUploadProcessing() { 
+		return doGetValue("PhotoUploadProcessing"); 
+	}
+
+	/**
+	 * 
+	 */
+	public String getPhotoUploadTooLarge() { 
+		return doGetValue("PhotoUploadTooLarge"); 
+	}
+
+	/**
+	 * 
+	 */
+	public String getRecentUploads() { 
+		return doGetValue("RecentUploads"); 
+	}
+
 	/**
 	 * 
 	 */
@@ -0,0 +1,256 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.time.*;
+import java.time.format.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import org.wahlzeit.services.*;
+
+/**
+ * The ActionLog records user actions as fixed-width binary records, for analysis by tools like AnalyzeActionLog.
+ * Records are appended to memory-mapped segment files of ACTION_LOG_SEGMENT_SIZE bytes, named by day and number,
+ * for example actions-2009-07-01.0.bin; a new segment starts every day and whenever one is full.
+ * A record is RECORD_SIZE bytes: timestamp (long, millis), action (int), photo id (int), user id (int),
+ * and hash of the session name (int), big-endian. Unused space at the end of a segment is zero.
+ */
+public class ActionLog {
+
+	/**
+	 * Layout of a record
+	 */
+	public static final int RECORD_SIZE = 24;
+	public static final int TIMESTAMP_OFFSET = 0;
+	public static final int ACTION_OFFSET = 8;
+	public static final int PHOTO_ID_OFFSET = 12;
+	public static final int USER_ID_OFFSET = 16;
+	public static final int SESSION_OFFSET = 20;
+
+	/**
+	 *
+	 */
+	public static final String FILE_PREFIX = "actions-";
+	public static final String FILE_SUFFIX = ".bin";
+
+	/**
+	 *
+	 */
+	protected static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+	/**
+	 *
+	 */
+	protected static ActionLog instance = null;
+
+	/**
+	 *
+	 */
+	public static synchronized ActionLog getInstance() {
+		if (instance == null) {
+			instance = new ActionLog(SysConfig.getActionLogDir().asString(), SysConfig.getActionLogSegmentSizeAsInt());
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Closes the current segment; a later action opens a new ActionLog.
+	 */
+	public static synchronized void dropInstance() {
+		if (instance != null) {
+			instance.close();
+			instance = null;
+		}
+	}
+
+	/**
+	 *
+	 */
+	protected File dir;
+	protected int segmentSize;
+
+	/**
+	 * Current segment, if any
+	 */
+	protected File segmentFile = null;
+	protected MappedByteBuffer segment = null;
+	protected int position = 0;
+	protected long segmentEndTime = 0;
+
+	/**
+	 *
+	 */
+	protected AtomicLong noRecords = new AtomicLong();
+	protected AtomicLong noSegments = new AtomicLong();
+	protected AtomicLong noFailures = new AtomicLong();
+
+	/**
+	 *
+	 */
+	public ActionLog(String myDir, int mySegmentSize) {
+		dir = new File(myDir);
+		segmentSize = Math.max(RECORD_SIZE, mySegmentSize - (mySegmentSize % RECORD_SIZE));
+	}
+
+	/**
+	 * Records action of the thread's session, with photoId or PhotoId.NULL_ID.
+	 *
+	 * @methodtype command
+	 */
+	public void record(UserAction action, PhotoId photoId) {
+		int userId = 0;
+		int sessionHash = 0;
+		Session session = SessionManager.getThreadLocalSession();
+		if (session != null) {
+			sessionHash = session.getName().hashCode();
+			if (session instanceof UserSession) {
+				Client client = ((UserSession) session).getClient();
+				if (client instanceof User) {
+					userId = ((User) client).getId();
+				}
+			}
+		}
+
+		record(System.currentTimeMillis(), action, photoId.asInt(), userId, sessionHash);
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public synchronized void record(long timestamp, UserAction action, int photoId, int userId, int sessionHash) {
+		try {
+			if ((segment == null) || (timestamp >= segmentEndTime) || (position + RECORD_SIZE > segment.capacity())) {
+				openSegment(timestamp);
+			}
+
+			segment.putInt(position + ACTION_OFFSET, action.asInt());
+			segment.putInt(position + PHOTO_ID_OFFSET, photoId);
+			segment.putInt(position + USER_ID_OFFSET, userId);
+			segment.putInt(position + SESSION_OFFSET, sessionHash);
+			segment.putLong(position + TIMESTAMP_OFFSET, timestamp); // last, as a zero timestamp ends the records
+			position += RECORD_SIZE;
+			noRecords.incrementAndGet();
+		} catch (IOException ioex) {
+			noFailures.incrementAndGet();
+			SysLog.logThrowable(ioex);
+			segment = null;
+		}
+	}
+
+	/**
+	 * Maps the last segment of timestamp's day if it has room, or else a new one.
+	 *
+	 * @methodtype command
+	 */
+	protected void openSegment(long timestamp) throws IOException {
+		close();
+
+		LocalDate day = Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault()).toLocalDate();
+		segmentEndTime = day.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		Files.createDirectories(dir.toPath());
+
+		String dayPrefix = FILE_PREFIX + day.format(DAY_FORMATTER) + ".";
+		int segmentNo = 0;
+		while (new File(dir, dayPrefix + (segmentNo + 1) + FILE_SUFFIX).exists()) {
+			segmentNo++;
+		}
+
+		while (true) {
+			segmentFile = new File(dir, dayPrefix + segmentNo + FILE_SUFFIX);
+			try (FileChannel channel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				long size = Math.max(channel.size(), segmentSize);
+				segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size - (size % RECORD_SIZE));
+			}
+
+			position = getNoRecords(segment) * RECORD_SIZE;
+			if (position + RECORD_SIZE <= segment.capacity()) {
+				noSegments.incrementAndGet();
+				return;
+			}
+			segmentNo++;
+		}
+	}
+
+	/**
+	 * Writes the current segment to disk and unmaps it.
+	 *
+	 * @methodtype command
+	 */
+	public synchronized void close() {
+		if (segment != null) {
+			segment.force();
+			segment = null;
+		}
+	}
+
+	/**
+	 * Returns the number of records in a segment, by binary search for the first zero timestamp.
+	 *
+	 * @methodtype get
+	 */
+	public static int getNoRecords(ByteBuffer segment) {
+		int low = 0;
+		int high = segment.capacity() / RECORD_SIZE;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (segment.getLong(middle * RECORD_SIZE + TIMESTAMP_OFFSET) != 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * Returns the segment files in dir, oldest first.
+	 *
+	 * @methodtype get
+	 */
+	public static List<File> getSegmentFiles(File dir) {
+		List<File> result = new ArrayList<File>();
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				String name = file.getName();
+				if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX)) {
+					result.add(file);
+				}
+			}
+		}
+
+		Collections.sort(result, new Comparator<File>() {
+			public int compare(File f1, File f2) {
+				String[] parts1 = f1.getName().split("\\.");
+				String[] parts2 = f2.getName().split("\\.");
+				int result = parts1[0].compareTo(parts2[0]); // by day
+				return (result != 0) ? result : Integer.compare(Integer.parseInt(parts1[1]), Integer.parseInt(parts2[1]));
+			}
+		});
+
+		return result;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getStatisticsAsString() {
+		StringBuffer result = new StringBuffer(128);
+		result.append("records=").append(noRecords.get());
+		result.append(", segments=").append(noSegments.get());
+		result.append(", failures=").append(noFailures.get());
+		return result.toString();
+	}
+
+}
@@ -22,5 +22,10 @@ public class BuildingPhotoManager extends PhotoManager {
     public BuildingPhoto createPhoto(File file) throws Exception {
         return (BuildingPhoto) super.createPhoto(file);
     }
+
+    @Override
+    public BuildingPhoto createProcessingPhoto(PhotoId id) {
+        return (BuildingPhoto) super.createProcessingPhoto(id);
+    }
     
 }
@@ -6,7 +6,7 @@ import org.wahlzeit.utils.Preconditions;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.Map;
 import java.util.Objects;
 
@@ -16,7 +16,7 @@ import java.util.Objects;
 public class CartesianCoordinate extends AbstractCoordinate {
     // Because we are value objects hashCode() and equals() work on reference identity.
     // However for this cache we need to compare the actually attribute vales therefore we need the ValueHolder class
-    private static final Map<ValueHolder, CartesianCoordinate> sharedObjectsCache = new HashMap<>();
+    private static final Map<ValueHolder, CartesianCoordinate> sharedObjectsCache = new ConcurrentHashMap<>();
 
     public static final CartesianCoordinate ORIGIN = get(0, 0, 0);
     
@@ -143,6 +143,9 @@ public interface ModelConfig extends Configuration {
 	// UPLOAD_PHOTO_FORM
 	public String getPhotoUploadFailed();
 	public String getPhotoUploadSucceeded();
+	public String getPhotoUploadProcessing();
+	public String getPhotoUploadTooLarge();
+	public String getRecentUploads();
 
 	// LOGOUT_PAGE
 	public String getLogoutSucceeded();
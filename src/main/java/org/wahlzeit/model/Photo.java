@@ -22,6 +22,7 @@ package org.wahlzeit.model;
 
 import java.sql.*;
 import java.net.*;
+import java.util.*;
 
 import org.wahlzeit.services.*;
 import org.wahlzeit.utils.*;
@@ -109,6 +110,11 @@ public class Photo extends DataObject {
 	
 	protected Location location = null;
 	
+	/**
+	 * The rows of this photo in the tags table as of the last save; null if unknown
+	 */
+	protected Set<String> savedTagRows = Collections.emptySet();
+	
 	/**
 	 * 
 	 */
@@ -132,6 +138,7 @@ public class Photo extends DataObject {
 	 * @methodtype constructor
 	 */
 	public Photo(ResultSet rset) throws SQLException {
+		savedTagRows = null;
 		readFrom(rset);
 	}
 
@@ -506,6 +513,22 @@ public class Photo extends DataObject {
 		incWriteCount();
 	}
 	
+	/**
+	 * 
+	 * @methodtype get
+	 */
+	public Set<String> getSavedTagRows() {
+		return savedTagRows;
+	}
+	
+	/**
+	 * 
+	 * @methodtype set
+	 */
+	public void setSavedTagRows(Set<String> newSavedTagRows) {
+		savedTagRows = newSavedTagRows;
+	}
+	
 	/**
 	 * 
 	 * @methodtype get
@@ -22,6 +22,7 @@ package org.wahlzeit.model;
 
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.wahlzeit.services.*;
 
@@ -33,7 +34,7 @@ public class PhotoCaseManager extends ObjectManager {
 	/**
 	 * 
 	 */
-	protected Map<CaseId, PhotoCase> openPhotoCases = new HashMap<CaseId, PhotoCase>();
+	protected Map<CaseId, PhotoCase> openPhotoCases = new ConcurrentHashMap<CaseId, PhotoCase>();
 
 	/**
 	 * 
@@ -145,9 +146,21 @@ public class PhotoCaseManager extends ObjectManager {
 	 * @methodtype command
 	 */
 	public void savePhotoCases() {
+		savePhotoCases(openPhotoCases.values());
+	}
+	
+	/**
+	 * Saves the dirty ones of the given photo cases.
+	 * 
+	 * @methodtype command
+	 */
+	public void savePhotoCases(Collection<PhotoCase> photoCases) {
+		if (photoCases.isEmpty()) {
+			return;
+		}
+		
 		try {
-			PreparedStatement stmt = getUpdatingStatement("SELECT * FROM cases WHERE id = ?");
-			updateObjects(openPhotoCases.values(), stmt);
+			updateObjectsInBatches(photoCases, "cases");
 		} catch (SQLException sex) {
 			SysLog.logThrowable(sex);
 		}
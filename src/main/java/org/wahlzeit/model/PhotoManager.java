@@ -23,6 +23,7 @@ package org.wahlzeit.model;
 import java.io.*;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
 import org.wahlzeit.main.*;
 import org.wahlzeit.services.*;
@@ -63,15 +64,42 @@ public class PhotoManager extends ObjectManager {
 	}
 
 	/**
-	 * In-memory cache for photos
+	 * In-memory cache for photos; photos still held by sessions or users after eviction are handed out again, not reloaded
 	 */
-	protected Map<PhotoId, Photo> photoCache = new HashMap<PhotoId, Photo>();
+	protected ObjectCache<PhotoId, Photo> photoCache = new ObjectCache<PhotoId, Photo>(SysConfig.getPhotoCacheSizeAsInt());
+	
+	/**
+	 * Loads a photo from the database on a cache miss
+	 */
+	protected ObjectCache.Loader<PhotoId, Photo> photoLoader = new ObjectCache.Loader<PhotoId, Photo>() {
+		public Photo load(PhotoId id) throws SQLException {
+			PreparedStatement stmt = getReadingStatement("SELECT * FROM photos WHERE id = ?");
+			return (Photo) readObject(stmt, id.asInt());
+		}
+	};
+	
+	/**
+	 * Photos by owner name; only set between loadPhotosInBulk() and dropOwnerIndex(), while all photos are in the cache
+	 */
+	protected volatile Map<String, Set<Photo>> photosByOwner = null;
 	
 	/**
 	 * 
 	 */
 	protected PhotoTagCollector photoTagCollector = null;
 	
+	/**
+	 * Inverted index over the tags table; loaded on first use
+	 */
+	protected TagIndex tagIndex = new TagIndex();
+	protected volatile boolean isTagIndexLoaded = false;
+	
+	/**
+	 * Rows of the tags table written and deleted, and rows a delete-all/reinsert would have written but we did not
+	 */
+	protected AtomicLong tagRowsWritten = new AtomicLong();
+	protected AtomicLong tagRowsAvoided = new AtomicLong();
+	
 	/**
 	 * 
 	 */
@@ -112,7 +140,7 @@ public class PhotoManager extends ObjectManager {
 	 * @methodproperties primitive
 	 */
 	protected boolean doHasPhoto(PhotoId id) {
-		return photoCache.containsKey(id);
+		return photoCache.contains(id);
 	}
 	
 	/**
@@ -123,18 +151,15 @@ public class PhotoManager extends ObjectManager {
 			return null;
 		}
 
-		Photo result = doGetPhotoFromId(id);
-		
-		if (result == null) {
-			try {
-				PreparedStatement stmt = getReadingStatement("SELECT * FROM photos WHERE id = ?");
-				result = (Photo) readObject(stmt, id.asInt());
-			} catch (SQLException sex) {
-				SysLog.logThrowable(sex);
-			}
-			if (result != null) {
-				doAddPhoto(result);
-			}
+		if (photosByOwner != null) {
+			return doGetPhotoFromId(id);
+		}
+
+		Photo result = null;
+		try {
+			result = photoCache.get(id, photoLoader);
+		} catch (SQLException sex) {
+			SysLog.logThrowable(sex);
 		}
 		
 		return result;
@@ -152,7 +177,12 @@ public class PhotoManager extends ObjectManager {
 	 * 
 	 */
 	protected Photo createObject(ResultSet rset) throws SQLException {
-		return PhotoFactory.getInstance().createPhoto(rset);
+		Photo result = PhotoFactory.getInstance().createPhoto(rset);
+		if (isTagIndexLoaded) {
+			result.setSavedTagRows(tagIndex.getPhotoTags(result.getId().asInt()));
+		}
+		
+		return result;
 	}
 	
 	/**
@@ -204,6 +234,45 @@ public class PhotoManager extends ObjectManager {
 		SysLog.logSysInfo("loaded all photos");
 	}
 	
+	/**
+	 * Loads all photos into the cache, streaming and reading them in parallel, and indexes them by owner.
+	 * Until dropOwnerIndex() is called, findPhotosByOwner() and getPhotoFromId() answer from memory only.
+	 * 
+	 * @methodtype command
+	 */
+	public void loadPhotosInBulk() {
+		Map<String, Set<Photo>> index = new HashMap<String, Set<Photo>>();
+		try {
+			PreparedStatement stmt = getReadingStatement("SELECT * FROM photos");
+			for (Persistent object : readObjectsInParallel(stmt)) {
+				Photo photo = (Photo) object;
+				Photo cached = photoCache.putIfAbsent(photo.getId(), photo);
+				if (cached != null) {
+					photo = cached;
+				}
+				
+				Set<Photo> ownerPhotos = index.get(photo.getOwnerName());
+				if (ownerPhotos == null) {
+					ownerPhotos = new HashSet<Photo>();
+					index.put(photo.getOwnerName(), ownerPhotos);
+				}
+				ownerPhotos.add(photo);
+			}
+			photosByOwner = index;
+		} catch (SQLException sex) {
+			SysLog.logThrowable(sex);
+		}
+		
+		SysLog.logSysInfo("loaded all photos in bulk");
+	}
+	
+	/**
+	 * @methodtype command
+	 */
+	public void dropOwnerIndex() {
+		photosByOwner = null;
+	}
+	
 	/**
 	 * 
 	 */
@@ -220,9 +289,19 @@ public class PhotoManager extends ObjectManager {
 	 * 
 	 */
 	public void savePhotos() {
+		savePhotos(photoCache.values());
+	}
+	
+	/**
+	 * Saves the dirty ones of the given photos.
+	 */
+	public void savePhotos(Collection<Photo> photos) {
+		if (photos.isEmpty()) {
+			return;
+		}
+		
 		try {
-			PreparedStatement stmt = getUpdatingStatement("SELECT * FROM photos WHERE id = ?");
-			updateObjects(photoCache.values(), stmt);
+			updateObjectsInBatches(photos, "photos");
 		} catch (SQLException sex) {
 			SysLog.logThrowable(sex);
 		}
@@ -235,17 +314,24 @@ public class PhotoManager extends ObjectManager {
 	 * the Datastore, it is simply not persisted.
 	 */
 	public Set<Photo> findPhotosByOwner(String ownerName) {
+		Map<String, Set<Photo>> index = photosByOwner;
+		if (index != null) {
+			Set<Photo> ownerPhotos = index.get(ownerName);
+			return (ownerPhotos == null) ? new HashSet<Photo>() : new HashSet<Photo>(ownerPhotos);
+		}
+		
 		Set<Photo> result = new HashSet<Photo>();
 		try {
+			java.util.List<Photo> photos = new ArrayList<Photo>();
 			PreparedStatement stmt = getReadingStatement("SELECT * FROM photos WHERE owner_name = ?");
-			readObjects(result, stmt, ownerName);
+			readObjects(photos, stmt, ownerName);
+			for (Photo photo : photos) {
+				Photo cached = photoCache.putIfAbsent(photo.getId(), photo);
+				result.add((cached != null) ? cached : photo);
+			}
 		} catch (SQLException sex) {
 			SysLog.logThrowable(sex);
 		}
-		
-		for (Iterator<Photo> i = result.iterator(); i.hasNext(); ) {
-			doAddPhoto(i.next());
-		}
 
 		return result;
 	}
@@ -289,29 +375,11 @@ public class PhotoManager extends ObjectManager {
 		java.util.List<PhotoId> result = new LinkedList<PhotoId>();
 
 		try {
-			java.util.List<String> filterConditions = filter.getFilterConditions();
-
-			int noFilterConditions = filterConditions.size();
-			PreparedStatement stmt = getUpdatingStatementFromConditions(noFilterConditions);
-			for (int i = 0; i < noFilterConditions; i++) {
-				stmt.setString(i + 1, filterConditions.get(i));
-			}
-			
-			SysLog.logQuery(stmt);
-			ResultSet rset = stmt.executeQuery();
-
-			if (noFilterConditions == 0) {
-				noFilterConditions++;
-			}
-
-			int[] ids = new int[PhotoId.getCurrentIdAsInt() + 1];
-			while(rset.next()) {
-				int id = rset.getInt("photo_id");
-				if (++ids[id] == noFilterConditions) {
-					PhotoId photoId = PhotoId.getIdFromInt(id);
-					if (!filter.isProcessedPhotoId(photoId)) {
-						result.add(photoId);
-					}
+			int[] ids = getTagIndex().getPhotoIds(filter.getFilterConditions());
+			for (int i = 0; i < ids.length; i++) {
+				PhotoId photoId = PhotoId.getIdFromInt(ids[i]);
+				if (!filter.isProcessedPhotoId(photoId)) {
+					result.add(photoId);
 				}
 			}
 		} catch (SQLException sex) {
@@ -320,46 +388,139 @@ public class PhotoManager extends ObjectManager {
 		
 		return result;
 	}
-		
+	
 	/**
-	 * 
+	 * Returns the tag index, loading it from the tags table on first use.
 	 */
-	protected PreparedStatement getUpdatingStatementFromConditions(int no) throws SQLException {
-		String query = "SELECT * FROM tags";
-		if (no > 0) {
-			query += " WHERE";
+	protected TagIndex getTagIndex() throws SQLException {
+		if (!isTagIndexLoaded) {
+			synchronized(tagIndex) {
+				if (!isTagIndexLoaded) {
+					loadTagIndex();
+					isTagIndexLoaded = true;
+				}
+			}
 		}
-
-		for (int i = 0; i < no; i++) {
-			if (i > 0) {
-				query += " OR";
+		
+		return tagIndex;
+	}
+	
+	/**
+	 * @methodtype initialization
+	 */
+	protected void loadTagIndex() throws SQLException {
+		Map<Integer, Set<String>> tagsByPhoto = new HashMap<Integer, Set<String>>();
+		PreparedStatement stmt = getReadingStatement("SELECT tag, photo_id FROM tags");
+		ResultSet rset = executeQuery(stmt);
+		int rows = 0;
+		while (rset.next()) {
+			rows++;
+			Integer photoId = rset.getInt("photo_id");
+			Set<String> tags = tagsByPhoto.get(photoId);
+			if (tags == null) {
+				tags = new HashSet<String>();
+				tagsByPhoto.put(photoId, tags);
 			}
-			query += " (tag = ?)";
+			tags.add(rset.getString("tag"));
 		}
+		recordRows(stmt, rows);
 		
-		return getUpdatingStatement(query);
+		tagIndex.addUnknownPhotoTags(tagsByPhoto);
+		for (Photo photo : photoCache.values()) {
+			if (photo.getSavedTagRows() == null) {
+				photo.setSavedTagRows(tagIndex.getPhotoTags(photo.getId().asInt()));
+			}
+		}
+		SysLog.logSysInfo("loaded tag index with " + tagIndex.getNoTags() + " tags for " + tagIndex.getNoPhotos() + " photos");
 	}
 	
 	/**
-	 * 
+	 * Brings the rows of the tags table in line with the photo's tags. Only changed rows get written;
+	 * if the rows as of the last save are not known (photo read before the tag index was loaded), they are all replaced.
 	 */
 	protected void updateDependents(Persistent obj) throws SQLException {
 		Photo photo = (Photo) obj;
-		
-		PreparedStatement stmt = getReadingStatement("DELETE FROM tags WHERE photo_id = ?");
-		deleteObject(obj, stmt);
-		
-		stmt = getReadingStatement("INSERT INTO tags VALUES(?, ?)");
+		int photoId = photo.getId().asInt();
+
 		Set<String> tags = new HashSet<String>();
 		photoTagCollector.collect(tags, photo);
-		for (Iterator<String> i = tags.iterator(); i.hasNext(); ) {
-			String tag = i.next();
+		
+		Set<String> savedTags = photo.getSavedTagRows();
+		if (tags.equals(savedTags)) {
+			tagRowsAvoided.addAndGet(1 + tags.size());
+			return;
+		}
+		
+		Set<String> deletedTags = new HashSet<String>();
+		Set<String> insertedTags = new HashSet<String>(tags);
+		if (savedTags != null) {
+			deletedTags.addAll(savedTags);
+			deletedTags.removeAll(tags);
+			insertedTags.removeAll(savedTags);
+		}
+		
+		int noRowsToReplaceAll = 1 + tags.size();
+		if ((savedTags == null) || (deletedTags.size() + insertedTags.size() > noRowsToReplaceAll)) {
+			PreparedStatement stmt = getReadingStatement("DELETE FROM tags WHERE photo_id = ?");
+			deleteObject(obj, stmt);
+			tagRowsWritten.incrementAndGet();
+			deletedTags.clear();
+			insertedTags = new HashSet<String>(tags);
+		} else {
+			tagRowsAvoided.addAndGet(noRowsToReplaceAll - insertedTags.size() - deletedTags.size());
+		}
+		
+		if (!deletedTags.isEmpty()) {
+			PreparedStatement stmt = getReadingStatement("DELETE FROM tags WHERE tag = ? AND photo_id = ?");
+			addTagRowsToBatch(stmt, deletedTags, photoId);
+			executeBatch(stmt);
+		}
+		
+		if (!insertedTags.isEmpty()) {
+			PreparedStatement stmt = getReadingStatement("INSERT INTO tags VALUES(?, ?)");
+			addTagRowsToBatch(stmt, insertedTags, photoId);
+			executeBatch(stmt);
+		}
+		
+		tagRowsWritten.addAndGet(deletedTags.size() + insertedTags.size());
+		photo.setSavedTagRows(tags);
+	}
+	
+	/**
+	 * 
+	 */
+	protected void addTagRowsToBatch(PreparedStatement stmt, Set<String> tags, int photoId) throws SQLException {
+		for (String tag : tags) {
 			stmt.setString(1, tag);
-			stmt.setInt(2, photo.getId().asInt());
-			SysLog.logQuery(stmt);
-			stmt.executeUpdate();					
+			stmt.setInt(2, photoId);
+			stmt.addBatch();
+		}
+	}
+	
+	/**
+	 * The rows in the tags table are unknown after a rollback, so the next save replaces them all.
+	 */
+	protected void rollbackDependents(Persistent obj) {
+		((Photo) obj).setSavedTagRows(null);
+	}
+	
+	/**
+	 * The tag index follows the tags table only once the new rows are committed.
+	 */
+	protected void commitDependents(Persistent obj) {
+		Photo photo = (Photo) obj;
+		Set<String> savedTags = photo.getSavedTagRows();
+		if (savedTags != null) {
+			tagIndex.setPhotoTags(photo.getId().asInt(), savedTags);
 		}
 	}
+	
+	/**
+	 * @methodtype get
+	 */
+	public String getTagRowStatisticsAsString() {
+		return "tag rows written=" + tagRowsWritten.get() + ", avoided=" + tagRowsAvoided.get();
+	}
 		
 	/**
 	 * 
@@ -371,6 +532,16 @@ public class PhotoManager extends ObjectManager {
 		return result;
 	}
 	
+	/**
+	 * Creates a photo whose image files are yet to be created from its upload, see UploadJobManager.
+	 */
+	public Photo createProcessingPhoto(PhotoId id) {
+		Photo result = PhotoFactory.getInstance().createPhoto(id);
+		result.setStatus(PhotoStatus.PROCESSING);
+		addPhoto(result);
+		return result;
+	}
+	
 	/**
 	 * @methodtype assertion
 	 */
@@ -0,0 +1,250 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import java.awt.image.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import javax.imageio.*;
+
+import org.wahlzeit.services.*;
+
+/**
+ * The PhotoResizer creates the image files of an uploaded photo in all sizes that fit the source,
+ * or in LAZY_PHOTO_SIZES mode only in those the PhotoSizeCache does not create on request.
+ * It decodes the source once and derives each size from the next larger one, largest first.
+ * The JPEG encoding of each size runs on a bounded executor with one thread per core; when its queue is full,
+ * the submitting thread encodes itself, which slows down uploads instead of piling up images in memory.
+ */
+public class PhotoResizer {
+
+	/**
+	 *
+	 */
+	protected static PhotoResizer instance = null;
+
+	/**
+	 *
+	 */
+	public static synchronized PhotoResizer getInstance() {
+		if (instance == null) {
+			instance = new PhotoResizer(Runtime.getRuntime().availableProcessors(), SysConfig.getPhotoResizeQueueSizeAsInt());
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Sizes from largest to smallest
+	 */
+	protected static final PhotoSize[] SIZES_LARGEST_FIRST;
+
+	static {
+		PhotoSize[] sizes = PhotoSize.values();
+		SIZES_LARGEST_FIRST = new PhotoSize[sizes.length];
+		for (int i = 0; i < sizes.length; i++) {
+			SIZES_LARGEST_FIRST[i] = sizes[sizes.length - 1 - i];
+		}
+	}
+
+	/**
+	 *
+	 */
+	protected ThreadPoolExecutor encoder;
+
+	/**
+	 *
+	 */
+	protected Histogram decodeTimes = new Histogram();
+	protected Histogram scaleTimes = new Histogram();
+	protected Histogram encodeTimes = new Histogram();
+	protected Histogram totalTimes = new Histogram();
+	protected AtomicLong noEncodedByCaller = new AtomicLong();
+
+	/**
+	 *
+	 */
+	public PhotoResizer(int noThreads, int queueSize) {
+		final AtomicInteger noThreadsCreated = new AtomicInteger();
+		ThreadFactory threadFactory = new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread result = new Thread(runnable, "photo-encoder-" + noThreadsCreated.incrementAndGet());
+				result.setDaemon(true);
+				return result;
+			}
+		};
+
+		RejectedExecutionHandler callerRuns = new RejectedExecutionHandler() {
+			public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+				if (executor.isShutdown()) {
+					throw new RejectedExecutionException("photo encoder is shut down");
+				}
+				noEncodedByCaller.incrementAndGet();
+				runnable.run();
+			}
+		};
+
+		encoder = new ThreadPoolExecutor(noThreads, noThreads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize), threadFactory, callerRuns);
+		encoder.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Creates the image files for photo id from source and returns the decoded source image.
+	 * Returns when all files are written; throws the first failure of any stage.
+	 *
+	 * @methodtype command
+	 */
+	public BufferedImage createImageFiles(File source, PhotoId id) throws Exception {
+		long startTime = System.nanoTime();
+		BufferedImage sourceImage = ImageIO.read(source);
+		decodeTimes.recordSince(startTime);
+		PhotoUtil.assertIsValidImage(sourceImage);
+
+		int sourceWidth = sourceImage.getWidth();
+		int sourceHeight = sourceImage.getHeight();
+		PhotoUtil.assertHasValidSize(sourceWidth, sourceHeight);
+
+		boolean isLazy = SysConfig.isLazyPhotoSizes();
+		List<Future<?>> encodings = new ArrayList<Future<?>>();
+		try {
+			BufferedImage largerImage = sourceImage;
+			for (PhotoSize size : SIZES_LARGEST_FIRST) {
+				if (size.isWiderAndHigher(sourceWidth, sourceHeight) || (isLazy && !PhotoSizeCache.isCreatedOnUpload(size))) {
+					continue;
+				}
+
+				int targetWidth = size.calcAdjustedWidth(sourceWidth, sourceHeight);
+				int targetHeight = size.calcAdjustedHeight(sourceWidth, sourceHeight);
+
+				long scaleStartTime = System.nanoTime();
+				BufferedImage targetImage = PhotoUtil.scaleImage(largerImage, targetWidth, targetHeight);
+				scaleTimes.recordSince(scaleStartTime);
+
+				encodings.add(encoder.submit(createEncoding(targetImage, id, size)));
+				largerImage = targetImage;
+			}
+
+			for (Future<?> encoding : encodings) {
+				awaitEncoding(encoding);
+			}
+		} catch (Exception ex) {
+			for (Future<?> encoding : encodings) {
+				encoding.cancel(false);
+			}
+			throw ex;
+		}
+
+		totalTimes.recordSince(startTime);
+		return sourceImage;
+	}
+
+	/**
+	 * Creates the image file of one size from source on the calling thread; returns false if the source is too small.
+	 *
+	 * @methodtype command
+	 */
+	public boolean createImageFile(File source, PhotoId id, PhotoSize size) throws Exception {
+		long startTime = System.nanoTime();
+		BufferedImage sourceImage = ImageIO.read(source);
+		decodeTimes.recordSince(startTime);
+		PhotoUtil.assertIsValidImage(sourceImage);
+
+		int sourceWidth = sourceImage.getWidth();
+		int sourceHeight = sourceImage.getHeight();
+		if (size.isWiderAndHigher(sourceWidth, sourceHeight)) {
+			return false;
+		}
+
+		long scaleStartTime = System.nanoTime();
+		int targetWidth = size.calcAdjustedWidth(sourceWidth, sourceHeight);
+		int targetHeight = size.calcAdjustedHeight(sourceWidth, sourceHeight);
+		BufferedImage targetImage = PhotoUtil.scaleImage(sourceImage, targetWidth, targetHeight);
+		scaleTimes.recordSince(scaleStartTime);
+
+		long encodeStartTime = System.nanoTime();
+		writeImageFile(targetImage, PhotoUtil.getImageFile(id, size));
+		encodeTimes.recordSince(encodeStartTime);
+
+		totalTimes.recordSince(startTime);
+		return true;
+	}
+
+	/**
+	 * @methodtype factory
+	 */
+	protected Callable<Void> createEncoding(final BufferedImage image, final PhotoId id, final PhotoSize size) {
+		return new Callable<Void>() {
+			public Void call() throws IOException {
+				long startTime = System.nanoTime();
+				writeImageFile(image, PhotoUtil.getImageFile(id, size));
+				encodeTimes.recordSince(startTime);
+
+				SysLog.logSysInfo("created image file for id: " + id.asString() + " of size: " + size.asString());
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Writes image to target under a temporary name first and then renames it, so readers never see a partial file.
+	 *
+	 * @methodtype command
+	 */
+	protected static void writeImageFile(BufferedImage image, File target) throws IOException {
+		File tempTarget = new File(target.getPath() + ".tmp" + Thread.currentThread().getId());
+		try {
+			ImageIO.write(image, "jpg", tempTarget);
+			Files.move(tempTarget.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			tempTarget.delete();
+		}
+	}
+
+	/**
+	 * @methodtype helper
+	 */
+	protected void awaitEncoding(Future<?> encoding) throws Exception {
+		try {
+			encoding.get();
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw ex;
+		}
+	}
+
+	/**
+	 * Stops the encoder threads once queued encodings are done.
+	 *
+	 * @methodtype command
+	 */
+	public void shutDown() {
+		encoder.shutdown();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getStatisticsAsString() {
+		StringBuffer result = new StringBuffer(512);
+		result.append("queued=").append(encoder.getQueue().size());
+		result.append(", active=").append(encoder.getActiveCount());
+		result.append(", encoded by caller=").append(noEncodedByCaller.get());
+		result.append(", decode: ").append(decodeTimes.asNanosSummaryString());
+		result.append(", scale: ").append(scaleTimes.asNanosSummaryString());
+		result.append(", encode: ").append(encodeTimes.asNanosSummaryString());
+		result.append(", total: ").append(totalTimes.asNanosSummaryString());
+		return result.toString();
+	}
+
+}
@@ -0,0 +1,340 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.wahlzeit.services.*;
+
+/**
+ * In LAZY_PHOTO_SIZES mode, the PhotoSizeCache creates the image files of photo sizes not created on upload
+ * when they are first requested. Concurrent requests for the same file wait for one rendering.
+ * Created files are kept on disk up to PHOTO_SIZE_CACHE_SIZE bytes; least recently used ones are deleted first
+ * and created again from the uploaded original (or a larger size) when requested again. Files that could not be
+ * created again, e.g. of photos uploaded before originals were kept, are never deleted and not counted.
+ */
+public class PhotoSizeCache {
+
+	/**
+	 *
+	 */
+	protected static PhotoSizeCache instance = null;
+
+	/**
+	 *
+	 */
+	public static synchronized PhotoSizeCache getInstance() {
+		if (instance == null) {
+			instance = new PhotoSizeCache(SysConfig.getPhotoSizeCacheSizeAsLong());
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Thumbnails are shown in lists and the medium size is the default size, so both are created on upload.
+	 *
+	 * @methodtype boolean-query
+	 */
+	public static boolean isCreatedOnUpload(PhotoSize size) {
+		return (size == PhotoSize.THUMB) || (size == PhotoSize.MEDIUM);
+	}
+
+	/**
+	 *
+	 */
+	protected long maxNoBytes;
+
+	/**
+	 * Files created on request with their length, least recently used first
+	 */
+	protected LinkedHashMap<File, Long> files = new LinkedHashMap<File, Long>(64, 0.75f, true);
+	protected long noBytes = 0;
+
+	/**
+	 * Files on disk that have no source to create them again from; guarded by files
+	 */
+	protected Set<File> keptFiles = new HashSet<File>();
+
+	/**
+	 * Open files to invalidate when a file is deleted; null if none
+	 */
+	protected volatile FileChannelCache openFiles = null;
+
+	/**
+	 * Renderings in progress, by file
+	 */
+	protected ConcurrentHashMap<File, CompletableFuture<Boolean>> renderings = new ConcurrentHashMap<File, CompletableFuture<Boolean>>();
+
+	/**
+	 *
+	 */
+	protected AtomicLong noHits = new AtomicLong();
+	protected AtomicLong noRenderings = new AtomicLong();
+	protected AtomicLong noSharedRenderings = new AtomicLong();
+	protected AtomicLong noEvictions = new AtomicLong();
+	protected Histogram renderingTimes = new Histogram();
+
+	/**
+	 *
+	 */
+	public PhotoSizeCache(long myMaxNoBytes) {
+		maxNoBytes = myMaxNoBytes;
+	}
+
+	/**
+	 * Returns the image file of photo id in size, creating it first if need be.
+	 * Returns null if the photo has no such size, because its original is too small or gone.
+	 *
+	 * @methodtype get
+	 */
+	public File getImageFile(PhotoId id, PhotoSize size) throws IOException {
+		File result = PhotoUtil.getImageFile(id, size);
+		if (isCreatedOnUpload(size)) {
+			return result;
+		}
+
+		synchronized(files) {
+			if ((files.get(result) != null) || keptFiles.contains(result)) { // marks file as recently used
+				noHits.incrementAndGet();
+				return result;
+			}
+		}
+
+		CompletableFuture<Boolean> rendering = new CompletableFuture<Boolean>();
+		CompletableFuture<Boolean> other = renderings.putIfAbsent(result, rendering);
+		if (other != null) {
+			noSharedRenderings.incrementAndGet();
+			return awaitRendering(other) ? result : null;
+		}
+
+		try {
+			boolean isCreated = true;
+			if (result.exists()) {
+				addExistingFile(result, id, size);
+			} else {
+				isCreated = createImageFile(id, size);
+				if (isCreated) {
+					addFile(result);
+				}
+			}
+			rendering.complete(isCreated);
+		} catch (Exception ex) {
+			rendering.completeExceptionally(ex);
+		} finally {
+			renderings.remove(result);
+		}
+
+		return awaitRendering(rendering) ? result : null;
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	public void setOpenFiles(FileChannelCache newOpenFiles) {
+		openFiles = newOpenFiles;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected boolean createImageFile(PhotoId id, PhotoSize size) throws Exception {
+		File source = getSourceFile(id, size);
+		if (source == null) {
+			return false;
+		}
+
+		long startTime = System.nanoTime();
+		boolean result = PhotoResizer.getInstance().createImageFile(source, id, size);
+		if (result) { // not for sizes larger than the photo
+			renderingTimes.recordSince(startTime);
+			noRenderings.incrementAndGet();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the uploaded original of photo id, or else the smallest image file larger than size, or null.
+	 *
+	 * @methodtype get
+	 */
+	protected File getSourceFile(PhotoId id, PhotoSize size) {
+		File result = new File(SysConfig.getBackupDir().asString() + File.separator + id.asString());
+		if (result.exists()) {
+			return result;
+		}
+
+		PhotoSize[] sizes = PhotoSize.values();
+		for (int i = size.asInt() + 1; i < sizes.length; i++) {
+			result = PhotoUtil.getImageFile(id, sizes[i]);
+			if (result.exists()) {
+				return result;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @methodtype helper
+	 */
+	protected boolean awaitRendering(CompletableFuture<Boolean> rendering) throws IOException {
+		try {
+			return rendering.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for photo file");
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IOException("could not create photo file", cause);
+		}
+	}
+
+	/**
+	 * Adds file, which was on disk already, to the cache if it can be created again; otherwise keeps it for good.
+	 *
+	 * @methodtype command
+	 */
+	protected void addExistingFile(File file, PhotoId id, PhotoSize size) {
+		if (getSourceFile(id, size) != null) {
+			addFile(file);
+		} else {
+			synchronized(files) {
+				keptFiles.add(file);
+			}
+		}
+	}
+
+	/**
+	 * Adds file to the cache and deletes least recently used files until the cache fits its size again.
+	 *
+	 * @methodtype command
+	 */
+	protected void addFile(File file) {
+		synchronized(files) {
+			Long other = files.put(file, Long.valueOf(file.length()));
+			noBytes += file.length() - ((other != null) ? other.longValue() : 0);
+
+			Iterator<Map.Entry<File, Long>> i = files.entrySet().iterator();
+			while ((noBytes > maxNoBytes) && i.hasNext()) {
+				Map.Entry<File, Long> eldest = i.next();
+				if (eldest.getKey().equals(file)) {
+					continue; // just requested
+				}
+				i.remove();
+				noBytes -= eldest.getValue().longValue();
+				deleteFile(eldest.getKey());
+				noEvictions.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void deleteFile(File file) {
+		file.delete();
+		FileChannelCache files = openFiles;
+		if (files != null) {
+			files.invalidate(file.toPath());
+		}
+	}
+
+	/**
+	 * Adds the image files of sizes not created on upload that are on disk already, oldest first.
+	 * Leftovers of interrupted renderings are deleted; files without a source are kept, see addExistingFile().
+	 *
+	 * @methodtype command
+	 */
+	public void loadCachedFiles() {
+		File[] photoFiles = new File(SysConfig.getPhotosDir().asString()).listFiles();
+		if (photoFiles == null) {
+			return;
+		}
+
+		List<File> cachedFiles = new ArrayList<File>();
+		for (File file : photoFiles) {
+			String name = file.getName();
+			if (name.contains(".jpg.tmp")) {
+				file.delete();
+			} else if (name.endsWith(".jpg") && (name.length() > ".jpg".length() + 1)) {
+				int sizeAsInt = Character.digit(name.charAt(name.length() - ".jpg".length() - 1), 10);
+				if ((sizeAsInt >= 0) && (sizeAsInt < PhotoSize.values().length) && !isCreatedOnUpload(PhotoSize.getFromInt(sizeAsInt))) {
+					cachedFiles.add(file);
+				}
+			}
+		}
+
+		Collections.sort(cachedFiles, new Comparator<File>() {
+			public int compare(File f1, File f2) {
+				return Long.compare(f1.lastModified(), f2.lastModified());
+			}
+		});
+
+		for (File file : cachedFiles) {
+			String name = file.getName();
+			String idAsString = name.substring(0, name.length() - ".jpg".length() - 1);
+			PhotoId id = PhotoId.getIdFromString(idAsString);
+			if (!id.isNullId() && id.asString().equals(idAsString)) {
+				PhotoSize size = PhotoSize.getFromInt(Character.digit(name.charAt(name.length() - ".jpg".length() - 1), 10));
+				addExistingFile(file, id, size);
+			}
+		}
+
+		SysLog.logSysInfo("loaded photo size cache: " + getNoFiles() + " files, " + getNoKeptFiles() + " kept for good");
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getNoBytes() {
+		synchronized(files) {
+			return noBytes;
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getNoFiles() {
+		synchronized(files) {
+			return files.size();
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getNoKeptFiles() {
+		synchronized(files) {
+			return keptFiles.size();
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getStatisticsAsString() {
+		StringBuffer result = new StringBuffer(256);
+		result.append("files=").append(getNoFiles());
+		result.append(", bytes=").append(getNoBytes());
+		result.append(", kept=").append(getNoKeptFiles());
+		result.append(", hits=").append(noHits.get());
+		result.append(", renderings=").append(noRenderings.get());
+		result.append(", shared renderings=").append(noSharedRenderings.get());
+		result.append(", evictions=").append(noEvictions.get());
+		result.append(", rendering times: ").append(renderingTimes.asNanosSummaryString());
+		return result.toString();
+	}
+
+}
@@ -26,6 +26,8 @@ import org.wahlzeit.utils.*;
  * The PhotoStatus of a Photo captures its state in the system.
  * A photo may be visible or invisible, it may have been flagged, and it may have been deleted.
  * These states are not mutually exclusive, hence the bitset simulation in this class.
+ * A new photo is processing until all its image files exist; it is not displayable meanwhile, but other
+ * status changes are kept and take effect once processing has ended.
  */
 public enum PhotoStatus implements EnumValue {
 
@@ -37,7 +39,11 @@ public enum PhotoStatus implements EnumValue {
 	FLAGGED(2), FLAGGED2(3), // flagged without or with invisible bit set
 	MODERATED(4), MODERATED2(5), MODERATED3(6), MODERATED4(7),
 	DELETED(8), DELETED2(9), DELETED3(10), DELETED4(11),
-	DELETED5(12), DELETED6(13),DELETED7(14), DELETED8(15);
+	DELETED5(12), DELETED6(13),DELETED7(14), DELETED8(15),
+	PROCESSING(16), PROCESSING2(17), PROCESSING3(18), PROCESSING4(19), // processing with or without other bits set
+	PROCESSING5(20), PROCESSING6(21), PROCESSING7(22), PROCESSING8(23),
+	PROCESSING9(24), PROCESSING10(25), PROCESSING11(26), PROCESSING12(27),
+	PROCESSING13(28), PROCESSING14(29), PROCESSING15(30), PROCESSING16(31);
 	
 	/**
 	 * 
@@ -46,6 +52,7 @@ public enum PhotoStatus implements EnumValue {
 	private static final int FLAGGED_BIT = 1;
 	private static final int MODERATED_BIT = 2;
 	private static final int DELETED_BIT = 3;
+	private static final int PROCESSING_BIT = 4;
 	
 	/**
 	 * All possible states of PhotoStatus
@@ -54,14 +61,18 @@ public enum PhotoStatus implements EnumValue {
 		VISIBLE, INVISIBLE, FLAGGED, FLAGGED2,
 		MODERATED, MODERATED2, MODERATED3, MODERATED4,
 		DELETED, DELETED2, DELETED3, DELETED4,
-		DELETED5, DELETED6, DELETED7, DELETED8
+		DELETED5, DELETED6, DELETED7, DELETED8,
+		PROCESSING, PROCESSING2, PROCESSING3, PROCESSING4,
+		PROCESSING5, PROCESSING6, PROCESSING7, PROCESSING8,
+		PROCESSING9, PROCESSING10, PROCESSING11, PROCESSING12,
+		PROCESSING13, PROCESSING14, PROCESSING15, PROCESSING16
 	};
 	
 	/**
 	 * 
 	 */
 	public static PhotoStatus getFromInt(int myValue) throws IllegalArgumentException {
-		if ((myValue >= 0) && (myValue <= 15)) {
+		if ((myValue >= 0) && (myValue < allValues.length)) {
 			return allValues[myValue];
 		}
 		
@@ -75,7 +86,11 @@ public enum PhotoStatus implements EnumValue {
 		"visible", "invisible", "flagged", "flagged",
 		"moderated", "moderated", "moderated", "moderated",
 		"deleted", "deleted", "deleted", "deleted",
-		"deleted", "deleted", "deleted", "deleted"
+		"deleted", "deleted", "deleted", "deleted",
+		"processing", "processing", "processing", "processing",
+		"processing", "processing", "processing", "processing",
+		"processing", "processing", "processing", "processing",
+		"processing", "processing", "processing", "processing"
 	};
 	
 	/**
@@ -135,7 +150,7 @@ public enum PhotoStatus implements EnumValue {
 	 * 
 	 */
 	public boolean isDisplayable() {
-		return !isInvisible() && !isFlagged() && !isModerated() && !isDeleted();
+		return !isInvisible() && !isFlagged() && !isModerated() && !isDeleted() && !isProcessing();
 	}
 	
 	/**
@@ -194,6 +209,20 @@ public enum PhotoStatus implements EnumValue {
 		return yes ? flag(DELETED_BIT) : unflag(DELETED_BIT);
 	}
 	
+	/**
+	 * 
+	 */
+	public boolean isProcessing() {
+		return (value & (1 << PROCESSING_BIT)) != 0;
+	}
+	
+	/**
+	 * 
+	 */
+	public PhotoStatus asProcessing(boolean yes) {
+		return yes ? flag(PROCESSING_BIT) : unflag(PROCESSING_BIT);
+	}
+	
 	/**
 	 * 
 	 */
@@ -29,7 +29,7 @@ import org.wahlzeit.services.*;
 
 /**
  * PhotoUtil provides a set of utility functions to create defined images.
- * Images are created from a source in different sizes as needed by the app.
+ * Images are created from a source in different sizes as needed by the app, see PhotoResizer.
  */
 public class PhotoUtil {
 	
@@ -52,49 +52,47 @@ public class PhotoUtil {
 	 * 
 	 */
 	public static Image createImageFiles(File source, PhotoId id) throws Exception {
-		Image sourceImage = ImageIO.read(source);
-		assertIsValidImage(sourceImage);
-
-		int sourceWidth = sourceImage.getWidth(null);
-		int sourceHeight = sourceImage.getHeight(null);
-		assertHasValidSize(sourceWidth, sourceHeight);
-		
-		for (PhotoSize size : PhotoSize.values()) {
-			if (!size.isWiderAndHigher(sourceWidth, sourceHeight)) {
-				createImageFile(sourceImage, id, size);
-			}
-		}
-		
-		return sourceImage;
+		return PhotoResizer.getInstance().createImageFiles(source, id);
 	}
 	
 	/**
 	 * 
 	 */
-	protected static void createImageFile(Image source, PhotoId id, PhotoSize size) throws Exception {	
-		int sourceWidth = source.getWidth(null);
-		int sourceHeight = source.getHeight(null);
-		
-		int targetWidth = size.calcAdjustedWidth(sourceWidth, sourceHeight);
-		int targetHeight = size.calcAdjustedHeight(sourceWidth, sourceHeight);
-
-		BufferedImage targetImage = scaleImage(source, targetWidth, targetHeight);
-		File target = new File(SysConfig.getPhotosDir().asString() + File.separator + id.asString() + size.asInt() + ".jpg");
-		ImageIO.write(targetImage, "jpg", target);
-
-		SysLog.logSysInfo("created image file for id: " + id.asString() + " of size: " + size.asString());
+	public static File getImageFile(PhotoId id, PhotoSize size) {
+		return new File(SysConfig.getPhotosDir().asString() + File.separator + id.asString() + size.asInt() + ".jpg");
 	}
 
+	/**
+	 * Scales down in steps of at most half the size, as a single bilinear or bicubic step skips
+	 * source pixels and gets blurry or jagged for large factors.
+	 */
+	protected static BufferedImage scaleImage(BufferedImage source, int width, int height) {
+		BufferedImage result = source;
+		int stepWidth = source.getWidth();
+		int stepHeight = source.getHeight();
+		do {
+			stepWidth = Math.max(width, stepWidth / 2);
+			stepHeight = Math.max(height, stepHeight / 2);
+			boolean isLastStep = (stepWidth == width) && (stepHeight == height);
+			Object interpolation = isLastStep ? RenderingHints.VALUE_INTERPOLATION_BICUBIC : RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+			result = scaleImageOnce(result, stepWidth, stepHeight, interpolation);
+		} while ((stepWidth != width) || (stepHeight != height));
+		
+		return result;
+	}
+	
 	/**
 	 * 
 	 */
-	protected static BufferedImage scaleImage(Image source, int width, int height) {
-		source = source.getScaledInstance(width, height, Image.SCALE_SMOOTH);
+	protected static BufferedImage scaleImageOnce(BufferedImage source, int width, int height, Object interpolation) {
 		BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
 		Graphics2D g2d = result.createGraphics();
-		g2d.setBackground(Color.WHITE);
-		g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-		g2d.drawImage(source, 0, 0, null);
+		try {
+			g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+			g2d.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+		} finally {
+			g2d.dispose();
+		}
 		return result;
 	}
 	
@@ -0,0 +1,300 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import java.util.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * A TagIndex is an in-memory inverted index from tag (as collected by PhotoTagCollector) to photo ids.
+ * Each tag maps to a posting list, a sorted array of photo ids. Conjunctive queries intersect the posting
+ * lists, starting with the shortest one. The index is shared by all request threads and guarded by a read/write lock.
+ */
+public class TagIndex {
+
+	/**
+	 * A sorted, duplicate-free list of photo ids
+	 */
+	public static class PostingList {
+
+		/**
+		 *
+		 */
+		protected int[] ids = new int[4];
+		protected int size = 0;
+
+		/**
+		 * @methodtype get
+		 */
+		public int getSize() {
+			return size;
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		public int get(int i) {
+			return ids[i];
+		}
+
+		/**
+		 * @methodtype boolean-query
+		 */
+		public boolean contains(int id) {
+			return Arrays.binarySearch(ids, 0, size, id) >= 0;
+		}
+
+		/**
+		 * @methodtype command
+		 */
+		public boolean add(int id) {
+			int pos = Arrays.binarySearch(ids, 0, size, id);
+			if (pos >= 0) {
+				return false;
+			}
+
+			pos = -(pos + 1);
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+			ids[pos] = id;
+			size++;
+			return true;
+		}
+
+		/**
+		 * @methodtype command
+		 */
+		public boolean remove(int id) {
+			int pos = Arrays.binarySearch(ids, 0, size, id);
+			if (pos < 0) {
+				return false;
+			}
+
+			System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+			size--;
+			return true;
+		}
+
+		/**
+		 * Returns the position of the first id >= id, searching from position from on.
+		 * Gallops ahead first, so that walking a long list in small steps stays cheap.
+		 *
+		 * @methodtype helper
+		 */
+		protected int seek(int id, int from) {
+			int bound = 1;
+			while ((from + bound < size) && (ids[from + bound] < id)) {
+				bound *= 2;
+			}
+
+			int pos = Arrays.binarySearch(ids, from + (bound / 2), Math.min(from + bound + 1, size), id);
+			return (pos >= 0) ? pos : -(pos + 1);
+		}
+
+		/**
+		 * @methodtype conversion
+		 */
+		public int[] asArray() {
+			return Arrays.copyOf(ids, size);
+		}
+
+	}
+
+	/**
+	 *
+	 */
+	protected Map<String, PostingList> postingLists = new HashMap<String, PostingList>();
+
+	/**
+	 * Tags by photo id, to find what to remove when the tags of a photo change
+	 */
+	protected Map<Integer, Set<String>> tagsByPhotoId = new HashMap<Integer, Set<String>>();
+
+	/**
+	 * All photo ids that have at least one tag
+	 */
+	protected PostingList allPhotoIds = new PostingList();
+
+	/**
+	 *
+	 */
+	protected ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 *
+	 */
+	public TagIndex() {
+		// do nothing
+	}
+
+	/**
+	 * Replaces the tags of a photo with the given ones.
+	 *
+	 * @methodtype set
+	 */
+	public void setPhotoTags(int photoId, Set<String> tags) {
+		lock.writeLock().lock();
+		try {
+			doSetPhotoTags(photoId, tags);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds the tags of photos that the index does not know yet, e.g. when loading the index from the database.
+	 * Photos set through setPhotoTags() in the meantime keep their (newer) tags.
+	 *
+	 * @methodtype command
+	 */
+	public void addUnknownPhotoTags(Map<Integer, Set<String>> tagsByPhoto) {
+		lock.writeLock().lock();
+		try {
+			for (Map.Entry<Integer, Set<String>> entry : tagsByPhoto.entrySet()) {
+				if (!tagsByPhotoId.containsKey(entry.getKey())) {
+					doSetPhotoTags(entry.getKey(), entry.getValue());
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	protected void doSetPhotoTags(int photoId, Set<String> tags) {
+		Set<String> oldTags = tagsByPhotoId.get(photoId);
+		if (oldTags != null) {
+			for (String tag : oldTags) {
+				if (!tags.contains(tag)) {
+					PostingList list = postingLists.get(tag);
+					list.remove(photoId);
+					if (list.getSize() == 0) {
+						postingLists.remove(tag);
+					}
+				}
+			}
+		}
+
+		for (String tag : tags) {
+			PostingList list = postingLists.get(tag);
+			if (list == null) {
+				list = new PostingList();
+				postingLists.put(tag, list);
+			}
+			list.add(photoId);
+		}
+
+		tagsByPhotoId.put(photoId, new HashSet<String>(tags));
+		if (tags.isEmpty()) {
+			allPhotoIds.remove(photoId);
+		} else {
+			allPhotoIds.add(photoId);
+		}
+	}
+
+	/**
+	 * Returns the sorted ids of all photos that have all of the given tags.
+	 * For no tags at all, returns all photos that have any tag.
+	 *
+	 * @methodtype get
+	 */
+	public int[] getPhotoIds(Collection<String> tags) {
+		lock.readLock().lock();
+		try {
+			if (tags.isEmpty()) {
+				return allPhotoIds.asArray();
+			}
+
+			List<PostingList> lists = new ArrayList<PostingList>();
+			for (String tag : new HashSet<String>(tags)) {
+				PostingList list = postingLists.get(tag);
+				if (list == null) {
+					return new int[0];
+				}
+				lists.add(list);
+			}
+
+			return intersect(lists);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @methodtype helper
+	 */
+	protected int[] intersect(List<PostingList> lists) {
+		lists.sort(new Comparator<PostingList>() {
+			public int compare(PostingList l1, PostingList l2) {
+				return Integer.compare(l1.getSize(), l2.getSize());
+			}
+		});
+
+		PostingList shortest = lists.get(0);
+		int[] result = new int[shortest.getSize()];
+		int noResults = 0;
+		int[] positions = new int[lists.size()];
+		for (int i = 0; i < shortest.getSize(); i++) {
+			int id = shortest.get(i);
+			boolean isInAll = true;
+			for (int j = 1; isInAll && (j < lists.size()); j++) {
+				PostingList list = lists.get(j);
+				positions[j] = list.seek(id, positions[j]);
+				isInAll = (positions[j] < list.getSize()) && (list.get(positions[j]) == id);
+			}
+			if (isInAll) {
+				result[noResults++] = id;
+			}
+		}
+
+		return Arrays.copyOf(result, noResults);
+	}
+
+	/**
+	 * Returns a copy of the tags of a photo; a photo the index does not know has none.
+	 *
+	 * @methodtype get
+	 */
+	public Set<String> getPhotoTags(int photoId) {
+		lock.readLock().lock();
+		try {
+			Set<String> tags = tagsByPhotoId.get(photoId);
+			return (tags == null) ? new HashSet<String>() : new HashSet<String>(tags);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getNoTags() {
+		lock.readLock().lock();
+		try {
+			return postingLists.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getNoPhotos() {
+		lock.readLock().lock();
+		try {
+			return allPhotoIds.getSize();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import java.sql.*;
+
+import org.wahlzeit.services.*;
+
+/**
+ * An UploadJob is the persistent request to create the image files of an uploaded photo from its original file.
+ * A job has the id of its photo; it stays pending until the files exist or creating them failed.
+ */
+public class UploadJob extends DataObject {
+
+	/**
+	 *
+	 */
+	protected PhotoId photoId = PhotoId.NULL_ID;
+	protected String ownerName = "";
+	protected String sourceFileName = "";
+	protected UploadJobStatus status = UploadJobStatus.PENDING;
+	protected String message = "";
+	protected long createdOn = System.currentTimeMillis();
+	protected long finishedOn = 0;
+
+	/**
+	 *
+	 */
+	public UploadJob(Photo photo, String mySourceFileName) {
+		photoId = photo.getId();
+		ownerName = photo.getOwnerName();
+		sourceFileName = mySourceFileName;
+
+		incWriteCount();
+	}
+
+	/**
+	 *
+	 */
+	public UploadJob(ResultSet rset) throws SQLException {
+		readFrom(rset);
+	}
+
+	/**
+	 *
+	 */
+	public String getIdAsString() {
+		return photoId.asString();
+	}
+
+	/**
+	 *
+	 */
+	public void readFrom(ResultSet rset) throws SQLException {
+		photoId = PhotoId.getIdFromInt(rset.getInt("id"));
+		ownerName = rset.getString("owner_name");
+		sourceFileName = rset.getString("source_file");
+		status = UploadJobStatus.getFromInt(rset.getInt("status"));
+		message = rset.getString("message");
+		createdOn = rset.getLong("creation_time");
+		finishedOn = rset.getLong("finish_time");
+	}
+
+	/**
+	 *
+	 */
+	public void writeOn(ResultSet rset) throws SQLException {
+		rset.updateInt("id", photoId.asInt());
+		rset.updateString("owner_name", ownerName);
+		rset.updateString("source_file", sourceFileName);
+		rset.updateInt("status", status.asInt());
+		rset.updateString("message", message);
+		rset.updateLong("creation_time", createdOn);
+		rset.updateLong("finish_time", finishedOn);
+	}
+
+	/**
+	 *
+	 */
+	public void writeId(PreparedStatement stmt, int pos) throws SQLException {
+		stmt.setInt(pos, photoId.asInt());
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public PhotoId getPhotoId() {
+		return photoId;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getOwnerName() {
+		return ownerName;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getSourceFileName() {
+		return sourceFileName;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public UploadJobStatus getStatus() {
+		return status;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getCreationTime() {
+		return createdOn;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getFinishTime() {
+		return finishedOn;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void setFinished(UploadJobStatus newStatus, String newMessage) {
+		status = newStatus;
+		message = (newMessage == null) ? "" : newMessage;
+		finishedOn = System.currentTimeMillis();
+		incWriteCount();
+	}
+
+}
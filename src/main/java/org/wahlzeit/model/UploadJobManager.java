@@ -0,0 +1,271 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import java.awt.*;
+import java.io.*;
+import java.sql.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.wahlzeit.services.*;
+
+/**
+ * The UploadJobManager creates the image files of uploaded photos off the request path.
+ * Jobs are saved in the upload_jobs table before they are queued, so jobs left pending at shutdown are resumed on startup.
+ * A pool of UPLOAD_WORKERS threads works off the queue; each worker has a session of its own.
+ * A photo is processing until its job is done, then it becomes visible; if the job fails, the photo is deleted.
+ */
+public class UploadJobManager extends ObjectManager {
+
+	/**
+	 * Number of jobs getRecentJobs() returns at most
+	 */
+	public static final int NO_RECENT_JOBS = 5;
+
+	/**
+	 *
+	 */
+	protected static UploadJobManager instance = null;
+
+	/**
+	 *
+	 */
+	public static synchronized UploadJobManager getInstance() {
+		if (instance == null) {
+			instance = new UploadJobManager(SysConfig.getUploadWorkersAsInt());
+		}
+
+		return instance;
+	}
+
+	/**
+	 *
+	 */
+	protected ThreadPoolExecutor workers;
+
+	/**
+	 *
+	 */
+	protected AtomicInteger noQueuedJobs = new AtomicInteger();
+	protected AtomicLong noDoneJobs = new AtomicLong();
+	protected AtomicLong noFailedJobs = new AtomicLong();
+	protected Histogram waitTimes = new Histogram();
+	protected Histogram processingTimes = new Histogram();
+
+	/**
+	 *
+	 */
+	protected UploadJobManager(int noWorkers) {
+		final AtomicInteger noThreadsCreated = new AtomicInteger();
+		ThreadFactory threadFactory = new ThreadFactory() {
+			public Thread newThread(final Runnable runnable) {
+				final String name = "upload-worker-" + noThreadsCreated.incrementAndGet();
+				Thread result = new Thread(new Runnable() {
+					public void run() {
+						SessionManager.setThreadLocalSession(new SysSession(name));
+						runnable.run();
+					}
+				}, name);
+				result.setDaemon(true);
+				return result;
+			}
+		};
+
+		workers = new ThreadPoolExecutor(noWorkers, noWorkers, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+		workers.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 *
+	 */
+	protected UploadJob createObject(ResultSet rset) throws SQLException {
+		return new UploadJob(rset);
+	}
+
+	/**
+	 * Saves job and queues it for processing; returns false if job could not be saved and is not processed.
+	 *
+	 * @methodtype command
+	 */
+	public boolean addJob(UploadJob job) {
+		if (!insertJob(job)) {
+			return false;
+		}
+
+		submitJob(job);
+		return true;
+	}
+
+	/**
+	 * Returns false if job could not be saved, so that it could not be resumed after a restart.
+	 *
+	 * @methodtype command
+	 */
+	protected boolean insertJob(UploadJob job) {
+		try {
+			PreparedStatement stmt = getReadingStatement("INSERT INTO upload_jobs(id) VALUES(?)");
+			createObject(job, stmt, job.getPhotoId().asInt());
+			updateObject(job, getUpdatingStatement("SELECT * FROM upload_jobs WHERE id = ?"));
+			return true;
+		} catch (SQLException sex) {
+			SysLog.logThrowable(sex);
+			return false;
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void saveJob(UploadJob job) {
+		try {
+			PreparedStatement stmt = getUpdatingStatement("SELECT * FROM upload_jobs WHERE id = ?");
+			updateObject(job, stmt);
+		} catch (SQLException sex) {
+			SysLog.logThrowable(sex);
+		}
+	}
+
+	/**
+	 * Queues all jobs that were pending when the system was shut down.
+	 *
+	 * @methodtype command
+	 */
+	public void resumePendingJobs() {
+		Collection<UploadJob> jobs = new ArrayList<UploadJob>();
+		try {
+			PreparedStatement stmt = getReadingStatement("SELECT * FROM upload_jobs WHERE status = " + UploadJobStatus.PENDING.asInt());
+			readObjects(jobs, stmt);
+		} catch (SQLException sex) {
+			SysLog.logThrowable(sex);
+		}
+
+		for (UploadJob job : jobs) {
+			submitJob(job);
+		}
+
+		SysLog.logSysInfo("resumed pending upload jobs: " + jobs.size());
+	}
+
+	/**
+	 * Returns the NO_RECENT_JOBS latest jobs of the owner, latest first.
+	 *
+	 * @methodtype get
+	 */
+	public List<UploadJob> getRecentJobs(String ownerName) {
+		List<UploadJob> result = new ArrayList<UploadJob>();
+		try {
+			PreparedStatement stmt = getReadingStatement("SELECT * FROM upload_jobs WHERE owner_name = ? ORDER BY id DESC LIMIT " + NO_RECENT_JOBS);
+			readObjects(result, stmt, ownerName);
+		} catch (SQLException sex) {
+			SysLog.logThrowable(sex);
+		}
+
+		return result;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void submitJob(final UploadJob job) {
+		final long submitTime = System.nanoTime();
+		noQueuedJobs.incrementAndGet();
+		try {
+			workers.execute(new Runnable() {
+				public void run() {
+					waitTimes.recordSince(submitTime);
+					try {
+						processJob(job);
+					} finally {
+						noQueuedJobs.decrementAndGet();
+						SessionManager.getThreadLocalSession().returnDatabaseConnection();
+					}
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			noQueuedJobs.decrementAndGet();
+			SysLog.logSysInfo("upload job stays pending until restart: " + job.getIdAsString());
+		}
+	}
+
+	/**
+	 * Creates the image files of the job's photo and makes the photo visible, or deletes the photo on failure.
+	 *
+	 * @methodtype command
+	 */
+	protected void processJob(UploadJob job) {
+		long startTime = System.nanoTime();
+		PhotoManager pm = PhotoManager.getInstance();
+		Photo photo = pm.getPhotoFromId(job.getPhotoId());
+		if (photo == null) {
+			noFailedJobs.incrementAndGet();
+			job.setFinished(UploadJobStatus.FAILED, "photo does not exist");
+			saveJob(job);
+			return;
+		}
+
+		try {
+			Image image = PhotoUtil.createImageFiles(new File(job.getSourceFileName()), photo.getId());
+			photo.setWidthAndHeight(image.getWidth(null), image.getHeight(null));
+			if (photo.getStatus().isProcessing()) {
+				photo.setStatus(photo.getStatus().asProcessing(false)); // with changes made while processing
+			}
+			job.setFinished(UploadJobStatus.DONE, null);
+			noDoneJobs.incrementAndGet();
+		} catch (Exception ex) {
+			SysLog.logThrowable(ex);
+			photo.setStatus(PhotoStatus.DELETED);
+			job.setFinished(UploadJobStatus.FAILED, ex.getMessage());
+			noFailedJobs.incrementAndGet();
+		}
+
+		pm.savePhoto(photo);
+		saveJob(job);
+		processingTimes.recordSince(startTime);
+		SysLog.logSysInfo("upload job", job.getIdAsString(), "upload job " + job.getStatus().asString());
+	}
+
+	/**
+	 * Stops the workers; jobs not yet started stay pending and are resumed on the next startup.
+	 *
+	 * @methodtype command
+	 */
+	public void shutDown() {
+		workers.shutdown();
+		List<Runnable> dropped = new ArrayList<Runnable>();
+		workers.getQueue().drainTo(dropped); // still pending in the database
+		noQueuedJobs.addAndGet(-dropped.size());
+		try {
+			workers.awaitTermination(30, TimeUnit.SECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getNoQueuedJobs() {
+		return noQueuedJobs.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getStatisticsAsString() {
+		StringBuffer result = new StringBuffer(256);
+		result.append("queued=").append(getNoQueuedJobs());
+		result.append(", done=").append(noDoneJobs.get());
+		result.append(", failed=").append(noFailedJobs.get());
+		result.append(", wait times: ").append(waitTimes.asNanosSummaryString());
+		result.append(", processing times: ").append(processingTimes.asNanosSummaryString());
+		return result.toString();
+	}
+
+}
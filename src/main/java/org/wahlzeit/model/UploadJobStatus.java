@@ -0,0 +1,93 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import org.wahlzeit.utils.*;
+
+/**
+ * The UploadJobStatus of an UploadJob tells whether the image files of an uploaded photo are still to be created.
+ */
+public enum UploadJobStatus implements EnumValue {
+
+	/**
+	 *
+	 */
+	PENDING(0), DONE(1), FAILED(2);
+
+	/**
+	 * All possible states of UploadJobStatus
+	 */
+	private static UploadJobStatus[] allValues = {
+		PENDING, DONE, FAILED
+	};
+
+	/**
+	 *
+	 */
+	private static String[] valueNames = {
+		"pending", "done", "failed"
+	};
+
+	/**
+	 *
+	 */
+	public static UploadJobStatus getFromInt(int myValue) throws IllegalArgumentException {
+		if ((myValue >= 0) && (myValue < allValues.length)) {
+			return allValues[myValue];
+		}
+
+		throw new IllegalArgumentException("invalid UploadJobStatus int: " + myValue);
+	}
+
+	/**
+	 *
+	 */
+	private int value = 0;
+
+	/**
+	 *
+	 */
+	private UploadJobStatus(int myValue) {
+		value = myValue;
+	}
+
+	/**
+	 *
+	 */
+	public int asInt() {
+		return value;
+	}
+
+	/**
+	 *
+	 */
+	public String asString() {
+		return valueNames[value];
+	}
+
+	/**
+	 *
+	 */
+	public UploadJobStatus[] getAllValues() {
+		return allValues;
+	}
+
+	/**
+	 *
+	 */
+	public String getTypeName() {
+		return "UploadJobStatus";
+	}
+
+	/**
+	 *
+	 */
+	public boolean isFinished() {
+		return this != PENDING;
+	}
+
+}
@@ -252,6 +252,7 @@ public class User extends Client implements Persistent {
 	 * 
 	 */
 	public void setEmailAddress(EmailAddress myEmailAddress) {
+		EmailAddress oldEmailAddress = emailAddress;
 		super.setEmailAddress(myEmailAddress);
 		incWriteCount();
 		
@@ -259,6 +260,10 @@ public class User extends Client implements Persistent {
 			Photo photo = i.next();
 			photo.setOwnerEmailAddress(emailAddress);
 		}
+		
+		if (nameAsTag != null) { // not while initializing
+			UserManager.getInstance().emailAddressChanged(this, oldEmailAddress);
+		}
 	}
 	
 	/**
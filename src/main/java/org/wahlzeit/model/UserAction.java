@@ -0,0 +1,109 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import org.wahlzeit.utils.*;
+
+/**
+ * A UserAction is the kind of action a user performed, as recorded in the ActionLog.
+ * The int values are stored in action log files, so they must never change; new actions go at the end.
+ */
+public enum UserAction implements EnumValue {
+
+	/**
+	 *
+	 */
+	OTHER(0), LOGIN(1), SIGNUP(2), PRAISE_PHOTO(3), SKIP_PHOTO(4), FILTER_PHOTOS(5), UPLOAD_PHOTO(6),
+	FLAG_PHOTO(7), EDIT_PHOTO_CASE(8), EDIT_USER_PHOTO(9), SELECT_USER_PHOTO(10), DELETE_USER_PHOTO(11),
+	EDIT_USER_PROFILE(12), CHANGE_PASSWORD(13), SET_OPTIONS(14), TELL_FRIEND(15), SEND_EMAIL(16),
+	EMAIL_PASSWORD(17), EMAIL_USER_NAME(18), ADMIN_USER_PHOTO(19), ADMIN_USER_PROFILE(20);
+
+	/**
+	 * All possible states of UserAction
+	 */
+	private static UserAction[] allValues = {
+		OTHER, LOGIN, SIGNUP, PRAISE_PHOTO, SKIP_PHOTO, FILTER_PHOTOS, UPLOAD_PHOTO,
+		FLAG_PHOTO, EDIT_PHOTO_CASE, EDIT_USER_PHOTO, SELECT_USER_PHOTO, DELETE_USER_PHOTO,
+		EDIT_USER_PROFILE, CHANGE_PASSWORD, SET_OPTIONS, TELL_FRIEND, SEND_EMAIL,
+		EMAIL_PASSWORD, EMAIL_USER_NAME, ADMIN_USER_PHOTO, ADMIN_USER_PROFILE
+	};
+
+	/**
+	 * Names as used in the text log
+	 */
+	private static String[] valueNames = {
+		"Other", "Login", "Signup", "PraisePhoto", "SkipPhoto", "FilterPhotos", "UploadPhoto",
+		"FlagPhoto", "EditPhotoCase", "EditUserPhoto", "SelectUserPhoto", "DeleteUserPhoto",
+		"EditUserProfile", "ChangePassword", "SetOptions", "TellFriend", "SendEmail",
+		"EmailPassword", "EmailUserName", "AdminUserPhoto", "AdminUserProfile"
+	};
+
+	/**
+	 *
+	 */
+	public static UserAction getFromInt(int myValue) throws IllegalArgumentException {
+		if ((myValue >= 0) && (myValue < allValues.length)) {
+			return allValues[myValue];
+		}
+
+		throw new IllegalArgumentException("invalid UserAction int: " + myValue);
+	}
+
+	/**
+	 * Returns the action of the given name, or OTHER for an unknown name.
+	 */
+	public static UserAction getFromString(String myValue) {
+		for (int i = 0; i < valueNames.length; i++) {
+			if (valueNames[i].equals(myValue)) {
+				return allValues[i];
+			}
+		}
+
+		return OTHER;
+	}
+
+	/**
+	 *
+	 */
+	private int value = 0;
+
+	/**
+	 *
+	 */
+	private UserAction(int myValue) {
+		value = myValue;
+	}
+
+	/**
+	 *
+	 */
+	public int asInt() {
+		return value;
+	}
+
+	/**
+	 *
+	 */
+	public String asString() {
+		return valueNames[value];
+	}
+
+	/**
+	 *
+	 */
+	public UserAction[] getAllValues() {
+		return allValues;
+	}
+
+	/**
+	 *
+	 */
+	public String getTypeName() {
+		return "UserAction";
+	}
+
+}
@@ -62,7 +62,7 @@ public class UserLog extends Log {
 	/**
 	 * 
 	 */
-	public static StringBuffer createUserLogEntry() {
+	public static LogEntry createUserLogEntry() {
 		return Log.createLogEntry("ul");
 	}
 
@@ -70,41 +70,67 @@ public class UserLog extends Log {
 	 * 
 	 */
 	public static void logPerformedAction(String action) {
-		log(createActionEntry(action));
+		logAction(createActionEntry(action));
+	}
+	
+	/**
+	 * 
+	 */
+	public static void logPerformedAction(String action, PhotoId photoId) {
+		logAction(createActionEntry(action), photoId);
+	}
+	
+	/**
+	 * Logs entry and, if it is an action entry, records the action in the ActionLog.
+	 */
+	public static void logAction(LogEntry entry) {
+		logAction(entry, PhotoId.NULL_ID);
+	}
+	
+	/**
+	 * Logs entry and, if it is an action entry, records the action on photoId in the ActionLog.
+	 */
+	public static void logAction(LogEntry entry, PhotoId photoId) {
+		Log.log(entry);
+		
+		String action = entry.getFieldValue("action");
+		if (action != null) {
+			ActionLog.getInstance().record(UserAction.getFromString(action), photoId);
+		}
 	}
 	
 	/**
 	 * @methodtype factory
 	 */
-	public static StringBuffer createActionEntry(String action) {
-		StringBuffer sb = createUserLogEntry();
-		addLogType(sb, "info");
-		addField(sb, "action", action);
-		return sb;
+	public static LogEntry createActionEntry(String action) {
+		LogEntry entry = createUserLogEntry();
+		addLogType(entry, "info");
+		addField(entry, "action", action);
+		return entry;
 	}
 	
 	/**
 	 * 
 	 */
-	public static void addCreatedObject(StringBuffer sb, String type, String object) {
-		addField(sb, "created", type);
-		addField(sb, "object", object);
+	public static void addCreatedObject(LogEntry entry, String type, String object) {
+		addField(entry, "created", type);
+		addField(entry, "object", object);
 	}
 	
 	/**
 	 * 
 	 */
-	public static void addUpdatedObject(StringBuffer sb, String type, String object) {
-		addField(sb, "updated", type);
-		addField(sb, "object", object);
+	public static void addUpdatedObject(LogEntry entry, String type, String object) {
+		addField(entry, "updated", type);
+		addField(entry, "object", object);
 	}
 	
 	/**
 	 * 
 	 */
-	public static void addDeletedObject(StringBuffer sb, String type, String object) {
-		addField(sb, "deleted", type);
-		addField(sb, "object", object);
+	public static void addDeletedObject(LogEntry entry, String type, String object) {
+		addField(entry, "deleted", type);
+		addField(entry, "object", object);
 	}
 	
 }
@@ -21,6 +21,8 @@
 package org.wahlzeit.model;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.sql.*;
 
 import org.wahlzeit.services.*;
@@ -54,9 +56,39 @@ public class UserManager extends ObjectManager {
 	}
 	
 	/**
-	 * Maps nameAsTag to user of that name (as tag)
+	 * Maps nameAsTag to user of that name (as tag); keeps the email address index below up to date.
+	 * Users still held by sessions after eviction are handed out again rather than reloaded, so their changes are kept.
 	 */
-	protected Map<String, User> users = new HashMap<String, User>();
+	protected ObjectCache<String, User> users = new ObjectCache<String, User>(SysConfig.getUserCacheSizeAsInt()) {
+		protected void doAdded(String tag, User user) {
+			addToEmailAddressIndex(user.getEmailAddress(), user);
+		}
+		
+		protected void doRemoved(String tag, User user) {
+			removeFromEmailAddressIndex(user.getEmailAddress(), user);
+		}
+	};
+	
+	/**
+	 * Secondary index over the cached users
+	 */
+	protected Map<EmailAddress, User> usersByEmailAddress = new ConcurrentHashMap<EmailAddress, User>();
+	
+	/**
+	 * 
+	 */
+	protected AtomicLong emailAddressHits = new AtomicLong();
+	protected AtomicLong emailAddressMisses = new AtomicLong();
+	
+	/**
+	 * Loads a user from the database on a cache miss
+	 */
+	protected ObjectCache.Loader<String, User> userLoader = new ObjectCache.Loader<String, User>() {
+		public User load(String tag) throws SQLException {
+			PreparedStatement stmt = getReadingStatement("SELECT * FROM users WHERE name_as_tag = ?");
+			return (User) readObject(stmt, tag);
+		}
+	};
 	
 	/**
 	 * 
@@ -83,7 +115,7 @@ public class UserManager extends ObjectManager {
 	 * 
 	 */
 	protected boolean doHasUserByTag(String tag) {
-		return doGetUserByTag(tag) != null;
+		return users.contains(tag);
 	}
 	
 	/**
@@ -99,19 +131,11 @@ public class UserManager extends ObjectManager {
 	public User getUserByTag(String tag) {
 		assertIsNonNullArgument(tag, "user-by-tag");
 
-		User result = doGetUserByTag(tag);
-
-		if (result == null) {
-			try {
-				PreparedStatement stmt = getReadingStatement("SELECT * FROM users WHERE name_as_tag = ?");
-				result = (User) readObject(stmt, tag);
-			} catch (SQLException sex) {
-				SysLog.logThrowable(sex);
-			}
-			
-			if (result != null) {
-				doAddUser(result);
-			}
+		User result = null;
+		try {
+			result = users.get(tag, userLoader);
+		} catch (SQLException sex) {
+			SysLog.logThrowable(sex);
 		}
 		
 		return result;
@@ -213,9 +237,7 @@ public class UserManager extends ObjectManager {
 			readObjects(result, stmt);
 			for (Iterator<User> i = result.iterator(); i.hasNext(); ) {
 				User user = i.next();
-				if (!doHasUserByTag(user.getNameAsTag())) {
-					doAddUser(user);
-				} else {
+				if (users.putIfAbsent(user.getNameAsTag(), user) != null) {
 					SysLog.logSysInfo("user", user.getName(), "user had already been loaded");
 				}
 			}
@@ -269,6 +291,24 @@ public class UserManager extends ObjectManager {
 		emailService.sendEmailIgnoreException(from, to, us.cfg().getAuditEmailAddress(), emailSubject, emailBody);
 	}
 	
+	/**
+	 * Loads all users into the cache, streaming and reading them in parallel.
+	 * Call after PhotoManager.loadPhotosInBulk() so that users find their photos in memory.
+	 */
+	public void loadUsersInBulk() {
+		try {
+			PreparedStatement stmt = getReadingStatement("SELECT * FROM users");
+			for (Persistent object : readObjectsInParallel(stmt)) {
+				User user = (User) object;
+				users.putIfAbsent(user.getNameAsTag(), user);
+			}
+		} catch (SQLException sex) {
+			SysLog.logThrowable(sex);
+		}
+		
+		SysLog.logSysInfo("loaded all users in bulk");
+	}
+	
 	/**
 	 * 
 	 */
@@ -293,9 +333,19 @@ public class UserManager extends ObjectManager {
 	 * 
 	 */
 	public void saveUsers() {
+		saveUsers(users.values());
+	}
+	
+	/**
+	 * Saves the dirty ones of the given users.
+	 */
+	public void saveUsers(Collection<User> someUsers) {
+		if (someUsers.isEmpty()) {
+			return;
+		}
+		
 		try {
-			PreparedStatement stmt = getUpdatingStatement("SELECT * FROM users WHERE id = ?");
-			updateObjects(users.values(), stmt);
+			updateObjectsInBatches(someUsers, "users");
 		} catch (SQLException sex) {
 			SysLog.logThrowable(sex);
 		}
@@ -312,7 +362,14 @@ public class UserManager extends ObjectManager {
 	 * 
 	 */
 	public User getUserByEmailAddress(EmailAddress emailAddress) {
-		User result = null;
+		User result = usersByEmailAddress.get(emailAddress);
+		if ((result != null) && emailAddress.isEqual(result.getEmailAddress())) {
+			emailAddressHits.incrementAndGet();
+			return result;
+		}
+		
+		emailAddressMisses.incrementAndGet();
+		result = null;
 		try {
 			PreparedStatement stmt = getReadingStatement("SELECT * FROM users WHERE email_address = ?");
 			result = (User) readObject(stmt, emailAddress.asString());
@@ -321,17 +378,53 @@ public class UserManager extends ObjectManager {
 		}
 		
 		if (result != null) {
-			User current = doGetUserByTag(result.getNameAsTag());
-			if (current == null) {
-				doAddUser(result);
-			} else {
+			User current = users.putIfAbsent(result.getNameAsTag(), result);
+			if (current != null) {
 				result = current;
 			}
+			if (!emailAddress.isEqual(result.getEmailAddress())) {
+				result = null; // cached user has changed the email address since it was saved
+			}
 		}
 
 		return result;
 	}
 	
+	/**
+	 * Keeps the email address index current when a cached user changes the email address.
+	 */
+	public void emailAddressChanged(User user, EmailAddress oldEmailAddress) {
+		if (users.peek(user.getNameAsTag()) == user) {
+			removeFromEmailAddressIndex(oldEmailAddress, user);
+			addToEmailAddressIndex(user.getEmailAddress(), user);
+		}
+	}
+	
+	/**
+	 * 
+	 */
+	protected void addToEmailAddressIndex(EmailAddress emailAddress, User user) {
+		if ((emailAddress != null) && !emailAddress.isEmpty()) {
+			usersByEmailAddress.put(emailAddress, user);
+		}
+	}
+	
+	/**
+	 * 
+	 */
+	protected void removeFromEmailAddressIndex(EmailAddress emailAddress, User user) {
+		if (emailAddress != null) {
+			usersByEmailAddress.remove(emailAddress, user);
+		}
+	}
+	
+	/**
+	 * @methodtype get
+	 */
+	public String getStatisticsAsString() {
+		return users.getStatisticsAsString() + ", email address hits=" + emailAddressHits.get() + ", misses=" + emailAddressMisses.get();
+	}
+	
 	/**
 	 * 
 	 * @methodtype assertion
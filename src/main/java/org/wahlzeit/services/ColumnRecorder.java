@@ -0,0 +1,153 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * A ColumnRecorder captures the column values a Persistent writes in writeOn(ResultSet).
+ * It hands out a ResultSet stand-in that only understands the updateXxx(String, value) methods used by writeOn.
+ * The recorded values can then be bound to a prepared statement, e.g. to batch updates of many objects.
+ */
+public class ColumnRecorder implements InvocationHandler {
+
+	/**
+	 *
+	 */
+	protected static final Map<String, Integer> sqlTypes = new HashMap<String, Integer>();
+
+	/**
+	 *
+	 */
+	static {
+		sqlTypes.put("updateString", Types.VARCHAR);
+		sqlTypes.put("updateInt", Types.INTEGER);
+		sqlTypes.put("updateLong", Types.BIGINT);
+		sqlTypes.put("updateShort", Types.SMALLINT);
+		sqlTypes.put("updateBoolean", Types.BOOLEAN);
+		sqlTypes.put("updateDouble", Types.DOUBLE);
+		sqlTypes.put("updateFloat", Types.REAL);
+	}
+
+	/**
+	 *
+	 */
+	public static ColumnRecorder record(Persistent obj) throws SQLException {
+		ColumnRecorder result = new ColumnRecorder();
+		obj.writeOn(result.asResultSet());
+		return result;
+	}
+
+	/**
+	 * Column names in write order, mapped to their values
+	 */
+	protected Map<String, Object> values = new LinkedHashMap<String, Object>();
+	protected Map<String, Integer> types = new HashMap<String, Integer>();
+
+	/**
+	 *
+	 */
+	public ColumnRecorder() {
+		// do nothing
+	}
+
+	/**
+	 *
+	 */
+	public ResultSet asResultSet() {
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class }, this);
+	}
+
+	/**
+	 *
+	 */
+	public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+		String name = method.getName();
+		Integer sqlType = sqlTypes.get(name);
+		if ((sqlType != null) && (args.length == 2) && (args[0] instanceof String)) {
+			String column = (String) args[0];
+			values.put(column, args[1]);
+			types.put(column, sqlType);
+			return null;
+		} else if (name.equals("updateNull") && (args.length == 1) && (args[0] instanceof String)) {
+			values.put((String) args[0], null);
+			types.put((String) args[0], Types.NULL);
+			return null;
+		} else if (name.equals("hashCode")) {
+			return System.identityHashCode(proxy);
+		} else if (name.equals("equals")) {
+			return proxy == args[0];
+		} else if (name.equals("toString")) {
+			return "ColumnRecorder" + values.keySet();
+		}
+
+		throw new SQLFeatureNotSupportedException("ColumnRecorder does not support " + name);
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public Set<String> getColumns() {
+		return values.keySet();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public Object getValue(String column) {
+		return values.get(column);
+	}
+
+	/**
+	 * Returns "UPDATE table SET c1 = ?, c2 = ? WHERE key = ?" over all recorded columns except the key column.
+	 *
+	 * @methodtype conversion
+	 */
+	public String asUpdateStatement(String tableName, String keyColumn) {
+		StringBuffer result = new StringBuffer(256);
+		result.append("UPDATE ").append(tableName).append(" SET ");
+		boolean isFirst = true;
+		for (String column : values.keySet()) {
+			if (!column.equals(keyColumn)) {
+				if (!isFirst) {
+					result.append(", ");
+				}
+				result.append(column).append(" = ?");
+				isFirst = false;
+			}
+		}
+		result.append(" WHERE ").append(keyColumn).append(" = ?");
+		return result.toString();
+	}
+
+	/**
+	 * Binds the recorded values in the order of asUpdateStatement(); returns the position of the key parameter.
+	 *
+	 * @methodtype command
+	 */
+	public int bindUpdateParameters(PreparedStatement stmt, String keyColumn) throws SQLException {
+		int pos = 1;
+		for (Map.Entry<String, Object> entry : values.entrySet()) {
+			String column = entry.getKey();
+			if (!column.equals(keyColumn)) {
+				Object value = entry.getValue();
+				if (value == null) {
+					int sqlType = types.get(column);
+					stmt.setNull(pos, (sqlType == Types.NULL) ? Types.VARCHAR : sqlType);
+				} else {
+					stmt.setObject(pos, value, types.get(column));
+				}
+				pos++;
+			}
+		}
+
+		return pos;
+	}
+
+}
@@ -36,6 +36,11 @@ public abstract class DataObject implements Persistent {
 	 */
 	protected transient int writeCount = 0;
 	
+	/**
+	 * Counts all changes and, unlike the write count, is not reset on save; for invalidating derived data
+	 */
+	protected transient volatile int version = 0;
+	
 	/**
 	 * 
 	 */
@@ -55,6 +60,14 @@ public abstract class DataObject implements Persistent {
 	 */
 	public final void incWriteCount() {
 		writeCount++;
+		version++;
+	}
+	
+	/**
+	 * @methodtype get
+	 */
+	public int getVersion() {
+		return version;
 	}
 	
 	/**
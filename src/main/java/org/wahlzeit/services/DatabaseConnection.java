@@ -25,7 +25,7 @@ import java.util.*;
 
 /**
  * A database connection wraps an RDMBS connection object.
- * It pools and reuses existing connections; it caches common SQL statements.
+ * It is pooled and reused through a DatabaseConnectionPool; it caches common SQL statements.
  *
  * @author dirkriehle
  *
@@ -35,27 +35,41 @@ public class DatabaseConnection {
 	/**
 	 * 
 	 */
-	protected static Set<DatabaseConnection> pool = new HashSet<DatabaseConnection>();
+	protected static volatile DatabaseConnectionPool pool = null;
 	
 	/**
 	 * 
 	 */
-	protected static int dbcId = 0;
+	public static DatabaseConnectionPool getPool() {
+		DatabaseConnectionPool result = pool;
+		if (result == null) {
+			synchronized (DatabaseConnection.class) {
+				result = pool;
+				if (result == null) {
+					result = new DatabaseConnectionPool();
+					pool = result;
+				}
+			}
+		}
+		
+		return result;
+	}
 	
 	/**
-	 * 
+	 * Drop pool (and close its idle connections) to cope with repeated startup/shutdown scenarios
 	 */
-	public static synchronized DatabaseConnection ensureDatabaseConnection() throws SQLException {
-		DatabaseConnection result = null;
-		if (pool.isEmpty()) {
-			result = new DatabaseConnection("dbc" + dbcId++);
-			SysLog.logCreatedObject("DatabaseConnection", result.getName());
-		} else {
-			result = pool.iterator().next();
-			pool.remove(result);
+	public static synchronized void dropPool() {
+		if (pool != null) {
+			pool.closeIdleConnections();
+			pool = null;
 		}
-		
-		return result;
+	}
+	
+	/**
+	 * 
+	 */
+	public static DatabaseConnection ensureDatabaseConnection() throws SQLException {
+		return getPool().borrowConnection();
 	}
 
 	/**
@@ -70,7 +84,9 @@ public class DatabaseConnection {
 		String dbUrl = SysConfig.getDbConnectionAsString();
 		do {
 			try {
-				DatabaseConnection.ensureDatabaseConnection();
+				DatabaseConnection dbc = DatabaseConnection.ensureDatabaseConnection();
+				DatabaseConnection.returnDatabaseConnection(dbc);
+				getPool().fillToMinSize();
 				SysLog.logSysInfo("[success] Service check for URL " + dbUrl);
 				return true;
 			} catch (final SQLException e) {
@@ -96,16 +112,8 @@ public class DatabaseConnection {
 	/**
 	 * 
 	 */
-	public static synchronized void returnDatabaseConnection(DatabaseConnection dbc) {
-		if (dbc != null) {
-			if (dbc.isOpen()) {
-				pool.add(dbc);				
-			} else {
-				SysLog.logSysError("tried to return closed database connection to pool; ignoring it");
-			}
-		} else {
-			SysLog.logSysError("tried to return null to database connection pool; ignoring it");
-		}
+	public static void returnDatabaseConnection(DatabaseConnection dbc) {
+		getPool().returnConnection(dbc);
 	}
 	
 	/**
@@ -119,10 +127,15 @@ public class DatabaseConnection {
 	protected Connection rdbmsConnection = null;
 	
 	/**
-	 * Map contains prepared statements retrieved by query string
+	 * Time this connection was last returned to the pool, in milliseconds
 	 */
-	protected Map<String, PreparedStatement> readingStatements = new HashMap<String, PreparedStatement>();
-	protected Map<String, PreparedStatement> updatingStatements = new HashMap<String, PreparedStatement>();
+	protected volatile long lastUsedTime = System.currentTimeMillis();
+	
+	/**
+	 * Caches contain prepared statements retrieved by query string, bounded by SysConfig's statement cache size
+	 */
+	protected StatementCache readingStatements = null;
+	protected StatementCache updatingStatements = null;
 
 	/**
 	 * 
@@ -130,6 +143,10 @@ public class DatabaseConnection {
 	protected DatabaseConnection(String dbcName) throws SQLException {
 		name = dbcName;
 		rdbmsConnection = openRdbmsConnection();
+		
+		int cacheSize = SysConfig.getDbStatementCacheSizeAsInt();
+		readingStatements = new StatementCache(cacheSize);
+		updatingStatements = new StatementCache(cacheSize);
 	}
 	
 	/**
@@ -137,13 +154,26 @@ public class DatabaseConnection {
 	 */
 	protected void finalize() {
 		try {
-			pool.remove(this); // just to be sure...
-			closeConnection(rdbmsConnection);
+			if (isOpen()) {
+				closeConnection(rdbmsConnection);
+			}
 		} catch (Throwable t) {
 			SysLog.logThrowable(t);
 		}
 	}
 	
+	/**
+	 * 
+	 */
+	public void close() throws SQLException {
+		readingStatements.clear();
+		updatingStatements.clear();
+		
+		if (rdbmsConnection != null) {
+			closeConnection(rdbmsConnection);
+		}
+	}
+	
 	/**
 	 * 
 	 */
@@ -166,6 +196,35 @@ public class DatabaseConnection {
 		return result;
 	}
 	
+	/**
+	 * Checks the connection with a round trip to the database.
+	 */
+	public boolean isValid(int timeoutSeconds) {
+		boolean result = false;
+		
+		try {
+			result = (rdbmsConnection != null) && rdbmsConnection.isValid(timeoutSeconds);
+		} catch (SQLException ex) {
+			SysLog.logThrowable(ex);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 */
+	public long getLastUsedTime() {
+		return lastUsedTime;
+	}
+	
+	/**
+	 * 
+	 */
+	public void setLastUsedTime(long newLastUsedTime) {
+		lastUsedTime = newLastUsedTime;
+	}
+	
     /**
      * 
      */
@@ -201,6 +260,62 @@ public class DatabaseConnection {
 		return result;
 	}
 		
+	/**
+	 * Keeps a cached statement of this connection from being evicted, for example while it has a pending batch.
+	 */
+	public void pinStatement(PreparedStatement stmt) {
+		readingStatements.pin(stmt);
+		updatingStatements.pin(stmt);
+	}
+	
+	/**
+	 * 
+	 */
+	public void unpinStatement(PreparedStatement stmt) {
+		readingStatements.unpin(stmt);
+		updatingStatements.unpin(stmt);
+	}
+	
+	/**
+	 * Returns the query string a cached statement of this connection was prepared from, or null if unknown.
+	 */
+	public String getQuery(PreparedStatement stmt) {
+		String result = readingStatements.getQuery(stmt);
+		if (result == null) {
+			result = updatingStatements.getQuery(stmt);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Accounts the time since startTime (from System.nanoTime()) to the statement's query string and the thread's session.
+	 */
+	public void recordExecution(PreparedStatement stmt, long startTime) {
+		long elapsed = System.nanoTime() - startTime;
+		String source = null;
+		Session session = SessionManager.getThreadLocalSession();
+		if (session != null) {
+			session.addDatabaseTime(elapsed);
+			source = session.getRequestName();
+		}
+		
+		String query = getQuery(stmt);
+		if (query != null) {
+			StatementStatistics.getInstance().record(query, elapsed, source);
+		}
+	}
+	
+	/**
+	 * Accounts rows read or written to the statement's query string.
+	 */
+	public void recordRows(PreparedStatement stmt, long rows) {
+		String query = getQuery(stmt);
+		if (query != null) {
+			StatementStatistics.getInstance().addRows(query, rows);
+		}
+	}
+	
 	/**
 	 *
 	 */
@@ -0,0 +1,326 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A DatabaseConnectionPool hands out and takes back DatabaseConnections.
+ * The number of open connections is bounded by a fair semaphore; borrowers wait up to the borrow timeout for a permit.
+ * Idle connections are kept on a lock-free stack, validated on borrow, and closed once idle longer than the idle timeout.
+ */
+public class DatabaseConnectionPool {
+
+	/**
+	 *
+	 */
+	protected int minSize;
+	protected int maxSize;
+	protected long borrowTimeout;
+	protected long idleTimeout;
+	protected long validationInterval;
+
+	/**
+	 * One permit per connection that may be handed out; fair so waiters are served in order
+	 */
+	protected Semaphore permits;
+
+	/**
+	 * Most recently returned connection first, so warm connections are reused and cold ones age out
+	 */
+	protected Deque<DatabaseConnection> idleConnections = new ConcurrentLinkedDeque<DatabaseConnection>();
+
+	/**
+	 * Connections handed out and not yet returned; a connection returned twice is only taken back once
+	 */
+	protected Set<DatabaseConnection> borrowedConnections = ConcurrentHashMap.newKeySet();
+
+	/**
+	 *
+	 */
+	protected AtomicInteger idleCount = new AtomicInteger();
+	protected AtomicInteger activeCount = new AtomicInteger();
+	protected AtomicInteger nextId = new AtomicInteger();
+
+	/**
+	 *
+	 */
+	protected AtomicLong createdCount = new AtomicLong();
+	protected AtomicLong closedCount = new AtomicLong();
+	protected AtomicLong timeoutCount = new AtomicLong();
+	protected AtomicLong invalidCount = new AtomicLong();
+	protected Histogram waitTimes = new Histogram();
+
+	/**
+	 *
+	 */
+	public DatabaseConnectionPool() {
+		this(SysConfig.getDbPoolMinSizeAsInt(), SysConfig.getDbPoolMaxSizeAsInt(), SysConfig.getDbPoolBorrowTimeoutAsLong(), SysConfig.getDbPoolIdleTimeoutAsLong(), SysConfig.getDbPoolValidationIntervalAsLong());
+	}
+
+	/**
+	 *
+	 */
+	public DatabaseConnectionPool(int myMinSize, int myMaxSize, long myBorrowTimeout, long myIdleTimeout, long myValidationInterval) {
+		assertIsValidSize(myMinSize, myMaxSize);
+
+		minSize = myMinSize;
+		maxSize = myMaxSize;
+		borrowTimeout = myBorrowTimeout;
+		idleTimeout = myIdleTimeout;
+		validationInterval = myValidationInterval;
+
+		permits = new Semaphore(maxSize, true);
+	}
+
+	/**
+	 * Borrows a connection, waiting at most the borrow timeout if all connections are in use.
+	 *
+	 * @methodtype command
+	 */
+	public DatabaseConnection borrowConnection() throws SQLException {
+		long startTime = System.nanoTime();
+		boolean hasPermit = false;
+		try {
+			hasPermit = permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		waitTimes.recordSince(startTime);
+
+		if (!hasPermit) {
+			timeoutCount.incrementAndGet();
+			throw new SQLException("no database connection available after " + borrowTimeout + "ms (" + getStatisticsAsString() + ")");
+		}
+
+		try {
+			DatabaseConnection result = pollValidConnection();
+			if (result == null) {
+				result = createConnection();
+			}
+
+			borrowedConnections.add(result);
+			activeCount.incrementAndGet();
+			return result;
+		} catch (SQLException | RuntimeException ex) {
+			permits.release();
+			throw ex;
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void returnConnection(DatabaseConnection dbc) {
+		if (dbc == null) {
+			SysLog.logSysError("tried to return null to database connection pool; ignoring it");
+			return;
+		}
+
+		if (!borrowedConnections.remove(dbc)) {
+			SysLog.logSysError("tried to return database connection " + dbc.getName() + " that is not borrowed; ignoring it");
+			return;
+		}
+
+		activeCount.decrementAndGet();
+		if (dbc.isOpen()) {
+			dbc.setLastUsedTime(System.currentTimeMillis());
+			idleConnections.offerFirst(dbc);
+			idleCount.incrementAndGet();
+		} else {
+			SysLog.logSysError("tried to return closed database connection to pool; ignoring it");
+		}
+
+		permits.release();
+		evictIdleConnections();
+	}
+
+	/**
+	 * Closes connections that have been idle longer than the idle timeout, keeping at least min size connections.
+	 *
+	 * @methodtype command
+	 */
+	public void evictIdleConnections() {
+		long deadline = System.currentTimeMillis() - idleTimeout;
+		while (idleCount.get() > minSize) {
+			DatabaseConnection oldest = idleConnections.peekLast();
+			if ((oldest == null) || (oldest.getLastUsedTime() > deadline)) {
+				return;
+			}
+
+			if (idleConnections.removeLastOccurrence(oldest)) {
+				idleCount.decrementAndGet();
+				SysLog.logSysInfo("evicting idle database connection: " + oldest.getName());
+				closeConnection(oldest);
+			}
+		}
+	}
+
+	/**
+	 * Opens idle connections until the pool holds at least min size connections.
+	 *
+	 * @methodtype command
+	 */
+	public void fillToMinSize() throws SQLException {
+		while ((idleCount.get() + activeCount.get()) < minSize) {
+			DatabaseConnection dbc = createConnection();
+			dbc.setLastUsedTime(System.currentTimeMillis());
+			idleConnections.offerLast(dbc);
+			idleCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void closeIdleConnections() {
+		for (DatabaseConnection dbc = idleConnections.pollFirst(); dbc != null; dbc = idleConnections.pollFirst()) {
+			idleCount.decrementAndGet();
+			closeConnection(dbc);
+		}
+	}
+
+	/**
+	 * @methodtype helper
+	 */
+	protected DatabaseConnection pollValidConnection() {
+		for (DatabaseConnection dbc = idleConnections.pollFirst(); dbc != null; dbc = idleConnections.pollFirst()) {
+			idleCount.decrementAndGet();
+			if (isValidConnection(dbc)) {
+				return dbc;
+			}
+
+			invalidCount.incrementAndGet();
+			SysLog.logSysInfo("discarding invalid database connection: " + dbc.getName());
+			closeConnection(dbc);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Connections used within the validation interval are trusted; older ones are checked with a round trip.
+	 *
+	 * @methodtype boolean-query
+	 */
+	protected boolean isValidConnection(DatabaseConnection dbc) {
+		if ((System.currentTimeMillis() - dbc.getLastUsedTime()) < validationInterval) {
+			return dbc.isOpen();
+		}
+
+		return dbc.isValid(Math.max(1, (int) (borrowTimeout / 1000)));
+	}
+
+	/**
+	 * @methodtype factory
+	 */
+	protected DatabaseConnection createConnection() throws SQLException {
+		DatabaseConnection result = new DatabaseConnection("dbc" + nextId.getAndIncrement());
+		createdCount.incrementAndGet();
+		SysLog.logCreatedObject("DatabaseConnection", result.getName());
+		return result;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void closeConnection(DatabaseConnection dbc) {
+		try {
+			dbc.close();
+		} catch (SQLException ex) {
+			SysLog.logThrowable(ex);
+		}
+
+		closedCount.incrementAndGet();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getMinSize() {
+		return minSize;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getActiveCount() {
+		return activeCount.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getIdleCount() {
+		return idleCount.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getWaitingCount() {
+		return permits.getQueueLength();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getCreatedCount() {
+		return createdCount.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public Histogram getWaitTimes() {
+		return waitTimes;
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	public String getStatisticsAsString() {
+		StringBuffer result = new StringBuffer(128);
+		result.append("active=").append(getActiveCount());
+		result.append(", idle=").append(getIdleCount());
+		result.append(", waiting=").append(getWaitingCount());
+		result.append(", max=").append(getMaxSize());
+		result.append(", created=").append(getCreatedCount());
+		result.append(", closed=").append(closedCount.get());
+		result.append(", invalid=").append(invalidCount.get());
+		result.append(", timeouts=").append(getTimeoutCount());
+		result.append(", wait: ").append(waitTimes.asNanosSummaryString());
+		return result.toString();
+	}
+
+	/**
+	 * @methodtype assertion
+	 */
+	protected static void assertIsValidSize(int min, int max) {
+		if ((min < 0) || (max < 1) || (min > max)) {
+			throw new IllegalArgumentException("invalid pool size: min=" + min + ", max=" + max);
+		}
+	}
+
+}
@@ -21,6 +21,7 @@
 package org.wahlzeit.services;
 
 import java.util.*;
+import java.util.concurrent.*;
 import javax.mail.internet.*;
 
 import org.wahlzeit.utils.*;
@@ -34,7 +35,7 @@ public class EmailAddress {
 	/**
 	 * 
 	 */
-	protected static final Map<String, EmailAddress> instances = new HashMap<String, EmailAddress>();
+	protected static final Map<String, EmailAddress> instances = new ConcurrentHashMap<String, EmailAddress>();
 	
 	/**
 	 * 
@@ -0,0 +1,222 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A FileChannelCache keeps a bounded number of read-only file channels open, least recently used ones are closed first.
+ * Channels are shared between threads, which must only use positional reads and transfers on them.
+ * A channel is acquired for the time of use; an evicted channel is closed once its last user released it.
+ * Cached files are assumed not to change on disk; whoever replaces or deletes one must invalidate() it.
+ */
+public class FileChannelCache {
+
+	/**
+	 * An open file, counted by its users
+	 */
+	public static class OpenFile {
+
+		/**
+		 *
+		 */
+		protected Path path;
+		protected FileChannel channel;
+		protected long size;
+		protected long lastModified;
+
+		/**
+		 * Number of users, plus one while the file is in the cache
+		 */
+		protected int noReferences = 1;
+
+		/**
+		 *
+		 */
+		protected OpenFile(Path myPath) throws IOException {
+			path = myPath;
+			channel = FileChannel.open(path, StandardOpenOption.READ);
+			size = channel.size();
+			lastModified = Files.getLastModifiedTime(path).toMillis();
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		public Path getPath() {
+			return path;
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		public FileChannel getChannel() {
+			return channel;
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		/**
+		 * @methodtype command
+		 */
+		protected synchronized boolean acquire() {
+			if (noReferences == 0) {
+				return false; // closed already
+			}
+			noReferences++;
+			return true;
+		}
+
+		/**
+		 * @methodtype command
+		 */
+		public synchronized void release() {
+			noReferences--;
+			if (noReferences == 0) {
+				try {
+					channel.close();
+				} catch (IOException ioex) {
+					SysLog.logThrowable(ioex);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 *
+	 */
+	protected int maxSize;
+
+	/**
+	 *
+	 */
+	protected Map<Path, OpenFile> openFiles;
+
+	/**
+	 *
+	 */
+	protected AtomicLong hits = new AtomicLong();
+	protected AtomicLong misses = new AtomicLong();
+
+	/**
+	 *
+	 */
+	public FileChannelCache(int myMaxSize) {
+		maxSize = myMaxSize;
+		openFiles = new LinkedHashMap<Path, OpenFile>(16, 0.75f, true) {
+			private static final long serialVersionUID = 42L; // never serialized
+			protected boolean removeEldestEntry(Map.Entry<Path, OpenFile> eldest) {
+				if (size() > maxSize) {
+					eldest.getValue().release();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the open file for path, acquired for the caller, who must release() it after use.
+	 *
+	 * @methodtype get
+	 */
+	public OpenFile acquire(Path path) throws IOException {
+		synchronized(openFiles) {
+			OpenFile result = openFiles.get(path);
+			if ((result != null) && result.acquire()) {
+				hits.incrementAndGet();
+				return result;
+			}
+
+			if (result != null) {
+				openFiles.remove(path);
+				result.release();
+			}
+		}
+
+		misses.incrementAndGet();
+		OpenFile result = new OpenFile(path); // opening may take a while, so not under the lock
+		result.acquire();
+		synchronized(openFiles) {
+			OpenFile other = openFiles.put(path, result);
+			if (other != null) {
+				other.release();
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Drops the file for path from the cache, e.g. because it was deleted; it is closed once its last user released it.
+	 *
+	 * @methodtype command
+	 */
+	public void invalidate(Path path) {
+		synchronized(openFiles) {
+			OpenFile file = openFiles.remove(path);
+			if (file != null) {
+				file.release();
+			}
+		}
+	}
+
+	/**
+	 * Closes all files not in use and drops all files from the cache.
+	 *
+	 * @methodtype command
+	 */
+	public void clear() {
+		synchronized(openFiles) {
+			for (OpenFile file : openFiles.values()) {
+				file.release();
+			}
+			openFiles.clear();
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getSize() {
+		synchronized(openFiles) {
+			return openFiles.size();
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+}
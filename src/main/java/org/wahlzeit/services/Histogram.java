@@ -0,0 +1,188 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * A Histogram records non-negative long values (typically durations in nanoseconds) into log-linear buckets.
+ * Each power of two is split into eight linear sub-buckets, so reported percentiles are within 12.5% of the true value.
+ * Recording is lock-free and allocation-free; it can be called from any number of threads.
+ */
+public class Histogram {
+
+	/**
+	 *
+	 */
+	protected static final int SUB_BUCKET_BITS = 3;
+	protected static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	protected static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+	/**
+	 *
+	 */
+	protected AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	/**
+	 *
+	 */
+	protected AtomicLong totalCount = new AtomicLong();
+	protected AtomicLong totalSum = new AtomicLong();
+	protected AtomicLong maxValue = new AtomicLong();
+
+	/**
+	 *
+	 */
+	public Histogram() {
+		// do nothing
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+
+		counts.incrementAndGet(getBucketIndex(value));
+		totalCount.incrementAndGet();
+		totalSum.addAndGet(value);
+
+		long max = maxValue.get();
+		while ((value > max) && !maxValue.compareAndSet(max, value)) {
+			max = maxValue.get();
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getCount() {
+		return totalCount.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getSum() {
+		return totalSum.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getMax() {
+		return maxValue.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getMean() {
+		long count = getCount();
+		return (count == 0) ? 0 : getSum() / count;
+	}
+
+	/**
+	 * Returns the upper bound of the bucket holding the value at the given percentile (0..100).
+	 *
+	 * @methodtype get
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long count = getCount();
+		if (count == 0) {
+			return 0;
+		}
+
+		long threshold = (long) Math.ceil(count * Math.min(Math.max(percentile, 0.0), 100.0) / 100.0);
+		threshold = Math.max(threshold, 1);
+
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts.get(i);
+			if (seen >= threshold) {
+				return Math.min(getBucketUpperBound(i), getMax());
+			}
+		}
+
+		return getMax();
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts.set(i, 0);
+		}
+
+		totalCount.set(0);
+		totalSum.set(0);
+		maxValue.set(0);
+	}
+
+	/**
+	 * Returns a one-line summary, interpreting values as nanoseconds and printing them as milliseconds.
+	 *
+	 * @methodtype conversion
+	 */
+	public String asNanosSummaryString() {
+		StringBuffer result = new StringBuffer(96);
+		result.append("count=").append(getCount());
+		result.append(", mean=").append(asMillisString(getMean()));
+		result.append(", p50=").append(asMillisString(getValueAtPercentile(50.0)));
+		result.append(", p90=").append(asMillisString(getValueAtPercentile(90.0)));
+		result.append(", p99=").append(asMillisString(getValueAtPercentile(99.0)));
+		result.append(", max=").append(asMillisString(getMax()));
+		return result.toString();
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	public static String asMillisString(long nanos) {
+		return String.format("%.3fms", nanos / 1000000.0);
+	}
+
+	/**
+	 * @methodtype helper
+	 */
+	protected static int getBucketIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * @methodtype helper
+	 */
+	protected static long getBucketUpperBound(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+
+		int exponent = (index / SUB_BUCKET_COUNT) + SUB_BUCKET_BITS - 1;
+		long subBucket = index % SUB_BUCKET_COUNT;
+		long lowerBound = (SUB_BUCKET_COUNT + subBucket) << (exponent - SUB_BUCKET_BITS);
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		long result = lowerBound + width - 1;
+		return (result < 0) ? Long.MAX_VALUE : result; // top buckets overflow
+	}
+
+}
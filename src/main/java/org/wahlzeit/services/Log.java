@@ -22,156 +22,136 @@ package org.wahlzeit.services;
 
 import java.io.*;
 import java.sql.*;
-import java.text.*;
-
-import org.apache.log4j.Logger;
 
 /**
  * Simple logging class; should be replaced with log4j or the like.
+ * Log entries are structured LogEntry events, handed to the LogWriter, which writes them off the logging thread.
+ * The common cases fill in an entry of the LogWriter's buffer directly and build no strings on the logging thread.
  * 
  * @author dirkriehle
  *
  */
 public class Log {
 	
-	/**
-	 * 
-	 */
-	protected static DateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss SSS");
-
 	/**
 	 * 
 	 */
 	public static void logInfo(String l, String s) {
-		StringBuffer sb = createLogEntry(l);
-		addLogType(sb, "info");
-		addField(sb, "info", s);
-		log(sb);
+		log(l, "info", "info", s, null, null);
 	}
 	
 	/**
 	 * 
 	 */
 	public static void logInfo(String level, String type, String value) {
-		StringBuffer sb = createLogEntry(level);
-		addLogType(sb, "info");
-		addField(sb, type, value);
-		log(sb);
+		log(level, "info", type, value, null, null);
 	}
 	
 	/**
 	 * 
 	 */
 	public static void logInfo(String level, String type, String value, String info) {
-		StringBuffer sb = createLogEntry(level);
-		addLogType(sb, "info");
-		addField(sb, type, value);
-		addField(sb, "info", info);
-		log(sb);
+		log(level, "info", type, value, "info", info);
 	}
 	
 	/**
 	 * 
 	 */
 	public static void logCreatedObject(String level, String type, String object) {
-		StringBuffer sb = createLogEntry(level);
-		addLogType(sb, "info");
-		addField(sb, "created", type);
-		addField(sb, "object", object);
-		log(sb);
+		log(level, "info", "created", type, "object", object);
 	}
 
 	/**
 	 * 
 	 */
 	public static void logError(String l, String s) {
-		StringBuffer sb = createLogEntry(l);
-		addLogType(sb, "error");
-		addField(sb, "error", s);
-		log(sb);
+		log(l, "error", "error", s, null, null);
 	}
 	
 	/**
-	 * 
+	 * Logs an entry of logType with up to two fields; a null name leaves out its field.
+	 * Info entries may be sampled out, errors never are.
 	 */
-	protected static final StringBuffer createLogEntry(String level) {
-		StringBuffer sb = new StringBuffer(256);
-		String date = null;
-		synchronized (dateFormatter) {
-			date = dateFormatter.format(System.currentTimeMillis());
+	protected static void log(String level, String logType, String name1, String value1, String name2, String value2) {
+		LogWriter writer = LogWriter.getInstance();
+		boolean isError = !logType.equals("info");
+		if (!isError && writer.isSampledOut(level)) {
+			return;
+		}
+
+		long startTime = System.nanoTime();
+		long sequence = writer.claim();
+		LogEntry entry = (sequence >= 0) ? writer.getEntry(sequence) : new LogEntry();
+		try {
+			entry.initialize(level);
+			addLogType(entry, logType);
+			if (name1 != null) {
+				addField(entry, name1, value1);
+			}
+			if (name2 != null) {
+				addField(entry, name2, value2);
+			}
+		} finally {
+			if (sequence >= 0) {
+				writer.publish(sequence, startTime);
+			}
+		}
+
+		if (sequence < 0) {
+			writer.handleFullBuffer(entry, isError);
 		}
-		sb.append(date);
-		addField(sb, "level", level);
-		addSession(sb);
-		return sb;
 	}
 	
 	/**
 	 * 
 	 */
-	public static final void addField(StringBuffer sb, String name, String value) {
-		sb.append(", " + name + "=" + value);
+	protected static final LogEntry createLogEntry(String level) {
+		return new LogEntry().initialize(level);
 	}
 	
 	/**
 	 * 
 	 */
-	public static final void addSession(StringBuffer sb) {
-		Session session = SessionManager.getThreadLocalSession();
-
-		String id = (session != null) ? session.getName() : "no-session";
-		addField(sb, "session", id);
-
-		String dbc = (session != null) && session.hasDatabaseConnection() ? session.ensureDatabaseConnection().getName() : "no-database-connection";
-		addField(sb, "databaseConnection", dbc);
-		
-		String threadId = String.valueOf(Thread.currentThread().getId());
-		addField(sb, "threadId", threadId);
-		
-		String cn = (session != null) ? session.getClientName() : "no-client";
-		addField(sb, "client", cn);
+	public static final void addField(LogEntry entry, String name, String value) {
+		entry.addField(name, value);
 	}
 	
 	/**
 	 * 
 	 */
-	public static final void addLogType(StringBuffer sb, String logType) {
-		addField(sb, "logType", logType);
+	public static final void addLogType(LogEntry entry, String logType) {
+		addField(entry, "logType", logType);
 	}
 	
 	/**
 	 *
 	 */
-	public static final void addThrowable(StringBuffer sb, Throwable t) {
-		addField(sb, "throwable", t.toString());
+	public static final void addThrowable(LogEntry entry, Throwable t) {
+		addField(entry, "throwable", t.toString());
 	}
 	
 	/**
 	 * 
 	 */
-	public static final void addStacktrace(StringBuffer sb, Throwable t) {
+	public static final void addStacktrace(LogEntry entry, Throwable t) {
 		StringWriter sw = new StringWriter();
 		t.printStackTrace(new PrintWriter(sw));
-		addField(sb, "stacktrace", sw.toString());
+		addField(entry, "stacktrace", sw.toString());
 	}
 
 	/**
 	 * 
 	 */
-	public static final void addQuery(StringBuffer sb, Statement q) {
-		addField(sb, "query", q.toString());
+	public static final void addQuery(LogEntry entry, Statement q) {
+		addField(entry, "query", q.toString());
 	}
 
 	/**
-	 * 
-	 */
-	protected static Logger logger = Logger.getLogger(Log.class.getName());
-	
-	/**
-	 * 
+	 * Logs an entry built by the caller; it is not sampled, callers check LogWriter.isSampledOut() first where they want to.
 	 */
-	public static final void log(StringBuffer sb) {
-		 logger.info(sb.toString());
+	public static final void log(LogEntry entry) {
+		String logType = entry.getFieldValue("logType");
+		LogWriter.getInstance().write(entry, (logType != null) && !logType.equals("info"));
 	}
 	
 }
@@ -0,0 +1,188 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.time.*;
+import java.time.format.*;
+
+/**
+ * A LogEntry is a structured log event: time, level, the context of the logging thread, and named fields.
+ * Fields are kept as given; they are only formatted into a line when the entry is written.
+ * The LogWriter reuses its entries, so an entry handed to Log.log() may be changed afterwards.
+ */
+public class LogEntry {
+
+	/**
+	 * Thread-safe, unlike SimpleDateFormat
+	 */
+	public static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss SSS").withZone(ZoneId.systemDefault());
+
+	/**
+	 *
+	 */
+	protected static final int INITIAL_NO_FIELDS = 8;
+
+	/**
+	 *
+	 */
+	protected long timestamp;
+	protected String level;
+	protected String session;
+	protected String databaseConnection;
+	protected long threadId;
+	protected String client;
+
+	/**
+	 *
+	 */
+	protected String[] names = new String[INITIAL_NO_FIELDS];
+	protected String[] values = new String[INITIAL_NO_FIELDS];
+	protected int noFields = 0;
+
+	/**
+	 *
+	 */
+	public LogEntry() {
+		// do nothing
+	}
+
+	/**
+	 * Sets time, level, and the context of the calling thread.
+	 *
+	 * @methodtype initialization
+	 */
+	public LogEntry initialize(String myLevel) {
+		timestamp = System.currentTimeMillis();
+		level = myLevel;
+
+		Session s = SessionManager.getThreadLocalSession();
+		session = (s != null) ? s.getName() : "no-session";
+		databaseConnection = (s != null) && s.hasDatabaseConnection() ? s.getDatabaseConnection().getName() : "no-database-connection";
+		threadId = Thread.currentThread().getId();
+		client = (s != null) ? s.getClientName() : "no-client";
+
+		noFields = 0;
+		return this;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public LogEntry addField(String name, String value) {
+		if (noFields == names.length) {
+			String[] newNames = new String[noFields * 2];
+			String[] newValues = new String[noFields * 2];
+			System.arraycopy(names, 0, newNames, 0, noFields);
+			System.arraycopy(values, 0, newValues, 0, noFields);
+			names = newNames;
+			values = newValues;
+		}
+
+		names[noFields] = name;
+		values[noFields] = value;
+		noFields++;
+		return this;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getLevel() {
+		return level;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getNoFields() {
+		return noFields;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getFieldValue(String name) {
+		for (int i = 0; i < noFields; i++) {
+			if (names[i].equals(name)) {
+				return values[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @methodtype set
+	 */
+	public void copyFrom(LogEntry other) {
+		timestamp = other.timestamp;
+		level = other.level;
+		session = other.session;
+		databaseConnection = other.databaseConnection;
+		threadId = other.threadId;
+		client = other.client;
+
+		noFields = 0;
+		for (int i = 0; i < other.noFields; i++) {
+			addField(other.names[i], other.values[i]);
+		}
+	}
+
+	/**
+	 * Drops field values, so a reused entry holds on to no garbage.
+	 *
+	 * @methodtype command
+	 */
+	public void clear() {
+		for (int i = 0; i < noFields; i++) {
+			names[i] = null;
+			values[i] = null;
+		}
+		noFields = 0;
+		session = databaseConnection = client = null;
+	}
+
+	/**
+	 * Appends the entry as a log line.
+	 *
+	 * @methodtype conversion
+	 */
+	public void appendTo(StringBuilder sb) {
+		DATE_FORMATTER.formatTo(Instant.ofEpochMilli(timestamp), sb);
+		appendField(sb, "level", level);
+		appendField(sb, "session", session);
+		appendField(sb, "databaseConnection", databaseConnection);
+		sb.append(", threadId=").append(threadId);
+		appendField(sb, "client", client);
+		for (int i = 0; i < noFields; i++) {
+			appendField(sb, names[i], values[i]);
+		}
+	}
+
+	/**
+	 * @methodtype helper
+	 */
+	protected static void appendField(StringBuilder sb, String name, String value) {
+		sb.append(", ").append(name).append('=').append(value);
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	public String asString() {
+		StringBuilder result = new StringBuilder(256);
+		appendTo(result);
+		return result.toString();
+	}
+
+	/**
+	 *
+	 */
+	public String toString() {
+		return asString();
+	}
+
+}
@@ -0,0 +1,358 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The LogWriter takes log entries from logging threads and writes them to log4j on a thread of its own.
+ * Entries go into a ring buffer of preallocated, reused entries: a logging thread claims a slot by
+ * compare-and-set, fills it in, and publishes it; the writer thread formats published entries in order.
+ * If the buffer is full, info entries are dropped and error entries are written by the logging thread.
+ * Info entries of a level can be sampled, so that only one in every n of them is logged.
+ */
+public class LogWriter {
+
+	/**
+	 *
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/**
+	 * How long the writer thread sleeps when there is nothing to write
+	 */
+	protected static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+	/**
+	 *
+	 */
+	protected static Logger logger = Logger.getLogger(Log.class.getName());
+
+	/**
+	 *
+	 */
+	protected static volatile LogWriter instance = null;
+
+	/**
+	 *
+	 */
+	public static LogWriter getInstance() {
+		LogWriter result = instance;
+		if (result == null) {
+			synchronized(LogWriter.class) {
+				if (instance == null) {
+					instance = new LogWriter(DEFAULT_BUFFER_SIZE, "");
+				}
+				result = instance;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Replaces the current writer, which writes its pending entries first.
+	 */
+	public static synchronized void setInstance(LogWriter writer) {
+		LogWriter other = instance;
+		instance = writer;
+		if (other != null) {
+			other.shutDown();
+		}
+	}
+
+	/**
+	 * Writes all pending entries and stops the writer thread; a later log entry starts a new writer.
+	 */
+	public static synchronized void dropInstance() {
+		setInstance(null);
+	}
+
+	/**
+	 * Slots of the ring buffer; published holds the sequence number of the entry a slot was last published for
+	 */
+	protected LogEntry[] entries;
+	protected AtomicLongArray published;
+	protected int mask;
+
+	/**
+	 * Next sequence number to claim and next to write
+	 */
+	protected AtomicLong nextSequence = new AtomicLong();
+	protected AtomicLong writtenSequence = new AtomicLong();
+
+	/**
+	 * Sampled levels with their rates (log one in rate) and counts
+	 */
+	protected String[] sampledLevels;
+	protected int[] samplingRates;
+	protected AtomicLong[] samplingCounts;
+
+	/**
+	 *
+	 */
+	protected Thread writerThread;
+	protected volatile boolean isRunning = true;
+	protected StringBuilder line = new StringBuilder(512);
+
+	/**
+	 *
+	 */
+	protected AtomicLong noWritten = new AtomicLong();
+	protected AtomicLong noWrittenByCaller = new AtomicLong();
+	protected AtomicLong noDropped = new AtomicLong();
+	protected AtomicLong noSampledOut = new AtomicLong();
+	protected Histogram enqueueTimes = new Histogram();
+
+	/**
+	 * @param sampling comma-separated level:rate pairs, for example "sq:10"
+	 */
+	public LogWriter(int minBufferSize, String sampling) {
+		int bufferSize = Integer.highestOneBit(Math.max(minBufferSize - 1, 1)) << 1;
+		entries = new LogEntry[bufferSize];
+		published = new AtomicLongArray(bufferSize);
+		for (int i = 0; i < bufferSize; i++) {
+			entries[i] = new LogEntry();
+			published.set(i, -1);
+		}
+		mask = bufferSize - 1;
+
+		initializeSampling(sampling);
+
+		writerThread = new Thread(new Runnable() {
+			public void run() {
+				runWriter();
+			}
+		}, "log-writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	/**
+	 * @methodtype initialization
+	 */
+	protected void initializeSampling(String sampling) {
+		String[] pairs = ((sampling == null) || sampling.trim().isEmpty()) ? new String[0] : sampling.split(",");
+		sampledLevels = new String[pairs.length];
+		samplingRates = new int[pairs.length];
+		samplingCounts = new AtomicLong[pairs.length];
+		for (int i = 0; i < pairs.length; i++) {
+			String[] pair = pairs[i].split(":");
+			if (pair.length != 2) {
+				throw new IllegalArgumentException("invalid log sampling: " + sampling);
+			}
+			sampledLevels[i] = pair[0].trim();
+			samplingRates[i] = Math.max(1, Integer.parseInt(pair[1].trim()));
+			samplingCounts[i] = new AtomicLong();
+		}
+	}
+
+	/**
+	 * Returns true if an info entry of level is to be skipped, and counts it as seen.
+	 *
+	 * @methodtype boolean-query
+	 */
+	public boolean isSampledOut(String level) {
+		for (int i = 0; i < sampledLevels.length; i++) {
+			if (sampledLevels[i].equals(level)) {
+				boolean result = (samplingCounts[i].getAndIncrement() % samplingRates[i]) != 0;
+				if (result) {
+					noSampledOut.incrementAndGet();
+				}
+				return result;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Claims a slot for an entry and returns its sequence number, or -1 if the buffer is full or the writer stopped.
+	 * The caller must publish() the sequence number after filling in getEntry() of it.
+	 *
+	 * @methodtype command
+	 */
+	public long claim() {
+		while (isRunning) {
+			long result = nextSequence.get();
+			if (result - writtenSequence.get() >= entries.length) {
+				return -1;
+			}
+			if (nextSequence.compareAndSet(result, result + 1)) {
+				return result;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public LogEntry getEntry(long sequence) {
+		return entries[(int) sequence & mask];
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void publish(long sequence, long claimStartTime) {
+		published.lazySet((int) sequence & mask, sequence);
+		enqueueTimes.recordSince(claimStartTime);
+	}
+
+	/**
+	 * Queues a copy of entry for writing; writes it on the calling thread if the buffer is full and entry is an error.
+	 *
+	 * @methodtype command
+	 */
+	public void write(LogEntry entry, boolean isError) {
+		long startTime = System.nanoTime();
+		long sequence = claim();
+		if (sequence >= 0) {
+			getEntry(sequence).copyFrom(entry);
+			publish(sequence, startTime);
+		} else {
+			handleFullBuffer(entry, isError);
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void handleFullBuffer(LogEntry entry, boolean isError) {
+		if (isError || !isRunning) {
+			noWrittenByCaller.incrementAndGet();
+			logger.info(entry.asString());
+		} else {
+			noDropped.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void runWriter() {
+		while (isRunning) {
+			if (writePublished() == 0) {
+				LockSupport.parkNanos(IDLE_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Writes published entries in order and returns their number.
+	 *
+	 * @methodtype command
+	 */
+	protected synchronized int writePublished() {
+		int result = 0;
+		long sequence = writtenSequence.get();
+		int index = (int) sequence & mask;
+		while (published.get(index) == sequence) {
+			LogEntry entry = entries[index];
+			line.setLength(0);
+			entry.appendTo(line);
+			entry.clear();
+			writtenSequence.lazySet(sequence + 1);
+
+			logger.info(line.toString());
+			result++;
+			sequence++;
+			index = (int) sequence & mask;
+		}
+
+		noWritten.addAndGet(result);
+		return result;
+	}
+
+	/**
+	 * Waits until all entries published so far are written, or timeout millis passed.
+	 *
+	 * @methodtype command
+	 */
+	public void flush(long timeout) {
+		long sequence = nextSequence.get();
+		long endTime = System.currentTimeMillis() + timeout;
+		while ((writtenSequence.get() < sequence) && (System.currentTimeMillis() < endTime)) {
+			if (writePublished() == 0) {
+				Thread.yield();
+			}
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void shutDown() {
+		flush(1000);
+		isRunning = false;
+		writerThread.interrupt();
+		try {
+			writerThread.join(1000);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		writePublished(); // entries published while stopping
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getBufferSize() {
+		return entries.length;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getNoPending() {
+		return nextSequence.get() - writtenSequence.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getNoWritten() {
+		return noWritten.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getNoDropped() {
+		return noDropped.get();
+	}
+
+	/**
+	 * Time it takes a logging thread to claim, fill in, and publish an entry
+	 *
+	 * @methodtype get
+	 */
+	public Histogram getEnqueueTimes() {
+		return enqueueTimes;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getStatisticsAsString() {
+		StringBuffer result = new StringBuffer(256);
+		result.append("pending=").append(getNoPending());
+		result.append(", written=").append(noWritten.get());
+		result.append(", written by caller=").append(noWrittenByCaller.get());
+		result.append(", dropped=").append(noDropped.get());
+		result.append(", sampled out=").append(noSampledOut.get());
+		result.append(", enqueue times: ").append(enqueueTimes.asNanosSummaryString());
+		return result.toString();
+	}
+
+}
@@ -0,0 +1,496 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.lang.ref.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * An ObjectCache is a thread-safe, size-bounded cache of Persistent objects.
+ * Entries are spread over stripes; each stripe is an access-ordered map with its own lock and evicts
+ * its least recently used entry when full. An evicted object may still be in use elsewhere, e.g. by a session;
+ * loading it again would create a second copy and lose the changes made to one of them. Hence, a stripe
+ * keeps a weak reference to an evicted object and hands it out again as long as it is alive. Evicted
+ * dirty objects are kept strongly until they are clean, so that they can still be saved.
+ * Concurrent misses for the same key are loaded once (single flight); the other callers wait for that load.
+ */
+public class ObjectCache<K, V extends Persistent> {
+
+	/**
+	 * Loads the object for a key, e.g. from the database; returns null if there is none.
+	 */
+	public interface Loader<K, V> {
+
+		/**
+		 *
+		 */
+		public V load(K key) throws SQLException;
+
+	}
+
+	/**
+	 * A weak reference to an evicted object that remembers its key, to clean up after the object was collected
+	 */
+	protected static class EvictedReference<K, V> extends WeakReference<V> {
+
+		/**
+		 *
+		 */
+		protected K key;
+
+		/**
+		 *
+		 */
+		protected EvictedReference(K myKey, V value, ReferenceQueue<V> queue) {
+			super(value, queue);
+			key = myKey;
+		}
+
+	}
+
+	/**
+	 * The entries of one stripe; guarded by the stripe's lock
+	 */
+	protected class Stripe {
+
+		/**
+		 * Cached entries in access order, at most stripeCapacity of them
+		 */
+		protected LinkedHashMap<K, V> entries = new LinkedHashMap<K, V>(16, 0.75f, true);
+
+		/**
+		 * Evicted dirty objects in order of eviction; kept until clean
+		 */
+		protected LinkedHashMap<K, V> evictedDirty = new LinkedHashMap<K, V>();
+
+		/**
+		 * Evicted clean objects that may still be in use
+		 */
+		protected Map<K, EvictedReference<K, V>> evictedClean = new HashMap<K, EvictedReference<K, V>>();
+		protected ReferenceQueue<V> collected = new ReferenceQueue<V>();
+
+	}
+
+	/**
+	 *
+	 */
+	protected static final int NO_STRIPES = 16;
+
+	/**
+	 *
+	 */
+	protected int maxSize;
+	protected int stripeCapacity;
+
+	/**
+	 *
+	 */
+	protected List<Stripe> stripes = new ArrayList<Stripe>(NO_STRIPES);
+
+	/**
+	 * Loads in progress, by key
+	 */
+	protected Map<K, CompletableFuture<V>> loads = new ConcurrentHashMap<K, CompletableFuture<V>>();
+
+	/**
+	 *
+	 */
+	protected AtomicLong hits = new AtomicLong();
+	protected AtomicLong misses = new AtomicLong();
+	protected AtomicLong sharedLoads = new AtomicLong();
+	protected AtomicLong evictions = new AtomicLong();
+	protected AtomicLong keptDirty = new AtomicLong();
+	protected AtomicLong revivals = new AtomicLong();
+	protected Histogram loadTimes = new Histogram();
+
+	/**
+	 *
+	 */
+	public ObjectCache(int myMaxSize) {
+		if (myMaxSize < 1) {
+			throw new IllegalArgumentException("cache size must be positive: " + myMaxSize);
+		}
+
+		maxSize = myMaxSize;
+		stripeCapacity = Math.max(1, (maxSize + NO_STRIPES - 1) / NO_STRIPES);
+		for (int i = 0; i < NO_STRIPES; i++) {
+			stripes.add(new Stripe());
+		}
+	}
+
+	/**
+	 * @methodtype helper
+	 */
+	protected Stripe getStripe(Object key) {
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return stripes.get(hash & (NO_STRIPES - 1));
+	}
+
+	/**
+	 * Returns the object for key or null; an evicted object still in use is cached again. Must hold the stripe's lock.
+	 *
+	 * @methodtype helper
+	 */
+	protected V lookup(Stripe stripe, K key) {
+		V result = stripe.entries.get(key);
+		if (result != null) {
+			return result;
+		}
+
+		result = stripe.evictedDirty.remove(key);
+		if (result == null) {
+			EvictedReference<K, V> ref = stripe.evictedClean.remove(key);
+			result = (ref == null) ? null : ref.get();
+		}
+
+		if (result != null) {
+			revivals.incrementAndGet();
+			stripe.entries.put(key, result);
+			doAdded(key, result);
+			evictIfFull(stripe);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the cached object for key or null; counts as a hit or miss.
+	 *
+	 * @methodtype get
+	 */
+	public V get(K key) {
+		V result = null;
+		Stripe stripe = getStripe(key);
+		synchronized(stripe) {
+			result = lookup(stripe, key);
+		}
+
+		if (result != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the cached object for key or null, without counting a hit or miss.
+	 *
+	 * @methodtype get
+	 */
+	public V peek(K key) {
+		Stripe stripe = getStripe(key);
+		synchronized(stripe) {
+			return lookup(stripe, key);
+		}
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean contains(K key) {
+		return peek(key) != null;
+	}
+
+	/**
+	 * Returns the object for key, loading it with loader on a miss. Concurrent misses for key share one load.
+	 *
+	 * @methodtype get
+	 */
+	public V get(K key, Loader<K, V> loader) throws SQLException {
+		V result = get(key);
+		if (result != null) {
+			return result;
+		}
+
+		CompletableFuture<V> load = new CompletableFuture<V>();
+		CompletableFuture<V> otherLoad = loads.putIfAbsent(key, load);
+		if (otherLoad != null) {
+			sharedLoads.incrementAndGet();
+			return awaitLoad(otherLoad);
+		}
+
+		try {
+			result = peek(key); // a load may have completed since our miss
+			if (result == null) {
+				long startTime = System.nanoTime();
+				result = loader.load(key);
+				loadTimes.recordSince(startTime);
+				if (result != null) {
+					V current = putIfAbsent(key, result);
+					if (current != null) {
+						result = current;
+					}
+				}
+			}
+			load.complete(result);
+			return result;
+		} catch (SQLException | RuntimeException ex) {
+			load.completeExceptionally(ex);
+			throw ex;
+		} finally {
+			loads.remove(key, load);
+		}
+	}
+
+	/**
+	 * @methodtype helper
+	 */
+	protected V awaitLoad(CompletableFuture<V> load) throws SQLException {
+		try {
+			return load.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("interrupted while waiting for load", ex);
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof SQLException) {
+				throw (SQLException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new SQLException("could not load object", cause);
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void put(K key, V value) {
+		Stripe stripe = getStripe(key);
+		synchronized(stripe) {
+			V oldValue = stripe.entries.put(key, value);
+			if (oldValue == null) {
+				stripe.evictedDirty.remove(key);
+				stripe.evictedClean.remove(key);
+			} else if (oldValue != value) {
+				doRemoved(key, oldValue);
+			}
+			doAdded(key, value);
+			evictIfFull(stripe);
+		}
+	}
+
+	/**
+	 * Adds value unless key is cached already; returns the cached object then, or null.
+	 *
+	 * @methodtype command
+	 */
+	public V putIfAbsent(K key, V value) {
+		Stripe stripe = getStripe(key);
+		synchronized(stripe) {
+			V result = lookup(stripe, key);
+			if (result == null) {
+				stripe.entries.put(key, value);
+				doAdded(key, value);
+				evictIfFull(stripe);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public V remove(K key) {
+		Stripe stripe = getStripe(key);
+		synchronized(stripe) {
+			V result = stripe.entries.remove(key);
+			if (result != null) {
+				doRemoved(key, result);
+				return result;
+			}
+
+			result = stripe.evictedDirty.remove(key);
+			EvictedReference<K, V> ref = stripe.evictedClean.remove(key);
+			return ((result == null) && (ref != null)) ? ref.get() : result;
+		}
+	}
+
+	/**
+	 * Evicts least recently used entries until the stripe fits; must hold the stripe's lock.
+	 *
+	 * @methodtype command
+	 */
+	protected void evictIfFull(Stripe stripe) {
+		expungeCollected(stripe);
+
+		for (Iterator<Map.Entry<K, V>> i = stripe.entries.entrySet().iterator(); stripe.entries.size() > stripeCapacity; ) {
+			Map.Entry<K, V> entry = i.next();
+			i.remove();
+			doRemoved(entry.getKey(), entry.getValue());
+			evictions.incrementAndGet();
+			if (entry.getValue().isDirty()) {
+				keptDirty.incrementAndGet();
+				stripe.evictedDirty.put(entry.getKey(), entry.getValue());
+			} else {
+				keepWeakly(stripe, entry.getKey(), entry.getValue());
+			}
+		}
+
+		// oldest first; stops at the first dirty one, so that each call does constant work on average
+		for (Iterator<Map.Entry<K, V>> i = stripe.evictedDirty.entrySet().iterator(); i.hasNext(); ) {
+			Map.Entry<K, V> entry = i.next();
+			if (entry.getValue().isDirty()) {
+				break;
+			}
+			i.remove();
+			keepWeakly(stripe, entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * @methodtype helper
+	 */
+	protected void keepWeakly(Stripe stripe, K key, V value) {
+		stripe.evictedClean.put(key, new EvictedReference<K, V>(key, value, stripe.collected));
+	}
+
+	/**
+	 * Forgets evicted objects that were garbage collected; must hold the stripe's lock.
+	 *
+	 * @methodtype command
+	 */
+	@SuppressWarnings("unchecked")
+	protected void expungeCollected(Stripe stripe) {
+		for (Reference<? extends V> ref; (ref = stripe.collected.poll()) != null; ) {
+			EvictedReference<K, V> evicted = (EvictedReference<K, V>) ref;
+			stripe.evictedClean.remove(evicted.key, evicted);
+		}
+	}
+
+	/**
+	 * Called (under the stripe's lock) after value was added for key, or an evicted value was cached again.
+	 *
+	 * @methodproperty hook
+	 */
+	protected void doAdded(K key, V value) {
+		// do nothing
+	}
+
+	/**
+	 * Called (under the stripe's lock) after value was removed or evicted for key.
+	 *
+	 * @methodproperty hook
+	 */
+	protected void doRemoved(K key, V value) {
+		// do nothing
+	}
+
+	/**
+	 * Returns a snapshot of all cached objects and of all evicted objects that are still dirty,
+	 * i.e. of all objects that may need to be saved.
+	 *
+	 * @methodtype get
+	 */
+	public List<V> values() {
+		List<V> result = new ArrayList<V>(getSize());
+		for (Stripe stripe : stripes) {
+			synchronized(stripe) {
+				result.addAll(stripe.entries.values());
+				result.addAll(stripe.evictedDirty.values());
+				for (EvictedReference<K, V> ref : stripe.evictedClean.values()) {
+					V value = ref.get();
+					if ((value != null) && value.isDirty()) {
+						result.add(value);
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the number of objects the cache holds on to, i.e. cached and evicted dirty ones.
+	 *
+	 * @methodtype get
+	 */
+	public int getSize() {
+		int result = 0;
+		for (Stripe stripe : stripes) {
+			synchronized(stripe) {
+				result += stripe.entries.size() + stripe.evictedDirty.size();
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getSharedLoads() {
+		return sharedLoads.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * Returns how often an evicted object that was still in use was cached again.
+	 *
+	 * @methodtype get
+	 */
+	public long getRevivals() {
+		return revivals.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public Histogram getLoadTimes() {
+		return loadTimes;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getStatisticsAsString() {
+		StringBuffer result = new StringBuffer(256);
+		result.append("size=").append(getSize()).append("/").append(getMaxSize());
+		result.append(", hits=").append(getHits());
+		result.append(", misses=").append(getMisses());
+		result.append(", shared loads=").append(getSharedLoads());
+		result.append(", evictions=").append(getEvictions());
+		result.append(", kept dirty=").append(keptDirty.get());
+		result.append(", revivals=").append(getRevivals());
+		result.append(", load times: ").append(loadTimes.asNanosSummaryString());
+		return result.toString();
+	}
+
+}
@@ -8,6 +8,7 @@ package org.wahlzeit.services;
 
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * An ObjectManager creates/reads/updates/deletes Persistent (objects) from a database.
@@ -38,16 +39,74 @@ public abstract class ObjectManager {
     	return dbc.getUpdatingStatement(stmt);
 	}
 	
+	/**
+	 * Logs and executes a query, accounting its execution time to the statement's query string.
+	 */
+	protected ResultSet executeQuery(PreparedStatement stmt) throws SQLException {
+		SysLog.logQuery(stmt);
+		long startTime = System.nanoTime();
+		try {
+			return stmt.executeQuery();
+		} finally {
+			getDatabaseConnection().recordExecution(stmt, startTime);
+		}
+	}
+	
+	/**
+	 * Logs and executes an update, accounting its execution time and updated rows to the statement's query string.
+	 */
+	protected int executeUpdate(PreparedStatement stmt) throws SQLException {
+		SysLog.logQuery(stmt);
+		long startTime = System.nanoTime();
+		int result = 0;
+		try {
+			result = stmt.executeUpdate();
+		} finally {
+			getDatabaseConnection().recordExecution(stmt, startTime);
+		}
+		
+		getDatabaseConnection().recordRows(stmt, result);
+		return result;
+	}
+	
+	/**
+	 * Logs and executes a batch, accounting its execution time and updated rows to the statement's query string.
+	 */
+	protected int[] executeBatch(PreparedStatement stmt) throws SQLException {
+		SysLog.logQuery(stmt);
+		long startTime = System.nanoTime();
+		int[] result = null;
+		try {
+			result = stmt.executeBatch();
+		} finally {
+			getDatabaseConnection().recordExecution(stmt, startTime);
+		}
+		
+		long rows = 0;
+		for (int count : result) {
+			rows += Math.max(count, 0); // SUCCESS_NO_INFO is negative
+		}
+		getDatabaseConnection().recordRows(stmt, rows);
+		return result;
+	}
+	
+	/**
+	 * Accounts rows read through a query to the statement's query string.
+	 */
+	protected void recordRows(PreparedStatement stmt, long rows) throws SQLException {
+		getDatabaseConnection().recordRows(stmt, rows);
+	}
+	
 	/**
 	 * 
 	 */
 	protected Persistent readObject(PreparedStatement stmt, int value) throws SQLException {
 		Persistent result = null;
 		stmt.setInt(1, value);
-		SysLog.logQuery(stmt);
-		ResultSet rset = stmt.executeQuery();
+		ResultSet rset = executeQuery(stmt);
 		if (rset.next()) {
 			result = createObject(rset);
+			recordRows(stmt, 1);
 		}
 
 		return result;
@@ -59,10 +118,10 @@ public abstract class ObjectManager {
 	protected Persistent readObject(PreparedStatement stmt, String value) throws SQLException {
 		Persistent result = null;
 		stmt.setString(1, value);
-		SysLog.logQuery(stmt);
-		ResultSet rset = stmt.executeQuery();
+		ResultSet rset = executeQuery(stmt);
 		if (rset.next()) {
 			result = createObject(rset);
+			recordRows(stmt, 1);
 		}
 
 		return result;
@@ -72,12 +131,14 @@ public abstract class ObjectManager {
 	 * 
 	 */
 	protected void readObjects(Collection result, PreparedStatement stmt) throws SQLException {
-		SysLog.logQuery(stmt);
-		ResultSet rset = stmt.executeQuery();
+		ResultSet rset = executeQuery(stmt);
+		int rows = 0;
 		while (rset.next()) {
 			Persistent obj = createObject(rset);
 			result.add(obj);
+			rows++;
 		}
+		recordRows(stmt, rows);
 	}
 		
 	/**
@@ -85,14 +146,83 @@ public abstract class ObjectManager {
 	 */
 	protected void readObjects(Collection result, PreparedStatement stmt, String value) throws SQLException {
 		stmt.setString(1, value);
-		SysLog.logQuery(stmt);
-		ResultSet rset = stmt.executeQuery();
+		ResultSet rset = executeQuery(stmt);
+		int rows = 0;
 		while (rset.next()) {
 			Persistent obj = createObject(rset);
 			result.add(obj);
+			rows++;
 		}
+		recordRows(stmt, rows);
 	}
 		
+	/**
+	 * Reads all objects of a (large) query. Rows are fetched through a cursor, DB_FETCH_SIZE rows at a time;
+	 * each chunk of rows is turned into objects on the common fork/join pool while the next chunk is being fetched.
+	 * Hence, createObject(ResultSet) must be safe to call from several threads. Objects are returned in row order.
+	 */
+	protected List<Persistent> readObjectsInParallel(PreparedStatement stmt) throws SQLException {
+		int fetchSize = SysConfig.getDbFetchSizeAsInt();
+		List<Future<List<Persistent>>> chunks = new ArrayList<Future<List<Persistent>>>();
+		
+		Connection cn = getDatabaseConnection().getRdbmsConnection();
+		boolean wasAutoCommit = cn.getAutoCommit();
+		cn.setAutoCommit(false); // otherwise the driver fetches all rows at once
+		try {
+			stmt.setFetchSize(fetchSize);
+			ResultSet rset = executeQuery(stmt);
+			List<RowSnapshot> rows = new ArrayList<RowSnapshot>(fetchSize);
+			while (rset.next()) {
+				rows.add(RowSnapshot.copyFrom(rset));
+				if (rows.size() == fetchSize) {
+					chunks.add(createObjectsAsync(rows));
+					rows = new ArrayList<RowSnapshot>(fetchSize);
+				}
+			}
+			chunks.add(createObjectsAsync(rows));
+			recordRows(stmt, (chunks.size() - 1) * (long) fetchSize + rows.size());
+			rset.close();
+			cn.commit();
+		} catch (SQLException sex) {
+			rollback(cn);
+			throw sex;
+		} finally {
+			cn.setAutoCommit(wasAutoCommit);
+		}
+		
+		List<Persistent> result = new ArrayList<Persistent>();
+		try {
+			for (Future<List<Persistent>> chunk : chunks) {
+				result.addAll(chunk.get());
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("interrupted while reading objects", ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof SQLException) {
+				throw (SQLException) ex.getCause();
+			}
+			throw new SQLException("could not create object", ex.getCause());
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * 
+	 */
+	protected Future<List<Persistent>> createObjectsAsync(final List<RowSnapshot> rows) {
+		return ForkJoinPool.commonPool().submit(new Callable<List<Persistent>>() {
+			public List<Persistent> call() throws SQLException {
+				List<Persistent> result = new ArrayList<Persistent>(rows.size());
+				for (RowSnapshot row : rows) {
+					result.add(createObject(row.asResultSet()));
+				}
+				return result;
+			}
+		});
+	}
+	
 	/**
 	 * 
 	 */
@@ -103,8 +233,7 @@ public abstract class ObjectManager {
 	 */
 	protected void createObject(Persistent obj, PreparedStatement stmt, int value) throws SQLException {
 		stmt.setInt(1, value);
-		SysLog.logQuery(stmt);
-		stmt.executeUpdate();
+		executeUpdate(stmt);
 	}
 	
 	/**
@@ -112,8 +241,7 @@ public abstract class ObjectManager {
 	 */
 	protected void createObject(Persistent obj, PreparedStatement stmt, String value) throws SQLException {
 		stmt.setString(1, value);
-		SysLog.logQuery(stmt);
-		stmt.executeUpdate();
+		executeUpdate(stmt);
 	}
 	
 	/**
@@ -122,13 +250,13 @@ public abstract class ObjectManager {
 	protected void updateObject(Persistent obj, PreparedStatement stmt) throws SQLException {
 		if (obj.isDirty()) {
 			obj.writeId(stmt, 1);
-			SysLog.logQuery(stmt);
-			ResultSet rset = stmt.executeQuery();
+			ResultSet rset = executeQuery(stmt);
 			if (rset.next()) {
 				obj.writeOn(rset);
 				rset.updateRow();
 				updateDependents(obj);
 				obj.resetWriteCount();
+				commitDependents(obj);
 			} else {
 				SysLog.logSysError("trying to update non-existent object: " + obj.getIdAsString() + "(" + obj.toString() + ")");
 			}
@@ -145,6 +273,104 @@ public abstract class ObjectManager {
 		}
 	}
 	
+	/**
+	 * Writes all dirty objects of coll to tableName in one transaction, using batched UPDATE statements.
+	 * The columns of an object are those its writeOn(ResultSet) method writes; objects writing the same columns share a statement.
+	 * Each batch holds at most SysConfig.getDbBatchSizeAsInt() rows. If the transaction fails, the objects are marked dirty again.
+	 */
+	protected void updateObjectsInBatches(Collection<? extends Persistent> coll, String tableName) throws SQLException {
+		int batchSize = SysConfig.getDbBatchSizeAsInt();
+		Map<String, List<Persistent>> batches = new HashMap<String, List<Persistent>>();
+		Map<String, PreparedStatement> batchStatements = new HashMap<String, PreparedStatement>();
+		List<Persistent> written = new ArrayList<Persistent>();
+		
+		DatabaseConnection dbc = getDatabaseConnection();
+		Connection cn = dbc.getRdbmsConnection();
+		boolean wasAutoCommit = cn.getAutoCommit();
+		cn.setAutoCommit(false);
+		try {
+			for (Persistent obj : coll) {
+				if (obj.isDirty()) {
+					// reset before capturing so that changes made while we write keep obj dirty
+					obj.resetWriteCount();
+					written.add(obj);
+					ColumnRecorder columns = ColumnRecorder.record(obj);
+					
+					String query = columns.asUpdateStatement(tableName, DataObject.ID);
+					PreparedStatement stmt = getReadingStatement(query);
+					int idPos = columns.bindUpdateParameters(stmt, DataObject.ID);
+					obj.writeId(stmt, idPos);
+					stmt.addBatch();
+					
+					List<Persistent> batch = batches.get(query);
+					if (batch == null) {
+						batch = new ArrayList<Persistent>(batchSize);
+						batches.put(query, batch);
+						batchStatements.put(query, stmt);
+						dbc.pinStatement(stmt); // closing it would drop the pending batch
+					}
+					batch.add(obj);
+					if (batch.size() >= batchSize) {
+						executeBatch(stmt, batch);
+					}
+				}
+			}
+			
+			for (Map.Entry<String, List<Persistent>> entry : batches.entrySet()) {
+				if (!entry.getValue().isEmpty()) {
+					executeBatch(batchStatements.get(entry.getKey()), entry.getValue());
+				}
+			}
+			
+			for (Persistent obj : written) {
+				updateDependents(obj);
+			}
+			
+			cn.commit();
+			for (Persistent obj : written) {
+				commitDependents(obj);
+			}
+		} catch (SQLException sex) {
+			rollback(cn);
+			for (Persistent obj : written) {
+				obj.incWriteCount();
+				rollbackDependents(obj);
+			}
+			throw sex;
+		} finally {
+			for (PreparedStatement stmt : batchStatements.values()) {
+				dbc.unpinStatement(stmt);
+			}
+			cn.setAutoCommit(wasAutoCommit);
+		}
+	}
+	
+	/**
+	 * Executes a batch of updates of the given objects and empties the object list afterwards.
+	 */
+	protected void executeBatch(PreparedStatement stmt, List<Persistent> batch) throws SQLException {
+		int[] counts = executeBatch(stmt);
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] == 0) {
+				Persistent obj = batch.get(i);
+				SysLog.logSysError("trying to update non-existent object: " + obj.getIdAsString() + "(" + obj.toString() + ")");
+			}
+		}
+		
+		batch.clear();
+	}
+	
+	/**
+	 * 
+	 */
+	protected void rollback(Connection cn) {
+		try {
+			cn.rollback();
+		} catch (SQLException sex) {
+			SysLog.logThrowable(sex);
+		}
+	}
+	
 	/**
 	 * 
 	 */
@@ -152,13 +378,27 @@ public abstract class ObjectManager {
 		// do nothing
 	}
 	
+	/**
+	 * Called for each object whose batched update was rolled back, after updateDependents() may have run for it.
+	 */
+	protected void rollbackDependents(Persistent obj) {
+		// do nothing
+	}
+	
+	/**
+	 * Called for each object once its update and that of its dependents is committed.
+	 * In-memory state derived from the saved rows belongs here rather than in updateDependents().
+	 */
+	protected void commitDependents(Persistent obj) {
+		// do nothing
+	}
+	
 	/**
 	 * 
 	 */
 	protected void deleteObject(Persistent obj, PreparedStatement stmt) throws SQLException {
 		obj.writeId(stmt, 1);
-		SysLog.logQuery(stmt);
-		stmt.executeUpdate();
+		executeUpdate(stmt);
 	}
 
 	/**
@@ -0,0 +1,207 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.lang.reflect.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * The RequestExecutor serves requests that servlets handed off from the container's threads.
+ * It runs each request on a virtual thread of its own if the Java runtime has them; otherwise, it uses a bounded pool
+ * of platform threads. Either way, it runs no more requests at once than the database pool has connections, lets as
+ * many requests wait, and rejects requests beyond that.
+ * A request task must bind its session to its thread itself, as threads are shared between sessions.
+ */
+public class RequestExecutor {
+
+	/**
+	 *
+	 */
+	protected static RequestExecutor instance = null;
+
+	/**
+	 *
+	 */
+	public static synchronized RequestExecutor getInstance() {
+		if (instance == null) {
+			int noThreads = Math.min(SysConfig.getAsyncRequestThreadsAsInt(), SysConfig.getDbPoolMaxSizeAsInt());
+			instance = new RequestExecutor(noThreads);
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Waits for running requests to finish; a later request creates a new RequestExecutor.
+	 */
+	public static synchronized void dropInstance() {
+		if (instance != null) {
+			instance.shutDown();
+			instance = null;
+		}
+	}
+
+	/**
+	 *
+	 */
+	protected ExecutorService executor;
+	protected boolean isUsingVirtualThreads;
+
+	/**
+	 * Bound running and waiting requests, as virtual thread executors take any number of tasks
+	 */
+	protected Semaphore runningRequests;
+	protected Semaphore admittedRequests;
+
+	/**
+	 *
+	 */
+	protected AtomicInteger noActiveRequests = new AtomicInteger();
+	protected AtomicLong noRequests = new AtomicLong();
+	protected AtomicLong noRejectedRequests = new AtomicLong();
+	protected Histogram waitTimes = new Histogram();
+
+	/**
+	 *
+	 */
+	protected RequestExecutor(int noThreads) {
+		runningRequests = new Semaphore(noThreads);
+		admittedRequests = new Semaphore(2 * noThreads);
+
+		executor = newVirtualThreadExecutor();
+		isUsingVirtualThreads = (executor != null);
+		if (!isUsingVirtualThreads) {
+			executor = newThreadPoolExecutor(noThreads);
+		}
+
+		SysLog.logSysInfo("serving requests on " + (isUsingVirtualThreads ? "virtual threads" : noThreads + " threads"));
+	}
+
+	/**
+	 * Returns a virtual thread per task executor, or null if the Java runtime has none (before Java 21).
+	 *
+	 * @methodtype factory
+	 */
+	protected static ExecutorService newVirtualThreadExecutor() {
+		try {
+			Method factoryMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factoryMethod.invoke(null);
+		} catch (NoSuchMethodException ex) {
+			return null;
+		} catch (ReflectiveOperationException ex) {
+			SysLog.logThrowable(ex);
+			return null;
+		}
+	}
+
+	/**
+	 * @methodtype factory
+	 */
+	protected static ExecutorService newThreadPoolExecutor(int noThreads) {
+		final AtomicInteger noThreadsCreated = new AtomicInteger();
+		ThreadFactory threadFactory = new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread result = new Thread(runnable, "request-worker-" + noThreadsCreated.incrementAndGet());
+				result.setDaemon(true);
+				return result;
+			}
+		};
+
+		ThreadPoolExecutor result = new ThreadPoolExecutor(noThreads, noThreads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(noThreads), threadFactory);
+		result.allowCoreThreadTimeOut(true);
+		return result;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public boolean isUsingVirtualThreads() {
+		return isUsingVirtualThreads;
+	}
+
+	/**
+	 * Runs task on a thread of its own, or throws RejectedExecutionException if it cannot take more tasks.
+	 *
+	 * @methodtype command
+	 */
+	public void execute(final Runnable task) throws RejectedExecutionException {
+		final long submitTime = System.nanoTime();
+		if (!admittedRequests.tryAcquire()) {
+			noRejectedRequests.incrementAndGet();
+			throw new RejectedExecutionException("too many requests");
+		}
+
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						runningRequests.acquireUninterruptibly();
+						try {
+							waitTimes.recordSince(submitTime);
+							noActiveRequests.incrementAndGet();
+							try {
+								task.run();
+							} finally {
+								noActiveRequests.decrementAndGet();
+							}
+						} finally {
+							runningRequests.release();
+						}
+					} finally {
+						admittedRequests.release();
+					}
+				}
+			});
+			noRequests.incrementAndGet();
+		} catch (RejectedExecutionException ex) {
+			admittedRequests.release();
+			noRejectedRequests.incrementAndGet();
+			throw ex;
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void shutDown() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(30, TimeUnit.SECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getNoActiveRequests() {
+		return noActiveRequests.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getNoRejectedRequests() {
+		return noRejectedRequests.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getStatisticsAsString() {
+		StringBuffer result = new StringBuffer(256);
+		result.append("virtual=").append(isUsingVirtualThreads);
+		result.append(", active=").append(getNoActiveRequests());
+		result.append(", requests=").append(noRequests.get());
+		result.append(", rejected=").append(getNoRejectedRequests());
+		result.append(", wait times: ").append(waitTimes.asNanosSummaryString());
+		return result.toString();
+	}
+
+}
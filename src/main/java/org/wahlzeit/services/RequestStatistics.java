@@ -0,0 +1,250 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * RequestStatistics accounts request latencies per request method and handler link, split into phases.
+ * Each phase has its own Histogram of nanosecond durations; clients can render all of them in Prometheus text format.
+ */
+public class RequestStatistics {
+
+	/**
+	 * Link for requests that no handler was found for, to keep the number of entries bounded
+	 */
+	public static final String UNKNOWN_LINK = "unknown";
+
+	/**
+	 *
+	 */
+	public static final String METRIC_NAME = "wahlzeit_request_duration_seconds";
+
+	/**
+	 *
+	 */
+	protected static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+
+	/**
+	 * The phases of a request; DATABASE overlaps HANDLE and MAKE, TOTAL spans all of them
+	 */
+	public enum Phase {
+
+		SESSION("session"), HANDLE("handle"), MAKE("make"), WRITE("write"), DATABASE("database"), TOTAL("total");
+
+		/**
+		 *
+		 */
+		private String label;
+
+		/**
+		 *
+		 */
+		private Phase(String myLabel) {
+			label = myLabel;
+		}
+
+		/**
+		 *
+		 */
+		public String asString() {
+			return label;
+		}
+
+	}
+
+	/**
+	 *
+	 */
+	protected static final RequestStatistics instance = new RequestStatistics();
+
+	/**
+	 *
+	 */
+	public static RequestStatistics getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Latencies of one method and link
+	 */
+	public static class Entry {
+
+		/**
+		 *
+		 */
+		protected String method;
+		protected String link;
+
+		/**
+		 * One histogram per phase, indexed by ordinal
+		 */
+		protected Histogram[] histograms = new Histogram[Phase.values().length];
+
+		/**
+		 *
+		 */
+		protected Entry(String myMethod, String myLink) {
+			method = myMethod;
+			link = myLink;
+			for (int i = 0; i < histograms.length; i++) {
+				histograms[i] = new Histogram();
+			}
+		}
+
+		/**
+		 * @methodtype command
+		 */
+		public void record(Phase phase, long nanos) {
+			histograms[phase.ordinal()].record(nanos);
+		}
+
+		/**
+		 * Returns method and link, as in "GET showPhoto".
+		 *
+		 * @methodtype get
+		 */
+		public String getName() {
+			return method + " " + link;
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		public String getMethod() {
+			return method;
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		public String getLink() {
+			return link;
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		public Histogram getHistogram(Phase phase) {
+			return histograms[phase.ordinal()];
+		}
+
+	}
+
+	/**
+	 *
+	 */
+	protected Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	/**
+	 *
+	 */
+	protected RequestStatistics() {
+		// do nothing
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public Entry ensureEntry(String method, String link) {
+		String key = method + " " + link;
+		Entry result = entries.get(key);
+		if (result == null) {
+			result = entries.computeIfAbsent(key, k -> new Entry(method, link));
+		}
+
+		return result;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public Entry getEntry(String method, String link) {
+		return entries.get(method + " " + link);
+	}
+
+	/**
+	 * Returns the number of requests of the entry named requestName, or 0 if there is none.
+	 *
+	 * @methodtype get
+	 */
+	public long getNoRequests(String requestName) {
+		Entry entry = entries.get(requestName);
+		return (entry == null) ? 0 : entry.getHistogram(Phase.TOTAL).getCount();
+	}
+
+	/**
+	 * Returns all entries, ordered by method and link.
+	 *
+	 * @methodtype get
+	 */
+	public List<Entry> getEntries() {
+		List<Entry> result = new ArrayList<Entry>(entries.values());
+		result.sort(new Comparator<Entry>() {
+			public int compare(Entry e1, Entry e2) {
+				int result = e1.getMethod().compareTo(e2.getMethod());
+				return (result != 0) ? result : e1.getLink().compareTo(e2.getLink());
+			}
+		});
+
+		return result;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Renders all histograms as one Prometheus summary, in seconds; phases that never ran are left out.
+	 *
+	 * @methodtype conversion
+	 */
+	public String asPrometheusString() {
+		StringBuffer result = new StringBuffer(4096);
+		result.append("# HELP ").append(METRIC_NAME).append(" Request latency by method, handler link, and phase.\n");
+		result.append("# TYPE ").append(METRIC_NAME).append(" summary\n");
+
+		for (Entry entry : getEntries()) {
+			for (Phase phase : Phase.values()) {
+				Histogram histogram = entry.getHistogram(phase);
+				long count = histogram.getCount();
+				if (count == 0) {
+					continue;
+				}
+
+				String labels = "method=\"" + entry.getMethod() + "\",link=\"" + escapeLabelValue(entry.getLink()) + "\",phase=\"" + phase.asString() + "\"";
+				for (double quantile : QUANTILES) {
+					result.append(METRIC_NAME).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ");
+					result.append(asSecondsString(histogram.getValueAtPercentile(quantile * 100.0))).append('\n');
+				}
+				result.append(METRIC_NAME).append("_sum{").append(labels).append("} ").append(asSecondsString(histogram.getSum())).append('\n');
+				result.append(METRIC_NAME).append("_count{").append(labels).append("} ").append(count).append('\n');
+			}
+		}
+
+		return result.toString();
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	protected static String asSecondsString(long nanos) {
+		return String.valueOf(nanos / 1000000000.0);
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	protected static String escapeLabelValue(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+}
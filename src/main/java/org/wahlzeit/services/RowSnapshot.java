@@ -0,0 +1,165 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * A RowSnapshot is a copy of the current row of a ResultSet, detached from its cursor and connection.
+ * It hands out a ResultSet stand-in that supports the getXxx(String) methods used by readFrom(ResultSet),
+ * so that rows read by one thread can be turned into objects by other threads.
+ */
+public class RowSnapshot implements InvocationHandler {
+
+	/**
+	 * Copies the current row of rset
+	 */
+	public static RowSnapshot copyFrom(ResultSet rset) throws SQLException {
+		ResultSetMetaData metaData = rset.getMetaData();
+		int noColumns = metaData.getColumnCount();
+		Map<String, Object> values = new HashMap<String, Object>(noColumns * 2);
+		for (int i = 1; i <= noColumns; i++) {
+			values.put(metaData.getColumnLabel(i).toLowerCase(), rset.getObject(i));
+		}
+
+		return new RowSnapshot(values);
+	}
+
+	/**
+	 * Column values by lower case column label
+	 */
+	protected Map<String, Object> values;
+
+	/**
+	 *
+	 */
+	protected boolean wasNull = false;
+
+	/**
+	 *
+	 */
+	public RowSnapshot(Map<String, Object> myValues) {
+		values = myValues;
+	}
+
+	/**
+	 *
+	 */
+	public ResultSet asResultSet() {
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class }, this);
+	}
+
+	/**
+	 *
+	 */
+	public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+		String name = method.getName();
+		if (name.equals("wasNull")) {
+			return wasNull;
+		} else if (name.equals("hashCode")) {
+			return System.identityHashCode(proxy);
+		} else if (name.equals("equals")) {
+			return proxy == args[0];
+		} else if (name.equals("toString")) {
+			return "RowSnapshot" + values;
+		} else if (name.startsWith("get") && (args != null) && (args.length == 1) && (args[0] instanceof String)) {
+			return getValue((String) args[0], method.getReturnType());
+		}
+
+		throw new SQLFeatureNotSupportedException("RowSnapshot does not support " + name);
+	}
+
+	/**
+	 * Returns the value of column converted to type, following the JDBC conventions for SQL NULL.
+	 *
+	 * @methodtype conversion
+	 */
+	protected Object getValue(String column, Class<?> type) throws SQLException {
+		String key = column.toLowerCase();
+		if (!values.containsKey(key)) {
+			throw new SQLException("unknown column: " + column);
+		}
+
+		Object value = values.get(key);
+		wasNull = (value == null);
+
+		if (type == String.class) {
+			return wasNull ? null : value.toString();
+		} else if (type == boolean.class) {
+			return asBoolean(value);
+		} else if (type == int.class) {
+			return (int) asLong(value);
+		} else if (type == long.class) {
+			return asLong(value);
+		} else if (type == short.class) {
+			return (short) asLong(value);
+		} else if (type == double.class) {
+			return asDouble(value);
+		} else if (type == float.class) {
+			return (float) asDouble(value);
+		} else if (type == Object.class) {
+			return value;
+		}
+
+		throw new SQLFeatureNotSupportedException("RowSnapshot does not support values of type " + type.getName());
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	protected boolean asBoolean(Object value) {
+		if (value instanceof Boolean) {
+			return (Boolean) value;
+		} else if (value instanceof Number) {
+			return ((Number) value).intValue() != 0;
+		} else if (value != null) {
+			String s = value.toString().trim();
+			return s.equalsIgnoreCase("t") || s.equalsIgnoreCase("true") || s.equals("1");
+		}
+
+		return false;
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	protected long asLong(Object value) throws SQLException {
+		if (value instanceof Number) {
+			return ((Number) value).longValue();
+		} else if (value instanceof Boolean) {
+			return ((Boolean) value) ? 1 : 0;
+		} else if (value != null) {
+			try {
+				return Long.parseLong(value.toString().trim());
+			} catch (NumberFormatException ex) {
+				throw new SQLException("not an integer value: " + value);
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	protected double asDouble(Object value) throws SQLException {
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		} else if (value != null) {
+			try {
+				return Double.parseDouble(value.toString().trim());
+			} catch (NumberFormatException ex) {
+				throw new SQLException("not a floating point value: " + value);
+			}
+		}
+
+		return 0;
+	}
+
+}
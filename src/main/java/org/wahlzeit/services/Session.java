@@ -20,6 +20,8 @@
 
 package org.wahlzeit.services;
 
+import java.sql.*;
+
 
 /**
  * A Session object maintains a DatabaseConnection and helps track processing time. Typically, there is one for each
@@ -42,6 +44,14 @@ public class Session {
 	 */
 	protected long processingTime = 0;
 	
+	/**
+	 * Nanosecond times of the current request, for RequestStatistics
+	 */
+	protected String requestName = null;
+	protected long requestStartTime = 0;
+	protected long sessionLookupTime = 0;
+	protected long databaseTime = 0;
+	
 	/**
 	 * 
 	 */
@@ -85,20 +95,23 @@ public class Session {
 	}
 	
 	/**
-	 * 
+	 * Borrows a connection unless the session holds one; fails if the pool has none available in time.
 	 */
-	public DatabaseConnection ensureDatabaseConnection() {
+	public DatabaseConnection ensureDatabaseConnection() throws SQLException {
 		if (databaseConnection == null) {
-			try {
-				databaseConnection = DatabaseConnection.ensureDatabaseConnection();
-			} catch (Throwable t) {
-				SysLog.logThrowable(t);
-			}
+			databaseConnection = DatabaseConnection.ensureDatabaseConnection();
 		}
 		
 		return databaseConnection;
 	}
 	
+	/**
+	 * Returns the connection the session holds, if any, without borrowing one.
+	 */
+	public DatabaseConnection getDatabaseConnection() {
+		return databaseConnection;
+	}
+	
 	/**
 	 * @methodproperty hook
 	 *
@@ -141,4 +154,56 @@ public class Session {
 		return processingTime;
 	}
 	
+	/**
+	 * Starts timing a request that arrived at startTime (from System.nanoTime()) and has just been given this session.
+	 */
+	public void startRequest(long startTime, String myRequestName) {
+		requestName = myRequestName;
+		requestStartTime = startTime;
+		sessionLookupTime = System.nanoTime() - startTime;
+		databaseTime = 0;
+	}
+	
+	/**
+	 * Returns the name of the current request, or of the session if it does not serve requests.
+	 */
+	public String getRequestName() {
+		return (requestName != null) ? requestName : name;
+	}
+	
+	/**
+	 * 
+	 */
+	public void setRequestName(String newRequestName) {
+		requestName = newRequestName;
+	}
+	
+	/**
+	 * 
+	 */
+	public long getRequestStartTime() {
+		return requestStartTime;
+	}
+	
+	/**
+	 * 
+	 */
+	public long getSessionLookupTime() {
+		return sessionLookupTime;
+	}
+	
+	/**
+	 * 
+	 */
+	public void addDatabaseTime(long nanos) {
+		databaseTime += nanos;
+	}
+	
+	/**
+	 * 
+	 */
+	public long getDatabaseTime() {
+		return databaseTime;
+	}
+	
 }
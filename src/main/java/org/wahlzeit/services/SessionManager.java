@@ -20,6 +20,8 @@
 
 package org.wahlzeit.services;
 
+import java.sql.*;
+
 /**
  * A manager for Session objects (user (web) sessions, agent threads, etc.) Clients can look up the session by thread.
  */
@@ -54,7 +56,7 @@ public class SessionManager {
 	/**
 	 * 
 	 */
-	public static DatabaseConnection getDatabaseConnection() {
+	public static DatabaseConnection getDatabaseConnection() throws SQLException {
 		return getThreadLocalSession().ensureDatabaseConnection();
 	}
 	
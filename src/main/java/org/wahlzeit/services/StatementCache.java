@@ -0,0 +1,247 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A StatementCache keeps the most recently used prepared statements of one DatabaseConnection.
+ * It holds at most capacity statements; the least recently used one is closed when a new one needs room.
+ * Pinned statements, for example those with a pending batch, are never evicted; the cache grows beyond capacity if it must.
+ * Like its DatabaseConnection, a cache is used by one thread at a time and is not synchronized.
+ */
+public class StatementCache {
+
+	/**
+	 * Totals over all caches
+	 */
+	protected static AtomicLong totalHits = new AtomicLong();
+	protected static AtomicLong totalMisses = new AtomicLong();
+	protected static AtomicLong totalEvictions = new AtomicLong();
+
+	/**
+	 *
+	 */
+	public static long getTotalHits() {
+		return totalHits.get();
+	}
+
+	/**
+	 *
+	 */
+	public static long getTotalMisses() {
+		return totalMisses.get();
+	}
+
+	/**
+	 *
+	 */
+	public static long getTotalEvictions() {
+		return totalEvictions.get();
+	}
+
+	/**
+	 *
+	 */
+	public static String getStatisticsAsString() {
+		return "hits=" + getTotalHits() + ", misses=" + getTotalMisses() + ", evictions=" + getTotalEvictions();
+	}
+
+	/**
+	 *
+	 */
+	protected int capacity;
+
+	/**
+	 * Maps query string to prepared statement, in access order
+	 */
+	protected LinkedHashMap<String, PreparedStatement> statements;
+
+	/**
+	 * Maps prepared statement back to its query string
+	 */
+	protected Map<PreparedStatement, String> queries = new IdentityHashMap<PreparedStatement, String>();
+
+	/**
+	 *
+	 */
+	protected Set<PreparedStatement> pinnedStatements = Collections.newSetFromMap(new IdentityHashMap<PreparedStatement, Boolean>());
+
+	/**
+	 *
+	 */
+	protected long hits = 0;
+	protected long misses = 0;
+	protected long evictions = 0;
+
+	/**
+	 *
+	 */
+	public StatementCache(int myCapacity) {
+		if (myCapacity < 1) {
+			throw new IllegalArgumentException("statement cache capacity must be positive: " + myCapacity);
+		}
+
+		capacity = myCapacity;
+		statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 42L; // any one does; class never serialized
+
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (size() > capacity) {
+					evictLeastRecentlyUsed();
+				}
+				return false; // evict() has already removed it
+			}
+		};
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public PreparedStatement get(String query) {
+		PreparedStatement result = statements.get(query);
+		if (result != null) {
+			hits++;
+			totalHits.incrementAndGet();
+		} else {
+			misses++;
+			totalMisses.incrementAndGet();
+		}
+
+		return result;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void put(String query, PreparedStatement stmt) {
+		queries.put(stmt, query);
+		statements.put(query, stmt);
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getQuery(PreparedStatement stmt) {
+		return queries.get(stmt);
+	}
+
+	/**
+	 * Keeps stmt until it is unpinned; does nothing if stmt is not in this cache.
+	 *
+	 * @methodtype command
+	 */
+	public void pin(PreparedStatement stmt) {
+		if (queries.containsKey(stmt)) {
+			pinnedStatements.add(stmt);
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void unpin(PreparedStatement stmt) {
+		pinnedStatements.remove(stmt);
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	public boolean isPinned(PreparedStatement stmt) {
+		return pinnedStatements.contains(stmt);
+	}
+
+	/**
+	 * Evicts the least recently used statement that is not pinned, if any, but never the one just put.
+	 *
+	 * @methodtype command
+	 */
+	protected void evictLeastRecentlyUsed() {
+		int noCandidates = statements.size() - 1;
+		for (Map.Entry<String, PreparedStatement> entry : statements.entrySet()) {
+			if (noCandidates-- == 0) {
+				return;
+			} else if (!pinnedStatements.contains(entry.getValue())) {
+				evict(entry.getKey(), entry.getValue());
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void evict(String query, PreparedStatement stmt) {
+		statements.remove(query);
+		queries.remove(stmt);
+		evictions++;
+		totalEvictions.incrementAndGet();
+		closeStatement(stmt);
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void clear() {
+		for (PreparedStatement stmt : statements.values()) {
+			closeStatement(stmt);
+		}
+
+		statements.clear();
+		queries.clear();
+		pinnedStatements.clear();
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void closeStatement(PreparedStatement stmt) {
+		try {
+			stmt.close();
+		} catch (SQLException ex) {
+			SysLog.logThrowable(ex);
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getSize() {
+		return statements.size();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+}
@@ -0,0 +1,230 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * StatementStatistics accounts execution count, time, and rows per SQL query string, over all database connections.
+ * Each query also counts the requests (or other sessions) that executed it, so that clients can spot N+1 patterns.
+ * The number of query strings and of sources per query is bounded; anything beyond is accounted to OTHER.
+ */
+public class StatementStatistics {
+
+	/**
+	 *
+	 */
+	public static final String OTHER = "(other)";
+	public static final int MAX_ENTRIES = 512;
+	public static final int MAX_SOURCES = 64;
+
+	/**
+	 *
+	 */
+	protected static final StatementStatistics instance = new StatementStatistics();
+
+	/**
+	 *
+	 */
+	public static StatementStatistics getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Execution statistics for one query string
+	 */
+	public static class Entry {
+
+		/**
+		 *
+		 */
+		protected String query;
+
+		/**
+		 *
+		 */
+		protected Histogram times = new Histogram();
+		protected AtomicLong noRows = new AtomicLong();
+		protected Map<String, AtomicLong> sources = new ConcurrentHashMap<String, AtomicLong>();
+
+		/**
+		 *
+		 */
+		protected Entry(String myQuery) {
+			query = myQuery;
+		}
+
+		/**
+		 *
+		 */
+		protected void record(long nanos, String source) {
+			times.record(nanos);
+			if (source != null) {
+				AtomicLong count = sources.get(source);
+				if (count == null) {
+					count = sources.computeIfAbsent((sources.size() < MAX_SOURCES) ? source : OTHER, s -> new AtomicLong());
+				}
+				count.incrementAndGet();
+			}
+		}
+
+		/**
+		 *
+		 */
+		protected void addRows(long rows) {
+			noRows.addAndGet(rows);
+		}
+
+		/**
+		 *
+		 */
+		public String getQuery() {
+			return query;
+		}
+
+		/**
+		 *
+		 */
+		public long getCount() {
+			return times.getCount();
+		}
+
+		/**
+		 *
+		 */
+		public long getTotalTime() {
+			return times.getSum();
+		}
+
+		/**
+		 *
+		 */
+		public long getMaxTime() {
+			return times.getMax();
+		}
+
+		/**
+		 *
+		 */
+		public Histogram getTimes() {
+			return times;
+		}
+
+		/**
+		 *
+		 */
+		public long getNoRows() {
+			return noRows.get();
+		}
+
+		/**
+		 * Returns the number of executions per source, most frequent source first.
+		 */
+		public Map<String, Long> getSourceCounts() {
+			List<Map.Entry<String, AtomicLong>> list = new ArrayList<Map.Entry<String, AtomicLong>>(sources.entrySet());
+			list.sort(new Comparator<Map.Entry<String, AtomicLong>>() {
+				public int compare(Map.Entry<String, AtomicLong> e1, Map.Entry<String, AtomicLong> e2) {
+					return Long.compare(e2.getValue().get(), e1.getValue().get());
+				}
+			});
+
+			Map<String, Long> result = new LinkedHashMap<String, Long>();
+			for (Map.Entry<String, AtomicLong> entry : list) {
+				result.put(entry.getKey(), entry.getValue().get());
+			}
+			return result;
+		}
+
+		/**
+		 *
+		 */
+		public String asString() {
+			long n = getCount();
+			long mean = (n == 0) ? 0 : getTotalTime() / n;
+			return "count=" + n + ", total=" + Histogram.asMillisString(getTotalTime()) + ", mean=" + Histogram.asMillisString(mean) + ", p90=" + Histogram.asMillisString(times.getValueAtPercentile(90.0)) + ", max=" + Histogram.asMillisString(getMaxTime()) + ", rows=" + getNoRows() + ", query=" + query;
+		}
+
+	}
+
+	/**
+	 *
+	 */
+	protected Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	/**
+	 *
+	 */
+	protected StatementStatistics() {
+		// do nothing
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void record(String query, long nanos) {
+		record(query, nanos, null);
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void record(String query, long nanos, String source) {
+		ensureEntry(query).record(nanos, source);
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void addRows(String query, long rows) {
+		ensureEntry(query).addRows(rows);
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	protected Entry ensureEntry(String query) {
+		Entry result = entries.get(query);
+		if (result == null) {
+			result = entries.computeIfAbsent((entries.size() < MAX_ENTRIES) ? query : OTHER, Entry::new);
+		}
+
+		return result;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public Entry getEntry(String query) {
+		return entries.get(query);
+	}
+
+	/**
+	 * Returns up to max entries, highest total execution time first.
+	 *
+	 * @methodtype get
+	 */
+	public List<Entry> getEntriesByTotalTime(int max) {
+		List<Entry> result = new ArrayList<Entry>(entries.values());
+		result.sort(new Comparator<Entry>() {
+			public int compare(Entry e1, Entry e2) {
+				return Long.compare(e2.getTotalTime(), e1.getTotalTime());
+			}
+		});
+
+		return (result.size() > max) ? result.subList(0, max) : result;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+}
@@ -35,6 +35,108 @@ public class SysConfig extends AbstractConfig {
 	public static final String DB_USER = "DB_USER";
 	public static final String DB_PASSWORD = "DB_PASSWORD";
 	
+	/**
+	 * Database connection pool definitions; timeouts and intervals are in milliseconds
+	 */
+	public static final String DB_POOL_MIN_SIZE = "DB_POOL_MIN_SIZE";
+	public static final String DB_POOL_MAX_SIZE = "DB_POOL_MAX_SIZE";
+	public static final String DB_POOL_BORROW_TIMEOUT = "DB_POOL_BORROW_TIMEOUT";
+	public static final String DB_POOL_IDLE_TIMEOUT = "DB_POOL_IDLE_TIMEOUT";
+	public static final String DB_POOL_VALIDATION_INTERVAL = "DB_POOL_VALIDATION_INTERVAL";
+	
+	/**
+	 * Maximum number of prepared statements cached per database connection (for reading and updating each)
+	 */
+	public static final String DB_STATEMENT_CACHE_SIZE = "DB_STATEMENT_CACHE_SIZE";
+	
+	/**
+	 * Maximum number of rows sent to the database in one JDBC batch when saving objects
+	 */
+	public static final String DB_BATCH_SIZE = "DB_BATCH_SIZE";
+	
+	/**
+	 * Number of rows fetched from the database at a time when reading all objects of a table
+	 */
+	public static final String DB_FETCH_SIZE = "DB_FETCH_SIZE";
+	
+	/**
+	 * Whether to load all photos and users into memory on startup
+	 */
+	public static final String WARM_UP_CACHES = "WARM_UP_CACHES";
+	
+	/**
+	 * Maximum number of photos and users kept in memory; dirty ones are kept beyond that until saved
+	 */
+	public static final String PHOTO_CACHE_SIZE = "PHOTO_CACHE_SIZE";
+	public static final String USER_CACHE_SIZE = "USER_CACHE_SIZE";
+	
+	/**
+	 * Maximum time in millis that dirty objects stay unsaved, and number of dirty objects that triggers an early save
+	 */
+	public static final String WRITE_BEHIND_PERIOD = "WRITE_BEHIND_PERIOD";
+	public static final String WRITE_BEHIND_DIRTY_THRESHOLD = "WRITE_BEHIND_DIRTY_THRESHOLD";
+	
+	/**
+	 * Whether to reload templates when their files change
+	 */
+	public static final String WATCH_TEMPLATES = "WATCH_TEMPLATES";
+	
+	/**
+	 * Maximum number of rendered page fragments kept in memory
+	 */
+	public static final String FRAGMENT_CACHE_SIZE = "FRAGMENT_CACHE_SIZE";
+	
+	/**
+	 * Maximum number of photo files kept open for serving
+	 */
+	public static final String PHOTO_FILE_CACHE_SIZE = "PHOTO_FILE_CACHE_SIZE";
+	
+	/**
+	 * Maximum number of scaled images waiting to be encoded before uploads encode themselves
+	 */
+	public static final String PHOTO_RESIZE_QUEUE_SIZE = "PHOTO_RESIZE_QUEUE_SIZE";
+	
+	/**
+	 * Number of threads creating the image files of uploaded photos
+	 */
+	public static final String UPLOAD_WORKERS = "UPLOAD_WORKERS";
+	
+	/**
+	 * Whether to create only some photo sizes on upload and the others on first request
+	 */
+	public static final String LAZY_PHOTO_SIZES = "LAZY_PHOTO_SIZES";
+	
+	/**
+	 * Maximum number of bytes of photo files created on request, in LAZY_PHOTO_SIZES mode
+	 */
+	public static final String PHOTO_SIZE_CACHE_SIZE = "PHOTO_SIZE_CACHE_SIZE";
+	
+	/**
+	 * Maximum number of bytes of an uploaded file, and of the request that carries it
+	 */
+	public static final String UPLOAD_MAX_SIZE = "UPLOAD_MAX_SIZE";
+	
+	/**
+	 * Number of log entries buffered for the log writer thread, and comma-separated level:rate pairs
+	 * of log levels of which only one in rate info entries is logged
+	 */
+	public static final String LOG_BUFFER_SIZE = "LOG_BUFFER_SIZE";
+	public static final String LOG_SAMPLING = "LOG_SAMPLING";
+	
+	/**
+	 * Number of bytes of an action log segment file
+	 */
+	public static final String ACTION_LOG_SEGMENT_SIZE = "ACTION_LOG_SEGMENT_SIZE";
+	
+	/**
+	 * Whether servlets hand requests to a RequestExecutor instead of serving them on the container's thread,
+	 * the number of requests it runs at once (at most DB_POOL_MAX_SIZE, as each request may hold a database connection),
+	 * and the time a request may take in milliseconds
+	 */
+	public static final String ASYNC_REQUESTS = "ASYNC_REQUESTS";
+	public static final String ASYNC_REQUEST_THREADS = "ASYNC_REQUEST_THREADS";
+	public static final String ASYNC_REQUEST_TIMEOUT = "ASYNC_REQUEST_TIMEOUT";
+	
 	/**
 	 * 
 	 */
@@ -99,6 +201,7 @@ public class SysConfig extends AbstractConfig {
 	protected Directory photosDir;
 	protected Directory backupDir;
 	protected Directory tempDir;
+	protected Directory actionLogDir;
 	
 	/**
 	 * 
@@ -123,12 +226,48 @@ public class SysConfig extends AbstractConfig {
 		photosDir = new Directory(rootDir, "data" + File.separator + "photos");
 		backupDir = new Directory(rootDir, "data" + File.separator + "backup");
 		tempDir = new Directory(rootDir, "data" + File.separator + "temp");
+		actionLogDir = new Directory(rootDir, "data" + File.separator + "actions");
 		
 		// Database connection
 		doSetValue(SysConfig.DB_DRIVER, "org.postgresql.Driver");
 		doSetValue(SysConfig.DB_CONNECTION, "jdbc:postgresql://" + dbHostName + ":5432/wahlzeit");
 		doSetValue(SysConfig.DB_USER, "wahlzeit");
 		doSetValue(SysConfig.DB_PASSWORD, "wahlzeit");
+		
+		// Database connection pool
+		doSetValue(SysConfig.DB_POOL_MIN_SIZE, "2");
+		doSetValue(SysConfig.DB_POOL_MAX_SIZE, "20");
+		doSetValue(SysConfig.DB_POOL_BORROW_TIMEOUT, "5000");
+		doSetValue(SysConfig.DB_POOL_IDLE_TIMEOUT, "600000");
+		doSetValue(SysConfig.DB_POOL_VALIDATION_INTERVAL, "1000");
+		doSetValue(SysConfig.DB_STATEMENT_CACHE_SIZE, "64");
+		doSetValue(SysConfig.DB_BATCH_SIZE, "100");
+		doSetValue(SysConfig.DB_FETCH_SIZE, "1000");
+		doSetValue(SysConfig.WARM_UP_CACHES, "false");
+		doSetValue(SysConfig.PHOTO_CACHE_SIZE, "100000");
+		doSetValue(SysConfig.USER_CACHE_SIZE, "10000");
+		
+		// Write-behind of dirty objects
+		doSetValue(SysConfig.WRITE_BEHIND_PERIOD, "10000");
+		doSetValue(SysConfig.WRITE_BEHIND_DIRTY_THRESHOLD, "100");
+		
+		// Templates
+		doSetValue(SysConfig.WATCH_TEMPLATES, "true");
+		doSetValue(SysConfig.FRAGMENT_CACHE_SIZE, "10000");
+		
+		// Photo files
+		doSetValue(SysConfig.PHOTO_FILE_CACHE_SIZE, "256");
+		doSetValue(SysConfig.PHOTO_RESIZE_QUEUE_SIZE, "24");
+		doSetValue(SysConfig.UPLOAD_WORKERS, "2");
+		doSetValue(SysConfig.LAZY_PHOTO_SIZES, "false");
+		doSetValue(SysConfig.PHOTO_SIZE_CACHE_SIZE, "536870912");
+		doSetValue(SysConfig.UPLOAD_MAX_SIZE, "16777216");
+		doSetValue(SysConfig.LOG_BUFFER_SIZE, "8192");
+		doSetValue(SysConfig.LOG_SAMPLING, "sq:10");
+		doSetValue(SysConfig.ACTION_LOG_SEGMENT_SIZE, "16777216");
+		doSetValue(SysConfig.ASYNC_REQUESTS, "false");
+		doSetValue(SysConfig.ASYNC_REQUEST_THREADS, "20");
+		doSetValue(SysConfig.ASYNC_REQUEST_TIMEOUT, "60000");
 	}
 	
 	/**
@@ -180,6 +319,13 @@ public class SysConfig extends AbstractConfig {
 		return getInstance().tempDir;
 	}
 
+	/**
+	 * 
+	 */
+	public static Directory getActionLogDir() {
+		return getInstance().actionLogDir;
+	}
+
 	/**
 	 * 
 	 */
@@ -207,5 +353,201 @@ public class SysConfig extends AbstractConfig {
 	public static String getDbPasswordAsString() {
 		return getInstance().getValue(SysConfig.DB_PASSWORD);
 	}
+	
+	/**
+	 * 
+	 */
+	public static int getDbPoolMinSizeAsInt() {
+		return getInstance().getValueAsInt(SysConfig.DB_POOL_MIN_SIZE);
+	}
+	
+	/**
+	 * 
+	 */
+	public static int getDbPoolMaxSizeAsInt() {
+		return getInstance().getValueAsInt(SysConfig.DB_POOL_MAX_SIZE);
+	}
+	
+	/**
+	 * 
+	 */
+	public static long getDbPoolBorrowTimeoutAsLong() {
+		return getInstance().getValueAsLong(SysConfig.DB_POOL_BORROW_TIMEOUT);
+	}
+	
+	/**
+	 * 
+	 */
+	public static long getDbPoolIdleTimeoutAsLong() {
+		return getInstance().getValueAsLong(SysConfig.DB_POOL_IDLE_TIMEOUT);
+	}
+	
+	/**
+	 * 
+	 */
+	public static long getDbPoolValidationIntervalAsLong() {
+		return getInstance().getValueAsLong(SysConfig.DB_POOL_VALIDATION_INTERVAL);
+	}
+	
+	/**
+	 * 
+	 */
+	public static int getDbStatementCacheSizeAsInt() {
+		return getInstance().getValueAsInt(SysConfig.DB_STATEMENT_CACHE_SIZE);
+	}
+	
+	/**
+	 * 
+	 */
+	public static int getDbBatchSizeAsInt() {
+		return getInstance().getValueAsInt(SysConfig.DB_BATCH_SIZE);
+	}
+	
+	/**
+	 * 
+	 */
+	public static int getDbFetchSizeAsInt() {
+		return getInstance().getValueAsInt(SysConfig.DB_FETCH_SIZE);
+	}
+	
+	/**
+	 * 
+	 */
+	public static boolean isWarmUpCaches() {
+		return getInstance().getValueAsBoolean(SysConfig.WARM_UP_CACHES);
+	}
+	
+	/**
+	 * 
+	 */
+	public static int getPhotoCacheSizeAsInt() {
+		return getInstance().getValueAsInt(SysConfig.PHOTO_CACHE_SIZE);
+	}
+	
+	/**
+	 * 
+	 */
+	public static int getUserCacheSizeAsInt() {
+		return getInstance().getValueAsInt(SysConfig.USER_CACHE_SIZE);
+	}
+	
+	/**
+	 * 
+	 */
+	public static long getWriteBehindPeriodAsLong() {
+		return getInstance().getValueAsLong(SysConfig.WRITE_BEHIND_PERIOD);
+	}
+	
+	/**
+	 * 
+	 */
+	public static int getWriteBehindDirtyThresholdAsInt() {
+		return getInstance().getValueAsInt(SysConfig.WRITE_BEHIND_DIRTY_THRESHOLD);
+	}
+	
+	/**
+	 * 
+	 */
+	public static boolean isWatchTemplates() {
+		return getInstance().getValueAsBoolean(SysConfig.WATCH_TEMPLATES);
+	}
+	
+	/**
+	 * 
+	 */
+	public static int getFragmentCacheSizeAsInt() {
+		return getInstance().getValueAsInt(SysConfig.FRAGMENT_CACHE_SIZE);
+	}
+	
+	/**
+	 * 
+	 */
+	public static int getPhotoFileCacheSizeAsInt() {
+		return getInstance().getValueAsInt(SysConfig.PHOTO_FILE_CACHE_SIZE);
+	}
+	
+	/**
+	 * 
+	 */
+	public static int getPhotoResizeQueueSizeAsInt() {
+		return getInstance().getValueAsInt(SysConfig.PHOTO_RESIZE_QUEUE_SIZE);
+	}
+	
+	/**
+	 * 
+	 */
+	public static int getUploadWorkersAsInt() {
+		return getInstance().getValueAsInt(SysConfig.UPLOAD_WORKERS);
+	}
+	
+	/**
+	 * 
+	 */
+	public static boolean isLazyPhotoSizes() {
+		return getInstance().getValueAsBoolean(SysConfig.LAZY_PHOTO_SIZES);
+	}
+	
+	/**
+	 * 
+	 */
+	public static long getPhotoSizeCacheSizeAsLong() {
+		return getInstance().getValueAsLong(SysConfig.PHOTO_SIZE_CACHE_SIZE);
+	}
+	
+	/**
+	 * 
+	 */
+	public static long getUploadMaxSizeAsLong() {
+		return getInstance().getValueAsLong(SysConfig.UPLOAD_MAX_SIZE);
+	}
+	
+	/**
+	 * 
+	 */
+	public static int getLogBufferSizeAsInt() {
+		return getInstance().getValueAsInt(SysConfig.LOG_BUFFER_SIZE);
+	}
+	
+	/**
+	 * 
+	 */
+	public static String getLogSamplingAsString() {
+		return getInstance().getValue(SysConfig.LOG_SAMPLING);
+	}
+	
+	/**
+	 * 
+	 */
+	public static int getActionLogSegmentSizeAsInt() {
+		return getInstance().getValueAsInt(SysConfig.ACTION_LOG_SEGMENT_SIZE);
+	}
+	
+	/**
+	 * 
+	 */
+	public static boolean isAsyncRequests() {
+		return getInstance().getValueAsBoolean(SysConfig.ASYNC_REQUESTS);
+	}
+	
+	/**
+	 * 
+	 */
+	public static int getAsyncRequestThreadsAsInt() {
+		return getInstance().getValueAsInt(SysConfig.ASYNC_REQUEST_THREADS);
+	}
+	
+	/**
+	 * 
+	 */
+	public static long getAsyncRequestTimeoutAsLong() {
+		return getInstance().getValueAsLong(SysConfig.ASYNC_REQUEST_TIMEOUT);
+	}
+	
+	/**
+	 * 
+	 */
+	public static String getDbPoolStatisticsAsString() {
+		return DatabaseConnection.getPool().getStatisticsAsString();
+	}
 
 }
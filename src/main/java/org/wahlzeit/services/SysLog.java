@@ -66,24 +66,37 @@ public class SysLog extends Log {
 		Log.logError("sl", s);
 	}
 	
+	/**
+	 * Level of query entries, which are many and sampled by LOG_SAMPLING
+	 */
+	public static final String QUERY_LEVEL = "sq";
+	
 	/**
 	 * 
 	 */
 	public static final void logQuery(Statement q) {
-		StringBuffer sb = createSysLogEntry();
-		addLogType(sb, "info");
-		addQuery(sb, q);
-		log(sb);
+		if (LogWriter.getInstance().isSampledOut(QUERY_LEVEL)) {
+			return; // before q.toString(), which is expensive
+		}
+		
+		LogEntry entry = createLogEntry(QUERY_LEVEL);
+		addLogType(entry, "info");
+		addQuery(entry, q);
+		log(entry);
 	}
 	
 	/**
 	 * 
 	 */
 	public static final void logQuery(String s) {
-		StringBuffer sb = createSysLogEntry();
-		addLogType(sb, "info");
-		addField(sb, "query", s);
-		log(sb);
+		if (LogWriter.getInstance().isSampledOut(QUERY_LEVEL)) {
+			return;
+		}
+		
+		LogEntry entry = createLogEntry(QUERY_LEVEL);
+		addLogType(entry, "info");
+		addField(entry, "query", s);
+		log(entry);
 	}
 	
 	/**
@@ -95,17 +108,17 @@ public class SysLog extends Log {
 			logThrowable(cause);
 		}
 		
-		StringBuffer sb = createSysLogEntry();
-		addLogType(sb, "exception");
-		addThrowable(sb, t);
-		addStacktrace(sb, t);
-		log(sb);
+		LogEntry entry = createSysLogEntry();
+		addLogType(entry, "exception");
+		addThrowable(entry, t);
+		addStacktrace(entry, t);
+		log(entry);
 	}
 
 	/**
 	 * 
 	 */
-	protected static StringBuffer createSysLogEntry() {
+	protected static LogEntry createSysLogEntry() {
 		return createLogEntry("sl");
 	}
 
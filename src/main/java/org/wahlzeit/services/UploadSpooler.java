@@ -0,0 +1,367 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * The UploadSpooler writes uploaded files into uniquely named files of the temp directory.
+ * It copies each upload once through a buffer, computes its SHA-256 hash on the way, and stops
+ * as soon as an upload exceeds UPLOAD_MAX_SIZE bytes.
+ * Spooled files are stored in the backup directory once per content, see storeFile().
+ */
+public class UploadSpooler {
+
+	/**
+	 * A spooled upload in the temp directory
+	 */
+	public static class SpooledFile {
+
+		/**
+		 *
+		 */
+		protected File file;
+		protected long length;
+		protected String hash;
+
+		/**
+		 *
+		 */
+		protected SpooledFile(File myFile, long myLength, String myHash) {
+			file = myFile;
+			length = myLength;
+			hash = myHash;
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		public long getLength() {
+			return length;
+		}
+
+		/**
+		 * Hex string of the SHA-256 hash of the file's content
+		 *
+		 * @methodtype get
+		 */
+		public String getHash() {
+			return hash;
+		}
+
+	}
+
+	/**
+	 * Signals an upload larger than the maximum size
+	 */
+	public static class UploadTooLargeException extends IOException {
+
+		/**
+		 *
+		 */
+		private static final long serialVersionUID = 42L; // any one does; class never serialized
+
+		/**
+		 *
+		 */
+		public UploadTooLargeException(long maxLength) {
+			super("upload exceeds " + maxLength + " bytes");
+		}
+
+	}
+
+	/**
+	 * Request args of an uploaded file; set by the server only, see isReservedArg()
+	 */
+	public static final String FILE_NAME = "fileName";
+	public static final String FILE_HASH = "fileHash";
+	public static final String FILE_TOO_LARGE = "fileTooLarge";
+
+	/**
+	 * Names of spooled files in the temp directory
+	 */
+	public static final String SPOOLED_FILE_PREFIX = "upload-";
+	public static final String SPOOLED_FILE_SUFFIX = ".part";
+
+	/**
+	 * Returns true if name is one of the request args of an uploaded file, which clients must not set.
+	 *
+	 * @methodtype boolean-query
+	 */
+	public static boolean isReservedArg(String name) {
+		return FILE_NAME.equals(name) || FILE_HASH.equals(name) || FILE_TOO_LARGE.equals(name);
+	}
+
+	/**
+	 * Prefix of the names of backup files that are named by content hash
+	 */
+	public static final String CONTENT_FILE_PREFIX = "sha256-";
+
+	/**
+	 *
+	 */
+	protected static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 *
+	 */
+	protected static UploadSpooler instance = null;
+
+	/**
+	 *
+	 */
+	public static synchronized UploadSpooler getInstance() {
+		if (instance == null) {
+			instance = new UploadSpooler(SysConfig.getTempDir().asString(), SysConfig.getUploadMaxSizeAsLong());
+		}
+
+		return instance;
+	}
+
+	/**
+	 *
+	 */
+	protected Path tempDir;
+	protected long maxLength;
+
+	/**
+	 *
+	 */
+	protected AtomicLong noUploads = new AtomicLong();
+	protected AtomicLong noBytesUploaded = new AtomicLong();
+	protected AtomicLong noRejected = new AtomicLong();
+	protected AtomicLong noDuplicates = new AtomicLong();
+	protected Histogram uploadTimes = new Histogram();
+
+	/**
+	 *
+	 */
+	public UploadSpooler(String myTempDir, long myMaxLength) {
+		tempDir = Paths.get(myTempDir);
+		maxLength = myMaxLength;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * Throws an UploadTooLargeException if an upload of length bytes would exceed the maximum size.
+	 * A length of -1 means unknown and passes.
+	 *
+	 * @methodtype assertion
+	 */
+	public void assertIsAcceptableLength(long length) throws UploadTooLargeException {
+		if (length > maxLength) {
+			noRejected.incrementAndGet();
+			throw new UploadTooLargeException(maxLength);
+		}
+	}
+
+	/**
+	 * Writes in to a new file in the temp directory and returns it; the caller owns the file.
+	 *
+	 * @methodtype command
+	 */
+	public SpooledFile spool(InputStream in) throws IOException {
+		long startTime = System.nanoTime();
+		Files.createDirectories(tempDir);
+		Path target = Files.createTempFile(tempDir, SPOOLED_FILE_PREFIX, SPOOLED_FILE_SUFFIX);
+
+		MessageDigest digest = createDigest();
+		long length = 0;
+		boolean isDone = false;
+		try (ReadableByteChannel source = Channels.newChannel(in); FileChannel sink = FileChannel.open(target, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			while (source.read(buffer) != -1) {
+				buffer.flip();
+				length += buffer.remaining();
+				if (length > maxLength) {
+					noRejected.incrementAndGet();
+					throw new UploadTooLargeException(maxLength);
+				}
+
+				digest.update(buffer.array(), 0, buffer.limit());
+				while (buffer.hasRemaining()) {
+					sink.write(buffer);
+				}
+				buffer.clear();
+			}
+			isDone = true;
+		} finally {
+			if (!isDone) {
+				Files.deleteIfExists(target);
+			}
+		}
+
+		noUploads.incrementAndGet();
+		noBytesUploaded.addAndGet(length);
+		uploadTimes.recordSince(startTime);
+		return new SpooledFile(target.toFile(), length, asHexString(digest.digest()));
+	}
+
+	/**
+	 * Stores a spooled file with content hash in the backup directory under targetName and deletes it from the temp directory.
+	 * The content is kept once in a file named by its hash; targetName is a hard link to it where the file system
+	 * supports links, and a copy otherwise.
+	 *
+	 * @methodtype command
+	 */
+	public void storeFile(File spooled, String hash, String backupDir, String targetName) throws IOException {
+		assertIsSpooledFile(spooled, hash);
+
+		Path source = spooled.toPath();
+		Path content = Paths.get(backupDir, CONTENT_FILE_PREFIX + hash);
+		Path target = Paths.get(backupDir, targetName);
+
+		if (Files.exists(content)) {
+			noDuplicates.incrementAndGet();
+			Files.delete(source);
+		} else {
+			try {
+				Files.move(source, content, StandardCopyOption.ATOMIC_MOVE); // same content if replacing a racing upload
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(source, content, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+
+		Files.deleteIfExists(target);
+		try {
+			Files.createLink(target, content);
+		} catch (UnsupportedOperationException | IOException ex) {
+			Files.copy(content, target);
+		}
+	}
+
+	/**
+	 * Throws an IOException unless file is a spooled file of the temp directory and hash a SHA-256 hex string.
+	 *
+	 * @methodtype assertion
+	 */
+	protected void assertIsSpooledFile(File file, String hash) throws IOException {
+		if (!isSpooledFile(file)) {
+			throw new IOException("not a spooled file: " + file);
+		}
+
+		if ((hash == null) || !hash.matches("[0-9a-f]{64}")) {
+			throw new IOException("not a content hash: " + hash);
+		}
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	protected boolean isSpooledFile(File file) {
+		Path path = file.toPath().toAbsolutePath().normalize();
+		String name = path.getFileName().toString();
+		return tempDir.toAbsolutePath().normalize().equals(path.getParent()) && name.startsWith(SPOOLED_FILE_PREFIX) && name.endsWith(SPOOLED_FILE_SUFFIX);
+	}
+
+	/**
+	 * Deletes a spooled file that was not stored, if it is still there.
+	 *
+	 * @methodtype command
+	 */
+	public void discardFile(File spooled) {
+		if (!isSpooledFile(spooled)) {
+			SysLog.logSysError("not discarding foreign file: " + spooled);
+			return;
+		}
+
+		try {
+			Files.deleteIfExists(spooled.toPath());
+		} catch (IOException ex) {
+			SysLog.logThrowable(ex);
+		}
+	}
+
+	/**
+	 * Deletes spooled files left over from requests that were cut short, as by a shutdown; call before serving requests.
+	 *
+	 * @methodtype command
+	 */
+	public void discardLeftoverFiles() {
+		File[] files = tempDir.toFile().listFiles();
+		if (files == null) {
+			return;
+		}
+
+		int noDiscarded = 0;
+		for (File file : files) {
+			if (isSpooledFile(file) && file.delete()) {
+				noDiscarded++;
+			}
+		}
+
+		if (noDiscarded > 0) {
+			SysLog.logSysInfo("deleted " + noDiscarded + " leftover uploads");
+		}
+	}
+
+	/**
+	 * @methodtype factory
+	 */
+	protected MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex); // every Java platform has SHA-256
+		}
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	protected static String asHexString(byte[] bytes) {
+		StringBuffer result = new StringBuffer(bytes.length * 2);
+		for (byte b : bytes) {
+			result.append(Character.forDigit((b >> 4) & 0xf, 16));
+			result.append(Character.forDigit(b & 0xf, 16));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Bytes per second over all uploads, measured from first to last byte of each
+	 *
+	 * @methodtype get
+	 */
+	public long getThroughput() {
+		long noNanos = uploadTimes.getSum();
+		return (noNanos == 0) ? 0 : (long) (noBytesUploaded.get() * 1.0e9 / noNanos);
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getStatisticsAsString() {
+		StringBuffer result = new StringBuffer(256);
+		result.append("uploads=").append(noUploads.get());
+		result.append(", bytes=").append(noBytesUploaded.get());
+		result.append(", rejected=").append(noRejected.get());
+		result.append(", duplicates=").append(noDuplicates.get());
+		result.append(", throughput=").append(getThroughput() / 1024).append("KB/s");
+		result.append(", upload times: ").append(uploadTimes.asNanosSummaryString());
+		return result.toString();
+	}
+
+}
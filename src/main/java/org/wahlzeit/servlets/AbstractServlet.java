@@ -23,6 +23,8 @@ package org.wahlzeit.servlets;
 import java.io.*;
 import java.util.*;
 import java.net.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import javax.servlet.*;
 import javax.servlet.http.*;
@@ -65,21 +67,25 @@ public abstract class AbstractServlet extends HttpServlet {
 		return ++lastSessionId;
 	}
 	
+	/**
+	 * Whether requests are served by the RequestExecutor, see SysConfig.ASYNC_REQUESTS
+	 */
+	protected boolean isAsyncRequests = false;
+	protected long asyncRequestTimeout = 0;
+	
+	/**
+	 * 
+	 */
+	public void init() throws ServletException {
+		isAsyncRequests = SysConfig.isAsyncRequests();
+		asyncRequestTimeout = SysConfig.getAsyncRequestTimeoutAsLong();
+	}
+	
 	/**
 	 * 
 	 */
 	public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		UserSession us = ensureUserSession(request);	
-		SessionManager.setThreadLocalSession(us);
-		
-		if (ServiceMain.getInstance().isShuttingDown() || (us == null)) {
-			displayNullPage(request, response);
-		} else {
-			myGet(request, response);
-			us.returnDatabaseConnection();
-		}
-
-		SessionManager.dropThreadLocalSession();
+		serve(request, response, false);
 	}
 	
 	/**
@@ -93,17 +99,173 @@ public abstract class AbstractServlet extends HttpServlet {
 	 * 
 	 */
 	public void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		UserSession us = ensureUserSession(request);	
-		SessionManager.setThreadLocalSession(us);
-		
-		if (ServiceMain.getInstance().isShuttingDown() || (us == null)) {
-			displayNullPage(request, response);
-		} else {
-			myPost(request, response);
-			us.returnDatabaseConnection();
+		serve(request, response, true);
+	}
+	
+	/**
+	 * Serves the request on the container's thread or, in async mode, hands it over to the RequestExecutor together
+	 * with its session, so that blocking database and file access does not hold up the container's threads.
+	 */
+	protected void serve(final HttpServletRequest request, final HttpServletResponse response, final boolean isPost) throws ServletException, IOException {
+		final long startTime = System.nanoTime();
+		final UserSession us = ensureUserSession(request);
+		if (!isAsyncRequests || !request.isAsyncSupported()) {
+			serveRequest(request, response, us, isPost, startTime);
+			return;
+		}
+
+		final AsyncContext context = request.startAsync();
+		context.setTimeout(asyncRequestTimeout);
+		final AsyncRequestListener listener = new AsyncRequestListener(response);
+		context.addListener(listener);
+		try {
+			RequestExecutor.getInstance().execute(new Runnable() {
+				public void run() {
+					if (!listener.start()) {
+						return; // timed out while waiting for a thread
+					}
+
+					try {
+						serveRequest(request, response, us, isPost, startTime);
+					} catch (Exception ex) {
+						SysLog.logThrowable(ex);
+						sendErrorIfPossible(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+					} finally {
+						completeIfPossible(context);
+					}
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			SysLog.logSysError("no thread for request: " + request.getRequestURI());
+			sendErrorIfPossible(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			completeIfPossible(context);
+		}
+	}
+	
+	/**
+	 * Ends an async request that timed out or failed in the container before its task started: sends an error and
+	 * completes the response, and the task does not serve the request anymore. Once the task runs, it owns the response;
+	 * it completes the response and returns the database connection when done, see serve().
+	 */
+	protected class AsyncRequestListener implements AsyncListener {
+
+		/**
+		 *
+		 */
+		protected HttpServletResponse response;
+
+		/**
+		 * Claimed by whichever comes first, the request task or the end of the request
+		 */
+		protected AtomicBoolean isClaimed = new AtomicBoolean();
+
+		/**
+		 *
+		 */
+		protected AsyncRequestListener(HttpServletResponse myResponse) {
+			response = myResponse;
+		}
+
+		/**
+		 * Returns false if the request ended before its task started.
+		 *
+		 * @methodtype command
+		 */
+		protected boolean start() {
+			return isClaimed.compareAndSet(false, true);
+		}
+
+		/**
+		 *
+		 */
+		public void onTimeout(AsyncEvent event) throws IOException {
+			SysLog.logSysError("request timed out");
+			end(event.getAsyncContext(), HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+		}
+
+		/**
+		 *
+		 */
+		public void onError(AsyncEvent event) throws IOException {
+			if (event.getThrowable() != null) {
+				SysLog.logThrowable(event.getThrowable());
+			}
+			end(event.getAsyncContext(), HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
 		}
 
-		SessionManager.dropThreadLocalSession();
+		/**
+		 *
+		 */
+		public void onComplete(AsyncEvent event) {
+			// do nothing
+		}
+
+		/**
+		 *
+		 */
+		public void onStartAsync(AsyncEvent event) {
+			// do nothing
+		}
+
+		/**
+		 * @methodtype command
+		 */
+		protected void end(AsyncContext context, int status) {
+			if (!start()) {
+				return; // task is using response
+			}
+
+			sendErrorIfPossible(response, status);
+			completeIfPossible(context);
+		}
+
+	}
+
+	/**
+	 * Serves the request on the current thread, with us bound to it for the duration of the request.
+	 */
+	protected void serveRequest(HttpServletRequest request, HttpServletResponse response, UserSession us, boolean isPost, long startTime) throws ServletException, IOException {
+		SessionManager.setThreadLocalSession(us);
+		try {
+			if (ServiceMain.getInstance().isShuttingDown() || (us == null)) {
+				displayNullPage(request, response);
+			} else if (isPost) {
+				us.startRequest(startTime, "POST " + getServletName());
+				myPost(request, response);
+			} else {
+				us.startRequest(startTime, "GET " + getServletName());
+				myGet(request, response);
+			}
+		} finally {
+			if (us != null) {
+				us.returnDatabaseConnection();
+			}
+			SessionManager.dropThreadLocalSession();
+		}
+	}
+	
+	/**
+	 * 
+	 */
+	protected void sendErrorIfPossible(HttpServletResponse response, int status) {
+		try {
+			if (!response.isCommitted()) {
+				response.sendError(status);
+			}
+		} catch (IOException ioex) {
+			SysLog.logThrowable(ioex);
+		}
+	}
+	
+	/**
+	 * 
+	 */
+	protected void completeIfPossible(AsyncContext context) {
+		try {
+			context.complete();
+		} catch (IllegalStateException ex) {
+			SysLog.logSysInfo("request timed out before completion"); // container completed it already
+		}
 	}
 	
 	/**
@@ -113,6 +275,15 @@ public abstract class AbstractServlet extends HttpServlet {
 		// do nothing
 	}
 
+	/**
+	 * Accounts the phases that span the whole request to entry; handlers account their own phases.
+	 */
+	protected void recordRequest(Session ctx, RequestStatistics.Entry entry) {
+		entry.record(RequestStatistics.Phase.SESSION, ctx.getSessionLookupTime());
+		entry.record(RequestStatistics.Phase.DATABASE, ctx.getDatabaseTime());
+		entry.record(RequestStatistics.Phase.TOTAL, System.nanoTime() - ctx.getRequestStartTime());
+	}
+
 	/**
 	 * 
 	 */
@@ -174,9 +345,9 @@ public abstract class AbstractServlet extends HttpServlet {
 		result.addString("processingTime", StringUtil.asStringInSeconds((processingTime == 0) ? 1 : processingTime));
 		SysLog.logSysInfo("proctime", String.valueOf(processingTime));
 		
-		response.setContentType("text/html");
+		response.setContentType("text/html; charset=UTF-8");
 
-		PrintWriter out = response.getWriter();
+		Utf8Writer out = new Utf8Writer(response.getOutputStream());
 		result.writeOn(out);
 		out.close();
 
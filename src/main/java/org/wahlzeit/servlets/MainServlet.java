@@ -21,8 +21,6 @@
 package org.wahlzeit.servlets;
 
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.*;
 
 import javax.servlet.*;
@@ -32,6 +30,7 @@ import javax.servlet.annotation.*;
 import org.wahlzeit.handlers.*;
 import org.wahlzeit.model.*;
 import org.wahlzeit.services.*;
+import org.wahlzeit.utils.*;
 import org.wahlzeit.webparts.*;
 
 
@@ -51,7 +50,7 @@ public class MainServlet extends AbstractServlet {
 	 * 
 	 */
 	public void myGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		long startTime = System.currentTimeMillis();
+		long startTime = System.nanoTime();
 		UserSession us = ensureUserSession(request);
 		
 		String link = request.getRequestURI();
@@ -65,31 +64,55 @@ public class MainServlet extends AbstractServlet {
 		UserLog.logUserInfo("requested", link);
 
 		WebPageHandler handler = WebPartHandlerManager.getWebPageHandler(link);
+		RequestStatistics.Entry entry = RequestStatistics.getInstance().ensureEntry("GET", (handler != null) ? link : RequestStatistics.UNKNOWN_LINK);
+		us.setRequestName(entry.getName());
 		String newLink = PartUtil.DEFAULT_PAGE_NAME;
 		if (handler != null) {
 			Map args = getRequestArgs(request);
 			SysLog.logSysInfo("GET arguments: " + getRequestArgsAsString(us, args));
+			long handleStartTime = System.nanoTime();
 			newLink = handler.handleGet(us, link, args);
+			entry.record(RequestStatistics.Phase.HANDLE, System.nanoTime() - handleStartTime);
 		}
 
 		if (newLink.equals(link)) { // no redirect necessary
+			String entityTag = handler.getEntityTag(us, link);
+			if (entityTag != null) {
+				response.setHeader("ETag", entityTag);
+				response.setHeader("Cache-Control", HttpUtil.CACHE_CONTROL_REVALIDATE);
+				if (HttpUtil.isMatchingEntityTag(request.getHeader("If-None-Match"), entityTag)) {
+					response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+					handler.handleNotModified(us);
+					us.clearSavedArgs();
+					us.resetProcessingTime();
+					recordRequest(us, entry);
+					return;
+				}
+			}
+			
+			long makeStartTime = System.nanoTime();
 			WebPart result = handler.makeWebPart(us);
-			us.addProcessingTime(System.currentTimeMillis() - startTime);
+			long writeStartTime = System.nanoTime();
+			entry.record(RequestStatistics.Phase.MAKE, writeStartTime - makeStartTime);
+			us.addProcessingTime((writeStartTime - startTime) / 1000000);
 			configureResponse(us, response, result);
+			entry.record(RequestStatistics.Phase.WRITE, System.nanoTime() - writeStartTime);
 			us.clearSavedArgs(); // saved args go from post to next get
 			us.resetProcessingTime();
 		} else {
 			SysLog.logSysInfo("redirect", newLink);
 			redirectRequest(response, newLink);
-			us.addProcessingTime(System.currentTimeMillis() - startTime);
+			us.addProcessingTime((System.nanoTime() - startTime) / 1000000);
 		}
+		
+		recordRequest(us, entry);
 	}
 	
 	/**
 	 * 
 	 */
 	public void myPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		long startTime = System.currentTimeMillis();
+		long startTime = System.nanoTime();
 		UserSession us = ensureUserSession(request);
 		
 		String link = request.getRequestURI();
@@ -106,13 +129,25 @@ public class MainServlet extends AbstractServlet {
 		SysLog.logSysInfo("POST arguments: " + getRequestArgsAsString(us, args));
 		
 		WebFormHandler formHandler = WebPartHandlerManager.getWebFormHandler(link);
+		RequestStatistics.Entry entry = RequestStatistics.getInstance().ensureEntry("POST", (formHandler != null) ? link : RequestStatistics.UNKNOWN_LINK);
+		us.setRequestName(entry.getName());
 		link = PartUtil.DEFAULT_PAGE_NAME;
-		if (formHandler != null) {
-			link = formHandler.handlePost(us, args);
+		try {
+			if (formHandler != null) {
+				long handleStartTime = System.nanoTime();
+				link = formHandler.handlePost(us, args);
+				entry.record(RequestStatistics.Phase.HANDLE, System.nanoTime() - handleStartTime);
+			}
+		} finally {
+			Object spooledFileName = args.get(UploadSpooler.FILE_NAME);
+			if (spooledFileName instanceof String) { // not stored by handler, if still there
+				UploadSpooler.getInstance().discardFile(new File((String) spooledFileName));
+			}
 		}
 
 		redirectRequest(response, link);
-		us.addProcessingTime(System.currentTimeMillis() - startTime);
+		us.addProcessingTime((System.nanoTime() - startTime) / 1000000);
+		recordRequest(us, entry);
 	}
 
 	/**
@@ -128,34 +163,63 @@ public class MainServlet extends AbstractServlet {
 	}
 
 	/**
-	 * 
+	 * Spools the uploaded file, if any, to a temp file of its own and adds its name and content hash to the args.
+	 * An upload that is too large is not read; args then say so instead. Parts named like these args are ignored.
 	 */
 	protected Map getMultiPartRequestArgs(HttpServletRequest request) throws IOException, ServletException {
 		Map<String, String> result = new HashMap<String, String>();
 
+		UploadSpooler spooler = UploadSpooler.getInstance();
+		try {
+			spooler.assertIsAcceptableLength(request.getContentLengthLong());
+		} catch (UploadSpooler.UploadTooLargeException ex) {
+			result.put(UploadSpooler.FILE_TOO_LARGE, "true");
+			return result;
+		}
+
+		boolean isDone = false;
+		try {
+			addMultiPartArgs(request, spooler, result);
+			isDone = true;
+		} finally {
+			if (!isDone && (result.get(UploadSpooler.FILE_NAME) != null)) {
+				spooler.discardFile(new File(result.get(UploadSpooler.FILE_NAME)));
+			}
+		}
+		
+		return result;
+	}
+
+	/**
+	 * 
+	 */
+	protected void addMultiPartArgs(HttpServletRequest request, UploadSpooler spooler, Map<String, String> result) throws IOException, ServletException {
 		Collection<Part> parts = request.getParts();
 		for (Iterator<Part> i = parts.iterator(); i.hasNext(); ) {
 			Part part = i.next();
 
 			String key = part.getName();
 			if (key.equals("file")) {
-				String tempFileName = SysConfig.getTempDir().asString() + Thread.currentThread().getId();
-				saveImgToDirectory(tempFileName, part.getInputStream());
-				result.put("fileName", tempFileName);
-			} else {
+				try {
+					spooler.assertIsAcceptableLength(part.getSize());
+					UploadSpooler.SpooledFile spooled;
+					try (InputStream in = part.getInputStream()) {
+						spooled = spooler.spool(in);
+					}
+					String previousFileName = result.put(UploadSpooler.FILE_NAME, spooled.getFile().getPath());
+					if (previousFileName != null) { // more than one file part
+						spooler.discardFile(new File(previousFileName));
+					}
+					result.put(UploadSpooler.FILE_HASH, spooled.getHash());
+				} catch (UploadSpooler.UploadTooLargeException ex) {
+					result.put(UploadSpooler.FILE_TOO_LARGE, "true");
+				} finally {
+					part.delete(); // container's copy
+				}
+			} else if (!UploadSpooler.isReservedArg(key)) {
 				result.put(key, request.getParameter(key));
 			}			
 		}
-		
-		return result;
-	}
-
-	private void saveImgToDirectory(String filePath, InputStream imgStream) throws IOException {
-		File targetFile = new File(filePath);
-		if(targetFile.exists()) {
-			targetFile.delete();
-		}
-		Files.copy(imgStream, Paths.get(filePath));
 	}
 
 }
@@ -0,0 +1,70 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.servlets;
+
+import java.io.*;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import org.wahlzeit.model.*;
+import org.wahlzeit.services.*;
+
+/**
+ * The servlet for serving request latencies in Prometheus text format.
+ * Only administrators and requests from the local host may see them.
+ * Scrapers send no cookies, so requests are served without creating a user session.
+ */
+public class MetricsServlet extends AbstractServlet {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 42L; // any one does; class never serialized
+
+	/**
+	 * 
+	 */
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=UTF-8";
+
+	/**
+	 * 
+	 */
+	public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		myGet(request, response);
+	}
+
+	/**
+	 * 
+	 */
+	public void myGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		if (!isLocalHost(request) && !isAdministrator(request)) {
+			SysLog.logSysInfo("insufficient rights for metrics from: " + request.getRemoteHost());
+			response.sendError(HttpServletResponse.SC_FORBIDDEN);
+			return;
+		}
+
+		response.setContentType(CONTENT_TYPE);
+		response.setHeader("Cache-Control", "no-cache");
+
+		Writer out = new OutputStreamWriter(response.getOutputStream(), "UTF-8");
+		out.write(RequestStatistics.getInstance().asPrometheusString());
+		out.close();
+	}
+
+	/**
+	 * Returns true if the request belongs to an existing session of an administrator.
+	 *
+	 * @methodtype boolean-query
+	 */
+	protected boolean isAdministrator(HttpServletRequest request) {
+		HttpSession httpSession = request.getSession(false);
+		UserSession us = (httpSession != null) ? (UserSession) httpSession.getAttribute("session") : null;
+		return (us != null) && us.getClient().hasAdministratorRights();
+	}
+
+}
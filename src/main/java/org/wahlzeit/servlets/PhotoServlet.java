@@ -0,0 +1,494 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.servlets;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.atomic.*;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import org.wahlzeit.model.*;
+import org.wahlzeit.services.*;
+import org.wahlzeit.utils.*;
+
+/**
+ * The PhotoServlet serves photo files, named by photo id and photo size, without a user session.
+ * Files are sent from cached open file channels: through the container's sendfile support where available,
+ * asynchronously in chunks for large files, and by channel transfer otherwise. Single byte ranges and
+ * conditional requests are supported; photo files never change under their name, so they are cacheable for good.
+ * Photos being processed or deleted are not served; hidden ones only to their owner and moderators, as on the photo page.
+ * In LAZY_PHOTO_SIZES mode, photo files of sizes not created on upload are created on request by the PhotoSizeCache.
+ */
+public class PhotoServlet extends HttpServlet {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 42L; // any one does; class never serialized
+
+	/**
+	 * Request attributes of Tomcat's sendfile support
+	 */
+	protected static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	protected static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	protected static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	protected static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+	/**
+	 * Files of this many bytes or more are written asynchronously
+	 */
+	protected static final long ASYNC_WRITE_THRESHOLD = 256 * 1024;
+
+	/**
+	 *
+	 */
+	protected static final int CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 *
+	 */
+	protected static FileChannelCache openFiles = null;
+
+	/**
+	 *
+	 */
+	protected static boolean isLazyPhotoSizes = false;
+
+	/**
+	 * Requests have no user session; photo lookups that miss the photo cache read the database in these, one per thread
+	 */
+	protected static ThreadLocal<SysSession> lookupSessions = ThreadLocal.withInitial(() -> new SysSession("photo-servlet-" + Thread.currentThread().getName()));
+
+	/**
+	 *
+	 */
+	protected static AtomicLong noRequests = new AtomicLong();
+	protected static AtomicLong noBytesServed = new AtomicLong();
+	protected static AtomicLong noNotModified = new AtomicLong();
+	protected static AtomicLong noPartial = new AtomicLong();
+	protected static AtomicLong noNotFound = new AtomicLong();
+	protected static Histogram latencies = new Histogram();
+
+	/**
+	 * Writes a range of an open file on an output stream whenever the stream is ready for more
+	 */
+	protected static class ChannelWriter implements WriteListener {
+
+		/**
+		 *
+		 */
+		protected AsyncContext context;
+		protected ServletOutputStream out;
+		protected FileChannelCache.OpenFile file;
+		protected long position;
+		protected long end;
+		protected long startTime;
+
+		/**
+		 *
+		 */
+		protected byte[] buffer = new byte[CHUNK_SIZE];
+		protected boolean isDone = false;
+
+		/**
+		 *
+		 */
+		protected ChannelWriter(AsyncContext myContext, ServletOutputStream myOut, FileChannelCache.OpenFile myFile, long myStart, long myEnd, long myStartTime) {
+			context = myContext;
+			out = myOut;
+			file = myFile;
+			position = myStart;
+			end = myEnd;
+			startTime = myStartTime;
+		}
+
+		/**
+		 *
+		 */
+		public void onWritePossible() throws IOException {
+			while (!isDone && out.isReady()) {
+				if (position > end) {
+					finish();
+					return;
+				}
+
+				ByteBuffer target = ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, end - position + 1));
+				int noBytes = file.getChannel().read(target, position);
+				if (noBytes < 0) {
+					throw new EOFException("photo file ended early: " + file.getPath());
+				}
+
+				out.write(buffer, 0, noBytes);
+				position += noBytes;
+				noBytesServed.addAndGet(noBytes);
+			}
+		}
+
+		/**
+		 *
+		 */
+		public void onError(Throwable t) {
+			SysLog.logSysInfo("could not write photo file " + file.getPath() + ": " + t.getMessage());
+			finish();
+		}
+
+		/**
+		 * @methodtype command
+		 */
+		protected synchronized void finish() {
+			if (!isDone) {
+				isDone = true;
+				file.release();
+				latencies.recordSince(startTime);
+				context.complete();
+			}
+		}
+
+	}
+
+	/**
+	 *
+	 */
+	public void init() throws ServletException {
+		synchronized(PhotoServlet.class) {
+			if (openFiles == null) {
+				openFiles = new FileChannelCache(SysConfig.getPhotoFileCacheSizeAsInt());
+			}
+			isLazyPhotoSizes = SysConfig.isLazyPhotoSizes();
+			if (isLazyPhotoSizes) {
+				PhotoSizeCache.getInstance().setOpenFiles(openFiles); // it deletes files
+			}
+		}
+	}
+
+	/**
+	 *
+	 */
+	public void destroy() {
+		synchronized(PhotoServlet.class) {
+			if (openFiles != null) {
+				PhotoSizeCache.getInstance().setOpenFiles(null);
+				openFiles.clear();
+				openFiles = null;
+			}
+		}
+	}
+
+	/**
+	 *
+	 */
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		servePhotoFile(request, response, true);
+	}
+
+	/**
+	 *
+	 */
+	protected void doHead(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		servePhotoFile(request, response, false);
+	}
+
+	/**
+	 *
+	 */
+	protected void servePhotoFile(HttpServletRequest request, HttpServletResponse response, boolean withBody) throws IOException {
+		long startTime = System.nanoTime();
+		noRequests.incrementAndGet();
+
+		Photo photo = null;
+		PhotoId id = getPhotoId(request.getPathInfo());
+		if (id != null) {
+			photo = getPhoto(id);
+		}
+
+		FileChannelCache.OpenFile file = null;
+		PhotoSize size = (photo != null) ? getPhotoSize(request.getPathInfo()) : null;
+		if ((size != null) && photo.hasPhotoSize(size) && isServable(request, photo)) {
+			file = acquirePhotoFile(id, size);
+		}
+
+		if (file == null) {
+			noNotFound.incrementAndGet();
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			latencies.recordSince(startTime);
+			return;
+		}
+
+		boolean isWritingAsync = false;
+		try {
+			long length = file.getSize();
+			String entityTag = HttpUtil.asEntityTag(file.getPath().getFileName(), length, file.getLastModified());
+			response.setHeader("ETag", entityTag);
+			response.setDateHeader("Last-Modified", file.getLastModified());
+			response.setHeader("Cache-Control", photo.isVisible() ? HttpUtil.CACHE_CONTROL_IMMUTABLE : HttpUtil.CACHE_CONTROL_REVALIDATE);
+			response.setHeader("Accept-Ranges", "bytes");
+
+			if (isNotModified(request, entityTag, file.getLastModified())) {
+				noNotModified.incrementAndGet();
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+
+			long start = 0;
+			long end = length - 1;
+			long[] range = isRangeApplicable(request, entityTag, file.getLastModified()) ? HttpUtil.parseRange(request.getHeader("Range"), length) : null;
+			if (range == HttpUtil.UNSATISFIABLE_RANGE) {
+				response.setHeader("Content-Range", "bytes */" + length);
+				response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				return;
+			} else if (range != null) {
+				noPartial.incrementAndGet();
+				start = range[0];
+				end = range[1];
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+			}
+
+			response.setContentType("image/jpeg");
+			response.setContentLengthLong(end - start + 1);
+			if (!withBody || (end < start)) {
+				return;
+			}
+
+			if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+				request.setAttribute(SENDFILE_FILENAME, file.getPath().toAbsolutePath().toString());
+				request.setAttribute(SENDFILE_START, Long.valueOf(start));
+				request.setAttribute(SENDFILE_END, Long.valueOf(end + 1)); // exclusive
+				noBytesServed.addAndGet(end - start + 1);
+			} else if ((end - start + 1 >= ASYNC_WRITE_THRESHOLD) && request.isAsyncSupported()) {
+				AsyncContext context = request.startAsync();
+				context.setTimeout(0);
+				ServletOutputStream out = response.getOutputStream();
+				isWritingAsync = true;
+				out.setWriteListener(new ChannelWriter(context, out, file, start, end, startTime));
+			} else {
+				transferTo(file.getChannel(), start, end, response.getOutputStream());
+			}
+		} finally {
+			if (!isWritingAsync) {
+				file.release();
+				latencies.recordSince(startTime);
+			}
+		}
+	}
+
+	/**
+	 * Returns the id of the photo named by the request's path info, or null if it names no photo file.
+	 *
+	 * @methodtype conversion
+	 */
+	protected static PhotoId getPhotoId(String pathInfo) {
+		if ((pathInfo == null) || !pathInfo.startsWith("/") || !pathInfo.endsWith(".jpg")) {
+			return null;
+		}
+
+		String name = pathInfo.substring(1, pathInfo.length() - ".jpg".length());
+		if ((name.length() < 3) || (name.charAt(0) != 'x')) {
+			return null;
+		}
+
+		String idAsString = name.substring(0, name.length() - 1);
+		for (int i = 1; i < idAsString.length(); i++) {
+			char c = idAsString.charAt(i);
+			if (!(((c >= '0') && (c <= '9')) || ((c >= 'a') && (c <= 'z')))) {
+				return null;
+			}
+		}
+
+		PhotoId id = PhotoId.getIdFromString(idAsString);
+		if (id.isNullId() || !id.asString().equals(idAsString)) {
+			return null;
+		}
+
+		return id;
+	}
+
+	/**
+	 * Returns the size named by the well-formed path info, or null if there is no such size.
+	 *
+	 * @methodtype conversion
+	 */
+	protected static PhotoSize getPhotoSize(String pathInfo) {
+		String name = pathInfo.substring(1, pathInfo.length() - ".jpg".length());
+		try {
+			return PhotoSize.getFromInt(Character.digit(name.charAt(name.length() - 1), 10));
+		} catch (IllegalArgumentException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the file of photo id in size, which the photo has, or null if there is none.
+	 *
+	 * @methodtype get
+	 */
+	protected static File getPhotoFile(PhotoId id, PhotoSize size) throws IOException {
+		if (isLazyPhotoSizes) {
+			return PhotoSizeCache.getInstance().getImageFile(id, size);
+		}
+		return PhotoUtil.getImageFile(id, size);
+	}
+
+	/**
+	 * Returns the open file of photo id in size, which the photo has, or null if there is none.
+	 * In LAZY_PHOTO_SIZES mode, the PhotoSizeCache may delete the file between returning and opening it;
+	 * it is then created again.
+	 *
+	 * @methodtype get
+	 */
+	protected static FileChannelCache.OpenFile acquirePhotoFile(PhotoId id, PhotoSize size) throws IOException {
+		for (int noTries = isLazyPhotoSizes ? 2 : 1; noTries > 0; noTries--) {
+			File photoFile = null;
+			try {
+				photoFile = getPhotoFile(id, size);
+			} catch (IOException ioex) {
+				SysLog.logThrowable(ioex); // could not create photo file
+			}
+
+			if (photoFile == null) {
+				return null;
+			}
+
+			try {
+				return openFiles.acquire(photoFile.toPath());
+			} catch (NoSuchFileException | FileNotFoundException ex) {
+				// deleted since, try again
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	protected static Photo getPhoto(PhotoId id) {
+		Session session = lookupSessions.get();
+		SessionManager.setThreadLocalSession(session);
+		try {
+			return PhotoManager.getPhoto(id);
+		} finally {
+			session.returnDatabaseConnection();
+			SessionManager.dropThreadLocalSession();
+		}
+	}
+
+	/**
+	 * Visible photos are served to everyone; hidden ones only to their owner and moderators.
+	 *
+	 * @methodtype boolean-query
+	 */
+	protected boolean isServable(HttpServletRequest request, Photo photo) {
+		PhotoStatus status = photo.getStatus();
+		if (status.isProcessing() || status.isDeleted()) {
+			return false;
+		} else if (status.isDisplayable()) {
+			return true;
+		}
+
+		HttpSession httpSession = request.getSession(false);
+		UserSession us = (httpSession != null) ? (UserSession) httpSession.getAttribute("session") : null;
+		return (us != null) && (us.getClient().hasModeratorRights() || us.isPhotoOwner(photo));
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	protected boolean isNotModified(HttpServletRequest request, String entityTag, long lastModified) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			return HttpUtil.isMatchingEntityTag(ifNoneMatch, entityTag);
+		}
+
+		return isNotModifiedSince(request, "If-Modified-Since", lastModified);
+	}
+
+	/**
+	 * A range only applies if an If-Range precondition, if any, still holds.
+	 *
+	 * @methodtype boolean-query
+	 */
+	protected boolean isRangeApplicable(HttpServletRequest request, String entityTag, long lastModified) {
+		String ifRange = request.getHeader("If-Range");
+		if (ifRange == null) {
+			return true;
+		} else if (ifRange.trim().startsWith("\"")) {
+			return ifRange.trim().equals(entityTag);
+		}
+
+		return isNotModifiedSince(request, "If-Range", lastModified);
+	}
+
+	/**
+	 * @methodtype boolean-query
+	 */
+	protected boolean isNotModifiedSince(HttpServletRequest request, String header, long lastModified) {
+		try {
+			long since = request.getDateHeader(header);
+			return (since != -1) && ((lastModified / 1000) <= (since / 1000)); // header has seconds only
+		} catch (IllegalArgumentException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Transfers bytes start to end (inclusive) of channel to out, leaving the copying to the file channel.
+	 *
+	 * @methodtype command
+	 */
+	protected static void transferTo(FileChannel channel, long start, long end, OutputStream out) throws IOException {
+		WritableByteChannel target = Channels.newChannel(out);
+		long position = start;
+		while (position <= end) {
+			long noBytes = channel.transferTo(position, end - position + 1, target);
+			if (noBytes <= 0) {
+				throw new EOFException("photo file ended early");
+			}
+			position += noBytes;
+			noBytesServed.addAndGet(noBytes);
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public static long getNoBytesServed() {
+		return noBytesServed.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public static Histogram getLatencies() {
+		return latencies;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public static String getStatisticsAsString() {
+		StringBuffer result = new StringBuffer(256);
+		result.append("requests=").append(noRequests.get());
+		result.append(", bytes served=").append(noBytesServed.get());
+		result.append(", not modified=").append(noNotModified.get());
+		result.append(", partial=").append(noPartial.get());
+		result.append(", not found=").append(noNotFound.get());
+		FileChannelCache files = openFiles;
+		if (files != null) {
+			result.append(", open files=").append(files.getSize());
+			result.append(", file hits=").append(files.getHits());
+			result.append(", file misses=").append(files.getMisses());
+		}
+		result.append(", latencies: ").append(latencies.asNanosSummaryString());
+		return result.toString();
+	}
+
+}
@@ -0,0 +1,264 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.tools;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+
+import org.wahlzeit.model.*;
+
+/**
+ * A tool to compute per-action, per-photo, and per-user counts from the segment files of an ActionLog.
+ * It needs no database; it maps each segment read-only and counts into arrays indexed by id.
+ * Usage: AnalyzeActionLog [--dir actionLogDir] [--top n]
+ */
+public class AnalyzeActionLog {
+
+	/**
+	 *
+	 */
+	public static void main(String[] argv) throws IOException {
+		AnalyzeActionLog tool = new AnalyzeActionLog();
+		tool.handleArgv(argv);
+		tool.analyze();
+		tool.printReport(System.out);
+	}
+
+	/**
+	 * Counts by action and id, arrays grown as ids come up
+	 */
+	public static class Counts {
+
+		/**
+		 *
+		 */
+		protected int[][] counts = new int[UserAction.values().length][];
+		protected int[] totals = new int[0];
+
+		/**
+		 * @methodtype command
+		 */
+		public void add(int action, int id) {
+			if ((id <= 0) || (action < 0) || (action >= counts.length)) {
+				return;
+			}
+
+			counts[action] = ensureCapacity(counts[action], id + 1);
+			counts[action][id]++;
+			totals = ensureCapacity(totals, id + 1);
+			totals[id]++;
+		}
+
+		/**
+		 * @methodtype helper
+		 */
+		protected static int[] ensureCapacity(int[] array, int minLength) {
+			if (array == null) {
+				return new int[Math.max(1024, minLength)];
+			} else if (array.length < minLength) {
+				return Arrays.copyOf(array, Math.max(array.length * 2, minLength));
+			}
+			return array;
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		public int getCount(UserAction action, int id) {
+			int[] actionCounts = counts[action.asInt()];
+			return ((actionCounts == null) || (id >= actionCounts.length)) ? 0 : actionCounts[id];
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		public int getTotal(int id) {
+			return (id < totals.length) ? totals[id] : 0;
+		}
+
+		/**
+		 * @methodtype get
+		 */
+		public int getNoIds() {
+			int result = 0;
+			for (int total : totals) {
+				if (total > 0) {
+					result++;
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the ids with the highest counts of action, or of all actions if action is null, highest first.
+		 *
+		 * @methodtype get
+		 */
+		public int[] getTopIds(UserAction action, int n) {
+			final int[] values = (action == null) ? totals : counts[action.asInt()];
+			if (values == null) {
+				return new int[0];
+			}
+
+			PriorityQueue<Integer> top = new PriorityQueue<Integer>(n + 1, new Comparator<Integer>() {
+				public int compare(Integer id1, Integer id2) {
+					return Integer.compare(values[id1], values[id2]);
+				}
+			});
+			for (int id = 1; id < values.length; id++) {
+				if ((values[id] > 0) && ((top.size() < n) || (values[id] > values[top.peek()]))) {
+					top.add(id);
+					if (top.size() > n) {
+						top.poll();
+					}
+				}
+			}
+
+			int[] result = new int[top.size()];
+			for (int i = result.length - 1; i >= 0; i--) {
+				result[i] = top.poll();
+			}
+			return result;
+		}
+
+	}
+
+	/**
+	 *
+	 */
+	protected File dir = new File("web" + File.separator + "data" + File.separator + "actions");
+	protected int noTop = 10;
+
+	/**
+	 *
+	 */
+	protected long noRecords = 0;
+	protected long[] actionTotals = new long[UserAction.values().length];
+	protected long firstTimestamp = Long.MAX_VALUE;
+	protected long lastTimestamp = 0;
+	protected Counts photoCounts = new Counts();
+	protected Counts userCounts = new Counts();
+	protected long noNanos = 0;
+
+	/**
+	 *
+	 */
+	public void handleArgv(String[] argv) {
+		for (int i = 0; i < argv.length; i++) {
+			if (argv[i].equals("--dir")) {
+				dir = new File(argv[++i]);
+			} else if (argv[i].equals("--top")) {
+				noTop = Integer.parseInt(argv[++i]);
+			}
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void analyze() throws IOException {
+		long startTime = System.nanoTime();
+		for (File file : ActionLog.getSegmentFiles(dir)) {
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				long size = channel.size();
+				MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, size - (size % ActionLog.RECORD_SIZE));
+				analyzeSegment(segment);
+			}
+		}
+		noNanos = System.nanoTime() - startTime;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void analyzeSegment(ByteBuffer segment) {
+		int end = ActionLog.getNoRecords(segment) * ActionLog.RECORD_SIZE;
+		for (int position = 0; position < end; position += ActionLog.RECORD_SIZE) {
+			long timestamp = segment.getLong(position + ActionLog.TIMESTAMP_OFFSET);
+			int action = segment.getInt(position + ActionLog.ACTION_OFFSET);
+			if ((action < 0) || (action >= actionTotals.length)) {
+				action = UserAction.OTHER.asInt(); // written by a newer version
+			}
+
+			firstTimestamp = Math.min(firstTimestamp, timestamp);
+			lastTimestamp = Math.max(lastTimestamp, timestamp);
+			actionTotals[action]++;
+			photoCounts.add(action, segment.getInt(position + ActionLog.PHOTO_ID_OFFSET));
+			userCounts.add(action, segment.getInt(position + ActionLog.USER_ID_OFFSET));
+		}
+
+		noRecords += end / ActionLog.RECORD_SIZE;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getNoRecords() {
+		return noRecords;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getActionTotal(UserAction action) {
+		return actionTotals[action.asInt()];
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public Counts getPhotoCounts() {
+		return photoCounts;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public Counts getUserCounts() {
+		return userCounts;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void printReport(PrintStream out) {
+		out.println("records: " + noRecords + " in " + (noNanos / 1000000) + " ms");
+		if (noRecords == 0) {
+			return;
+		}
+
+		out.println("from: " + Instant.ofEpochMilli(firstTimestamp) + ", to: " + Instant.ofEpochMilli(lastTimestamp));
+		out.println("photos: " + photoCounts.getNoIds() + ", users: " + userCounts.getNoIds());
+
+		out.println();
+		out.println("actions:");
+		for (UserAction action : UserAction.values()) {
+			if (actionTotals[action.asInt()] > 0) {
+				out.println("  " + action.asString() + ": " + actionTotals[action.asInt()]);
+			}
+		}
+
+		out.println();
+		out.println("most praised photos:");
+		for (int id : photoCounts.getTopIds(UserAction.PRAISE_PHOTO, noTop)) {
+			int praised = photoCounts.getCount(UserAction.PRAISE_PHOTO, id);
+			int skipped = photoCounts.getCount(UserAction.SKIP_PHOTO, id);
+			out.println("  " + PhotoId.getFromInt(id) + ": praised " + praised + ", skipped " + skipped);
+		}
+
+		out.println();
+		out.println("most active users:");
+		for (int id : userCounts.getTopIds(null, noTop)) {
+			out.println("  user " + id + ": " + userCounts.getTotal(id) + " actions, " + userCounts.getCount(UserAction.PRAISE_PHOTO, id) + " praises");
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.tools;
+
+import java.util.*;
+
+import org.wahlzeit.main.*;
+import org.wahlzeit.model.*;
+import org.wahlzeit.services.*;
+
+/**
+ * A script to compare saving all photos row by row (one updatable SELECT per photo) with saving them in batches.
+ * Every photo is marked dirty before each round, so both paths write the full photo table.
+ */
+public class BenchmarkSavePhotos extends ScriptMain {
+
+	/**
+	 *
+	 */
+	public static void main(String[] argv) {
+		new BenchmarkSavePhotos().run(argv);
+	}
+
+	/**
+	 *
+	 */
+	protected int rounds = 5;
+	protected String batchSize = null;
+
+	/**
+	 *
+	 */
+	protected int handleArg(String arg, int i, String[] argv) {
+		if (arg.equals("--rounds")) {
+			rounds = Integer.parseInt(argv[++i]);
+		} else if (arg.equals("--batchsize")) {
+			batchSize = argv[++i];
+		} else {
+			i = super.handleArg(arg, i, argv);
+		}
+
+		return i;
+	}
+
+	/**
+	 *
+	 */
+	protected void execute() throws Exception {
+		super.execute();
+
+		if (batchSize != null) {
+			SysConfig.getInstance().setValue(SysConfig.DB_BATCH_SIZE, batchSize);
+		}
+
+		PhotoManager pm = PhotoManager.getInstance();
+		List<Photo> photos = new ArrayList<Photo>();
+		pm.loadPhotos(photos);
+
+		Histogram rowByRow = new Histogram();
+		Histogram batched = new Histogram();
+		for (int i = 0; i < rounds; i++) {
+			markDirty(photos);
+			long startTime = System.nanoTime();
+			for (Photo photo : photos) {
+				pm.savePhoto(photo);
+			}
+			rowByRow.recordSince(startTime);
+
+			markDirty(photos);
+			startTime = System.nanoTime();
+			pm.savePhotos();
+			batched.recordSince(startTime);
+		}
+
+		SysLog.logSysInfo("saved " + photos.size() + " photos row by row: " + rowByRow.asNanosSummaryString());
+		SysLog.logSysInfo("saved " + photos.size() + " photos in batches of " + SysConfig.getDbBatchSizeAsInt() + ": " + batched.asNanosSummaryString());
+	}
+
+	/**
+	 *
+	 */
+	protected void markDirty(Collection<Photo> photos) {
+		for (Photo photo : photos) {
+			photo.incWriteCount();
+		}
+	}
+
+}
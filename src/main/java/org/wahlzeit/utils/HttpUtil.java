@@ -0,0 +1,147 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.utils;
+
+import java.nio.charset.*;
+import java.security.*;
+
+/**
+ * A set of utility functions for HTTP caching and range headers.
+ */
+public class HttpUtil {
+
+	/**
+	 * For resources whose content never changes under the same URL
+	 */
+	public static final String CACHE_CONTROL_IMMUTABLE = "public, max-age=31536000, immutable";
+
+	/**
+	 * For session-dependent pages that browsers may keep but must revalidate
+	 */
+	public static final String CACHE_CONTROL_REVALIDATE = "private, no-cache";
+
+	/**
+	 * Result of parseRange() for a range that lies outside of the resource
+	 */
+	public static final long[] UNSATISFIABLE_RANGE = new long[0];
+
+	/**
+	 * Returns a strong entity tag made from the given parts.
+	 */
+	public static String asEntityTag(Object... parts) {
+		StringBuffer result = new StringBuffer(64);
+		result.append('"');
+		for (int i = 0; i < parts.length; i++) {
+			if (i > 0) {
+				result.append('-');
+			}
+			result.append(String.valueOf(parts[i]).replace('"', '_'));
+		}
+		result.append('"');
+		return result.toString();
+	}
+
+	/**
+	 * Returns the SHA-256 digest of value as hex string, for entity tag parts of arbitrary length and content.
+	 * 
+	 * @methodtype conversion
+	 */
+	public static String asDigestString(String value) {
+		byte[] bytes;
+		try {
+			bytes = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex); // every Java platform has SHA-256
+		}
+
+		StringBuffer result = new StringBuffer(bytes.length * 2);
+		for (byte b : bytes) {
+			result.append(Character.forDigit((b >> 4) & 0xf, 16));
+			result.append(Character.forDigit(b & 0xf, 16));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Returns whether an If-None-Match header value matches the strong entity tag.
+	 * Weak tags in the header never match, as comparison for GET uses the strong function here.
+	 */
+	public static boolean isMatchingEntityTag(String ifNoneMatch, String entityTag) {
+		if ((ifNoneMatch == null) || (entityTag == null)) {
+			return false;
+		}
+
+		String header = ifNoneMatch.trim();
+		if (header.equals("*")) {
+			return true;
+		}
+
+		for (String candidate : header.split(",")) {
+			if (candidate.trim().equals(entityTag)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the first and last byte position (inclusive) a Range header value asks for of a resource of length bytes.
+	 * Returns null if the whole resource is to be served: no header, no single byte range, or a malformed one.
+	 * Returns UNSATISFIABLE_RANGE if the range starts beyond the end of the resource.
+	 */
+	public static long[] parseRange(String range, long length) {
+		if ((range == null) || !range.startsWith("bytes=") || (range.indexOf(',') != -1)) {
+			return null;
+		}
+
+		String spec = range.substring("bytes=".length()).trim();
+		int dash = spec.indexOf('-');
+		if (dash == -1) {
+			return null;
+		}
+
+		try {
+			String first = spec.substring(0, dash).trim();
+			String last = spec.substring(dash + 1).trim();
+			long start;
+			long end;
+			if (first.isEmpty()) { // suffix range: the last n bytes
+				long suffixLength = Long.parseLong(last);
+				if (suffixLength < 0) {
+					return null;
+				} else if (suffixLength == 0) {
+					return UNSATISFIABLE_RANGE;
+				}
+				start = Math.max(0, length - suffixLength);
+				end = length - 1;
+			} else {
+				start = Long.parseLong(first);
+				if (start < 0) {
+					return null;
+				}
+				end = length - 1;
+				if (!last.isEmpty()) {
+					long lastPosition = Long.parseLong(last);
+					if (lastPosition < start) {
+						return null; // invalid, so ignored
+					}
+					end = Math.min(lastPosition, end);
+				}
+			}
+
+			if (start >= length) {
+				return UNSATISFIABLE_RANGE;
+			}
+
+			return new long[] { start, end };
+		} catch (NumberFormatException ex) {
+			return null;
+		}
+	}
+
+}
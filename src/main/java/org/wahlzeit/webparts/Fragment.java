@@ -0,0 +1,73 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.webparts;
+
+import java.io.*;
+import java.nio.charset.*;
+
+/**
+ * A Fragment is a Writable rendered once and kept as UTF-8 bytes.
+ * On a Utf8Writer, writing a Fragment is a plain copy of its bytes.
+ */
+public class Fragment implements Writable {
+
+	/**
+	 * @methodtype factory
+	 */
+	public static Fragment render(Writable source) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+		Utf8Writer out = new Utf8Writer(bytes, 1024);
+		source.writeOn(out);
+		out.close();
+		return new Fragment(bytes.toByteArray());
+	}
+
+	/**
+	 * @methodtype factory
+	 */
+	public static Fragment fromString(String value) {
+		return new Fragment(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 *
+	 */
+	protected byte[] bytes;
+
+	/**
+	 *
+	 */
+	public Fragment(byte[] myBytes) {
+		bytes = myBytes;
+	}
+
+	/**
+	 *
+	 */
+	public void writeOn(Writer out) throws IOException {
+		if (out instanceof Utf8Writer) {
+			((Utf8Writer) out).writeEncoded(bytes);
+		} else {
+			out.write(asString());
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getSize() {
+		return bytes.length;
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	public String asString() {
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
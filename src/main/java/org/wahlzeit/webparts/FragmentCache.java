@@ -0,0 +1,179 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.webparts;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import org.wahlzeit.services.*;
+
+/**
+ * The FragmentCache keeps rendered Fragments of page parts that are the same for many requests.
+ * Keys name everything the output depends on, e.g. template, language, photo size, and photo id plus version;
+ * when any of them changes, the old fragment is no longer found and ages out of the cache (least recently used first).
+ * Templates are not part of keys; a reload clears the cache, and fragments rendered before a clear are not stored.
+ */
+public class FragmentCache {
+
+	/**
+	 * Makes the Writable to render on a cache miss
+	 */
+	public interface Maker {
+
+		/**
+		 *
+		 */
+		public Writable makeWritable();
+
+	}
+
+	/**
+	 *
+	 */
+	protected static FragmentCache instance = null;
+
+	/**
+	 *
+	 */
+	public static synchronized FragmentCache getInstance() {
+		if (instance == null) {
+			instance = new FragmentCache(SysConfig.getFragmentCacheSizeAsInt());
+		}
+		return instance;
+	}
+
+	/**
+	 * @methodtype conversion
+	 */
+	public static String asKey(Object... parts) {
+		StringBuffer result = new StringBuffer(64);
+		for (int i = 0; i < parts.length; i++) {
+			if (i > 0) {
+				result.append('|');
+			}
+			result.append(parts[i]);
+		}
+		return result.toString();
+	}
+
+	/**
+	 *
+	 */
+	protected int maxSize;
+
+	/**
+	 *
+	 */
+	protected Map<String, Fragment> fragments;
+
+	/**
+	 * Number of clears, guarded by fragments
+	 */
+	protected long generation = 0;
+
+	/**
+	 *
+	 */
+	protected AtomicLong hits = new AtomicLong();
+	protected AtomicLong misses = new AtomicLong();
+
+	/**
+	 *
+	 */
+	public FragmentCache(int myMaxSize) {
+		maxSize = myMaxSize;
+		fragments = new LinkedHashMap<String, Fragment>(16, 0.75f, true) {
+			private static final long serialVersionUID = 42L; // never serialized
+			protected boolean removeEldestEntry(Map.Entry<String, Fragment> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the fragment for key, rendering the Writable made by maker on a miss.
+	 * Falls back to the unrendered Writable if rendering fails.
+	 *
+	 * @methodtype get
+	 */
+	public Writable getFragment(String key, Maker maker) {
+		Fragment result = null;
+		long startGeneration;
+		synchronized(fragments) {
+			result = fragments.get(key);
+			startGeneration = generation;
+		}
+
+		if (result != null) {
+			hits.incrementAndGet();
+			return result;
+		}
+
+		misses.incrementAndGet();
+		Writable writable = maker.makeWritable();
+		try {
+			result = Fragment.render(writable);
+		} catch (IOException ioex) {
+			SysLog.logThrowable(ioex);
+			return writable;
+		}
+
+		synchronized(fragments) {
+			if (generation == startGeneration) { // else maybe rendered from an old template
+				fragments.put(key, result);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void clear() {
+		synchronized(fragments) {
+			fragments.clear();
+			generation++;
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getSize() {
+		synchronized(fragments) {
+			return fragments.size();
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getStatisticsAsString() {
+		StringBuffer result = new StringBuffer(128);
+		result.append("size=").append(getSize()).append("/").append(maxSize);
+		result.append(", hits=").append(getHits());
+		result.append(", misses=").append(getMisses());
+		return result.toString();
+	}
+
+}
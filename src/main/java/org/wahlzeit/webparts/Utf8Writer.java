@@ -0,0 +1,204 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.webparts;
+
+import java.io.*;
+
+/**
+ * A Utf8Writer is a buffered Writer that encodes to UTF-8 bytes on an OutputStream.
+ * Besides characters, it takes bytes that are UTF-8 encoded already, like the constant chunks of a
+ * WebPartTemplate, and copies them as they are; only dynamic text needs encoding.
+ * Characters are encoded straight into the buffer, without intermediate strings or byte arrays.
+ */
+public class Utf8Writer extends Writer {
+
+	/**
+	 *
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/**
+	 *
+	 */
+	protected OutputStream out;
+
+	/**
+	 *
+	 */
+	protected byte[] buffer;
+	protected int position = 0;
+
+	/**
+	 * High surrogate of a pair split over two write calls, or 0
+	 */
+	protected char pendingHighSurrogate = 0;
+
+	/**
+	 *
+	 */
+	protected long noBytesWritten = 0;
+
+	/**
+	 *
+	 */
+	public Utf8Writer(OutputStream myOut) {
+		this(myOut, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 *
+	 */
+	public Utf8Writer(OutputStream myOut, int bufferSize) {
+		out = myOut;
+		buffer = new byte[Math.max(bufferSize, 16)];
+	}
+
+	/**
+	 * Writes bytes that are UTF-8 encoded already.
+	 *
+	 * @methodtype command
+	 */
+	public void writeEncoded(byte[] bytes) throws IOException {
+		writeEncoded(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void writeEncoded(byte[] bytes, int off, int len) throws IOException {
+		flushPendingHighSurrogate();
+		if (len > buffer.length - position) {
+			flushBuffer();
+			if (len > buffer.length) {
+				out.write(bytes, off, len);
+				noBytesWritten += len;
+				return;
+			}
+		}
+
+		System.arraycopy(bytes, off, buffer, position, len);
+		position += len;
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void write(int c) throws IOException {
+		writeChar((char) c);
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void write(char[] chars, int off, int len) throws IOException {
+		for (int i = off; i < off + len; i++) {
+			writeChar(chars[i]);
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void write(String str, int off, int len) throws IOException {
+		for (int i = off; i < off + len; i++) {
+			writeChar(str.charAt(i));
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void writeChar(char c) throws IOException {
+		if (buffer.length - position < 4) {
+			flushBuffer();
+		}
+
+		if (pendingHighSurrogate != 0) {
+			char high = pendingHighSurrogate;
+			pendingHighSurrogate = 0;
+			if (Character.isLowSurrogate(c)) {
+				int codePoint = Character.toCodePoint(high, c);
+				buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+				buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+				return;
+			}
+			buffer[position++] = '?'; // unpaired high surrogate
+		}
+
+		if (c < 0x80) {
+			buffer[position++] = (byte) c;
+		} else if (c < 0x800) {
+			buffer[position++] = (byte) (0xc0 | (c >> 6));
+			buffer[position++] = (byte) (0x80 | (c & 0x3f));
+		} else if (Character.isHighSurrogate(c)) {
+			pendingHighSurrogate = c;
+		} else if (Character.isLowSurrogate(c)) {
+			buffer[position++] = '?'; // unpaired low surrogate
+		} else {
+			buffer[position++] = (byte) (0xe0 | (c >> 12));
+			buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+			buffer[position++] = (byte) (0x80 | (c & 0x3f));
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void flushPendingHighSurrogate() throws IOException {
+		if (pendingHighSurrogate != 0) {
+			pendingHighSurrogate = 0;
+			if (position == buffer.length) {
+				flushBuffer();
+			}
+			buffer[position++] = '?';
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	protected void flushBuffer() throws IOException {
+		if (position > 0) {
+			out.write(buffer, 0, position);
+			noBytesWritten += position;
+			position = 0;
+		}
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void flush() throws IOException {
+		flushPendingHighSurrogate();
+		flushBuffer();
+		out.flush();
+	}
+
+	/**
+	 * @methodtype command
+	 */
+	public void close() throws IOException {
+		if (out != null) {
+			try {
+				flush();
+			} finally {
+				out.close();
+				out = null;
+			}
+		}
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public long getNoBytesWritten() {
+		return noBytesWritten + position;
+	}
+
+}
@@ -38,19 +38,32 @@ public class WebPart implements Writable {
 	protected WebPartTemplate template = null;
 	
 	/**
-	 * 
+	 * Values by key index of the template
 	 */
-	protected Map<String, Object> parts = new HashMap<String, Object>();
+	protected Object[] parts;
+	
+	/**
+	 * Values for keys the template has no slot for; created on demand
+	 */
+	protected Map<String, Object> otherParts = null;
 	
 	/**
 	 * 
 	 */
 	public WebPart(WebPartTemplate myTemplate) {
 		template = myTemplate;
+		parts = new Object[template.getNoKeyIndices()];
 	}
 	
 	public Object getValue(String key) {
-		return parts.get(key);
+		int keyIndex = template.getKeyIndex(key);
+		if (keyIndex >= 0) {
+			return parts[keyIndex];
+		} else if (otherParts != null) {
+			return otherParts.get(key);
+		}
+		
+		return null;
 	}
 	
 	/**
@@ -167,7 +180,15 @@ public class WebPart implements Writable {
 	 */
 	protected void putValue(String key, Object value) {
 		if (value != null) {
-			parts.put(key, value);
+			int keyIndex = template.getKeyIndex(key);
+			if (keyIndex >= 0) {
+				parts[keyIndex] = value;
+			} else {
+				if (otherParts == null) {
+					otherParts = new HashMap<String, Object>();
+				}
+				otherParts.put(key, value);
+			}
 		}
 	}
 
@@ -175,33 +196,49 @@ public class WebPart implements Writable {
 	 * 
 	 */
 	public void writeOn(Writer out) throws IOException {
-		String tmpl = template.asString();
-		String[] keys = template.getKeys();
-		int[] slots = template.getSlots();
+		if (out instanceof Utf8Writer) {
+			writeOn((Utf8Writer) out);
+			return;
+		}
 
-		int start = 0;
-		for (int i = 0; i < keys.length; i++ ) {
-			int index = slots[i];
-			out.write(tmpl, start, index - start);
+		int noSlots = template.getNoSlots();
+		for (int i = 0; i < noSlots; i++) {
+			out.write(template.getChunk(i));
+
+			Object object = parts[template.getSlotKeyIndex(i)];
+			if (object != null) {
+				if (object instanceof Writable) {
+					Writable part = (Writable) object;
+					part.writeOn(out);
+				} else {
+					out.write(object.toString());
+				}
+			}
+		}
+		
+		out.write(template.getChunk(noSlots));
+	}
+	
+	/**
+	 * Writes the constant chunks as pre-encoded bytes; only slot values get encoded.
+	 */
+	public void writeOn(Utf8Writer out) throws IOException {
+		int noSlots = template.getNoSlots();
+		for (int i = 0; i < noSlots; i++) {
+			out.writeEncoded(template.getEncodedChunk(i));
 
-			String key = keys[i];
-			if (key != null) {
-				Object object = parts.get(key);
-				if (object != null) {
-					if (object instanceof Writable) {
-						Writable part = (Writable) object;
-						part.writeOn(out);
-					} else {
-						String value = object.toString();
-						out.write(value);
-					}
+			Object object = parts[template.getSlotKeyIndex(i)];
+			if (object != null) {
+				if (object instanceof Writable) {
+					Writable part = (Writable) object;
+					part.writeOn(out);
+				} else {
+					out.write(object.toString());
 				}
 			}
-			
-			start = index;
 		}
 		
-		out.write(tmpl, start, tmpl.length() - start);
+		out.writeEncoded(template.getEncodedChunk(noSlots));
 	}
 	
 }
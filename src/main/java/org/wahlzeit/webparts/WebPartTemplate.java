@@ -20,11 +20,14 @@
 
 package org.wahlzeit.webparts;
 
+import java.nio.charset.*;
 import java.util.*;
 
 /**
  * A WebPartTmpl is a template for a WebPart.
  * It gets initialized once and is read-only after that.
+ * Initializing compiles the template: the constant text is split into chunks between the slots,
+ * and each distinct key gets a dense index, so that WebParts can keep their values in an array.
  */
 public class WebPartTemplate {
 
@@ -43,6 +46,26 @@ public class WebPartTemplate {
 	 */
 	protected String[] keys = null;
 	protected int[] slots = null;
+	
+	/**
+	 * Constant text before each slot, plus the text after the last slot
+	 */
+	protected String[] chunks = null;
+	
+	/**
+	 * The chunks, UTF-8 encoded once for writing on a Utf8Writer
+	 */
+	protected byte[][] encodedChunks = null;
+	
+	/**
+	 * Key index for each slot
+	 */
+	protected int[] slotKeyIndices = null;
+	
+	/**
+	 * Dense key index by key
+	 */
+	protected Map<String, Integer> keyIndices = null;
 		
 	/**
 	 * 
@@ -72,8 +95,9 @@ public class WebPartTemplate {
 	
 					buffer.replace(nextSlot, endSlot + 1, "");
 					index = nextSlot;
+				} else {
+					index = -1;
 				}
-				index = endSlot;
 			} else {
 				index = -1;
 			}
@@ -88,6 +112,35 @@ public class WebPartTemplate {
 		}
 		
 		template = buffer.toString();
+		compile();
+	}
+	
+	/**
+	 * @methodtype initialization
+	 */
+	protected void compile() {
+		chunks = new String[slots.length + 1];
+		encodedChunks = new byte[slots.length + 1][];
+		slotKeyIndices = new int[slots.length];
+		keyIndices = new HashMap<String, Integer>();
+
+		int start = 0;
+		for (int i = 0; i < slots.length; i++) {
+			chunks[i] = template.substring(start, slots[i]);
+			start = slots[i];
+
+			Integer keyIndex = keyIndices.get(keys[i]);
+			if (keyIndex == null) {
+				keyIndex = keyIndices.size();
+				keyIndices.put(keys[i], keyIndex);
+			}
+			slotKeyIndices[i] = keyIndex;
+		}
+		chunks[slots.length] = template.substring(start);
+		
+		for (int i = 0; i < chunks.length; i++) {
+			encodedChunks[i] = chunks[i].getBytes(StandardCharsets.UTF_8);
+		}
 	}
 	
 	/**
@@ -118,4 +171,49 @@ public class WebPartTemplate {
 		return slots; // @FIXME needs cloning?
 	}
 
+	/**
+	 * Returns the dense index of key, or -1 if the template has no slot for key.
+	 * 
+	 * @methodtype get
+	 */
+	public int getKeyIndex(String key) {
+		Integer result = keyIndices.get(key);
+		return (result != null) ? result : -1;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getNoKeyIndices() {
+		return keyIndices.size();
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getNoSlots() {
+		return slots.length;
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public String getChunk(int i) {
+		return chunks[i];
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public byte[] getEncodedChunk(int i) {
+		return encodedChunks[i];
+	}
+
+	/**
+	 * @methodtype get
+	 */
+	public int getSlotKeyIndex(int i) {
+		return slotKeyIndices[i];
+	}
+
 }
@@ -21,16 +21,28 @@
 package org.wahlzeit.webparts;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.stream.*;
 import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
 
 import org.wahlzeit.services.*;
 
 /**
  * The WebPartTemplateService creates WebPartTemplates upon request by reading them from disk.
  * It requires configuration with a template directory and uses the following naming convention: tmplDir/language/part-type/part-name.html
+ * Templates can be preloaded in parallel with loadAllTemplates(). After startWatching(), a watcher thread reloads
+ * templates whose files change and swaps them in; WebParts created before keep working with the old template.
  */
 public class WebPartTemplateService {
 
+	/**
+	 * 
+	 */
+	public static final String TEMPLATE_FILE_EXTENSION = ".html";
+
 	/**
 	 * 
 	 */
@@ -46,13 +58,27 @@ public class WebPartTemplateService {
 	/**
 	 *
 	 */
-	protected Map<String, WebPartTemplate> templates = new HashMap<String, WebPartTemplate>();
+	protected Map<String, WebPartTemplate> templates = new ConcurrentHashMap<String, WebPartTemplate>();
 
 	/**
 	 * 
 	 */
 	protected ConfigDir templatesDir = null;
 	
+	/**
+	 * Watched directories by their watch key
+	 */
+	protected WatchService watchService = null;
+	protected Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<WatchKey, Path>();
+	protected Thread watcherThread = null;
+	
+	/**
+	 * Load times in nanos, overall and of the last load by template
+	 */
+	protected Histogram loadTimes = new Histogram();
+	protected Map<String, Long> lastLoadTimes = new ConcurrentHashMap<String, Long>();
+	protected AtomicLong noReloads = new AtomicLong();
+	
 	/**
 	 *
 	 */
@@ -83,8 +109,11 @@ public class WebPartTemplateService {
 
 		if (result == null) {
 			try {
-				loadTemplate(shortName);
-				result = templates.get(shortName);
+				result = loadTemplate(shortName);
+				WebPartTemplate current = templates.putIfAbsent(shortName, result);
+				if (current != null) {
+					result = current;
+				}
 			} catch (IOException ioex) {
 				SysLog.logThrowable(ioex);
 			}
@@ -94,36 +123,224 @@ public class WebPartTemplateService {
 	}
 	
 	/**
+	 * Reads and compiles a template; files are read as UTF-8, whatever their size.
 	 * 
+	 * @methodtype factory
 	 */
-	protected void loadTemplate(String shortName) throws IOException {
+	protected WebPartTemplate loadTemplate(String shortName) throws IOException {
+		long startTime = System.nanoTime();
+		
 		WebPartTemplate template = new WebPartTemplate(shortName);
-		String fileName = getTemplatesDir().getAbsoluteConfigFileName(shortName + ".html");
-		File file = new File(fileName);
-		SysLog.logSysInfo("file name", fileName, "opened HTML template file");
+		String fileName = getTemplatesDir().getAbsoluteConfigFileName(shortName + TEMPLATE_FILE_EXTENSION);
+		String source = new String(Files.readAllBytes(Paths.get(fileName)), StandardCharsets.UTF_8);
+		template.initialize(source);
 
-		FileReader reader = null;
+		long loadTime = System.nanoTime() - startTime;
+		loadTimes.record(loadTime);
+		lastLoadTimes.put(shortName, loadTime);
+		SysLog.logSysInfo("file name", fileName, "loaded HTML template file of " + source.length() + " chars in " + Histogram.asMillisString(loadTime));
+		return template;
+	}
+	
+	/**
+	 * Loads all templates of the template directory in parallel, replacing templates loaded before.
+	 * 
+	 * @methodtype command
+	 */
+	public void loadAllTemplates() throws IOException {
+		Set<String> shortNames = new TreeSet<String>();
+		for (Path dir : getTemplatesRootDirs()) {
+			try (Stream<Path> files = Files.walk(dir)) {
+				for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+					String shortName = asShortName(dir, file);
+					if (shortName != null) {
+						shortNames.add(shortName);
+					}
+				}
+			}
+		}
+		
+		long startTime = System.nanoTime();
+		shortNames.parallelStream().forEach(shortName -> {
+			try {
+				templates.put(shortName, loadTemplate(shortName));
+			} catch (IOException ioex) {
+				SysLog.logThrowable(ioex);
+			}
+		});
+		
+		FragmentCache.getInstance().clear();
+		SysLog.logSysInfo("loaded " + shortNames.size() + " templates in " + Histogram.asMillisString(System.nanoTime() - startTime));
+	}
+	
+	/**
+	 * Returns the default and custom template directories that exist.
+	 * 
+	 * @methodtype get
+	 */
+	protected List<Path> getTemplatesRootDirs() {
+		List<Path> result = new ArrayList<Path>();
+		for (String dirName : new String[] { ConfigDir.DEFAULT_DIR_NAME, ConfigDir.CUSTOM_DIR_NAME }) {
+			Path dir = Paths.get(getTemplatesDir().asString(), dirName);
+			if (Files.isDirectory(dir)) {
+				result.add(dir);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Returns the short name of a template file below root dir, or null if file is no template.
+	 * 
+	 * @methodtype conversion
+	 */
+	protected String asShortName(Path rootDir, Path file) {
+		String relativeName = rootDir.relativize(file).toString();
+		if (!relativeName.endsWith(TEMPLATE_FILE_EXTENSION)) {
+			return null;
+		}
+		
+		return relativeName.substring(0, relativeName.length() - TEMPLATE_FILE_EXTENSION.length());
+	}
+	
+	/**
+	 * Starts a daemon thread that reloads templates when their files are created or modified.
+	 * 
+	 * @methodtype command
+	 */
+	public synchronized void startWatching() throws IOException {
+		if (watchService != null) {
+			return;
+		}
+		
+		watchService = FileSystems.getDefault().newWatchService();
+		for (Path dir : getTemplatesRootDirs()) {
+			watchDirTree(dir);
+		}
+		
+		final WatchService service = watchService;
+		watcherThread = new Thread(new Runnable() {
+			public void run() {
+				watchTemplates(service);
+			}
+		}, "template-watcher");
+		watcherThread.setDaemon(true);
+		watcherThread.start();
+		SysLog.logSysInfo("watching " + watchedDirs.size() + " template directories");
+	}
+	
+	/**
+	 * @methodtype command
+	 */
+	public synchronized void stopWatching() {
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException ioex) {
+				SysLog.logThrowable(ioex);
+			}
+			watchService = null;
+			watchedDirs.clear();
+		}
+	}
+	
+	/**
+	 * Registers dir and all directories below it with the watch service.
+	 * 
+	 * @methodtype command
+	 */
+	protected void watchDirTree(Path dir) throws IOException {
+		try (Stream<Path> dirs = Files.walk(dir)) {
+			for (Path subDir : dirs.filter(Files::isDirectory).collect(Collectors.toList())) {
+				WatchKey key = subDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+				watchedDirs.put(key, subDir);
+			}
+		}
+	}
+	
+	/**
+	 * Runs in the watcher thread until the watch service is closed.
+	 * 
+	 * @methodtype command
+	 */
+	protected void watchTemplates(WatchService service) {
 		try {
-			reader = new FileReader(file);
-			
-			// @FIXME: Assumes files are always < 50000 bytes
-			char[] readBuffer = new char[50000];
-			int status = reader.read(readBuffer);
-
-			SysLog.logSysInfo("file size", Integer.toString(status), "read HTML template file");
-			
-			if (status != -1) {
-				String source = new String(readBuffer, 0, status);
-				template.initialize(source);
-				SysLog.logCreatedObject("WebPartTmpl", shortName);
+			for (;;) {
+				WatchKey key = service.take();
+				Path dir = watchedDirs.get(key);
+				if (dir != null) {
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() != StandardWatchEventKinds.OVERFLOW) {
+							handleChangedFile(dir.resolve((Path) event.context()));
+						}
+					}
+				}
+				
+				if (!key.reset()) {
+					watchedDirs.remove(key);
+				}
 			}
-
-			templates.put(shortName, template);
-		} finally {
-			if (reader != null) {
-				reader.close();
+		} catch (InterruptedException | ClosedWatchServiceException ex) {
+			SysLog.logSysInfo("stopped watching templates");
+		}
+	}
+	
+	/**
+	 * @methodtype command
+	 */
+	protected void handleChangedFile(Path file) {
+		try {
+			for (Path rootDir : getTemplatesRootDirs()) {
+				if (file.startsWith(rootDir)) {
+					if (Files.isDirectory(file)) {
+						synchronized(this) {
+							if (watchService != null) {
+								watchDirTree(file);
+							}
+						}
+					} else {
+						String shortName = asShortName(rootDir, file);
+						if ((shortName != null) && Files.isRegularFile(file)) {
+							templates.put(shortName, loadTemplate(shortName));
+							FragmentCache.getInstance().clear(); // fragments may have been rendered from the old template
+							noReloads.incrementAndGet();
+							SysLog.logSysInfo("template", shortName, "reloaded changed template");
+						}
+					}
+				}
 			}
+		} catch (IOException ioex) {
+			SysLog.logThrowable(ioex);
 		}
 	}
 	
+	/**
+	 * Returns a number that changes whenever templates get reloaded.
+	 * 
+	 * @methodtype get
+	 */
+	public long getGeneration() {
+		return noReloads.get();
+	}
+	
+	/**
+	 * @methodtype get
+	 */
+	public Map<String, Long> getLastLoadTimes() {
+		return new TreeMap<String, Long>(lastLoadTimes);
+	}
+	
+	/**
+	 * @methodtype get
+	 */
+	public String getStatisticsAsString() {
+		StringBuffer result = new StringBuffer(256);
+		result.append("templates=").append(templates.size());
+		result.append(", reloads=").append(noReloads.get());
+		result.append(", watching=").append(watchService != null);
+		result.append(", load times: ").append(loadTimes.asNanosSummaryString());
+		return result.toString();
+	}
+	
 }
@@ -0,0 +1,11 @@
+CREATE TABLE upload_jobs (
+	id integer PRIMARY KEY,
+	owner_name text,
+	source_file text,
+	status integer,
+	message text,
+	creation_time bigint,
+	finish_time bigint
+);
+
+CREATE INDEX upload_jobs_owner_name ON upload_jobs (owner_name);
@@ -1,3 +1,4 @@
+DROP TABLE IF EXISTS upload_jobs;
 DROP TABLE IF EXISTS globals;
 DROP TABLE IF EXISTS cases;
 DROP TABLE IF EXISTS tags;
@@ -0,0 +1,152 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+
+import org.wahlzeit.tools.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the ActionLog class and its AnalyzeActionLog reader.
+ */
+public class ActionLogTest extends TestCase {
+
+	/**
+	 *
+	 */
+	protected File dir;
+	protected long day1;
+	protected long day2;
+
+	/**
+	 *
+	 */
+	public ActionLogTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		dir = Files.createTempDirectory("wahlzeit-actions").toFile();
+		day1 = LocalDate.of(2009, 7, 1).atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		day2 = day1 + 24 * 60 * 60 * 1000;
+	}
+
+	/**
+	 *
+	 */
+	protected void tearDown() throws Exception {
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+
+		super.tearDown();
+	}
+
+	/**
+	 *
+	 */
+	public void testRotatesSegments() {
+		ActionLog log = new ActionLog(dir.getPath(), 4 * ActionLog.RECORD_SIZE);
+		for (int i = 0; i < 6; i++) {
+			log.record(day1 + i, UserAction.PRAISE_PHOTO, 1, 1, 0);
+		}
+		log.record(day2, UserAction.SKIP_PHOTO, 1, 1, 0);
+		log.close();
+
+		List<File> files = ActionLog.getSegmentFiles(dir);
+		assertEquals(3, files.size());
+		assertEquals("actions-2009-07-01.0.bin", files.get(0).getName());
+		assertEquals("actions-2009-07-01.1.bin", files.get(1).getName());
+		assertEquals("actions-2009-07-02.0.bin", files.get(2).getName());
+	}
+
+	/**
+	 *
+	 */
+	public void testContinuesSegmentAfterReopen() throws Exception {
+		ActionLog log = new ActionLog(dir.getPath(), 4 * ActionLog.RECORD_SIZE);
+		log.record(day1, UserAction.LOGIN, 0, 1, 0);
+		log.close();
+
+		log = new ActionLog(dir.getPath(), 4 * ActionLog.RECORD_SIZE);
+		log.record(day1 + 1, UserAction.LOGIN, 0, 2, 0);
+		log.close();
+
+		assertEquals(1, ActionLog.getSegmentFiles(dir).size());
+		AnalyzeActionLog tool = new AnalyzeActionLog();
+		tool.handleArgv(new String[] { "--dir", dir.getPath() });
+		tool.analyze();
+		assertEquals(2, tool.getNoRecords());
+	}
+
+	/**
+	 *
+	 */
+	public void testAggregatesByPhotoAndUser() throws Exception {
+		ActionLog log = new ActionLog(dir.getPath(), 1024 * ActionLog.RECORD_SIZE);
+		for (int i = 0; i < 100; i++) {
+			int photoId = 1 + (i % 5);
+			UserAction action = (i % 4 == 0) ? UserAction.SKIP_PHOTO : UserAction.PRAISE_PHOTO;
+			log.record(day1 + i, action, photoId, 10 + (i % 2), 0);
+		}
+		for (int i = 0; i < 3; i++) {
+			log.record(day2, UserAction.PRAISE_PHOTO, 3, 11, 0);
+		}
+		log.record(day2, UserAction.FILTER_PHOTOS, 0, 10, 0);
+		log.close();
+
+		AnalyzeActionLog tool = new AnalyzeActionLog();
+		tool.handleArgv(new String[] { "--dir", dir.getPath() });
+		tool.analyze();
+
+		assertEquals(104, tool.getNoRecords());
+		assertEquals(78, tool.getActionTotal(UserAction.PRAISE_PHOTO));
+		assertEquals(25, tool.getActionTotal(UserAction.SKIP_PHOTO));
+		assertEquals(1, tool.getActionTotal(UserAction.FILTER_PHOTOS));
+
+		AnalyzeActionLog.Counts photoCounts = tool.getPhotoCounts();
+		assertEquals(5, photoCounts.getNoIds());
+		assertEquals(20, photoCounts.getTotal(1));
+		assertEquals(15, photoCounts.getCount(UserAction.PRAISE_PHOTO, 1));
+		assertEquals(5, photoCounts.getCount(UserAction.SKIP_PHOTO, 1));
+		assertEquals(3, photoCounts.getTopIds(UserAction.PRAISE_PHOTO, 1)[0]);
+
+		AnalyzeActionLog.Counts userCounts = tool.getUserCounts();
+		assertEquals(51, userCounts.getTotal(10));
+		assertEquals(53, userCounts.getTotal(11));
+		assertEquals(11, userCounts.getTopIds(null, 2)[0]);
+		assertEquals(10, userCounts.getTopIds(null, 2)[1]);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		tool.printReport(new PrintStream(out, true, "UTF-8"));
+		assertTrue(out.toString("UTF-8").contains("PraisePhoto: 78"));
+	}
+
+	/**
+	 *
+	 */
+	public void testMapsActionNames() {
+		assertEquals(UserAction.PRAISE_PHOTO, UserAction.getFromString("PraisePhoto"));
+		assertEquals(UserAction.OTHER, UserAction.getFromString("NoSuchAction"));
+		for (UserAction action : UserAction.values()) {
+			assertEquals(action, UserAction.getFromInt(action.asInt()));
+			assertEquals(action, UserAction.getFromString(action.asString()));
+		}
+	}
+
+}
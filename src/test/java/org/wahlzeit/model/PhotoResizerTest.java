@@ -0,0 +1,121 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import java.awt.image.*;
+import java.io.*;
+import java.nio.file.*;
+
+import javax.imageio.*;
+
+import org.wahlzeit.services.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the PhotoResizer class.
+ */
+public class PhotoResizerTest extends TestCase {
+
+	/**
+	 *
+	 */
+	protected File rootDir;
+	protected File photosDir;
+
+	/**
+	 *
+	 */
+	public PhotoResizerTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		rootDir = Files.createTempDirectory("wahlzeit-root").toFile();
+		photosDir = new File(rootDir, "data" + File.separator + "photos");
+		photosDir.mkdirs();
+		SysConfig.dropInstance();
+		SysConfig.setInstance(new SysConfig(rootDir.getPath(), "localhost"));
+	}
+
+	/**
+	 *
+	 */
+	protected void tearDown() throws Exception {
+		SysConfig.dropInstance();
+		for (File file : photosDir.listFiles()) {
+			file.delete();
+		}
+		photosDir.delete();
+		photosDir.getParentFile().delete();
+		for (File file : rootDir.listFiles()) {
+			file.delete();
+		}
+		rootDir.delete();
+
+		super.tearDown();
+	}
+
+	/**
+	 *
+	 */
+	public void testCreatesAllFittingSizes() throws Exception {
+		File source = new File(rootDir, "source.png");
+		ImageIO.write(new BufferedImage(700, 1000, BufferedImage.TYPE_INT_RGB), "png", source);
+
+		PhotoResizer resizer = new PhotoResizer(2, 1); // small queue, so some encodings run on the caller
+		PhotoId id = PhotoId.getIdFromInt(0);
+		BufferedImage sourceImage = resizer.createImageFiles(source, id);
+		resizer.shutDown();
+		assertEquals(700, sourceImage.getWidth());
+
+		for (PhotoSize size : PhotoSize.values()) {
+			File file = PhotoUtil.getImageFile(id, size);
+			assertEquals(size.asString(), !size.isWiderAndHigher(700, 1000), file.exists());
+			if (file.exists()) {
+				BufferedImage image = ImageIO.read(file);
+				assertEquals(size.calcAdjustedWidth(700, 1000), image.getWidth());
+				assertEquals(size.calcAdjustedHeight(700, 1000), image.getHeight());
+			}
+		}
+	}
+
+	/**
+	 *
+	 */
+	public void testScalesInSteps() {
+		BufferedImage source = new BufferedImage(1000, 800, BufferedImage.TYPE_INT_ARGB);
+		BufferedImage result = PhotoUtil.scaleImage(source, 105, 84);
+		assertEquals(105, result.getWidth());
+		assertEquals(84, result.getHeight());
+		assertEquals(BufferedImage.TYPE_INT_RGB, result.getType());
+	}
+
+	/**
+	 *
+	 */
+	public void testRejectsInvalidImage() throws Exception {
+		File source = new File(rootDir, "source.png");
+		Files.write(source.toPath(), "no image".getBytes("UTF-8"));
+
+		PhotoResizer resizer = new PhotoResizer(1, 1);
+		try {
+			resizer.createImageFiles(source, PhotoId.getIdFromInt(0));
+			fail("invalid image should be rejected");
+		} catch (IllegalArgumentException ex) {
+			assertEquals(0, photosDir.listFiles().length);
+		} finally {
+			resizer.shutDown();
+		}
+	}
+
+}
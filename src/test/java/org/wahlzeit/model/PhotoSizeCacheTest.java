@@ -0,0 +1,215 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import java.awt.image.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.imageio.*;
+
+import org.wahlzeit.services.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the PhotoSizeCache class.
+ */
+public class PhotoSizeCacheTest extends TestCase {
+
+	/**
+	 *
+	 */
+	protected File rootDir;
+	protected File photosDir;
+	protected File backupDir;
+
+	/**
+	 *
+	 */
+	public PhotoSizeCacheTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		rootDir = Files.createTempDirectory("wahlzeit-root").toFile();
+		photosDir = new File(rootDir, "data" + File.separator + "photos");
+		photosDir.mkdirs();
+		backupDir = new File(rootDir, "data" + File.separator + "backup");
+		backupDir.mkdirs();
+		SysConfig.dropInstance();
+		SysConfig.setInstance(new SysConfig(rootDir.getPath(), "localhost"));
+	}
+
+	/**
+	 *
+	 */
+	protected void tearDown() throws Exception {
+		SysConfig.dropInstance();
+		for (File dir : new File[] { photosDir, backupDir }) {
+			for (File file : dir.listFiles()) {
+				file.delete();
+			}
+			dir.delete();
+		}
+		photosDir.getParentFile().delete();
+		rootDir.delete();
+
+		super.tearDown();
+	}
+
+	/**
+	 *
+	 */
+	protected PhotoId createOriginal(int idAsInt, int width, int height) throws IOException {
+		PhotoId result = PhotoId.getIdFromInt(idAsInt);
+		File original = new File(backupDir, result.asString());
+		ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "jpg", original);
+		return result;
+	}
+
+	/**
+	 *
+	 */
+	public void testCreatesSizeOnRequest() throws Exception {
+		PhotoId id = createOriginal(0, 700, 1000);
+		PhotoSizeCache cache = new PhotoSizeCache(Long.MAX_VALUE);
+
+		File file = cache.getImageFile(id, PhotoSize.SMALL);
+		assertEquals(PhotoUtil.getImageFile(id, PhotoSize.SMALL), file);
+		BufferedImage image = ImageIO.read(file);
+		assertEquals(PhotoSize.SMALL.calcAdjustedWidth(700, 1000), image.getWidth());
+		assertEquals(1, cache.getNoFiles());
+		assertEquals(file.length(), cache.getNoBytes());
+
+		assertEquals(file, cache.getImageFile(id, PhotoSize.SMALL));
+		assertEquals(1, cache.noRenderings.get());
+		assertEquals(1, cache.noHits.get());
+	}
+
+	/**
+	 *
+	 */
+	public void testLeavesSizesCreatedOnUpload() throws Exception {
+		PhotoId id = createOriginal(0, 700, 1000);
+		PhotoSizeCache cache = new PhotoSizeCache(Long.MAX_VALUE);
+
+		File file = cache.getImageFile(id, PhotoSize.THUMB);
+		assertEquals(PhotoUtil.getImageFile(id, PhotoSize.THUMB), file);
+		assertFalse(file.exists());
+		assertEquals(0, cache.getNoFiles());
+	}
+
+	/**
+	 *
+	 */
+	public void testReturnsNullForMissingSize() throws Exception {
+		PhotoId id = createOriginal(0, 200, 200);
+		PhotoSizeCache cache = new PhotoSizeCache(Long.MAX_VALUE);
+
+		assertNull(cache.getImageFile(id, PhotoSize.EXTRA_LARGE));
+		assertNull(cache.getImageFile(PhotoId.getIdFromInt(1), PhotoSize.SMALL)); // no original
+		assertEquals(0, photosDir.listFiles().length);
+		assertEquals(0, cache.noRenderings.get());
+	}
+
+	/**
+	 *
+	 */
+	public void testEvictsLeastRecentlyUsed() throws Exception {
+		PhotoId id0 = createOriginal(0, 700, 1000);
+		PhotoId id1 = createOriginal(1, 700, 1000);
+		PhotoSizeCache cache = new PhotoSizeCache(Long.MAX_VALUE);
+		File file0 = cache.getImageFile(id0, PhotoSize.SMALL);
+		File file1 = cache.getImageFile(id1, PhotoSize.SMALL);
+
+		cache = new PhotoSizeCache(file0.length() + file1.length() - 1);
+		cache.addFile(file0);
+		cache.addFile(file1);
+		assertFalse(file0.exists());
+		assertTrue(file1.exists());
+		assertEquals(1, cache.noEvictions.get());
+
+		assertEquals(file0, cache.getImageFile(id0, PhotoSize.SMALL)); // created again
+		assertTrue(file0.exists());
+		assertFalse(file1.exists());
+	}
+
+	/**
+	 *
+	 */
+	public void testSharesConcurrentRendering() throws Exception {
+		final PhotoId id = createOriginal(0, 700, 1000);
+		final PhotoSizeCache cache = new PhotoSizeCache(Long.MAX_VALUE);
+
+		int noThreads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(noThreads);
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<File>> results = new ArrayList<Future<File>>();
+		for (int i = 0; i < noThreads; i++) {
+			results.add(executor.submit(new Callable<File>() {
+				public File call() throws Exception {
+					start.await();
+					return cache.getImageFile(id, PhotoSize.LARGE);
+				}
+			}));
+		}
+
+		start.countDown();
+		for (Future<File> result : results) {
+			assertEquals(PhotoUtil.getImageFile(id, PhotoSize.LARGE), result.get());
+		}
+		executor.shutdown();
+
+		assertEquals(1, cache.getNoFiles());
+		assertEquals(1, cache.noRenderings.get());
+	}
+
+	/**
+	 *
+	 */
+	public void testLoadsCachedFiles() throws Exception {
+		PhotoId id = PhotoId.getIdFromInt(0);
+		for (PhotoSize size : PhotoSize.values()) {
+			Files.write(PhotoUtil.getImageFile(id, size).toPath(), new byte[10]);
+		}
+		File leftover = new File(PhotoUtil.getImageFile(id, PhotoSize.LARGE).getPath() + ".tmp1");
+		Files.write(leftover.toPath(), new byte[10]);
+
+		PhotoSizeCache cache = new PhotoSizeCache(Long.MAX_VALUE);
+		cache.loadCachedFiles();
+		assertEquals(PhotoSize.values().length - 3, cache.getNoFiles()); // extra large has no source
+		assertEquals(1, cache.getNoKeptFiles());
+		assertFalse(leftover.exists());
+	}
+
+	/**
+	 *
+	 */
+	public void testKeepsFilesWithoutSource() throws Exception {
+		PhotoId id = PhotoId.getIdFromInt(0);
+		File large = PhotoUtil.getImageFile(id, PhotoSize.LARGE);
+		Files.write(large.toPath(), new byte[10]);
+
+		PhotoSizeCache cache = new PhotoSizeCache(1);
+		cache.loadCachedFiles();
+		assertTrue(large.exists());
+		assertEquals(0, cache.getNoBytes());
+
+		assertEquals(large, cache.getImageFile(id, PhotoSize.LARGE));
+		assertEquals(1, cache.noHits.get());
+		assertEquals(0, cache.noEvictions.get());
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the PhotoStatus class.
+ */
+public class PhotoStatusTest extends TestCase {
+
+	/**
+	 *
+	 */
+	public PhotoStatusTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	public void testFlags() {
+		PhotoStatus status = PhotoStatus.VISIBLE.asFlagged(true).asInvisible(true);
+		assertSame(PhotoStatus.FLAGGED2, status);
+		assertFalse(status.isDisplayable());
+		assertSame(PhotoStatus.VISIBLE, status.asFlagged(false).asInvisible(false));
+	}
+
+	/**
+	 *
+	 */
+	public void testProcessing() {
+		assertSame(PhotoStatus.PROCESSING, PhotoStatus.getFromInt(16));
+		assertSame(PhotoStatus.PROCESSING, PhotoStatus.getFromString("processing"));
+		assertTrue(PhotoStatus.PROCESSING.isProcessing());
+		assertFalse(PhotoStatus.PROCESSING.isDisplayable());
+		assertFalse(PhotoStatus.VISIBLE.isProcessing());
+	}
+
+	/**
+	 *
+	 */
+	public void testChangesWhileProcessingAreKept() {
+		PhotoStatus status = PhotoStatus.PROCESSING.asFlagged(true).asInvisible(true);
+		assertTrue(status.isProcessing());
+		assertFalse(status.isDisplayable());
+		assertEquals("processing", status.asString());
+		assertSame(status, PhotoStatus.getFromInt(status.asInt()));
+
+		assertSame(PhotoStatus.FLAGGED2, status.asProcessing(false));
+		assertSame(PhotoStatus.VISIBLE, PhotoStatus.PROCESSING.asProcessing(false));
+	}
+
+	/**
+	 *
+	 */
+	public void testInvalidValue() {
+		try {
+			PhotoStatus.getFromInt(32);
+			fail("32 is no photo status");
+		} catch (IllegalArgumentException ex) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,140 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import java.util.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the TagIndex class.
+ */
+public class TagIndexTest extends TestCase {
+
+	/**
+	 *
+	 */
+	protected TagIndex index;
+
+	/**
+	 *
+	 */
+	public TagIndexTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		index = new TagIndex();
+		index.setPhotoTags(1, asSet("un:ann", "tg:rose"));
+		index.setPhotoTags(2, asSet("un:bob", "tg:rose", "tg:tulip"));
+		index.setPhotoTags(3, asSet("un:ann", "tg:tulip"));
+		index.setPhotoTags(4, asSet("un:ann", "tg:rose", "tg:tulip"));
+	}
+
+	/**
+	 *
+	 */
+	public void testConjunctiveQueries() {
+		assertArrayEquals(new int[] { 1, 3, 4 }, index.getPhotoIds(Arrays.asList("un:ann")));
+		assertArrayEquals(new int[] { 1, 4 }, index.getPhotoIds(Arrays.asList("un:ann", "tg:rose")));
+		assertArrayEquals(new int[] { 2, 4 }, index.getPhotoIds(Arrays.asList("tg:tulip", "tg:rose")));
+		assertArrayEquals(new int[] { 4 }, index.getPhotoIds(Arrays.asList("un:ann", "tg:rose", "tg:tulip")));
+		assertArrayEquals(new int[0], index.getPhotoIds(Arrays.asList("un:ann", "tg:daisy")));
+	}
+
+	/**
+	 *
+	 */
+	public void testEmptyQueryReturnsAllTaggedPhotos() {
+		assertArrayEquals(new int[] { 1, 2, 3, 4 }, index.getPhotoIds(new ArrayList<String>()));
+	}
+
+	/**
+	 *
+	 */
+	public void testDuplicateConditionsAreIgnored() {
+		assertArrayEquals(new int[] { 1, 2, 4 }, index.getPhotoIds(Arrays.asList("tg:rose", "tg:rose")));
+	}
+
+	/**
+	 *
+	 */
+	public void testReplacingTags() {
+		index.setPhotoTags(1, asSet("un:ann", "tg:daisy"));
+		assertArrayEquals(new int[] { 2, 4 }, index.getPhotoIds(Arrays.asList("tg:rose")));
+		assertArrayEquals(new int[] { 1 }, index.getPhotoIds(Arrays.asList("tg:daisy")));
+
+		index.setPhotoTags(1, new HashSet<String>());
+		assertArrayEquals(new int[0], index.getPhotoIds(Arrays.asList("tg:daisy")));
+		assertArrayEquals(new int[] { 2, 3, 4 }, index.getPhotoIds(new ArrayList<String>()));
+	}
+
+	/**
+	 *
+	 */
+	public void testLoadingKeepsNewerTags() {
+		Map<Integer, Set<String>> loaded = new HashMap<Integer, Set<String>>();
+		loaded.put(1, asSet("un:ann", "tg:lily"));
+		loaded.put(5, asSet("un:cid", "tg:lily"));
+		index.addUnknownPhotoTags(loaded);
+
+		assertArrayEquals(new int[] { 5 }, index.getPhotoIds(Arrays.asList("tg:lily")));
+		assertEquals(5, index.getNoPhotos());
+	}
+
+	/**
+	 *
+	 */
+	public void testGettingPhotoTags() {
+		assertEquals(asSet("un:bob", "tg:rose", "tg:tulip"), index.getPhotoTags(2));
+		assertTrue(index.getPhotoTags(5).isEmpty());
+
+		index.getPhotoTags(2).clear();
+		assertEquals(3, index.getPhotoTags(2).size());
+	}
+
+	/**
+	 *
+	 */
+	public void testLongPostingLists() {
+		TagIndex large = new TagIndex();
+		for (int i = 0; i < 10000; i++) {
+			Set<String> tags = new HashSet<String>();
+			tags.add("tg:all");
+			if (i % 3 == 0) {
+				tags.add("tg:three");
+			}
+			if (i % 1000 == 7) {
+				tags.add("tg:rare");
+			}
+			large.setPhotoTags(i, tags);
+		}
+
+		int[] ids = large.getPhotoIds(Arrays.asList("tg:all", "tg:three", "tg:rare"));
+		assertArrayEquals(new int[] { 2007, 5007, 8007 }, ids);
+	}
+
+	/**
+	 *
+	 */
+	protected Set<String> asSet(String... tags) {
+		return new HashSet<String>(Arrays.asList(tags));
+	}
+
+	/**
+	 *
+	 */
+	protected void assertArrayEquals(int[] expected, int[] actual) {
+		assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+	}
+
+}
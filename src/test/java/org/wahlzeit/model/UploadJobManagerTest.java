@@ -0,0 +1,117 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the UploadJobManager class.
+ */
+public class UploadJobManagerTest extends TestCase {
+
+	/**
+	 * UploadJobManager without a database, recording the jobs it processes
+	 */
+	protected static class TestUploadJobManager extends UploadJobManager {
+
+		/**
+		 *
+		 */
+		protected boolean isInsertFailing = false;
+		protected List<UploadJob> processedJobs = Collections.synchronizedList(new ArrayList<UploadJob>());
+		protected CountDownLatch release = new CountDownLatch(0);
+
+		/**
+		 *
+		 */
+		protected TestUploadJobManager(int noWorkers) {
+			super(noWorkers);
+		}
+
+		/**
+		 *
+		 */
+		protected boolean insertJob(UploadJob job) {
+			return !isInsertFailing;
+		}
+
+		/**
+		 *
+		 */
+		protected void processJob(UploadJob job) {
+			try {
+				release.await();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			processedJobs.add(job);
+		}
+
+	}
+
+	/**
+	 *
+	 */
+	public UploadJobManagerTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	public void testProcessesSavedJobsOnly() throws Exception {
+		TestUploadJobManager manager = new TestUploadJobManager(1);
+		UploadJob failing = new UploadJob(new Photo(PhotoId.getIdFromInt(1)), "x1");
+		UploadJob saved = new UploadJob(new Photo(PhotoId.getIdFromInt(2)), "x2");
+
+		manager.isInsertFailing = true;
+		assertFalse(manager.addJob(failing));
+		assertEquals(0, manager.getNoQueuedJobs());
+
+		manager.isInsertFailing = false;
+		assertTrue(manager.addJob(saved));
+		manager.shutDown();
+
+		assertEquals(Arrays.asList(saved), manager.processedJobs);
+		assertEquals(0, manager.getNoQueuedJobs());
+	}
+
+	/**
+	 *
+	 */
+	public void testShutDownLeavesQueuedJobsPending() throws Exception {
+		final TestUploadJobManager manager = new TestUploadJobManager(1);
+		manager.release = new CountDownLatch(1);
+		for (int i = 1; i <= 3; i++) {
+			assertTrue(manager.addJob(new UploadJob(new Photo(PhotoId.getIdFromInt(i)), "x" + i)));
+		}
+		assertEquals(3, manager.getNoQueuedJobs());
+		while (manager.workers.getQueue().size() > 2) {
+			Thread.sleep(10); // until first job runs
+		}
+
+		Thread shutDown = new Thread(new Runnable() {
+			public void run() {
+				manager.shutDown();
+			}
+		});
+		shutDown.start();
+		while (!manager.workers.getQueue().isEmpty()) {
+			Thread.sleep(10);
+		}
+
+		manager.release.countDown();
+		shutDown.join(5000);
+
+		assertEquals(1, manager.processedJobs.size());
+		assertEquals(0, manager.getNoQueuedJobs());
+	}
+
+}
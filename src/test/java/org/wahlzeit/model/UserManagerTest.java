@@ -0,0 +1,108 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.model;
+
+import java.io.*;
+import java.nio.file.*;
+
+import junit.framework.TestCase;
+
+import org.wahlzeit.services.*;
+
+/**
+ * Test cases for the email address index of the UserManager class.
+ */
+public class UserManagerTest extends TestCase {
+
+	/**
+	 *
+	 */
+	protected File rootDir;
+	protected UserManager savedInstance;
+	protected UserManager manager;
+
+	/**
+	 *
+	 */
+	public UserManagerTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		rootDir = Files.createTempDirectory("wahlzeit-root").toFile();
+		SysConfig.dropInstance();
+		SysConfig.setInstance(new SysConfig(rootDir.getPath(), "localhost"));
+
+		savedInstance = UserManager.instance;
+		manager = new UserManager();
+		UserManager.instance = manager; // users report email address changes to it
+	}
+
+	/**
+	 *
+	 */
+	protected void tearDown() throws Exception {
+		UserManager.instance = savedInstance;
+		SysConfig.dropInstance();
+		rootDir.delete();
+
+		super.tearDown();
+	}
+
+	/**
+	 *
+	 */
+	public void testIndexesAddedUsers() {
+		User user = new User("Anna", "secret", "anna@example.com", 0);
+		manager.doAddUser(user);
+
+		assertSame(user, manager.getUserByEmailAddress("anna@example.com"));
+		assertEquals(1, manager.emailAddressHits.get());
+	}
+
+	/**
+	 *
+	 */
+	public void testUnindexesRemovedUsers() {
+		User user = new User("Anna", "secret", "anna@example.com", 0);
+		manager.doAddUser(user);
+		manager.doDeleteUser(user);
+
+		assertFalse(manager.usersByEmailAddress.containsKey(EmailAddress.getFromString("anna@example.com")));
+	}
+
+	/**
+	 *
+	 */
+	public void testRekeysChangedEmailAddress() {
+		User user = new User("Anna", "secret", "anna@example.com", 0);
+		manager.doAddUser(user);
+		user.setEmailAddress(EmailAddress.getFromString("anna@example.org"));
+
+		assertFalse(manager.usersByEmailAddress.containsKey(EmailAddress.getFromString("anna@example.com")));
+		assertSame(user, manager.getUserByEmailAddress("anna@example.org"));
+	}
+
+	/**
+	 *
+	 */
+	public void testIgnoresChangesOfUncachedUsers() {
+		User cached = new User("Anna", "secret", "anna@example.com", 0);
+		manager.doAddUser(cached);
+		User other = new User("Anna", "secret", "anna@example.net", 0); // e.g. a stale copy
+		other.setEmailAddress(EmailAddress.getFromString("anna@example.com"));
+
+		assertSame(cached, manager.getUserByEmailAddress("anna@example.com"));
+		assertFalse(manager.usersByEmailAddress.containsKey(EmailAddress.getFromString("anna@example.net")));
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the ColumnRecorder class.
+ */
+public class ColumnRecorderTest extends TestCase {
+
+	/**
+	 *
+	 */
+	protected List<String> boundParameters = new ArrayList<String>();
+
+	/**
+	 *
+	 */
+	public ColumnRecorderTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	public void testRecordsColumnsInWriteOrder() throws SQLException {
+		ColumnRecorder recorder = createRecorder();
+		assertEquals(Arrays.asList("id", "name", "praise_sum", "notify"), new ArrayList<String>(recorder.getColumns()));
+		assertEquals("flower", recorder.getValue("name"));
+		assertEquals(Boolean.TRUE, recorder.getValue("notify"));
+	}
+
+	/**
+	 *
+	 */
+	public void testUpdateStatementExcludesKeyColumn() throws SQLException {
+		ColumnRecorder recorder = createRecorder();
+		String query = recorder.asUpdateStatement("photos", "id");
+		assertEquals("UPDATE photos SET name = ?, praise_sum = ?, notify = ? WHERE id = ?", query);
+	}
+
+	/**
+	 *
+	 */
+	public void testBindsParametersInStatementOrder() throws SQLException {
+		ColumnRecorder recorder = createRecorder();
+		recorder.asResultSet().updateString("name", null);
+		int idPos = recorder.bindUpdateParameters(createStatement(), "id");
+
+		assertEquals(4, idPos);
+		assertEquals(Arrays.asList("setNull 1", "setObject 2 42", "setObject 3 true"), boundParameters);
+	}
+
+	/**
+	 *
+	 */
+	public void testRejectsReading() throws SQLException {
+		try {
+			createRecorder().asResultSet().getInt("id");
+			fail("reading from a recorder should fail");
+		} catch (SQLFeatureNotSupportedException ex) {
+			// expected
+		}
+	}
+
+	/**
+	 *
+	 */
+	protected ColumnRecorder createRecorder() throws SQLException {
+		ColumnRecorder result = new ColumnRecorder();
+		ResultSet rset = result.asResultSet();
+		rset.updateInt("id", 7);
+		rset.updateString("name", "flower");
+		rset.updateInt("praise_sum", 42);
+		rset.updateBoolean("notify", true);
+		return result;
+	}
+
+	/**
+	 *
+	 */
+	protected PreparedStatement createStatement() {
+		InvocationHandler handler = new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("setNull")) {
+					boundParameters.add("setNull " + args[0]);
+				} else if (method.getName().equals("setObject")) {
+					boundParameters.add("setObject " + args[0] + " " + args[1]);
+				}
+				return null;
+			}
+		};
+
+		return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { PreparedStatement.class }, handler);
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the FileChannelCache class.
+ */
+public class FileChannelCacheTest extends TestCase {
+
+	/**
+	 *
+	 */
+	protected Path dir;
+
+	/**
+	 *
+	 */
+	public FileChannelCacheTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = Files.createTempDirectory("wahlzeit-files");
+	}
+
+	/**
+	 *
+	 */
+	protected void tearDown() throws Exception {
+		for (File file : dir.toFile().listFiles()) {
+			file.delete();
+		}
+		Files.delete(dir);
+		super.tearDown();
+	}
+
+	/**
+	 *
+	 */
+	protected Path createFile(String name, String content) throws IOException {
+		return Files.write(dir.resolve(name), content.getBytes("UTF-8"));
+	}
+
+	/**
+	 *
+	 */
+	public void testHitsAndMisses() throws IOException {
+		FileChannelCache cache = new FileChannelCache(4);
+		Path path = createFile("a.jpg", "abc");
+
+		FileChannelCache.OpenFile first = cache.acquire(path);
+		assertEquals(3, first.getSize());
+		first.release();
+		FileChannelCache.OpenFile second = cache.acquire(path);
+		second.release();
+
+		assertSame(first, second);
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	/**
+	 *
+	 */
+	public void testEvictedFileStaysOpenWhileInUse() throws IOException {
+		FileChannelCache cache = new FileChannelCache(1);
+		FileChannelCache.OpenFile inUse = cache.acquire(createFile("a.jpg", "abc"));
+		FileChannelCache.OpenFile other = cache.acquire(createFile("b.jpg", "de"));
+		other.release();
+
+		assertEquals(1, cache.getSize());
+		assertTrue(inUse.getChannel().isOpen());
+		ByteBuffer buffer = ByteBuffer.allocate(3);
+		inUse.getChannel().read(buffer, 0);
+		assertEquals("abc", new String(buffer.array(), "UTF-8"));
+
+		inUse.release();
+		assertFalse(inUse.getChannel().isOpen());
+		assertTrue(other.getChannel().isOpen());
+	}
+
+	/**
+	 *
+	 */
+	public void testInvalidatedFileIsReopened() throws IOException {
+		FileChannelCache cache = new FileChannelCache(4);
+		Path path = createFile("a.jpg", "abc");
+		FileChannelCache.OpenFile first = cache.acquire(path);
+		first.release();
+
+		Files.write(path, "abcdef".getBytes("UTF-8"));
+		cache.invalidate(path);
+		FileChannelCache.OpenFile second = cache.acquire(path);
+		second.release();
+
+		assertNotSame(first, second);
+		assertEquals(6, second.getSize());
+		assertFalse(first.getChannel().isOpen());
+	}
+
+	/**
+	 *
+	 */
+	public void testMissingFile() {
+		FileChannelCache cache = new FileChannelCache(4);
+		try {
+			cache.acquire(dir.resolve("missing.jpg"));
+			fail("missing file should not open");
+		} catch (IOException ex) {
+			assertEquals(0, cache.getSize());
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the Histogram class.
+ */
+public class HistogramTest extends TestCase {
+
+	/**
+	 *
+	 */
+	public HistogramTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	public void testEmptyHistogram() {
+		Histogram histogram = new Histogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMean());
+		assertEquals(0, histogram.getValueAtPercentile(99.0));
+	}
+
+	/**
+	 *
+	 */
+	public void testSmallValuesAreExact() {
+		Histogram histogram = new Histogram();
+		for (int i = 0; i < 8; i++) {
+			histogram.record(i);
+		}
+
+		assertEquals(8, histogram.getCount());
+		assertEquals(28, histogram.getSum());
+		assertEquals(7, histogram.getMax());
+		assertEquals(3, histogram.getValueAtPercentile(50.0));
+		assertEquals(7, histogram.getValueAtPercentile(100.0));
+	}
+
+	/**
+	 *
+	 */
+	public void testPercentilesAreWithinBucketPrecision() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L);
+		}
+
+		long p50 = histogram.getValueAtPercentile(50.0);
+		long p99 = histogram.getValueAtPercentile(99.0);
+		assertTrue(p50 >= 500000 && p50 <= 500000 * 1.125);
+		assertTrue(p99 >= 990000 && p99 <= 1000000);
+		assertEquals(1000000, histogram.getMax());
+	}
+
+	/**
+	 *
+	 */
+	public void testBucketBoundsCoverAllValues() {
+		long[] values = { 8, 15, 16, 17, 1000, 123456789L, Long.MAX_VALUE };
+		for (long value : values) {
+			int index = Histogram.getBucketIndex(value);
+			assertTrue(index < Histogram.BUCKET_COUNT);
+			assertTrue(Histogram.getBucketUpperBound(index) >= value);
+		}
+	}
+
+	/**
+	 *
+	 */
+	public void testReset() {
+		Histogram histogram = new Histogram();
+		histogram.record(42);
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.util.*;
+
+import org.apache.log4j.*;
+import org.apache.log4j.spi.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the LogWriter class.
+ */
+public class LogWriterTest extends TestCase {
+
+	/**
+	 *
+	 */
+	protected List<String> lines = Collections.synchronizedList(new ArrayList<String>());
+	protected Appender appender;
+	protected Logger logger = Logger.getLogger(Log.class.getName());
+
+	/**
+	 *
+	 */
+	public LogWriterTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		appender = new AppenderSkeleton() {
+			protected void append(LoggingEvent event) {
+				lines.add(event.getRenderedMessage());
+			}
+			public void close() {
+				// do nothing
+			}
+			public boolean requiresLayout() {
+				return false;
+			}
+		};
+		logger.addAppender(appender);
+	}
+
+	/**
+	 *
+	 */
+	protected void tearDown() throws Exception {
+		LogWriter.dropInstance();
+		logger.removeAppender(appender);
+
+		super.tearDown();
+	}
+
+	/**
+	 *
+	 */
+	public void testWritesEntriesInOrder() {
+		LogWriter.setInstance(new LogWriter(4, ""));
+		for (int i = 0; i < 3; i++) {
+			SysLog.logSysInfo("entry", String.valueOf(i));
+		}
+		LogWriter.getInstance().flush(5000);
+
+		assertEquals(3, lines.size());
+		for (int i = 0; i < 3; i++) {
+			String line = lines.get(i);
+			assertTrue(line, line.contains(", level=sl, session="));
+			assertTrue(line, line.endsWith(", logType=info, entry=" + i));
+		}
+		assertEquals(3, LogWriter.getInstance().getEnqueueTimes().getCount());
+	}
+
+	/**
+	 *
+	 */
+	public void testSamplesInfoEntriesOnly() {
+		LogWriter.setInstance(new LogWriter(64, "sl:3"));
+		for (int i = 0; i < 9; i++) {
+			SysLog.logSysInfo("entry", String.valueOf(i));
+		}
+		SysLog.logSysError("error");
+		LogWriter.getInstance().flush(5000);
+
+		assertEquals(4, lines.size());
+		assertTrue(lines.get(0).endsWith("entry=0"));
+		assertTrue(lines.get(1).endsWith("entry=3"));
+		assertTrue(lines.get(3).endsWith("logType=error, error=error"));
+	}
+
+	/**
+	 *
+	 */
+	public void testHandlesFullBuffer() {
+		LogWriter writer = new LogWriter(2, "");
+		writer.isRunning = false; // keeps entries in the buffer
+		writer.writerThread.interrupt();
+		LogWriter.setInstance(writer);
+
+		long sequence = writer.nextSequence.get();
+		writer.nextSequence.set(sequence + writer.getBufferSize()); // all slots claimed
+		writer.writtenSequence.set(sequence);
+		writer.isRunning = true;
+
+		SysLog.logSysInfo("dropped");
+		SysLog.logSysError("written");
+		assertEquals(1, writer.getNoDropped());
+		assertEquals(1, lines.size());
+		assertTrue(lines.get(0).endsWith("error=written"));
+
+		writer.isRunning = false;
+		writer.writtenSequence.set(writer.nextSequence.get()); // nothing left to write
+	}
+
+	/**
+	 *
+	 */
+	public void testCopiesBuiltEntries() {
+		LogWriter.setInstance(new LogWriter(4, ""));
+		LogEntry entry = new LogEntry().initialize("ul");
+		entry.addField("logType", "info");
+		for (int i = 0; i < 10; i++) {
+			entry.addField("field" + i, String.valueOf(i));
+		}
+		Log.log(entry);
+		entry.clear();
+		LogWriter.getInstance().flush(5000);
+
+		assertEquals(1, lines.size());
+		assertTrue(lines.get(0).endsWith("field8=8, field9=9"));
+	}
+
+}
@@ -0,0 +1,211 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the ObjectCache class.
+ */
+public class ObjectCacheTest extends TestCase {
+
+	/**
+	 *
+	 */
+	protected static class TestObject extends DataObject {
+
+		/**
+		 *
+		 */
+		protected int id;
+
+		/**
+		 *
+		 */
+		protected TestObject(int myId) {
+			id = myId;
+		}
+
+		/**
+		 *
+		 */
+		public String getIdAsString() {
+			return String.valueOf(id);
+		}
+
+		/**
+		 *
+		 */
+		public void readFrom(ResultSet rset) {
+			// do nothing
+		}
+
+		/**
+		 *
+		 */
+		public void writeOn(ResultSet rset) {
+			// do nothing
+		}
+
+		/**
+		 *
+		 */
+		public void writeId(PreparedStatement stmt, int pos) {
+			// do nothing
+		}
+
+	}
+
+	/**
+	 *
+	 */
+	public ObjectCacheTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	public void testHitsAndMisses() throws SQLException {
+		ObjectCache<Integer, TestObject> cache = new ObjectCache<Integer, TestObject>(100);
+		assertNull(cache.get(1));
+		cache.put(1, new TestObject(1));
+		assertNotNull(cache.get(1));
+
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	/**
+	 *
+	 */
+	public void testKeepsEvictedDirtyEntries() {
+		ObjectCache<Integer, TestObject> cache = new ObjectCache<Integer, TestObject>(16); // one entry per stripe
+		TestObject dirty = new TestObject(0);
+		dirty.incWriteCount();
+		cache.put(0, dirty);
+		cache.put(16, new TestObject(16)); // same stripe as 0
+
+		assertEquals(1, cache.getEvictions());
+		assertEquals(2, cache.getSize());
+		assertTrue(cache.values().contains(dirty));
+
+		dirty.resetWriteCount();
+		cache.put(32, new TestObject(32));
+		assertEquals(1, cache.getSize());
+		assertFalse(cache.values().contains(dirty));
+	}
+
+	/**
+	 *
+	 */
+	public void testHandsOutEvictedObjectsInUse() throws SQLException {
+		ObjectCache<Integer, TestObject> cache = new ObjectCache<Integer, TestObject>(16); // one entry per stripe
+		TestObject inUse = new TestObject(0);
+		cache.put(0, inUse);
+		cache.put(16, new TestObject(16)); // evicts 0
+		assertEquals(1, cache.getEvictions());
+
+		TestObject result = cache.get(0, new ObjectCache.Loader<Integer, TestObject>() {
+			public TestObject load(Integer key) {
+				fail("loaded an object that is still in use");
+				return null;
+			}
+		});
+
+		assertSame(inUse, result);
+		assertEquals(1, cache.getRevivals());
+		assertEquals(1, cache.getSize());
+
+		inUse.incWriteCount(); // changed after eviction
+		cache.put(32, new TestObject(32)); // evicts 0 again
+		assertTrue(cache.values().contains(inUse));
+	}
+
+	/**
+	 *
+	 */
+	public void testSizeIsBounded() {
+		ObjectCache<Integer, TestObject> cache = new ObjectCache<Integer, TestObject>(64);
+		for (int i = 0; i < 1000; i++) {
+			cache.put(i, new TestObject(i));
+		}
+
+		assertTrue(cache.getSize() <= 64);
+		assertEquals(cache.getSize(), cache.values().size());
+	}
+
+	/**
+	 *
+	 */
+	public void testConcurrentMissesShareOneLoad() throws Exception {
+		final ObjectCache<Integer, TestObject> cache = new ObjectCache<Integer, TestObject>(100);
+		final AtomicInteger noLoads = new AtomicInteger();
+		final CountDownLatch loadStarted = new CountDownLatch(1);
+		final CountDownLatch releaseLoad = new CountDownLatch(1);
+		final ObjectCache.Loader<Integer, TestObject> loader = new ObjectCache.Loader<Integer, TestObject>() {
+			public TestObject load(Integer key) {
+				noLoads.incrementAndGet();
+				loadStarted.countDown();
+				try {
+					releaseLoad.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+				return new TestObject(key);
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<TestObject>> results = new ArrayList<Future<TestObject>>();
+		Callable<TestObject> getter = new Callable<TestObject>() {
+			public TestObject call() throws SQLException {
+				return cache.get(7, loader);
+			}
+		};
+
+		results.add(executor.submit(getter));
+		loadStarted.await();
+		for (int i = 0; i < 3; i++) {
+			results.add(executor.submit(getter));
+		}
+		while (cache.getSharedLoads() < 3) {
+			Thread.sleep(1);
+		}
+		releaseLoad.countDown();
+
+		TestObject first = results.get(0).get();
+		for (Future<TestObject> result : results) {
+			assertSame(first, result.get());
+		}
+		assertEquals(1, noLoads.get());
+		executor.shutdown();
+	}
+
+	/**
+	 *
+	 */
+	public void testLoadFailureIsPassedOn() {
+		ObjectCache<Integer, TestObject> cache = new ObjectCache<Integer, TestObject>(100);
+		try {
+			cache.get(1, new ObjectCache.Loader<Integer, TestObject>() {
+				public TestObject load(Integer key) throws SQLException {
+					throw new SQLException("no database");
+				}
+			});
+			fail("load failure should be passed on");
+		} catch (SQLException ex) {
+			assertFalse(cache.contains(1));
+		}
+	}
+
+}
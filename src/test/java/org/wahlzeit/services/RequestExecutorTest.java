@@ -0,0 +1,123 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.util.concurrent.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the RequestExecutor class.
+ */
+public class RequestExecutorTest extends TestCase {
+
+	/**
+	 *
+	 */
+	public RequestExecutorTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	public void testRunsTasksConcurrently() throws Exception {
+		RequestExecutor executor = new RequestExecutor(4);
+		final CountDownLatch started = new CountDownLatch(4);
+		final CountDownLatch release = new CountDownLatch(1);
+		for (int i = 0; i < 4; i++) {
+			executor.execute(new Runnable() {
+				public void run() {
+					started.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+		}
+
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		assertEquals(4, executor.getNoActiveRequests());
+		release.countDown();
+		executor.shutDown();
+		assertEquals(0, executor.getNoActiveRequests());
+	}
+
+	/**
+	 *
+	 */
+	public void testRejectsTasksWhenPoolIsFull() throws Exception {
+		RequestExecutor executor = new RequestExecutor(1);
+		executor.executor.shutdown();
+		executor.executor = RequestExecutor.newThreadPoolExecutor(1);
+
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Runnable blocking = new Runnable() {
+			public void run() {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+
+		executor.execute(blocking);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		executor.execute(blocking); // waits in queue
+		try {
+			executor.execute(blocking);
+			fail("expected RejectedExecutionException");
+		} catch (RejectedExecutionException ex) {
+			// expected
+		}
+
+		assertEquals(1, executor.getNoRejectedRequests());
+		release.countDown();
+		executor.shutDown();
+	}
+
+	/**
+	 *
+	 */
+	public void testBoundsRunningTasks() throws Exception {
+		RequestExecutor executor = new RequestExecutor(1);
+		final CountDownLatch started = new CountDownLatch(2);
+		final CountDownLatch release = new CountDownLatch(1);
+		Runnable blocking = new Runnable() {
+			public void run() {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+
+		executor.execute(blocking);
+		executor.execute(blocking); // waits for the first one
+		assertFalse(started.await(200, TimeUnit.MILLISECONDS));
+		assertEquals(1, executor.getNoActiveRequests());
+		try {
+			executor.execute(blocking);
+			fail("expected RejectedExecutionException");
+		} catch (RejectedExecutionException ex) {
+			// expected
+		}
+
+		release.countDown();
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		executor.shutDown();
+		assertEquals(0, executor.getNoActiveRequests());
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the RequestStatistics class.
+ */
+public class RequestStatisticsTest extends TestCase {
+
+	/**
+	 *
+	 */
+	public RequestStatisticsTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	public void testKeepsEntriesPerMethodAndLink() {
+		RequestStatistics statistics = new RequestStatistics();
+		RequestStatistics.Entry entry = statistics.ensureEntry("GET", "showPhoto");
+		assertSame(entry, statistics.ensureEntry("GET", "showPhoto"));
+		assertNotSame(entry, statistics.ensureEntry("POST", "showPhoto"));
+		assertNull(statistics.getEntry("GET", "showInfo"));
+
+		statistics.ensureEntry("GET", "index");
+		assertEquals(3, statistics.getEntries().size());
+		assertEquals("index", statistics.getEntries().get(0).getLink());
+		assertEquals("POST", statistics.getEntries().get(2).getMethod());
+	}
+
+	/**
+	 *
+	 */
+	public void testRecordsPhasesSeparately() {
+		RequestStatistics statistics = new RequestStatistics();
+		RequestStatistics.Entry entry = statistics.ensureEntry("GET", "showPhoto");
+		entry.record(RequestStatistics.Phase.HANDLE, 1000);
+		entry.record(RequestStatistics.Phase.HANDLE, 3000);
+		entry.record(RequestStatistics.Phase.TOTAL, 5000);
+
+		assertEquals(2, entry.getHistogram(RequestStatistics.Phase.HANDLE).getCount());
+		assertEquals(4000, entry.getHistogram(RequestStatistics.Phase.HANDLE).getSum());
+		assertEquals(1, entry.getHistogram(RequestStatistics.Phase.TOTAL).getCount());
+		assertEquals(0, entry.getHistogram(RequestStatistics.Phase.WRITE).getCount());
+	}
+
+	/**
+	 *
+	 */
+	public void testRendersPrometheusSummary() {
+		RequestStatistics statistics = new RequestStatistics();
+		RequestStatistics.Entry entry = statistics.ensureEntry("GET", "show\"Photo");
+		entry.record(RequestStatistics.Phase.MAKE, 2000000000L);
+
+		String result = statistics.asPrometheusString();
+		assertTrue(result.startsWith("# HELP " + RequestStatistics.METRIC_NAME + " "));
+		assertTrue(result.contains("# TYPE " + RequestStatistics.METRIC_NAME + " summary\n"));
+
+		String labels = "{method=\"GET\",link=\"show\\\"Photo\",phase=\"make\"";
+		assertTrue(result, result.contains(RequestStatistics.METRIC_NAME + labels + ",quantile=\"0.5\"} "));
+		assertTrue(result, result.contains(RequestStatistics.METRIC_NAME + "_sum" + labels + "} 2.0\n"));
+		assertTrue(result, result.contains(RequestStatistics.METRIC_NAME + "_count" + labels + "} 1\n"));
+		assertFalse(result.contains("phase=\"write\""));
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.sql.*;
+import java.util.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the RowSnapshot class.
+ */
+public class RowSnapshotTest extends TestCase {
+
+	/**
+	 *
+	 */
+	protected ResultSet rset;
+
+	/**
+	 *
+	 */
+	public RowSnapshotTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("id", Integer.valueOf(7));
+		values.put("owner_name", "flowerlover");
+		values.put("creation_time", Long.valueOf(1234567890123L));
+		values.put("owner_notify_about_praise", Boolean.TRUE);
+		values.put("location_coordinate_type", Integer.valueOf(1));
+		values.put("location_coordinate_a", Double.valueOf(1.5));
+		values.put("home_page", null);
+		values.put("praise_sum", null);
+		rset = new RowSnapshot(values).asResultSet();
+	}
+
+	/**
+	 *
+	 */
+	public void testGetters() throws SQLException {
+		assertEquals(7, rset.getInt("id"));
+		assertEquals(7, rset.getInt("ID"));
+		assertEquals("flowerlover", rset.getString("owner_name"));
+		assertEquals(1234567890123L, rset.getLong("creation_time"));
+		assertTrue(rset.getBoolean("owner_notify_about_praise"));
+		assertEquals(1, rset.getShort("location_coordinate_type"));
+		assertEquals(1.5, rset.getDouble("location_coordinate_a"), 0.0);
+		assertFalse(rset.wasNull());
+	}
+
+	/**
+	 *
+	 */
+	public void testNullValues() throws SQLException {
+		assertNull(rset.getString("home_page"));
+		assertTrue(rset.wasNull());
+		assertEquals(0, rset.getInt("praise_sum"));
+		assertTrue(rset.wasNull());
+	}
+
+	/**
+	 *
+	 */
+	public void testUnknownColumn() {
+		try {
+			rset.getInt("no_such_column");
+			fail("unknown column should fail");
+		} catch (SQLException ex) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the StatementCache class.
+ */
+public class StatementCacheTest extends TestCase {
+
+	/**
+	 *
+	 */
+	protected Set<PreparedStatement> closedStatements = new HashSet<PreparedStatement>();
+
+	/**
+	 *
+	 */
+	public StatementCacheTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	public void testHitsAndMisses() {
+		StatementCache cache = new StatementCache(2);
+		assertNull(cache.get("a"));
+		PreparedStatement a = createStatement();
+		cache.put("a", a);
+		assertSame(a, cache.get("a"));
+		assertSame(a, cache.get("a"));
+
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals("a", cache.getQuery(a));
+	}
+
+	/**
+	 *
+	 */
+	public void testEvictsLeastRecentlyUsedAndClosesIt() {
+		StatementCache cache = new StatementCache(2);
+		PreparedStatement a = createStatement();
+		PreparedStatement b = createStatement();
+		PreparedStatement c = createStatement();
+		cache.put("a", a);
+		cache.put("b", b);
+		cache.get("a");
+		cache.put("c", c);
+
+		assertEquals(2, cache.getSize());
+		assertEquals(1, cache.getEvictions());
+		assertNull(cache.get("b"));
+		assertNull(cache.getQuery(b));
+		assertTrue(closedStatements.contains(b));
+		assertFalse(closedStatements.contains(a));
+	}
+
+	/**
+	 *
+	 */
+	public void testKeepsPinnedStatements() {
+		StatementCache cache = new StatementCache(2);
+		PreparedStatement a = createStatement();
+		PreparedStatement b = createStatement();
+		PreparedStatement c = createStatement();
+		PreparedStatement d = createStatement();
+		cache.put("a", a);
+		cache.put("b", b);
+		cache.pin(a);
+		cache.put("c", c);
+
+		assertTrue(closedStatements.contains(b));
+		assertFalse(closedStatements.contains(a));
+
+		cache.pin(c);
+		cache.put("d", d); // all others pinned
+		assertEquals(3, cache.getSize());
+		assertFalse(closedStatements.contains(a));
+
+		cache.unpin(a);
+		cache.unpin(c);
+		cache.put("b", createStatement());
+		assertTrue(closedStatements.contains(a));
+		assertEquals(3, cache.getSize());
+	}
+
+	/**
+	 *
+	 */
+	public void testClearClosesAllStatements() {
+		StatementCache cache = new StatementCache(4);
+		PreparedStatement a = createStatement();
+		cache.put("a", a);
+		cache.clear();
+
+		assertEquals(0, cache.getSize());
+		assertTrue(closedStatements.contains(a));
+	}
+
+	/**
+	 *
+	 */
+	protected PreparedStatement createStatement() {
+		InvocationHandler handler = new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if (method.getName().equals("close")) {
+					closedStatements.add((PreparedStatement) proxy);
+				} else if (method.getName().equals("hashCode")) {
+					return System.identityHashCode(proxy);
+				} else if (method.getName().equals("equals")) {
+					return proxy == args[0];
+				}
+				return null;
+			}
+		};
+
+		return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { PreparedStatement.class }, handler);
+	}
+
+}
@@ -0,0 +1,87 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.util.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the StatementStatistics class.
+ */
+public class StatementStatisticsTest extends TestCase {
+
+	/**
+	 *
+	 */
+	public StatementStatisticsTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	public void testAccountsTimesRowsAndSources() {
+		StatementStatistics statistics = new StatementStatistics();
+		String query = "SELECT * FROM photos WHERE owner_id = ?";
+		for (int i = 0; i < 10; i++) {
+			statistics.record(query, 1000, "GET showUserHome");
+			statistics.addRows(query, 2);
+		}
+		statistics.record(query, 5000, "GET showPhoto");
+		statistics.record(query, 1000);
+
+		StatementStatistics.Entry entry = statistics.getEntry(query);
+		assertEquals(12, entry.getCount());
+		assertEquals(16000, entry.getTotalTime());
+		assertEquals(5000, entry.getMaxTime());
+		assertEquals(20, entry.getNoRows());
+
+		Map<String, Long> sources = entry.getSourceCounts();
+		assertEquals(2, sources.size());
+		assertEquals("GET showUserHome", sources.keySet().iterator().next());
+		assertEquals(Long.valueOf(10), sources.get("GET showUserHome"));
+		assertEquals(Long.valueOf(1), sources.get("GET showPhoto"));
+	}
+
+	/**
+	 *
+	 */
+	public void testBoundsQueriesAndSources() {
+		StatementStatistics statistics = new StatementStatistics();
+		for (int i = 0; i < StatementStatistics.MAX_ENTRIES + 10; i++) {
+			statistics.record("SELECT " + i, 1000, "source" + i);
+		}
+
+		assertEquals(StatementStatistics.MAX_ENTRIES + 1, statistics.entries.size());
+		assertEquals(10, statistics.getEntry(StatementStatistics.OTHER).getCount());
+
+		for (int i = 0; i < StatementStatistics.MAX_SOURCES + 10; i++) {
+			statistics.record("SELECT 0", 1000, "source" + i);
+		}
+
+		Map<String, Long> sources = statistics.getEntry("SELECT 0").getSourceCounts();
+		assertEquals(StatementStatistics.MAX_SOURCES + 1, sources.size());
+		assertEquals(Long.valueOf(10), sources.get(StatementStatistics.OTHER));
+	}
+
+	/**
+	 *
+	 */
+	public void testOrdersEntriesByTotalTime() {
+		StatementStatistics statistics = new StatementStatistics();
+		statistics.record("SELECT 1", 1000);
+		statistics.record("SELECT 2", 3000);
+		statistics.record("SELECT 3", 2000);
+
+		List<StatementStatistics.Entry> entries = statistics.getEntriesByTotalTime(2);
+		assertEquals(2, entries.size());
+		assertEquals("SELECT 2", entries.get(0).getQuery());
+		assertEquals("SELECT 3", entries.get(1).getQuery());
+	}
+
+}
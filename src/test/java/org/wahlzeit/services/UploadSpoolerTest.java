@@ -0,0 +1,173 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.services;
+
+import java.io.*;
+import java.nio.file.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the UploadSpooler class.
+ */
+public class UploadSpoolerTest extends TestCase {
+
+	/**
+	 * SHA-256 of "abc"
+	 */
+	protected static final String ABC_HASH = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+	/**
+	 *
+	 */
+	protected File tempDir;
+	protected File backupDir;
+
+	/**
+	 *
+	 */
+	public UploadSpoolerTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		tempDir = Files.createTempDirectory("wahlzeit-temp").toFile();
+		backupDir = Files.createTempDirectory("wahlzeit-backup").toFile();
+	}
+
+	/**
+	 *
+	 */
+	protected void tearDown() throws Exception {
+		for (File dir : new File[] { tempDir, backupDir }) {
+			for (File file : dir.listFiles()) {
+				file.delete();
+			}
+			dir.delete();
+		}
+
+		super.tearDown();
+	}
+
+	/**
+	 *
+	 */
+	public void testSpoolsToUniqueFiles() throws Exception {
+		UploadSpooler spooler = new UploadSpooler(tempDir.getPath(), 1024);
+		UploadSpooler.SpooledFile file1 = spooler.spool(new ByteArrayInputStream("abc".getBytes("UTF-8")));
+		UploadSpooler.SpooledFile file2 = spooler.spool(new ByteArrayInputStream("abc".getBytes("UTF-8")));
+
+		assertFalse(file1.getFile().equals(file2.getFile()));
+		assertEquals(3, file1.getLength());
+		assertEquals(ABC_HASH, file1.getHash());
+		assertEquals("abc", new String(Files.readAllBytes(file2.getFile().toPath()), "UTF-8"));
+	}
+
+	/**
+	 *
+	 */
+	public void testRejectsTooLargeUpload() throws Exception {
+		UploadSpooler spooler = new UploadSpooler(tempDir.getPath(), 100 * 1024);
+		try {
+			spooler.spool(new ByteArrayInputStream(new byte[100 * 1024 + 1]));
+			fail("too large upload should be rejected");
+		} catch (UploadSpooler.UploadTooLargeException ex) {
+			assertEquals(0, tempDir.listFiles().length);
+		}
+
+		spooler.assertIsAcceptableLength(-1);
+		spooler.assertIsAcceptableLength(100 * 1024);
+		try {
+			spooler.assertIsAcceptableLength(100 * 1024 + 1);
+			fail("too large length should be rejected");
+		} catch (UploadSpooler.UploadTooLargeException ex) {
+			// expected
+		}
+	}
+
+	/**
+	 *
+	 */
+	public void testStoresContentOnce() throws Exception {
+		UploadSpooler spooler = new UploadSpooler(tempDir.getPath(), 1024);
+		for (String name : new String[] { "x1", "x2" }) {
+			UploadSpooler.SpooledFile file = spooler.spool(new ByteArrayInputStream("abc".getBytes("UTF-8")));
+			spooler.storeFile(file.getFile(), file.getHash(), backupDir.getPath(), name);
+			assertFalse(file.getFile().exists());
+		}
+
+		assertEquals(0, tempDir.listFiles().length);
+		assertEquals(3, backupDir.listFiles().length);
+		assertTrue(new File(backupDir, UploadSpooler.CONTENT_FILE_PREFIX + ABC_HASH).exists());
+		assertEquals("abc", new String(Files.readAllBytes(new File(backupDir, "x2").toPath()), "UTF-8"));
+		assertEquals(1, spooler.noDuplicates.get());
+	}
+
+	/**
+	 *
+	 */
+	public void testRejectsForgedFiles() throws Exception {
+		UploadSpooler spooler = new UploadSpooler(tempDir.getPath(), 1024);
+		File victim = new File(backupDir, "victim");
+		Files.write(victim.toPath(), "xyz".getBytes("UTF-8"));
+		try {
+			spooler.storeFile(victim, ABC_HASH, backupDir.getPath(), "x1");
+			fail("file outside of temp dir should be rejected");
+		} catch (IOException ex) {
+			assertTrue(victim.exists());
+		}
+
+		File outside = new File(tempDir, "../" + backupDir.getName() + "/victim");
+		try {
+			spooler.storeFile(outside, ABC_HASH, backupDir.getPath(), "x1");
+			fail("path leaving temp dir should be rejected");
+		} catch (IOException ex) {
+			assertTrue(victim.exists());
+		}
+
+		UploadSpooler.SpooledFile file = spooler.spool(new ByteArrayInputStream("abc".getBytes("UTF-8")));
+		try {
+			spooler.storeFile(file.getFile(), "../victim", backupDir.getPath(), "x1");
+			fail("invalid hash should be rejected");
+		} catch (IOException ex) {
+			assertTrue(file.getFile().exists());
+		}
+
+		assertEquals(1, backupDir.listFiles().length);
+		assertTrue(UploadSpooler.isReservedArg(UploadSpooler.FILE_NAME));
+		assertTrue(UploadSpooler.isReservedArg(UploadSpooler.FILE_HASH));
+		assertTrue(UploadSpooler.isReservedArg(UploadSpooler.FILE_TOO_LARGE));
+		assertFalse(UploadSpooler.isReservedArg("tags"));
+	}
+
+	/**
+	 *
+	 */
+	public void testDiscardsSpooledFilesOnly() throws Exception {
+		UploadSpooler spooler = new UploadSpooler(tempDir.getPath(), 1024);
+		UploadSpooler.SpooledFile file1 = spooler.spool(new ByteArrayInputStream("abc".getBytes("UTF-8")));
+		UploadSpooler.SpooledFile file2 = spooler.spool(new ByteArrayInputStream("abc".getBytes("UTF-8")));
+		File other = new File(tempDir, "other.jpg");
+		Files.write(other.toPath(), "xyz".getBytes("UTF-8"));
+
+		spooler.discardFile(file1.getFile());
+		spooler.discardFile(other);
+		assertFalse(file1.getFile().exists());
+		assertTrue(file2.getFile().exists());
+		assertTrue(other.exists());
+
+		spooler.discardLeftoverFiles();
+		assertFalse(file2.getFile().exists());
+		assertTrue(other.exists());
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.servlets;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the AbstractServlet class.
+ */
+public class AbstractServletTest extends TestCase {
+
+	/**
+	 *
+	 */
+	protected AbstractServlet servlet = new AbstractServlet() {
+		private static final long serialVersionUID = 42L; // any does; class never serialized
+	};
+
+	/**
+	 * Names of the methods called on the response and the async context
+	 */
+	protected List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+
+	/**
+	 *
+	 */
+	public AbstractServletTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	public void testTimeoutDuringTaskLeavesResponseToTask() throws Exception {
+		HttpServletResponse response = newRecorder(HttpServletResponse.class, "response");
+		AsyncContext context = newRecorder(AsyncContext.class, "context");
+		AbstractServlet.AsyncRequestListener listener = servlet.new AsyncRequestListener(response);
+
+		AsyncEvent timeout = new AsyncEvent(context);
+		AsyncEvent error = new AsyncEvent(context, new Exception("broken pipe"));
+		calls.clear();
+
+		assertTrue(listener.start()); // slow task is running
+		listener.onTimeout(timeout);
+		listener.onError(error);
+		assertTrue(calls.isEmpty());
+
+		servlet.completeIfPossible(context); // as the task does when done
+		assertEquals(Arrays.asList("context.complete"), calls);
+	}
+
+	/**
+	 *
+	 */
+	public void testTimeoutBeforeTaskEndsRequest() throws Exception {
+		HttpServletResponse response = newRecorder(HttpServletResponse.class, "response");
+		AsyncContext context = newRecorder(AsyncContext.class, "context");
+		AbstractServlet.AsyncRequestListener listener = servlet.new AsyncRequestListener(response);
+
+		AsyncEvent timeout = new AsyncEvent(context);
+		calls.clear();
+
+		listener.onTimeout(timeout);
+		assertEquals(Arrays.asList("response.isCommitted", "response.sendError", "context.complete"), calls);
+		assertFalse(listener.start()); // task does not serve request anymore
+	}
+
+	/**
+	 * Returns a proxy that records each call in calls and otherwise does nothing.
+	 */
+	protected <T> T newRecorder(Class<T> type, final String name) {
+		Object result = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				calls.add(name + "." + method.getName());
+				return (method.getReturnType() == boolean.class) ? Boolean.FALSE : null;
+			}
+		});
+
+		return type.cast(result);
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test cases for the HttpUtil class.
+ */
+public class HttpUtilTest {
+
+	/**
+	 *
+	 */
+	@Test
+	public void testAsEntityTag() {
+		assertEquals("\"x1abz-3-en\"", HttpUtil.asEntityTag("x1abz", 3, "en"));
+		assertEquals("\"a_b\"", HttpUtil.asEntityTag("a\"b"));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testAsDigestString() {
+		assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", HttpUtil.asDigestString(""));
+		assertEquals(64, HttpUtil.asDigestString("[tg:rose, un:ann]").length());
+		assertFalse(HttpUtil.asDigestString("Aa").equals(HttpUtil.asDigestString("BB"))); // same String.hashCode()
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testIsMatchingEntityTag() {
+		String tag = HttpUtil.asEntityTag("x1abz", 3);
+		assertTrue(HttpUtil.isMatchingEntityTag(tag, tag));
+		assertTrue(HttpUtil.isMatchingEntityTag("\"other\", " + tag, tag));
+		assertTrue(HttpUtil.isMatchingEntityTag("*", tag));
+		assertFalse(HttpUtil.isMatchingEntityTag("W/" + tag, tag));
+		assertFalse(HttpUtil.isMatchingEntityTag(HttpUtil.asEntityTag("x1abz", 4), tag));
+		assertFalse(HttpUtil.isMatchingEntityTag(null, tag));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testParseRange() {
+		assertArrayEquals(new long[] { 0, 99 }, HttpUtil.parseRange("bytes=0-99", 1000));
+		assertArrayEquals(new long[] { 500, 999 }, HttpUtil.parseRange("bytes=500-", 1000));
+		assertArrayEquals(new long[] { 900, 999 }, HttpUtil.parseRange("bytes=-100", 1000));
+		assertArrayEquals(new long[] { 0, 999 }, HttpUtil.parseRange("bytes=-2000", 1000));
+		assertArrayEquals(new long[] { 990, 999 }, HttpUtil.parseRange("bytes=990-2000", 1000));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testParseRangeIgnoresUnsupportedRanges() {
+		assertNull(HttpUtil.parseRange(null, 1000));
+		assertNull(HttpUtil.parseRange("bytes=0-9,20-29", 1000));
+		assertNull(HttpUtil.parseRange("bytes=9-0", 1000));
+		assertNull(HttpUtil.parseRange("bytes=a-b", 1000));
+		assertNull(HttpUtil.parseRange("items=0-9", 1000));
+		assertSame(HttpUtil.UNSATISFIABLE_RANGE, HttpUtil.parseRange("bytes=1000-", 1000));
+		assertSame(HttpUtil.UNSATISFIABLE_RANGE, HttpUtil.parseRange("bytes=-0", 1000));
+	}
+
+}
@@ -0,0 +1,149 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.webparts;
+
+import java.io.*;
+import java.nio.charset.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the FragmentCache and Fragment classes.
+ */
+public class FragmentCacheTest extends TestCase {
+
+	/**
+	 *
+	 */
+	protected FragmentCache cache;
+	protected WebPartTemplate template;
+	protected int noMade;
+
+	/**
+	 *
+	 */
+	public FragmentCacheTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		cache = new FragmentCache(2);
+		template = new WebPartTemplate("caption");
+		template.initialize("<p>{$caption}</p>");
+		noMade = 0;
+	}
+
+	/**
+	 *
+	 */
+	public void testRendersOnceForSameKey() throws IOException {
+		Writable first = cache.getFragment(FragmentCache.asKey("caption", "en", "x1abz", 1), makeCaption("Äpfel"));
+		Writable second = cache.getFragment(FragmentCache.asKey("caption", "en", "x1abz", 1), makeCaption("Äpfel"));
+
+		assertSame(first, second);
+		assertEquals(1, noMade);
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals("<p>Äpfel</p>", asUtf8String(second));
+	}
+
+	/**
+	 *
+	 */
+	public void testNewVersionRendersAgain() throws IOException {
+		cache.getFragment(FragmentCache.asKey("caption", "en", "x1abz", 1), makeCaption("old"));
+		Writable current = cache.getFragment(FragmentCache.asKey("caption", "en", "x1abz", 2), makeCaption("new"));
+
+		assertEquals(2, noMade);
+		assertEquals("<p>new</p>", asUtf8String(current));
+	}
+
+	/**
+	 *
+	 */
+	public void testLeastRecentlyUsedIsEvicted() {
+		cache.getFragment("a", makeString("A"));
+		cache.getFragment("b", makeString("B"));
+		cache.getFragment("a", makeString("A"));
+		cache.getFragment("c", makeString("C"));
+
+		assertEquals(2, cache.getSize());
+		assertEquals(1, cache.getHits());
+		cache.getFragment("a", makeString("A"));
+		assertEquals(2, cache.getHits());
+		cache.getFragment("b", makeString("B"));
+		assertEquals(2, cache.getHits());
+	}
+
+	/**
+	 *
+	 */
+	public void testFragmentRenderedBeforeClearIsNotStored() throws IOException {
+		Writable stale = cache.getFragment("footer", new FragmentCache.Maker() {
+			public Writable makeWritable() {
+				cache.clear(); // template reloaded while rendering
+				return Fragment.fromString("old");
+			}
+		});
+
+		assertEquals("old", asUtf8String(stale));
+		assertEquals(0, cache.getSize());
+		assertEquals("new", asUtf8String(cache.getFragment("footer", makeString("new"))));
+		assertEquals(1, cache.getSize());
+	}
+
+	/**
+	 *
+	 */
+	public void testFragmentOnPlainWriter() throws IOException {
+		StringWriter out = new StringWriter();
+		cache.getFragment("menu", makeString("<ul>Über</ul>")).writeOn(out);
+		assertEquals("<ul>Über</ul>", out.toString());
+	}
+
+	/**
+	 *
+	 */
+	protected FragmentCache.Maker makeCaption(final String caption) {
+		return new FragmentCache.Maker() {
+			public Writable makeWritable() {
+				noMade++;
+				WebPart result = new WebPart(template);
+				result.addString("caption", caption);
+				return result;
+			}
+		};
+	}
+
+	/**
+	 *
+	 */
+	protected FragmentCache.Maker makeString(final String value) {
+		return new FragmentCache.Maker() {
+			public Writable makeWritable() {
+				return Fragment.fromString(value);
+			}
+		};
+	}
+
+	/**
+	 *
+	 */
+	protected String asUtf8String(Writable writable) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Utf8Writer out = new Utf8Writer(bytes);
+		writable.writeOn(out);
+		out.close();
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+}
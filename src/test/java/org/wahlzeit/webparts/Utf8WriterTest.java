@@ -0,0 +1,102 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.webparts;
+
+import java.io.*;
+import java.nio.charset.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the Utf8Writer class.
+ */
+public class Utf8WriterTest extends TestCase {
+
+	/**
+	 *
+	 */
+	public Utf8WriterTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	public void testEncodesLikeString() throws IOException {
+		String text = "Grüße aus Nürnberg, € 5, 🌹 rose";
+		assertEncodedAs(text.getBytes(StandardCharsets.UTF_8), text, 16);
+		assertEncodedAs(text.getBytes(StandardCharsets.UTF_8), text, 8192);
+	}
+
+	/**
+	 *
+	 */
+	public void testSurrogatePairSplitOverWrites() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Utf8Writer writer = new Utf8Writer(bytes);
+		writer.write("a\uD83C");
+		writer.write("\uDF39b");
+		writer.close();
+		assertEquals("a🌹b", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 *
+	 */
+	public void testUnpairedSurrogates() throws IOException {
+		assertEncodedAs("a?b?".getBytes(StandardCharsets.UTF_8), "a\uD83Cb\uDF39", 16);
+	}
+
+	/**
+	 *
+	 */
+	public void testEncodedBytesAreCopied() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Utf8Writer writer = new Utf8Writer(bytes, 16);
+		writer.write("ä");
+		writer.writeEncoded("<p>Grüße, lange Zeile ohne Ende</p>".getBytes(StandardCharsets.UTF_8));
+		writer.write("ö");
+		writer.close();
+		assertEquals("ä<p>Grüße, lange Zeile ohne Ende</p>ö", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+		assertEquals(bytes.size(), writer.getNoBytesWritten());
+	}
+
+	/**
+	 *
+	 */
+	public void testWebPartWritesEncodedChunks() throws IOException {
+		WebPartTemplate template = new WebPartTemplate("test");
+		template.initialize("<h1>Über {$name}</h1>{$body}");
+		WebPartTemplate bodyTemplate = new WebPartTemplate("body");
+		bodyTemplate.initialize("<p>{$text}</p>");
+
+		WebPart body = new WebPart(bodyTemplate);
+		body.addString("text", "Größe");
+		WebPart page = new WebPart(template);
+		page.addString("name", "Mädchen");
+		page.addWritable("body", body);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Utf8Writer writer = new Utf8Writer(bytes);
+		page.writeOn(writer);
+		writer.close();
+		assertEquals("<h1>Über Mädchen</h1><p>Größe</p>", new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 *
+	 */
+	protected void assertEncodedAs(byte[] expected, String text, int bufferSize) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Utf8Writer writer = new Utf8Writer(bytes, bufferSize);
+		writer.write(text);
+		writer.close();
+		assertEquals(new String(expected, StandardCharsets.UTF_8), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+		assertTrue(java.util.Arrays.equals(expected, bytes.toByteArray()));
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.webparts;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+import junit.framework.TestCase;
+
+import org.wahlzeit.services.*;
+
+/**
+ * Test cases for the WebPartTemplateService class.
+ */
+public class WebPartTemplateServiceTest extends TestCase {
+
+	/**
+	 *
+	 */
+	protected Path rootDir;
+	protected WebPartTemplateService service;
+
+	/**
+	 *
+	 */
+	public WebPartTemplateServiceTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		rootDir = Files.createTempDirectory("templates");
+		writeTemplate(ConfigDir.DEFAULT_DIR_NAME, "en/pages/Page", "<p>{$text}</p>");
+		writeTemplate(ConfigDir.DEFAULT_DIR_NAME, "de/pages/Page", "<p>Größe: {$text}</p>");
+		writeTemplate(ConfigDir.CUSTOM_DIR_NAME, "en/parts/Custom", "<b>{$text}</b>");
+
+		service = new WebPartTemplateService();
+		service.setTemplatesDir(new ConfigDir(rootDir.toString(), "templates"));
+	}
+
+	/**
+	 *
+	 */
+	protected void tearDown() throws Exception {
+		service.stopWatching();
+		try (java.util.stream.Stream<Path> files = Files.walk(rootDir)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+
+		super.tearDown();
+	}
+
+	/**
+	 *
+	 */
+	public void testLoadAllTemplates() throws IOException {
+		service.loadAllTemplates();
+		assertEquals(3, service.getLastLoadTimes().size());
+		assertEquals("<p>Größe: </p>", service.getTemplate("de", "pages/Page").asString());
+		assertEquals("<b></b>", service.getTemplate("en", "parts/Custom").asString());
+	}
+
+	/**
+	 *
+	 */
+	public void testLargeTemplate() throws IOException {
+		StringBuffer source = new StringBuffer();
+		for (int i = 0; i < 10000; i++) {
+			source.append("<p>line ").append(i).append("</p>\n");
+		}
+		source.append("{$end}");
+		writeTemplate(ConfigDir.DEFAULT_DIR_NAME, "en/pages/Large", source.toString());
+
+		WebPartTemplate template = service.getTemplate("en", "pages/Large");
+		assertTrue(template.asString().length() > 50000);
+		assertEquals(0, template.getKeyIndex("end"));
+	}
+
+	/**
+	 *
+	 */
+	public void testMissingTemplate() {
+		assertNull(service.getTemplate("en", "pages/NoSuchPage"));
+	}
+
+	/**
+	 *
+	 */
+	public void testReloadsChangedTemplate() throws Exception {
+		service.loadAllTemplates();
+		service.startWatching();
+
+		writeTemplate(ConfigDir.DEFAULT_DIR_NAME, "en/pages/Page", "<p>{$text} changed</p>");
+		writeTemplate(ConfigDir.DEFAULT_DIR_NAME, "en/forms/New", "<form>{$text}</form>");
+
+		long timeout = System.currentTimeMillis() + 10000;
+		while (!"<p> changed</p>".equals(service.getTemplate("en", "pages/Page").asString()) && (System.currentTimeMillis() < timeout)) {
+			Thread.sleep(20);
+		}
+		assertEquals("<p> changed</p>", service.getTemplate("en", "pages/Page").asString());
+		assertEquals("<form></form>", service.getTemplate("en", "forms/New").asString());
+	}
+
+	/**
+	 *
+	 */
+	protected void writeTemplate(String dirName, String shortName, String source) throws IOException {
+		Path file = rootDir.resolve("templates").resolve(dirName).resolve(shortName + WebPartTemplateService.TEMPLATE_FILE_EXTENSION);
+		Files.createDirectories(file.getParent());
+		Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * SPDX-FileCopyrightText: 2006-2009 Dirk Riehle https://dirkriehle.com
+ *
+ * SPDX-License-Identifier: AGPL-3.0-or-later
+ */
+
+package org.wahlzeit.webparts;
+
+import java.io.*;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the WebPart and WebPartTemplate classes.
+ */
+public class WebPartTest extends TestCase {
+
+	/**
+	 *
+	 */
+	public WebPartTest(String name) {
+		super(name);
+	}
+
+	/**
+	 *
+	 */
+	public void testCompiledTemplate() {
+		WebPartTemplate template = createTemplate("<p>{$a}, {$b} and {$a} again</p>");
+		assertEquals("<p>,  and  again</p>", template.asString());
+		assertEquals(3, template.getNoSlots());
+		assertEquals(2, template.getNoKeyIndices());
+		assertEquals(template.getSlotKeyIndex(0), template.getSlotKeyIndex(2));
+		assertEquals(template.getKeyIndex("a"), template.getSlotKeyIndex(0));
+		assertEquals(-1, template.getKeyIndex("c"));
+		assertEquals("<p>", template.getChunk(0));
+		assertEquals(" again</p>", template.getChunk(3));
+	}
+
+	/**
+	 *
+	 */
+	public void testWriteOn() throws IOException {
+		WebPart part = new WebPart(createTemplate("<p>{$a}, {$b} and {$a} again</p>"));
+		part.addString("a", "one");
+		part.addString("c", "not in template");
+		assertEquals("<p>one,  and one again</p>", asString(part));
+
+		part.addString("b", "two");
+		assertEquals("<p>one, two and one again</p>", asString(part));
+		assertEquals("not in template", part.getValue("c"));
+		assertNull(part.getValue("d"));
+	}
+
+	/**
+	 *
+	 */
+	public void testNestedParts() throws IOException {
+		WebPart inner = new WebPart(createTemplate("[{$x}]"));
+		inner.addString("x", "inner");
+		WebPart outer = new WebPart(createTemplate("{$head}<div>{$body}</div>"));
+		outer.addWritable("body", inner);
+		assertEquals("<div>[inner]</div>", asString(outer));
+	}
+
+	/**
+	 *
+	 */
+	public void testTemplateWithoutSlots() throws IOException {
+		WebPart part = new WebPart(createTemplate("<p>static</p>"));
+		part.addString("a", "ignored");
+		assertEquals("<p>static</p>", asString(part));
+	}
+
+	/**
+	 *
+	 */
+	protected WebPartTemplate createTemplate(String source) {
+		WebPartTemplate result = new WebPartTemplate("test");
+		result.initialize(source);
+		return result;
+	}
+
+	/**
+	 *
+	 */
+	protected String asString(Writable writable) throws IOException {
+		StringWriter result = new StringWriter();
+		writable.writeOn(result);
+		return result.toString();
+	}
+
+}